@@ -0,0 +1,79 @@
+package benchmarks;
+
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures add and contains of {@link BloomFilterMemory} for filters of different sizes. The contains benchmark looks
+ * up inserted and unknown elements alternately.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BloomFilterMemoryBenchmark {
+    @Param({"1000", "1000000", "100000000"})
+    public int expectedElements;
+
+    @Param({"0.01"})
+    public double falsePositiveProbability;
+
+    @Param({"Murmur3KirschMitzenmacher"})
+    public HashMethod hashMethod;
+
+    private BloomFilterMemory<String> filter;
+    private byte[][] elements;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        filter = new BloomFilterMemory<>(new FilterBuilder(expectedElements, falsePositiveProbability)
+            .hashFunction(hashMethod));
+        int count = Math.min(expectedElements, 1 << 20);
+        elements = new byte[count * 2][];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = ("element" + i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        filter.clear();
+        for (int i = 0; i < elements.length; i += 2) {
+            filter.addRaw(elements[i]);
+        }
+    }
+
+    private byte[] nextElement() {
+        next = next + 1 < elements.length ? next + 1 : 0;
+        return elements[next];
+    }
+
+    @Benchmark
+    public boolean add() {
+        return filter.addRaw(nextElement());
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return filter.contains(nextElement());
+    }
+}
@@ -0,0 +1,100 @@
+package benchmarks;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares element-at-a-time lookups with the batched and the two-phase bulk lookups for filters from L2-resident
+ * sizes up to 4 GB. Filters beyond 256 MB are {@link orestes.bloomfilter.memory.LargeBloomFilterMemory}s. All looked up
+ * elements are contained, so that every lookup has to read all k bits. Run with <code>gradle jmh
+ * -Pjmh.includes=BulkContainsBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class BulkContainsBenchmark {
+    private static final int ELEMENTS = 1 << 20;
+    private static final int BATCH = 4096;
+
+    @Param({"256K", "8M", "256M", "4G"})
+    public String filterSize;
+
+    @Param({"256", "4096"})
+    public int window;
+
+    private BloomFilter<String> filter;
+    private byte[][][] batches;
+    private boolean[] results;
+    private int next;
+
+    @Setup
+    public void setup() {
+        filter = new FilterBuilder().size(parseBytes(filterSize) * 8).hashes(7).hashFunction(HashMethod.Murmur3x64)
+            .buildBloomFilter();
+        batches = new byte[ELEMENTS / BATCH][BATCH][];
+        for (int i = 0; i < ELEMENTS; i++) {
+            byte[] element = ("element" + i).getBytes(StandardCharsets.UTF_8);
+            filter.addRaw(element);
+            batches[i / BATCH][i % BATCH] = element;
+        }
+        results = new boolean[BATCH];
+    }
+
+    private static long parseBytes(String size) {
+        long value = Long.parseLong(size.substring(0, size.length() - 1));
+        switch (size.charAt(size.length() - 1)) {
+            case 'G':
+                return value << 30;
+            case 'M':
+                return value << 20;
+            default:
+                return value << 10;
+        }
+    }
+
+    private byte[][] nextBatch() {
+        byte[][] batch = batches[next];
+        next = (next + 1) % batches.length;
+        return batch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void elementAtATime(Blackhole blackhole) {
+        for (byte[] element : nextBatch()) {
+            blackhole.consume(filter.contains(element));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] batched() {
+        return filter.contains(nextBatch(), results);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] twoPhase() {
+        return filter.contains(nextBatch(), results, window);
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.json.BloomFilterConverter;
+import orestes.bloomfilter.json.CompactBitSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding and decoding of Bloom filters with {@link CompactBitSet} against their plain bytes, for
+ * filters populated with the given fraction of their expected elements. The sizes of both encodings are printed once
+ * per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactBitSetBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int expectedElements;
+
+    @Param({"0.001", "0.01", "0.1", "1"})
+    public double population;
+
+    private BloomFilter<String> filter;
+    private BitSet bits;
+    private byte[] plain;
+    private byte[] compact;
+
+    @Setup
+    public void setup() {
+        filter = new FilterBuilder(expectedElements, 0.01).buildBloomFilter();
+        for (int i = 0; i < expectedElements * population; i++) {
+            filter.add("element" + i);
+        }
+        bits = filter.getBitSet();
+        plain = bits.toByteArray();
+        compact = BloomFilterConverter.toCompact(filter);
+        System.out.printf("%n%d bits: %d plain bytes, %d compact bytes (%s)%n", filter.getSize(), plain.length,
+            compact.length, CompactBitSet.format(compact));
+    }
+
+    @Benchmark
+    public byte[] encodePlain() {
+        return bits.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeCompact() {
+        return CompactBitSet.encode(bits, filter.getSize());
+    }
+
+    @Benchmark
+    public BitSet decodePlain() {
+        return BitSet.valueOf(plain);
+    }
+
+    @Benchmark
+    public BitSet decodeCompact() {
+        return CompactBitSet.decode(compact);
+    }
+}
@@ -0,0 +1,89 @@
+package benchmarks;
+
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of counting Bloom filters shared by several threads, comparing the single monitor of the
+ * default implementation with lock striping ({@link orestes.bloomfilter.memory.StripedCountingBloomFilterMemory}) and
+ * compare-and-set counters ({@link orestes.bloomfilter.memory.ConcurrentCountingBloomFilterMemory}). Use JMH's
+ * <code>-t</code> option to measure the scaling with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentCountingBloomFilterBenchmark {
+    private static final int ELEMENTS = 1 << 16;
+
+    @Param({"synchronized", "striped", "lockfree"})
+    public String implementation;
+
+    @Param({"16"})
+    public int countingBits;
+
+    @Param({"64"})
+    public int concurrencyLevel;
+
+    private CountingBloomFilter<String> filter;
+    private byte[][] elements;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = ThreadLocalRandom.current().nextInt(ELEMENTS);
+
+        int next() {
+            next = (next + 1) & (ELEMENTS - 1);
+            return next;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        FilterBuilder config = new FilterBuilder(1_000_000, 0.01).countingBits(countingBits);
+        if ("striped".equals(implementation)) {
+            config.concurrencyLevel(concurrencyLevel);
+        } else if ("lockfree".equals(implementation)) {
+            config.concurrent(true);
+        }
+        filter = config.buildCountingBloomFilter();
+        elements = new byte[ELEMENTS][];
+        for (int i = 0; i < ELEMENTS; i++) {
+            elements[i] = ("element" + i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Increments and decrements the counters of an element, so that the counters neither overflow nor stay at zero.
+     *
+     * @param cursor the element cursor of the calling thread
+     * @return the estimated count after the decrement
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public long incrementAndDecrement(Cursor cursor) {
+        byte[] element = elements[cursor.next()];
+        filter.addAndEstimateCountRaw(element);
+        return filter.removeAndEstimateCountRaw(element);
+    }
+}
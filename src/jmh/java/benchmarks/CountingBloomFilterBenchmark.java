@@ -0,0 +1,81 @@
+package benchmarks;
+
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the increments and decrements of the in-memory counting Bloom filters for all byte-aligned counter widths,
+ * i.e. {@link orestes.bloomfilter.memory.CountingBloomFilter8} to {@link orestes.bloomfilter.memory.CountingBloomFilter64}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountingBloomFilterBenchmark {
+    private static final int ELEMENTS = 1 << 16;
+
+    @Param({"8", "16", "32", "64"})
+    public int countingBits;
+
+    @Param({"1000000"})
+    public int expectedElements;
+
+    private CountingBloomFilter<String> filter;
+    private byte[][] elements;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        filter = new FilterBuilder(expectedElements, 0.01).countingBits(countingBits).buildCountingBloomFilter();
+        elements = new byte[ELEMENTS][];
+        for (int i = 0; i < ELEMENTS; i++) {
+            elements[i] = ("element" + i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        filter.clear();
+    }
+
+    private byte[] nextElement() {
+        next = (next + 1) & (ELEMENTS - 1);
+        return elements[next];
+    }
+
+    @Benchmark
+    public long increment() {
+        return filter.addAndEstimateCountRaw(nextElement());
+    }
+
+    /**
+     * Increments and decrements the counters of an element, so that the counters neither overflow nor stay at zero.
+     *
+     * @return the estimated count after the decrement
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public long incrementAndDecrement() {
+        byte[] element = nextElement();
+        filter.addAndEstimateCountRaw(element);
+        return filter.removeAndEstimateCountRaw(element);
+    }
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import orestes.bloomfilter.HashProvider.HashFunction;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hash functions of all {@link HashMethod}s for short and long elements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+    private static final int ELEMENTS = 1024;
+
+    @Param
+    public HashMethod hashMethod;
+
+    @Param({"16", "256"})
+    public int elementLength;
+
+    @Param({"1000000"})
+    public int m;
+
+    @Param({"10"})
+    public int k;
+
+    private HashFunction hashFunction;
+    private byte[][] elements;
+    private int[] positions;
+    private int next;
+
+    @Setup
+    public void setup() {
+        hashFunction = hashMethod.getHashFunction();
+        Random random = new Random(42);
+        elements = new byte[ELEMENTS][elementLength];
+        for (byte[] element : elements) {
+            random.nextBytes(element);
+        }
+        positions = new int[k];
+    }
+
+    private byte[] nextElement() {
+        next = (next + 1) & (ELEMENTS - 1);
+        return elements[next];
+    }
+
+    @Benchmark
+    public int[] hash() {
+        return hashFunction.hash(nextElement(), m, k);
+    }
+
+    @Benchmark
+    public int[] hashInto() {
+        hashFunction.hashInto(nextElement(), m, k, positions);
+        return positions;
+    }
+}
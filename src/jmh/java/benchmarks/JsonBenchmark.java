@@ -0,0 +1,55 @@
+package benchmarks;
+
+import com.google.gson.JsonElement;
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.json.BloomFilterConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of half-full Bloom filters from and to JSON with {@link BloomFilterConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int expectedElements;
+
+    private BloomFilter<String> filter;
+    private JsonElement json;
+
+    @Setup
+    public void setup() {
+        filter = new FilterBuilder(expectedElements, 0.01).buildBloomFilter();
+        for (int i = 0; i < expectedElements / 2; i++) {
+            filter.add("element" + i);
+        }
+        json = BloomFilterConverter.toJson(filter);
+    }
+
+    @Benchmark
+    public JsonElement toJson() {
+        return BloomFilterConverter.toJson(filter);
+    }
+
+    @Benchmark
+    public BloomFilter<String> fromJson() {
+        return BloomFilterConverter.fromJson(json);
+    }
+}
@@ -0,0 +1,132 @@
+package benchmarks;
+
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.redis.RedisBitSet;
+import orestes.bloomfilter.redis.helper.RedisPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the bulk operations of {@link RedisBitSet} against a redis-server, which is launched for each trial on the
+ * given port. The executable is taken from the system property <code>redis.server</code> and defaults to
+ * <code>redis-server</code> on the path. The {@link RedisBitSet.Mode} compares transactions of single-bit commands to
+ * Lua scripts and <i>BITFIELD</i>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisBitSetBenchmark {
+    private static final int POSITION_SETS = 1024;
+
+    @Param({"6399"})
+    public int port;
+
+    @Param({"10000000"})
+    public int size;
+
+    @Param({"10"})
+    public int k;
+
+    @Param({"TRANSACTION", "SCRIPT", "BITFIELD"})
+    public RedisBitSet.Mode mode;
+
+    private Process server;
+    private RedisPool pool;
+    private RedisBitSet bits;
+    private int[][] positions;
+    private BitSet overwrite;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException, InterruptedException {
+        server = new ProcessBuilder(System.getProperty("redis.server", "redis-server"), "--port", String.valueOf(port),
+            "--save", "", "--appendonly", "no").redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+        awaitServer();
+        pool = new FilterBuilder(1000, 0.01).redisPort(port).complete().pool();
+        bits = new RedisBitSet(pool, "benchmark", size, mode);
+        bits.clear();
+
+        Random random = new Random(42);
+        positions = new int[POSITION_SETS][k];
+        for (int[] set : positions) {
+            for (int i = 0; i < k; i++) {
+                set[i] = random.nextInt(size);
+            }
+        }
+        overwrite = new BitSet(size);
+        for (int i = 0; i < size / 2; i++) {
+            overwrite.set(random.nextInt(size));
+        }
+    }
+
+    private void awaitServer() throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            try (Jedis jedis = new Jedis("localhost", port)) {
+                jedis.ping();
+                return;
+            } catch (JedisConnectionException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("redis-server did not start on port " + port);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws InterruptedException {
+        pool.destroy();
+        server.destroy();
+        server.waitFor();
+    }
+
+    private int[] nextPositions() {
+        next = (next + 1) & (POSITION_SETS - 1);
+        return positions[next];
+    }
+
+    @Benchmark
+    public boolean setAll() {
+        return bits.setAll(nextPositions());
+    }
+
+    @Benchmark
+    public Boolean[] getBulk() {
+        return bits.getBulk(nextPositions());
+    }
+
+    @Benchmark
+    public boolean isAllSet() {
+        return bits.isAllSet(nextPositions());
+    }
+
+    @Benchmark
+    public BitSet asBitSet() {
+        return bits.asBitSet();
+    }
+
+    @Benchmark
+    public void overwriteBitSet() {
+        bits.overwriteBitSet(overwrite);
+    }
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.memory.ConcurrentBloomFilterMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures merging, intersecting and counting in-memory filters of 512 KB up to 64 MB, each source having 5% of its
+ * bits set. Above {@link orestes.bloomfilter.memory.ParallelBits#CHUNK_WORDS} words, {@link BloomFilterMemory} and
+ * {@link ConcurrentBloomFilterMemory} merge all sources into each chunk of words in parallel, which is compared with
+ * one sequential {@link BitSet#or(BitSet)} per source. The speedup depends on the number of cores. Run with
+ * <code>gradle jmh -Pjmh.includes=UnionBenchmark</code> and compare the allocation rates with
+ * <code>-Pjmh.profilers=gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UnionBenchmark {
+    private static final int SOURCES = 4;
+
+    @Param({"22", "26", "29"})
+    public int sizeBits;
+
+    private BloomFilterMemory<String> target;
+    private ConcurrentBloomFilterMemory<String> concurrent;
+    private List<BloomFilter<String>> sources;
+    private BitSet bits;
+    private List<BitSet> sourceBits;
+
+    @Setup
+    public void setup() {
+        int size = 1 << sizeBits;
+        FilterBuilder config = new FilterBuilder(size, 5);
+        Random random = new Random(42);
+        sources = new ArrayList<>();
+        sourceBits = new ArrayList<>();
+        for (int s = 0; s < SOURCES; s++) {
+            BitSet source = new BitSet(size);
+            for (int i = 0; i < size / 20; i++) {
+                source.set(random.nextInt(size));
+            }
+            BloomFilterMemory<String> filter = new BloomFilterMemory<>(config.clone());
+            filter.setBitSet(source);
+            sources.add(filter);
+            sourceBits.add(source);
+        }
+        target = new BloomFilterMemory<>(config.clone());
+        concurrent = new ConcurrentBloomFilterMemory<>(config.clone());
+        bits = new BitSet(size);
+    }
+
+    @Benchmark
+    public boolean unionAll() {
+        return target.unionAll(sources);
+    }
+
+    @Benchmark
+    public boolean concurrentUnionAll() {
+        return concurrent.unionAll(sources);
+    }
+
+    @Benchmark
+    public BitSet sequentialOr() {
+        for (BitSet source : sourceBits) {
+            bits.or(source);
+        }
+        return bits;
+    }
+
+    @Benchmark
+    public boolean intersect() {
+        return target.intersect(sources.get(0));
+    }
+
+    @Benchmark
+    public BitSet sequentialAnd() {
+        bits.and(sourceBits.get(0));
+        return bits;
+    }
+
+    @Benchmark
+    public Double population() {
+        return target.getEstimatedPopulation();
+    }
+
+    @Benchmark
+    public int sequentialCardinality() {
+        return bits.cardinality();
+    }
+}
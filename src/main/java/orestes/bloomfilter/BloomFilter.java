@@ -1,5 +1,7 @@
 package orestes.bloomfilter;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.BitSet;
 import java.util.Collection;
@@ -41,6 +43,57 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
         return elements.stream().map(this::add).collect(Collectors.toList());
     }
 
+    /**
+     * Performs a bulk add operation for an array of elements in byte array form. In contrast to {@link
+     * #addAll(Collection)}, the results are written into the given array, so that no boolean has to be boxed.
+     * Implementations may hash all elements up front and update the bits in one go.
+     *
+     * @param elements the elements to add
+     * @param results  array of at least the number of elements receiving for each element, whether it was added (see
+     *                 {@link #addRaw(byte[])})
+     * @return the given results array
+     */
+    public default boolean[] addAll(byte[][] elements, boolean[] results) {
+        for (int i = 0; i < elements.length; i++) {
+            results[i] = addRaw(elements[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Performs a bulk add operation for an array of elements in byte array form. The bit at index i of the results is
+     * set, if the i-th element was added (see {@link #addRaw(byte[])}) and cleared otherwise.
+     *
+     * @param elements the elements to add
+     * @param results  the BitSet receiving the results
+     * @return the given results BitSet
+     */
+    public default BitSet addAll(byte[][] elements, BitSet results) {
+        return toBitSet(addAll(elements, new boolean[elements.length]), results);
+    }
+
+    /**
+     * Performs a bulk add operation for a collection of elements, see {@link #addAll(byte[][], boolean[])}.
+     *
+     * @param elements the elements to add
+     * @param results  array of at least the number of elements receiving for each element, whether it was added
+     * @return the given results array
+     */
+    public default boolean[] addAll(Collection<T> elements, boolean[] results) {
+        return addAll(elements.stream().map(this::toBytes).toArray(byte[][]::new), results);
+    }
+
+    /**
+     * Performs a bulk add operation for a collection of elements, see {@link #addAll(byte[][], BitSet)}.
+     *
+     * @param elements the elements to add
+     * @param results  the BitSet receiving the results
+     * @return the given results BitSet
+     */
+    public default BitSet addAll(Collection<T> elements, BitSet results) {
+        return addAll(elements.stream().map(this::toBytes).toArray(byte[][]::new), results);
+    }
+
     /**
      * Removes all elements from the filter (i.e. resets all bits to zero).
      */
@@ -74,6 +127,69 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
         return elements.stream().map(this::contains).collect(Collectors.toList());
     }
 
+    /**
+     * Bulk-tests elements in byte array form for existence in the filter. In contrast to {@link
+     * #contains(Collection)}, the results are written into the given array, so that no boolean has to be boxed.
+     *
+     * @param elements the elements to test
+     * @param results  array of at least the number of elements receiving for each element, whether it is present
+     * @return the given results array
+     */
+    public default boolean[] contains(byte[][] elements, boolean[] results) {
+        for (int i = 0; i < elements.length; i++) {
+            results[i] = contains(elements[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Bulk-tests elements in byte array form for existence in the filter, processing them in windows of the given
+     * number of elements. In-memory implementations buffer the positions of a window and resolve them in the order of
+     * their memory addresses, so that independent cache misses overlap. Other implementations ignore the window.
+     *
+     * @param elements the elements to test
+     * @param results  array of at least the number of elements receiving for each element, whether it is present
+     * @param window   the number of elements whose positions are buffered and sorted together
+     * @return the given results array
+     */
+    public default boolean[] contains(byte[][] elements, boolean[] results, int window) {
+        return contains(elements, results);
+    }
+
+    /**
+     * Bulk-tests elements in byte array form for existence in the filter. The bit at index i of the results is set, if
+     * the i-th element is present and cleared otherwise.
+     *
+     * @param elements the elements to test
+     * @param results  the BitSet receiving the results
+     * @return the given results BitSet
+     */
+    public default BitSet contains(byte[][] elements, BitSet results) {
+        return toBitSet(contains(elements, new boolean[elements.length]), results);
+    }
+
+    /**
+     * Bulk-tests elements for existence in the filter, see {@link #contains(byte[][], boolean[])}.
+     *
+     * @param elements the elements to test
+     * @param results  array of at least the number of elements receiving for each element, whether it is present
+     * @return the given results array
+     */
+    public default boolean[] contains(Collection<T> elements, boolean[] results) {
+        return contains(elements.stream().map(this::toBytes).toArray(byte[][]::new), results);
+    }
+
+    /**
+     * Bulk-tests elements for existence in the filter, see {@link #contains(byte[][], BitSet)}.
+     *
+     * @param elements the elements to test
+     * @param results  the BitSet receiving the results
+     * @return the given results BitSet
+     */
+    public default BitSet contains(Collection<T> elements, BitSet results) {
+        return contains(elements.stream().map(this::toBytes).toArray(byte[][]::new), results);
+    }
+
     /**
      * Bulk-tests elements for existence in the filter.
      *
@@ -91,6 +207,18 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
      */
     public BitSet getBitSet();
 
+    /**
+     * Writes the underlying bit vector to the given stream in the byte order of {@link BitSet#toByteArray()}, possibly
+     * followed by zero bytes. Implementations which can read their bits in chunks override this to avoid copying the
+     * whole bit vector. Concurrent modifications may then only be visible in some of the chunks.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    public default void writeBits(OutputStream out) throws IOException {
+        out.write(getBitSet().toByteArray());
+    }
+
     /**
      * Returns the configuration/builder of the Bloom filter.
      *
@@ -115,6 +243,17 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
         return config().size();
     }
 
+    /**
+     * Return the size of the Bloom filter, i.e. the number of positions in the underlyling bit vector (called m in the
+     * literature). In contrast to {@link #getSize()} this also works for filters with more than {@link
+     * Integer#MAX_VALUE} bits.
+     *
+     * @return the bit vector size
+     */
+    public default long getLongSize() {
+        return config().longSize();
+    }
+
     /**
      * Returns the expected number of elements (called n in the literature)
      *
@@ -194,6 +333,32 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
         return config().hashFunction().hash(bytes, config().size(), config().hashes());
     }
 
+    /**
+     * Writes the k hash values for an input element in byte array form into the given array, thus avoiding the
+     * allocation of a new array for each element.
+     *
+     * @param bytes     input element
+     * @param positions array of at least length k receiving the hash values
+     * @return the given positions array
+     */
+    public default int[] hashInto(byte[] bytes, int[] positions) {
+        config().hashFunction().hashInto(bytes, config().size(), config().hashes(), positions);
+        return positions;
+    }
+
+    /**
+     * Writes the k hash values for an input element into the given array of long positions, as needed for filters
+     * with more than {@link Integer#MAX_VALUE} bits.
+     *
+     * @param bytes     input element
+     * @param positions array of at least length k receiving the hash values
+     * @return the given positions array
+     */
+    public default long[] hashInto(byte[] bytes, long[] positions) {
+        config().hashFunction().hashInto(bytes, config().longSize(), config().hashes(), positions);
+        return positions;
+    }
+
     /**
      * Dispatches the hash function for a string value
      *
@@ -215,6 +380,24 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
      */
     boolean union(BloomFilter<T> other);
 
+    /**
+     * Performs the union operation with several compatible bloom filters at once, see {@link #union(BloomFilter)}.
+     * {@link orestes.bloomfilter.memory.BloomFilterMemory} and {@link
+     * orestes.bloomfilter.memory.ConcurrentBloomFilterMemory} merge all bit vectors in a single pass instead of one
+     * pass per bloom filter.
+     *
+     * @param others the other bloom filters
+     * @return <code>true</code> if all bloom filters were compatible and this bloom filter was updated; if any of them
+     * is incompatible, this bloom filter is not changed
+     */
+    default boolean unionAll(List<? extends BloomFilter<T>> others) {
+        if (!others.stream().allMatch(this::compatible)) {
+            return false;
+        }
+        others.forEach(this::union);
+        return true;
+    }
+
     /**
      * Performs the intersection operation on two compatible bloom filters. This is achieved through a bitwise AND
      * operation on their bit vectors. The operations doesn't introduce any false negatives but it does raise the false
@@ -242,7 +425,7 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
      * @return probability of a false positive after <i>expectedElements</i> {@link #addRaw(byte[])} operations
      */
     public default double getFalsePositiveProbability(double insertedElements) {
-        return FilterBuilder.optimalP(config().hashes(), config().size(), insertedElements);
+        return FilterBuilder.optimalP(config().hashes(), config().longSize(), insertedElements);
     }
 
     /**
@@ -263,7 +446,7 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
      * @return The numbers of bits per element
      */
     public default double getBitsPerElement(int n) {
-        return config().size() / (double) n;
+        return config().longSize() / (double) n;
     }
 
     /**
@@ -273,7 +456,7 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
      * @return probability that a certain bit is zero after <i>expectedElements</i> {@link #addRaw(byte[])} operations
      */
     public default double getBitZeroProbability(int n) {
-        return Math.pow(1 - (double) 1 / config().size(), config().hashes() * n);
+        return Math.pow(1 - (double) 1 / config().longSize(), config().hashes() * n);
     }
 
     /**
@@ -286,10 +469,36 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
         return population(getBitSet(), config());
     }
 
+    /**
+     * Copies bulk operation results into a BitSet.
+     *
+     * @param values  the results
+     * @param results the BitSet receiving the results
+     * @return the given results BitSet
+     */
+    public static BitSet toBitSet(boolean[] values, BitSet results) {
+        for (int i = 0; i < values.length; i++) {
+            results.set(i, values[i]);
+        }
+        return results;
+    }
+
     public static Double population(BitSet bitSet, FilterBuilder config) {
+        return population(bitSet.cardinality(), config);
+    }
+
+    /**
+     * Estimates the population of a Bloom filter from the number of bits which are set.
+     *
+     * @param cardinality the number of set bits
+     * @param config      the configuration of the Bloom filter
+     * @return the estimated amount of elements in the filter
+     */
+    public static Double population(long cardinality, FilterBuilder config) {
         // limit number of oneBits to size of bitSet - 1 to prevent Math.log(0), below
-        int oneBits = Math.min(bitSet.cardinality(), config.size() - 1);
-        return -config.size() / ((double) config.hashes()) * Math.log(1 - oneBits / ((double) config.size()));
+        long size = config.longSize();
+        long oneBits = Math.min(cardinality, size - 1);
+        return -size / ((double) config.hashes()) * Math.log(1 - oneBits / ((double) size));
     }
 
     /**
@@ -300,7 +509,7 @@ public interface BloomFilter<T> extends Cloneable, Serializable {
     public default String asString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Bloom Filter Parameters: ");
-        sb.append("size = " + config().size() + ", ");
+        sb.append("size = " + config().longSize() + ", ");
         sb.append("hashes = " + config().hashes() + ", ");
         sb.append("Bits: " + getBitSet().toString());
         return sb.toString();
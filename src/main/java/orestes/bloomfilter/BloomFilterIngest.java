@@ -0,0 +1,176 @@
+package orestes.bloomfilter;
+
+import orestes.bloomfilter.redis.PipelinedBloomFilter;
+import redis.clients.jedis.Pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A streaming stage that adds a stream of elements to a Bloom filter in batches and emits for every element whether it
+ * was new, e.g. to deduplicate the stream. The stage follows the callbacks of a reactive subscriber ({@link
+ * #onNext(Object)}, {@link #onError(Throwable)}, {@link #onComplete()}), so that it can be plugged into any stream
+ * source, and is a {@link Consumer} for use with Java 8 streams. <br> <br> Elements are collected into batches of a
+ * fixed size. The elements of a batch are hashed, or for backends hashing themselves converted to bytes, on the given
+ * worker pool and then added with a single bulk operation: a pipeline for Redis-backed filters implementing {@link
+ * PipelinedBloomFilter} and {@link BloomFilter#addAll(byte[][], boolean[])} otherwise. Batches are added one after
+ * another in the order of the stream, so that of several equal elements exactly the first one is reported as new.
+ * <br> <br> Backpressure is exerted by blocking: if the given number of elements is pending, i.e. received but not yet
+ * added, {@link #onNext(Object)} blocks until a batch was added.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class BloomFilterIngest<T> implements Consumer<T> {
+    private final BloomFilter<T> filter;
+    private final Executor hashers;
+    private final int batchSize;
+    private final Semaphore pending;
+    private final BiConsumer<T, Boolean> results;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private List<T> batch;
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+    /**
+     * Creates a new streaming stage.
+     *
+     * @param filter     the Bloom filter to add the elements to
+     * @param hashers    the worker pool preparing batches
+     * @param batchSize  the number of elements per batch
+     * @param maxPending the maximum number of elements received but not yet added, at least one batch
+     * @param results    receives each element and whether it was new, in the order of the stream
+     */
+    public BloomFilterIngest(BloomFilter<T> filter, Executor hashers, int batchSize, int maxPending,
+                             BiConsumer<T, Boolean> results) {
+        if (batchSize < 1 || maxPending < batchSize) {
+            throw new IllegalArgumentException("Invalid batch size " + batchSize + " or pending elements " + maxPending);
+        }
+        this.filter = filter;
+        this.hashers = hashers;
+        this.batchSize = batchSize;
+        this.pending = new Semaphore(maxPending);
+        this.results = results;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Receives the next element of the stream and blocks while too many elements are pending.
+     *
+     * @param element the element
+     * @throws IllegalStateException if adding a previous batch failed or the stream was terminated
+     */
+    public void onNext(T element) {
+        pending.acquireUninterruptibly();
+        synchronized (this) {
+            if (completion.isDone() || tail.isCompletedExceptionally()) {
+                pending.release();
+                throw new IllegalStateException("The stream was terminated or failed", failure());
+            }
+            batch.add(element);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    public void accept(T element) {
+        onNext(element);
+    }
+
+    /**
+     * Adds the elements received so far without waiting for the batch to fill up, e.g. when the stream is idle.
+     */
+    public synchronized void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<T> elements = batch;
+        batch = new ArrayList<>(batchSize);
+        CompletableFuture<Object> prepared = CompletableFuture.supplyAsync(() -> prepare(elements), hashers);
+        tail = tail.thenCombine(prepared, (previous, hashed) -> {
+            boolean[] added = add(hashed, elements.size());
+            for (int i = 0; i < added.length; i++) {
+                results.accept(elements.get(i), added[i]);
+            }
+            return (Void) null;
+        }).whenComplete((v, e) -> pending.release(elements.size()));
+    }
+
+    /**
+     * Terminates the stream with an error. Elements not added yet are dropped.
+     *
+     * @param error the error of the stream
+     */
+    public synchronized void onError(Throwable error) {
+        pending.release(batch.size());
+        batch.clear();
+        completion.completeExceptionally(error);
+    }
+
+    /**
+     * Terminates the stream after adding all remaining elements, see {@link #completion()}.
+     */
+    public synchronized void onComplete() {
+        flush();
+        tail.whenComplete((v, e) -> {
+            if (e != null) {
+                completion.completeExceptionally(e);
+            } else {
+                completion.complete(null);
+            }
+        });
+    }
+
+    /**
+     * @return a future completed when all elements were added after {@link #onComplete()}, or completed exceptionally
+     * if the stream or adding a batch failed
+     */
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    private Throwable failure() {
+        try {
+            tail.getNow(null);
+            completion.getNow(null);
+            return null;
+        } catch (Exception e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    private Object prepare(List<T> elements) {
+        if (filter instanceof PipelinedBloomFilter) {
+            int k = filter.getHashes();
+            int[] positions = new int[elements.size() * k];
+            for (int i = 0; i < elements.size(); i++) {
+                System.arraycopy(filter.hash(filter.toBytes(elements.get(i))), 0, positions, i * k, k);
+            }
+            return positions;
+        }
+        byte[][] bytes = new byte[elements.size()][];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = filter.toBytes(elements.get(i));
+        }
+        return bytes;
+    }
+
+    private boolean[] add(Object prepared, int count) {
+        if (prepared instanceof int[]) {
+            PipelinedBloomFilter<T> redis = (PipelinedBloomFilter<T>) filter;
+            return redis.getRedisPool().safelyReturn(jedis -> {
+                Pipeline p = jedis.pipelined();
+                Supplier<boolean[]> added = redis.addAll(p, (int[]) prepared);
+                p.sync();
+                return added.get();
+            });
+        }
+        return filter.addAll((byte[][]) prepared, new boolean[count]);
+    }
+}
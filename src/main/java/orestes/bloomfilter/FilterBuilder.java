@@ -2,21 +2,39 @@ package orestes.bloomfilter;
 
 import orestes.bloomfilter.HashProvider.HashFunction;
 import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.file.BloomFilterFile;
+import orestes.bloomfilter.memory.BlockedBloomFilterMemory;
 import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.memory.ConcurrentBloomFilterMemory;
+import orestes.bloomfilter.memory.ConcurrentCountingBloomFilterMemory;
 import orestes.bloomfilter.memory.CountingBloomFilter16;
 import orestes.bloomfilter.memory.CountingBloomFilter32;
 import orestes.bloomfilter.memory.CountingBloomFilter64;
 import orestes.bloomfilter.memory.CountingBloomFilter8;
 import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import orestes.bloomfilter.memory.CountingBloomFilterPacked;
+import orestes.bloomfilter.memory.LargeBloomFilterMemory;
+import orestes.bloomfilter.memory.StripedCountingBloomFilterMemory;
+import orestes.bloomfilter.redis.AsyncBloomFilterRedis;
 import orestes.bloomfilter.redis.BloomFilterRedis;
 import orestes.bloomfilter.redis.CountingBloomFilterRedis;
+import orestes.bloomfilter.redis.LargeBloomFilterRedis;
+import orestes.bloomfilter.redis.PackedCountingBloomFilterRedis;
+import orestes.bloomfilter.redis.RedisBitSet;
+import orestes.bloomfilter.redis.ShardedBloomFilterRedis;
+import orestes.bloomfilter.redis.ShardedCountingBloomFilterRedis;
+import orestes.bloomfilter.redis.helper.RedisClusterPool;
+import orestes.bloomfilter.redis.helper.RedisKeys;
 import orestes.bloomfilter.redis.helper.RedisPool;
 import redis.clients.jedis.Protocol;
 
 import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -26,9 +44,13 @@ import java.util.concurrent.TimeUnit;
  */
 public class FilterBuilder implements Cloneable, Serializable {
     private boolean redisBacked = false;
+    private boolean concurrent = false;
+    private int concurrencyLevel = 0;
+    private boolean blocked = false;
+    private String file;
     private boolean overwriteIfExists = false;
-    private Integer expectedElements;
-    private Integer size;
+    private Long expectedElements;
+    private Long size;
     private Integer hashes;
     private Integer countingBits = 16;
     private Double falsePositiveProbability;
@@ -37,13 +59,24 @@ public class FilterBuilder implements Cloneable, Serializable {
     private Integer redisPort = 6379;
     private Integer redisConnections = 10;
     private boolean redisSsl = false;
+    private boolean redisScripted = false;
+    private boolean redisBitfield = false;
+    private boolean redisPackedCounters = false;
+    private int redisAsyncConnections = 1;
+    private long redisCoalesceLinger = 0;
+    private int redisCoalesceMaxBatch = 0;
     private HashMethod hashMethod = HashMethod.Murmur3KirschMitzenmacher;
     private HashFunction hashFunction = HashMethod.Murmur3KirschMitzenmacher.getHashFunction();
+    private boolean hashMethodSet = false;
     private Set<Entry<String, Integer>> slaves = new HashSet<>();
+    private List<Entry<String, Integer>> shards = new ArrayList<>();
+    private Set<Entry<String, Integer>> clusterNodes = new LinkedHashSet<>();
+    private int clusterShards = 1;
     private static transient Charset defaultCharset = Charset.forName("UTF-8");
     private boolean done = false;
     private String password = null;
     private RedisPool pool;
+    private List<RedisPool> shardPools;
     private int database = Protocol.DEFAULT_DATABASE;
     private long gracePeriod = TimeUnit.HOURS.toMillis(6);
     private long cleanupInterval = TimeUnit.HOURS.toMillis(1);
@@ -85,6 +118,17 @@ public class FilterBuilder implements Cloneable, Serializable {
      * @return the modified FilterBuilder (fluent interface)
      */
     public FilterBuilder expectedElements(int expectedElements) {
+        return expectedElements((long) expectedElements);
+    }
+
+    /**
+     * Sets the number of expected elements for filters which hold more than {@link Integer#MAX_VALUE} elements.
+     *
+     * @param expectedElements number of expected elements.
+     * @return the modified FilterBuilder (fluent interface)
+     * @see #expectedElements(int)
+     */
+    public FilterBuilder expectedElements(long expectedElements) {
         this.expectedElements = expectedElements;
         return this;
     }
@@ -96,6 +140,18 @@ public class FilterBuilder implements Cloneable, Serializable {
      * @return the modified FilterBuilder (fluent interface)
      */
     public FilterBuilder size(int size) {
+        return size((long) size);
+    }
+
+    /**
+     * Sets the size of the filter in bits. Filters with more than {@link Integer#MAX_VALUE} bits are built as {@link
+     * LargeBloomFilterMemory} or {@link LargeBloomFilterRedis} and require a hash function which supports long
+     * positions, e.g. {@link HashMethod#Murmur3x64}.
+     *
+     * @param size size of the filter in bits
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder size(long size) {
         this.size = size;
         return this;
     }
@@ -124,8 +180,9 @@ public class FilterBuilder implements Cloneable, Serializable {
     }
 
     /**
-     * Sets the number of bits used for counting in case of a counting Bloom filter. For non-counting Bloom filters this
-     * setting has no effect. <p><b>Default</b>: 16</p>
+     * Sets the number of bits used for counting in case of a counting Bloom filter. In-memory counting Bloom filters
+     * with widths other than 8, 16, 32 or 64 bits pack their counters into a long array, see {@link
+     * CountingBloomFilterPacked}. For non-counting Bloom filters this setting has no effect. <p><b>Default</b>: 16</p>
      *
      * @param countingBits Number of counting bits used by the counting Bloom filter
      * @return the modified FilterBuilder (fluent interface)
@@ -182,6 +239,63 @@ public class FilterBuilder implements Cloneable, Serializable {
         return this;
     }
 
+    /**
+     * Instructs the FilterBuilder to build lock-free in-memory Bloom filters which scale with the number of
+     * concurrently accessing threads instead of serializing all operations through a monitor. This applies to counting
+     * Bloom filters as well, see {@link ConcurrentCountingBloomFilterMemory}. For Redis-backed Bloom filters this
+     * setting has no effect. <p><b>Default</b>: <code>false</code></p>
+     *
+     * @param concurrent a boolean indicating whether a lock-free implementation should be used
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder concurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+        return this;
+    }
+
+    /**
+     * Sets the number of lock stripes of in-memory counting Bloom filters. If positive, the counters are partitioned
+     * into that many stripes (rounded up to a power of two), so that updates of different elements only contend if
+     * their positions share a stripe, see {@link StripedCountingBloomFilterMemory}. This applies to counters narrower
+     * than 64 bits, and lock-free filters built through {@link #concurrent(boolean)} take precedence. For non-counting
+     * and Redis-backed Bloom filters this setting has no effect. <p><b>Default</b>: 0, i.e. a single lock</p>
+     *
+     * @param concurrencyLevel the number of lock stripes
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder concurrencyLevel(int concurrencyLevel) {
+        this.concurrencyLevel = concurrencyLevel;
+        return this;
+    }
+
+    /**
+     * Instructs the FilterBuilder to build blocked in-memory Bloom filters, which place all bits of an element in a
+     * single cache-line sized block. This trades a slightly larger size for only one cache miss per operation. The size
+     * is rounded up to a multiple of {@link BlockedBloomFilterMemory#BLOCK_BITS} and inferred using the false positive
+     * probability of blocked Bloom filters. For Redis-backed Bloom filters this setting has no effect.
+     * <p><b>Default</b>: <code>false</code></p>
+     *
+     * @param blocked a boolean indicating whether a blocked implementation should be used
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder blocked(boolean blocked) {
+        this.blocked = blocked;
+        return this;
+    }
+
+    /**
+     * Instructs the FilterBuilder to build a Bloom filter whose bits are memory-mapped from the given local file. If
+     * the file already contains a Bloom filter, its configuration is used unless {@link #overwriteIfExists(boolean)} is
+     * set. For Redis-backed Bloom filters this setting has no effect. <p><b>Default</b>: <code>null</code></p>
+     *
+     * @param path the path of the file holding the bits
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder file(String path) {
+        this.file = path;
+        return this;
+    }
+
     /**
      * Sets the host of the backing Redis instance. <p><b>Default</b>: localhost</p>
      *
@@ -231,6 +345,90 @@ public class FilterBuilder implements Cloneable, Serializable {
         return this;
     }
 
+    /**
+     * Sets whether Redis-backed Bloom filters set and test the bits of elements with Lua scripts. A script receives
+     * the bit positions of all elements of an operation as one packed argument, so that Redis executes one command
+     * per operation instead of a transaction with one command per bit, which considerably reduces its CPU load.
+     * Requires Redis 2.6 or later. <p><b>Default</b>: false</p>
+     *
+     * @param scripted whether to use Lua scripts
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder redisScripted(boolean scripted) {
+        this.redisBacked = true;
+        this.redisScripted = scripted;
+        return this;
+    }
+
+    /**
+     * Sets whether Redis-backed Bloom filters read and write the bits of elements with a single <i>BITFIELD</i>
+     * command instead of a transaction with one command per bit. Since Redis rejects <i>BITFIELD</i> on read slaves,
+     * reads are then served by the master. Lua scripts take precedence if also enabled, see {@link
+     * #redisScripted(boolean)}. Requires Redis 3.2 or later. <p><b>Default</b>: false</p>
+     *
+     * @param bitfield whether to use <i>BITFIELD</i>
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder redisBitfield(boolean bitfield) {
+        this.redisBacked = true;
+        this.redisBitfield = bitfield;
+        return this;
+    }
+
+    /**
+     * Sets whether Redis-backed counting Bloom filters pack their counters of {@link #countingBits(int)} bits into a
+     * single Redis string instead of a hash, see {@link PackedCountingBloomFilterRedis}. This takes an order of
+     * magnitude less memory for large filters, but is incompatible with the counters of existing filters. Requires
+     * Redis 3.2 or later and at most 63 counting bits. <p><b>Default</b>: false</p>
+     *
+     * @param packed whether to pack the counters
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder redisPackedCounters(boolean packed) {
+        this.redisBacked = true;
+        this.redisPackedCounters = packed;
+        return this;
+    }
+
+    /**
+     * Sets the number of dedicated connections onto which the asynchronous API of Redis-backed Bloom filters pipelines
+     * the commands of concurrent callers, see {@link AsyncBloomFilterRedis}. With more than one connection, commands
+     * submitted concurrently may be executed out of order. <p><b>Default</b>: 1</p>
+     *
+     * @param connections the number of dedicated connections
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder redisAsyncConnections(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("At least one connection is required, got " + connections);
+        }
+        this.redisBacked = true;
+        this.redisAsyncConnections = connections;
+        return this;
+    }
+
+    /**
+     * Enables coalescing of the single-element operations of {@link BloomFilterRedis}: concurrent calls of
+     * <code>add</code> and <code>contains</code> are collected for up to the given time or number of calls and sent
+     * as one pipeline over the connections of its asynchronous API, see {@link #redisAsyncConnections(int)}. This
+     * multiplies the throughput at high concurrency, but adds up to the given time to the latency of each call.
+     * <p><b>Default</b>: disabled</p>
+     *
+     * @param linger   the maximum time to wait for further calls after the first one of a pipeline
+     * @param unit     the time unit of the linger time
+     * @param maxBatch the maximum number of calls per pipeline
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder redisCoalescing(long linger, TimeUnit unit, int maxBatch) {
+        if (linger < 0 || maxBatch < 1) {
+            throw new IllegalArgumentException("Invalid linger time " + linger + " or batch size " + maxBatch);
+        }
+        this.redisBacked = true;
+        this.redisCoalesceLinger = unit.toMicros(linger);
+        this.redisCoalesceMaxBatch = maxBatch;
+        return this;
+    }
+
     /**
      * Sets whether any existing Bloom filter with same name should be overwritten in Redis. <p><b>Default</b>:
      * <code>false</code></p>
@@ -259,9 +457,62 @@ public class FilterBuilder implements Cloneable, Serializable {
         return this;
     }
 
+    /**
+     * Adds a Redis instance as a shard of the Redis-backed Bloom filter. If shards are configured, the bits (and
+     * counts) are split into as many contiguous ranges of equal size, each stored on one shard in the order the shards
+     * were added, and every operation is sent to the affected shards in parallel, see {@link ShardedBloomFilterRedis}
+     * and {@link ShardedCountingBloomFilterRedis}. The configuration is persisted on the first shard, so all users of a
+     * filter have to add the same shards in the same order. Authentication, database and the number of connections
+     * apply to every shard. Bloom filters exceeding {@link Integer#MAX_VALUE} bits are not sharded.
+     *
+     * @param host host of the Redis shard
+     * @param port port of the Redis shard
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder addRedisShard(String host, int port) {
+        this.redisBacked = true;
+        shards.add(new SimpleEntry<>(host, port));
+        return this;
+    }
+
+    /**
+     * Adds a node of a Redis Cluster that backs the Bloom filter. The node is only used to discover the cluster, so
+     * adding any reachable node suffices. All keys of a Bloom filter carry the hash tag <code>{name}</code> and are
+     * therefore stored on the node owning the slot of the name, which allows transactions and Lua scripts just as on a
+     * standalone Redis, see {@link orestes.bloomfilter.redis.helper.RedisClusterPool}. To spread a single Bloom filter
+     * over several nodes, use {@link #redisClusterShards(int)}.
+     *
+     * @param host host of a Redis Cluster node
+     * @param port port of a Redis Cluster node
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder addRedisClusterNode(String host, int port) {
+        this.redisBacked = true;
+        clusterNodes.add(new SimpleEntry<>(host, port));
+        return this;
+    }
+
+    /**
+     * Sets the number of shards a Bloom filter on a Redis Cluster is split into. Each shard has its own hash tag
+     * <code>{name:i}</code> and is thus usually stored on a different node, see {@link #addRedisShard(String, int)} for
+     * the semantics of shards. <p><b>Default</b>: 1</p>
+     *
+     * @param shards the number of shards
+     * @return the modified FilterBuilder (fluent interface)
+     */
+    public FilterBuilder redisClusterShards(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is required.");
+        }
+        this.redisBacked = true;
+        this.clusterShards = shards;
+        return this;
+    }
+
     /**
      * Sets the method used to generate hash values. Possible hash methods are documented in the corresponding enum
-     * {@link HashProvider.HashMethod}. <p><b>Default</b>: MD5</p>
+     * {@link HashProvider.HashMethod}. <p><b>Default</b>: Murmur3KirschMitzenmacher, or Murmur3x64 for filters with
+     * more than {@link Integer#MAX_VALUE} bits, which is the only method supporting them</p>
      * <p>
      * For the generation of hash values the String representation of objects is used.
      *
@@ -271,11 +522,13 @@ public class FilterBuilder implements Cloneable, Serializable {
     public FilterBuilder hashFunction(HashMethod hashMethod) {
         this.hashMethod = hashMethod;
         this.hashFunction = hashMethod.getHashFunction();
+        this.hashMethodSet = true;
         return this;
     }
 
     /**
-     * Uses a given custom hash function.
+     * Uses a given custom hash function. For filters with more than {@link Integer#MAX_VALUE} bits, it has to implement
+     * {@link HashFunction#hashInto(byte[], int, int, long, int, long[])}.
      *
      * @param hf the custom hash function
      * @return the modified FilterBuilder (fluent interface)
@@ -393,8 +646,18 @@ public class FilterBuilder implements Cloneable, Serializable {
      */
     public <T> BloomFilter<T> buildBloomFilter() {
         complete();
-        if (redisBacked) {
+        if (file != null && !redisBacked) {
+            return new BloomFilterFile<>(this);
+        } else if (size > Integer.MAX_VALUE) {
+            return redisBacked ? new LargeBloomFilterRedis<>(this) : new LargeBloomFilterMemory<>(this);
+        } else if (redisBacked && sharded()) {
+            return new ShardedBloomFilterRedis<>(this);
+        } else if (redisBacked) {
             return new BloomFilterRedis<>(this);
+        } else if (blocked) {
+            return new BlockedBloomFilterMemory<>(this);
+        } else if (concurrent) {
+            return new ConcurrentBloomFilterMemory<>(this);
         } else {
             return new BloomFilterMemory<>(this);
         }
@@ -409,8 +672,16 @@ public class FilterBuilder implements Cloneable, Serializable {
      */
     public <T> CountingBloomFilter<T> buildCountingBloomFilter() {
         complete();
-        if (redisBacked) {
+        if (redisBacked && sharded()) {
+            return new ShardedCountingBloomFilterRedis<>(this);
+        } else if (redisBacked && redisPackedCounters) {
+            return new PackedCountingBloomFilterRedis<>(this);
+        } else if (redisBacked) {
             return new CountingBloomFilterRedis<>(this);
+        } else if (concurrent) {
+            return new ConcurrentCountingBloomFilterMemory<>(this);
+        } else if (concurrencyLevel > 0 && countingBits < 64) {
+            return new StripedCountingBloomFilterMemory<>(this);
         } else {
             if (countingBits == 32) {
                 return new CountingBloomFilter32<>(this);
@@ -420,6 +691,8 @@ public class FilterBuilder implements Cloneable, Serializable {
                 return new CountingBloomFilter8<>(this);
             } else if (countingBits == 64) {
                 return new CountingBloomFilter64<>(this);
+            } else if (countingBits < 64) {
+                return new CountingBloomFilterPacked<>(this);
             } else {
                 return new CountingBloomFilterMemory<>(this);
             }
@@ -431,18 +704,39 @@ public class FilterBuilder implements Cloneable, Serializable {
      * given expectedElements and falsePositiveProbability). This is done automatically.
      *
      * @return the completed FilterBuilder
+     * @throws IllegalArgumentException if the size exceeds {@link Integer#MAX_VALUE} bits and a hash method was set
+     *                                  that does not support long positions
      */
     public FilterBuilder complete() {
         if (done) { return this; }
         if (size == null && expectedElements != null && falsePositiveProbability != null) {
-            size = optimalM(expectedElements, falsePositiveProbability);
+            size = optimalLongM(expectedElements, falsePositiveProbability);
+            if (blocked) {
+                if (hashes == null) { hashes = optimalK(expectedElements, size); }
+                size = (long) optimalBlockedM(expectedElements, falsePositiveProbability, hashes);
+            }
         }
         if (hashes == null && expectedElements != null && size != null) { hashes = optimalK(expectedElements, size); }
         if (size == null || hashes == null) {
             throw new NullPointerException("Neither (expectedElements, falsePositiveProbability) nor (size, hashes) were specified.");
         }
-        if (expectedElements == null) { expectedElements = optimalN(hashes, size); }
-        if (falsePositiveProbability == null) { falsePositiveProbability = optimalP(hashes, size, expectedElements); }
+        if (blocked) { size = (long) roundToBlocks(size); }
+        if (expectedElements == null) { expectedElements = optimalLongN(hashes, size); }
+        if (falsePositiveProbability == null) {
+            falsePositiveProbability = blocked ? optimalBlockedP(hashes, size, expectedElements) : optimalP(hashes, size, expectedElements);
+        }
+        if (size > Integer.MAX_VALUE) {
+            if (!hashMethodSet) {
+                // Custom hash functions are kept, but persisted under the default method as well
+                if (hashFunction == hashMethod.getHashFunction()) {
+                    hashFunction = HashMethod.Murmur3x64.getHashFunction();
+                }
+                hashMethod = HashMethod.Murmur3x64;
+            } else if (hashMethod != HashMethod.Murmur3x64 && hashFunction == hashMethod.getHashFunction()) {
+                throw new IllegalArgumentException("The hash method " + hashMethod + " does not support more than "
+                    + Integer.MAX_VALUE + " bits, use " + HashMethod.Murmur3x64 + " instead.");
+            }
+        }
 
         done = true;
         return this;
@@ -468,20 +762,71 @@ public class FilterBuilder implements Cloneable, Serializable {
         return redisBacked;
     }
 
+    /**
+     * @return {@code true} if the Bloom Filter will be a lock-free in-memory implementation
+     */
+    public boolean concurrent() {
+        return concurrent;
+    }
+
+    /**
+     * @return the number of lock stripes of in-memory counting Bloom filters, 0 if they use a single lock
+     */
+    public int concurrencyLevel() {
+        return concurrencyLevel;
+    }
+
+    /**
+     * @return {@code true} if the Bloom Filter will confine the bits of each element to a single block
+     */
+    public boolean blocked() {
+        return blocked;
+    }
+
+    /**
+     * @return the path of the file backing the Bloom filter or <code>null</code> if it is not file-backed
+     */
+    public String file() {
+        return file;
+    }
+
     /**
      * @return the number of expected elements for the Bloom filter
+     * @throws IllegalStateException if the number of expected elements exceeds {@link Integer#MAX_VALUE}
      */
     public int expectedElements() {
+        return toInt(expectedElements, "expected elements");
+    }
+
+    /**
+     * @return the number of expected elements for the Bloom filter
+     */
+    public long longExpectedElements() {
         return expectedElements;
     }
 
     /**
      * @return the size of the Bloom filter in bits
+     * @throws IllegalStateException if the size exceeds {@link Integer#MAX_VALUE}, use {@link #longSize()} instead
      */
     public int size() {
+        return toInt(size, "size");
+    }
+
+    /**
+     * @return the size of the Bloom filter in bits
+     */
+    public long longSize() {
         return size;
     }
 
+    private static int toInt(long value, String name) {
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The " + name + " of " + value + " exceeds the integer range.");
+        }
+        return (int) value;
+    }
+
     /**
      * @return the number of hashes used by the Bloom filter
      */
@@ -538,6 +883,68 @@ public class FilterBuilder implements Cloneable, Serializable {
         return redisSsl;
     }
 
+    /**
+     * @return whether Redis-backed Bloom filters use Lua scripts to set and test bits
+     */
+    public boolean redisScripted() {
+        return redisScripted;
+    }
+
+    /**
+     * @return whether Redis-backed Bloom filters use <i>BITFIELD</i> to read and write bits
+     */
+    public boolean redisBitfield() {
+        return redisBitfield;
+    }
+
+    /**
+     * @return whether Redis-backed counting Bloom filters pack their counters into a single string
+     */
+    public boolean redisPackedCounters() {
+        return redisPackedCounters;
+    }
+
+    /**
+     * @return the number of dedicated connections of the asynchronous API of Redis-backed Bloom filters
+     */
+    public int redisAsyncConnections() {
+        return redisAsyncConnections;
+    }
+
+    /**
+     * @return whether the single-element operations of Redis-backed Bloom filters are coalesced
+     */
+    public boolean redisCoalescing() {
+        return redisCoalesceMaxBatch > 0;
+    }
+
+    /**
+     * @return the time in microseconds to wait for further calls to coalesce
+     */
+    public long redisCoalesceLinger() {
+        return redisCoalesceLinger;
+    }
+
+    /**
+     * @return the maximum number of coalesced calls per pipeline
+     */
+    public int redisCoalesceMaxBatch() {
+        return redisCoalesceMaxBatch;
+    }
+
+    /**
+     * @return how Redis-backed Bloom filters access the bits of elements
+     */
+    public RedisBitSet.Mode redisBitSetMode() {
+        if (redisScripted) {
+            return RedisBitSet.Mode.SCRIPT;
+        } else if (redisBitfield) {
+            return RedisBitSet.Mode.BITFIELD;
+        } else {
+            return RedisBitSet.Mode.TRANSACTION;
+        }
+    }
+
     /**
      * @return The hash method to be used by the Bloom filter
      */
@@ -574,6 +981,38 @@ public class FilterBuilder implements Cloneable, Serializable {
         return slaves;
     }
 
+    /**
+     * @return the list of Redis shards in the order of their ranges, empty if the Bloom filter is not sharded
+     */
+    public List<Entry<String, Integer>> redisShards() {
+        return shards;
+    }
+
+    /**
+     * @return the nodes used to discover the Redis Cluster, empty if the Bloom filter is not backed by a cluster
+     */
+    public Set<Entry<String, Integer>> redisClusterNodes() {
+        return clusterNodes;
+    }
+
+    /**
+     * @return the number of shards a Bloom filter on a Redis Cluster is split into
+     */
+    public int redisClusterShards() {
+        return clusterShards;
+    }
+
+    /**
+     * @return {@code true} if the Bloom filter is backed by a Redis Cluster
+     */
+    public boolean redisCluster() {
+        return !clusterNodes.isEmpty() || pool instanceof RedisClusterPool;
+    }
+
+    private boolean sharded() {
+        return !shards.isEmpty() || (redisCluster() && clusterShards > 1);
+    }
+
     /**
      * Checks whether a configuration is compatible to another configuration based on the size of the Bloom filter and
      * its hash functions.
@@ -582,7 +1021,8 @@ public class FilterBuilder implements Cloneable, Serializable {
      * @return {@code true} if the configurations are compatible
      */
     public boolean isCompatibleTo(FilterBuilder other) {
-        return this.size() == other.size() && this.hashes() == other.hashes() && this.hashMethod() == other.hashMethod();
+        return this.longSize() == other.longSize() && this.hashes() == other.hashes() && this.hashMethod() == other.hashMethod()
+            && this.blocked() == other.blocked();
     }
 
     /**
@@ -597,6 +1037,18 @@ public class FilterBuilder implements Cloneable, Serializable {
         return (int) Math.ceil(-1 * (n * Math.log(p)) / Math.pow(Math.log(2), 2));
     }
 
+    /**
+     * Calculates the optimal size <i>size</i> of the bloom filter in bits, which may exceed the integer range.
+     *
+     * @param n Expected number of elements inserted in the bloom filter
+     * @param p Tolerable false positive rate
+     * @return the optimal size <i>size</i> of the bloom filter in bits
+     * @see #optimalM(long, double)
+     */
+    public static long optimalLongM(long n, double p) {
+        return (long) Math.ceil(-1 * (n * Math.log(p)) / Math.pow(Math.log(2), 2));
+    }
+
     /**
      * Calculates the optimal <i>hashes</i> (number of hash function) given <i>expectedElements</i> (expected number of
      * elements in bloom filter) and <i>size</i> (size of bloom filter in bits).
@@ -621,6 +1073,19 @@ public class FilterBuilder implements Cloneable, Serializable {
         return (int) Math.ceil((Math.log(2) * m) / k);
     }
 
+    /**
+     * Calculates the amount of elements for which the given configuration of size and hashes is optimal, which may
+     * exceed the integer range.
+     *
+     * @param k number of hashes
+     * @param m The size of the bloom filter in bits.
+     * @return amount of elements a Bloom filter for which the given configuration of size and hashes is optimal.
+     * @see #optimalN(long, long)
+     */
+    public static long optimalLongN(long k, long m) {
+        return (long) Math.ceil((Math.log(2) * m) / k);
+    }
+
     /**
      * Calculates the best-case (uniform hash function) false positive probability.
      *
@@ -633,13 +1098,81 @@ public class FilterBuilder implements Cloneable, Serializable {
         return Math.pow((1 - Math.exp(-k * insertedElements / (double) m)), k);
     }
 
+    /**
+     * Calculates the false positive probability of a blocked Bloom filter (see Putze, Sanders, Singler: "Cache-, Hash-
+     * and Space-Efficient Bloom Filters"). The number of elements per block follows a Poisson distribution, so the
+     * result is the weighted sum of the false positive probabilities of the individual, equally sized blocks.
+     *
+     * @param k                number of hashes
+     * @param m                The size of the bloom filter in bits.
+     * @param insertedElements number of elements inserted in the filter
+     * @return The calculated false positive probability
+     */
+    public static double optimalBlockedP(long k, long m, double insertedElements) {
+        int b = BlockedBloomFilterMemory.BLOCK_BITS;
+        double lambda = b * insertedElements / m;
+        if (lambda == 0) { return 0; }
+        double logLambda = Math.log(lambda);
+        double logZero = Math.log(1 - 1d / b);
+        // Sum up the Poisson distribution in log space, as e^-lambda underflows for heavily overloaded filters
+        long limit = (long) Math.ceil(lambda + 20 * Math.sqrt(lambda) + 20);
+        double logPoisson = -lambda;
+        double p = 0;
+        for (long i = 0; i <= limit; i++) {
+            if (i > 0) { logPoisson += logLambda - Math.log(i); }
+            p += Math.exp(logPoisson) * Math.pow(1 - Math.exp(i * k * logZero), k);
+        }
+        return Math.min(p, 1);
+    }
+
+    /**
+     * Calculates the smallest size of a blocked Bloom filter in bits, such that the false positive probability for
+     * <i>n</i> elements does not exceed <i>p</i>.
+     *
+     * @param n Expected number of elements inserted in the bloom filter
+     * @param p Tolerable false positive rate
+     * @param k number of hashes
+     * @return the size of the bloom filter in bits, a multiple of the block size
+     */
+    public static int optimalBlockedM(long n, double p, int k) {
+        long b = BlockedBloomFilterMemory.BLOCK_BITS;
+        long maxBlocks = Integer.MAX_VALUE / b;
+        long low = Math.min(Math.max(1, (optimalM(n, p) + b - 1) / b), maxBlocks);
+        long high = low;
+        while (optimalBlockedP(k, high * b, n) > p) {
+            if (high == maxBlocks) { return (int) (high * b); }
+            low = high + 1;
+            high = Math.min(high * 2, maxBlocks);
+        }
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (optimalBlockedP(k, mid * b, n) > p) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return (int) (high * b);
+    }
+
+    private static int roundToBlocks(long size) {
+        int b = BlockedBloomFilterMemory.BLOCK_BITS;
+        return (int) Math.min((size + b - 1) / b * b, Integer.MAX_VALUE / b * b);
+    }
 
     public String password() {
         return password;
     }
 
     public RedisPool pool() {
-        if(done && pool == null) {
+        if (done && pool == null && !clusterNodes.isEmpty()) {
+            pool = RedisPool.clusterBuilder()
+                .nodes(clusterNodes)
+                .password(password())
+                .redisConnections(redisConnections())
+                .ssl(redisSsl())
+                .build();
+        } else if(done && pool == null) {
             pool = RedisPool.builder()
                 .host(redisHost())
                 .port(redisPort())
@@ -651,4 +1184,33 @@ public class FilterBuilder implements Cloneable, Serializable {
         }
         return pool;
     }
+
+    /**
+     * @return the pools of the Redis shards in the order of their ranges, see {@link #addRedisShard(String, int)}. On a
+     * Redis Cluster, these are the pools of the nodes owning the shards' hash tags.
+     */
+    public List<RedisPool> shardPools() {
+        if (done && shardPools == null && redisCluster()) {
+            List<RedisPool> pools = new ArrayList<>(clusterShards);
+            RedisKeys keys = new RedisKeys(name(), true);
+            for (int i = 0; i < clusterShards; i++) {
+                pools.add(pool().forKey(keys.shard(i).CONFIG_KEY));
+            }
+            shardPools = pools;
+        } else if (done && shardPools == null) {
+            List<RedisPool> pools = new ArrayList<>(shards.size());
+            for (Entry<String, Integer> shard : shards) {
+                pools.add(RedisPool.builder()
+                    .host(shard.getKey())
+                    .port(shard.getValue())
+                    .password(password())
+                    .database(database())
+                    .redisConnections(redisConnections())
+                    .ssl(redisSsl())
+                    .build());
+            }
+            shardPools = pools;
+        }
+        return shardPools;
+    }
 }
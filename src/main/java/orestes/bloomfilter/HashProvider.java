@@ -17,6 +17,8 @@ import java.util.zip.Checksum;
  */
 public class HashProvider {
     private static final int seed32 = 89478583;
+    // The halves of the 128 bit Murmur 3 hash, owned by the calling thread to avoid an allocation per element
+    private static final ThreadLocal<long[]> MURMUR3_X64_HALVES = ThreadLocal.withInitial(() -> new long[2]);
 
 
     /**
@@ -24,18 +26,28 @@ public class HashProvider {
      * @return the 32 bit integer hash value
      */
     static int hashBytes(byte a[]) {
+        if (a == null)
+            return 0;
+
+        return hashBytes(a, 0, a.length);
+    }
+
+    /**
+     * @param a      the byte array to be hashed
+     * @param offset the offset of the first byte to hash
+     * @param length the number of bytes to hash
+     * @return the 32 bit integer hash value
+     */
+    static int hashBytes(byte a[], int offset, int length) {
         // 32 bit FNV constants. Using longs as Java does not support unsigned
         // datatypes.
         long FNV_PRIME = 16777619;
         long FNV_OFFSET_BASIS = 2166136261l;
 
-        if (a == null)
-            return 0;
-
         long result = FNV_OFFSET_BASIS;
-        for (byte element : a) {
+        for (int i = offset; i < offset + length; i++) {
             result = (result * FNV_PRIME) & 0xFFFFFFFF;
-            result ^= element;
+            result ^= a[i];
         }
 
         // return Arrays.hashCode(a);
@@ -50,12 +62,25 @@ public class HashProvider {
      */
     public static int[] hashCarterWegman(byte[] value, int m, int k) {
         int[] positions = new int[k];
+        hashCarterWegman(value, 0, value.length, m, k, positions);
+        return positions;
+    }
+
+    /**
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         integer output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static void hashCarterWegman(byte[] value, int offset, int length, int m, int k, int[] positions) {
         BigInteger prime32 = BigInteger.valueOf(4294967279l);
         BigInteger prime64 = BigInteger.valueOf(53200200938189l);
         BigInteger prime128 = new BigInteger("21213943449988109084994671");
         Random r = new Random(seed32);
         //BigInteger.valueOf(hashBytes(value)
-        BigInteger v = new BigInteger(value.length > 0 ? value : new byte[1]);
+        BigInteger v = new BigInteger(length > 0 ? Arrays.copyOfRange(value, offset, offset + length) : new byte[1]);
 
         for (int i = 0; i < k; i++) {
             BigInteger a = BigInteger.valueOf(r.nextLong());
@@ -63,7 +88,6 @@ public class HashProvider {
             positions[i] = a.multiply(v).add(b).mod(prime64)
                     .mod(BigInteger.valueOf(m)).intValue();
         }
-        return positions;
     }
 
     /**
@@ -74,11 +98,40 @@ public class HashProvider {
      */
     public static int[] hashRNG(byte[] value, int m, int k) {
         int[] positions = new int[k];
-        Random r = new Random(hashBytes(value));
+        hashRNG(value, 0, value.length, m, k, positions);
+        return positions;
+    }
+
+    /**
+     * Produces the same values as {@link #hashRNG(byte[], int, int)}, but inlines the steps of {@link Random#nextInt(int)}
+     * so that no {@link Random} instance has to be allocated.
+     *
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         integer output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static void hashRNG(byte[] value, int offset, int length, int m, int k, int[] positions) {
+        // Java constants, see java.util.Random
+        long multiplier = 0x5DEECE66DL;
+        long addend = 0xBL;
+        long mask = (1L << 48) - 1;
+
+        long seed = (hashBytes(value, offset, length) ^ multiplier) & mask;
         for (int i = 0; i < k; i++) {
-            positions[i] = r.nextInt(m);
+            seed = (seed * multiplier + addend) & mask;
+            int r = (int) (seed >>> (48 - 31));
+            if ((m & (m - 1)) == 0) {
+                r = (int) ((m * (long) r) >> 31);
+            } else {
+                for (int u = r; u - (r = u % m) + (m - 1) < 0; u = (int) (seed >>> (48 - 31))) {
+                    seed = (seed * multiplier + addend) & mask;
+                }
+            }
+            positions[i] = r;
         }
-        return positions;
     }
 
 
@@ -93,6 +146,18 @@ public class HashProvider {
         return hashChecksum(value, new CRC32(), m, k);
     }
 
+    /**
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         integer output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static void hashCRC(byte[] value, int offset, int length, int m, int k, int[] positions) {
+        hashChecksum(value, offset, length, new CRC32(), m, k, positions);
+    }
+
     /**
      * @param value the value to be hashed
      * @param m     integer output range [1,size]
@@ -103,13 +168,30 @@ public class HashProvider {
         return hashChecksum(value, new Adler32(), m, k);
     }
 
+    /**
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         integer output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static void hashAdler(byte[] value, int offset, int length, int m, int k, int[] positions) {
+        hashChecksum(value, offset, length, new Adler32(), m, k, positions);
+    }
+
     public static int[] hashChecksum(byte[] value, Checksum cs, int m, int k) {
         int[] positions = new int[k];
+        hashChecksum(value, 0, value.length, cs, m, k, positions);
+        return positions;
+    }
+
+    public static void hashChecksum(byte[] value, int offset, int length, Checksum cs, int m, int k, int[] positions) {
         int hashes = 0;
         int salt = 0;
         while (hashes < k) {
             cs.reset();
-            cs.update(value, 0, value.length);
+            cs.update(value, offset, length);
             // Modify the data to be checksummed by adding the number of already
             // calculated hashes, the loop counter and
             // a static seed
@@ -119,7 +201,6 @@ public class HashProvider {
                 positions[hashes++] = hash;
             }
         }
-        return positions;
     }
 
     /**
@@ -129,13 +210,27 @@ public class HashProvider {
      * @return array with <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
      */
     public static int[] hashSimpleLCG(byte[] value, int m, int k) {
+        int[] positions = new int[k];
+        hashSimpleLCG(value, 0, value.length, m, k, positions);
+        return positions;
+    }
+
+    /**
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         integer output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static void hashSimpleLCG(byte[] value, int offset, int length, int m, int k, int[] positions) {
         // Java constants
         long multiplier = 0x5DEECE66DL;
         long addend = 0xBL;
         long mask = (1L << 48) - 1;
 
         // Generate int from byte Array using the FNV hash
-        int reduced = Math.abs(hashBytes(value));
+        int reduced = Math.abs(hashBytes(value, offset, length));
         // Make number positive
         // Handle the special case: smallest negative number is itself as the
         // absolute value
@@ -143,41 +238,276 @@ public class HashProvider {
             reduced = 42;
 
         // Calculate hashes numbers iteratively
-        int[] positions = new int[k];
         long seed = reduced;
         for (int i = 0; i < k; i++) {
             // LCG formula: x_i+1 = (multiplier * x_i + addend) mod mask
             seed = (seed * multiplier + addend) & mask;
             positions[i] = (int) (seed >>> (48 - 30)) % m;
         }
-        return positions;
     }
 
     public static int[] hashMurmur3(byte[] value, int m, int k) {
         return rejectionSample(HashProvider::murmur3_signed, value, m, k);
     }
 
+    /**
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         integer output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static void hashMurmur3(byte[] value, int offset, int length, int m, int k, int[] positions) {
+        int seed = 0;
+        int pos = 0;
+        while (pos < k) {
+            seed = murmur3_signed(seed, value, offset, length);
+            int hash = rejectionSample(seed, m);
+            if (hash != -1) {
+                positions[pos++] = hash;
+            }
+        }
+    }
+
     public static int[] hashCassandra(byte[] value, int m, int k) {
         int[] result = new int[k];
-        long hash1 = murmur3(0, value);
-        long hash2 = murmur3((int) hash1, value);
+        hashCassandra(value, 0, value.length, m, k, result);
+        return result;
+    }
+
+    /**
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         integer output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static void hashCassandra(byte[] value, int offset, int length, int m, int k, int[] positions) {
+        long hash1 = murmur3(0, value, offset, length);
+        long hash2 = murmur3((int) hash1, value, offset, length);
         for (int i = 0; i < k; i++) {
-            result[i] = (int) ((hash1 + i * hash2) % m);
+            positions[i] = (int) ((hash1 + i * hash2) % m);
         }
+    }
+
+    /**
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         long output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> long hash positions in the range <i>[0,size)</i>
+     * @see #hashMurmur3x64(byte[], int, int, int, int, int[])
+     */
+    public static void hashMurmur3x64(byte[] value, int offset, int length, long m, int k, long[] positions) {
+        long[] hash = MURMUR3_X64_HALVES.get();
+        murmur3_x64_128(0, value, offset, length, hash);
+        long combined = hash[0];
+        for (int i = 0; i < k; i++) {
+            positions[i] = (combined & Long.MAX_VALUE) % m;
+            combined += hash[1];
+        }
+    }
+
+    public static int[] hashMurmur3x64(byte[] value, int m, int k) {
+        int[] result = new int[k];
+        hashMurmur3x64(value, 0, value.length, m, k, result);
         return result;
     }
 
+    /**
+     * Hashes the value once with the 128 bit Murmur 3 hash and derives the positions through 64 bit double hashing
+     * <code>h_i = (h1 + i * h2) mod m</code>, as done by Guava.
+     *
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         integer output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static void hashMurmur3x64(byte[] value, int offset, int length, int m, int k, int[] positions) {
+        long[] hash = MURMUR3_X64_HALVES.get();
+        murmur3_x64_128(0, value, offset, length, hash);
+        long combined = hash[0];
+        for (int i = 0; i < k; i++) {
+            positions[i] = (int) ((combined & Long.MAX_VALUE) % m);
+            combined += hash[1];
+        }
+    }
+
+    /**
+     * Computes the 128 bit variant of Murmur 3 for 64 bit platforms (MurmurHash3_x64_128).
+     *
+     * @param seed   the seed
+     * @param bytes  the value to be hashed
+     * @param offset the offset of the first byte to hash
+     * @param length the number of bytes to hash
+     * @return the two 64 bit halves of the hash
+     */
+    public static long[] murmur3_x64_128(int seed, byte[] bytes, int offset, int length) {
+        long[] hash = new long[2];
+        murmur3_x64_128(seed, bytes, offset, length, hash);
+        return hash;
+    }
+
+    /**
+     * Computes the 128 bit variant of Murmur 3 for 64 bit platforms (MurmurHash3_x64_128) without allocating.
+     *
+     * @param seed   the seed
+     * @param bytes  the value to be hashed
+     * @param offset the offset of the first byte to hash
+     * @param length the number of bytes to hash
+     * @param hash   array of at least two elements receiving the two 64 bit halves of the hash
+     */
+    @SuppressWarnings("fallthrough")
+    public static void murmur3_x64_128(int seed, byte[] bytes, int offset, int length, long[] hash) {
+        long h1 = seed & 0xFFFFFFFFL;
+        long h2 = seed & 0xFFFFFFFFL;
+        //Standard in Guava
+        long c1 = 0x87c37b91114253d5L;
+        long c2 = 0x4cf5ad432745937fL;
+        int i = offset;
+        int end = offset + (length & ~15);
+
+        while (i < end) {
+            long k1 = getLongLittleEndian(bytes, i);
+            long k2 = getLongLittleEndian(bytes, i + 8);
+            i += 16;
+
+            k1 *= c1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= c2;
+            h1 ^= k1;
+
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= c1;
+            h2 ^= k2;
+
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15:
+                k2 ^= (long) (bytes[i + 14] & 0xFF) << 48;
+                // fall through
+            case 14:
+                k2 ^= (long) (bytes[i + 13] & 0xFF) << 40;
+                // fall through
+            case 13:
+                k2 ^= (long) (bytes[i + 12] & 0xFF) << 32;
+                // fall through
+            case 12:
+                k2 ^= (long) (bytes[i + 11] & 0xFF) << 24;
+                // fall through
+            case 11:
+                k2 ^= (long) (bytes[i + 10] & 0xFF) << 16;
+                // fall through
+            case 10:
+                k2 ^= (long) (bytes[i + 9] & 0xFF) << 8;
+                // fall through
+            case 9:
+                k2 ^= (long) (bytes[i + 8] & 0xFF);
+                k2 *= c2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= c1;
+                h2 ^= k2;
+                // fall through
+            case 8:
+                k1 ^= (long) (bytes[i + 7] & 0xFF) << 56;
+                // fall through
+            case 7:
+                k1 ^= (long) (bytes[i + 6] & 0xFF) << 48;
+                // fall through
+            case 6:
+                k1 ^= (long) (bytes[i + 5] & 0xFF) << 40;
+                // fall through
+            case 5:
+                k1 ^= (long) (bytes[i + 4] & 0xFF) << 32;
+                // fall through
+            case 4:
+                k1 ^= (long) (bytes[i + 3] & 0xFF) << 24;
+                // fall through
+            case 3:
+                k1 ^= (long) (bytes[i + 2] & 0xFF) << 16;
+                // fall through
+            case 2:
+                k1 ^= (long) (bytes[i + 1] & 0xFF) << 8;
+                // fall through
+            case 1:
+                k1 ^= (long) (bytes[i] & 0xFF);
+                k1 *= c1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= c2;
+                h1 ^= k1;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        hash[0] = h1;
+        hash[1] = h2;
+    }
+
+    private static long getLongLittleEndian(byte[] bytes, int i) {
+        return (bytes[i] & 0xFFL)
+            | (bytes[i + 1] & 0xFFL) << 8
+            | (bytes[i + 2] & 0xFFL) << 16
+            | (bytes[i + 3] & 0xFFL) << 24
+            | (bytes[i + 4] & 0xFFL) << 32
+            | (bytes[i + 5] & 0xFFL) << 40
+            | (bytes[i + 6] & 0xFFL) << 48
+            | (bytes[i + 7] & 0xFFL) << 56;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
     public static long murmur3(int seed, byte[] bytes) {
         return Integer.toUnsignedLong(murmur3_signed(seed, bytes));
     }
 
+    public static long murmur3(int seed, byte[] bytes, int offset, int length) {
+        return Integer.toUnsignedLong(murmur3_signed(seed, bytes, offset, length));
+    }
+
     public static int murmur3_signed(int seed, byte[] bytes) {
+        return murmur3_signed(seed, bytes, 0, bytes.length);
+    }
+
+    public static int murmur3_signed(int seed, byte[] bytes, int offset, int length) {
         int h1 = seed;
         //Standard in Guava
         int c1 = 0xcc9e2d51;
         int c2 = 0x1b873593;
-        int len = bytes.length;
-        int i = 0;
+        int len = length;
+        int i = offset;
 
         while (len >= 4) {
             //process()
@@ -214,10 +544,8 @@ public class HashProvider {
                 k1 *= c2;
                 h1 ^= k1;
         }
-        i += len;
-
         //makeHash()
-        h1 ^= i;
+        h1 ^= length;
 
         h1 ^= h1 >>> 16;
         h1 *= 0x85ebca6b;
@@ -235,14 +563,27 @@ public class HashProvider {
     // as the Hadoop implementation by Andrzej Bialecki is buggy
     public static int[] hashMurmur2(byte[] value, int em, int ka) {
         int[] positions = new int[ka];
+        hashMurmur2(value, 0, value.length, em, ka, positions);
+        return positions;
+    }
 
+    /**
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param em        integer output range [1,size]
+     * @param ka        number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     */
+    public static void hashMurmur2(byte[] value, int offset, int length, int em, int ka, int[] positions) {
         int hashes = 0;
         int lastHash = 0;
-        byte[] data = value.clone();
+        // The data is modified in every round, so a copy is unavoidable here
+        byte[] data = Arrays.copyOfRange(value, offset, offset + length);
         while (hashes < ka) {
 
 
-            for (int i = 0; i < value.length; i++) {
+            for (int i = 0; i < data.length; i++) {
                 if (data[i] == 127) {
                     data[i] = 0;
                     continue;
@@ -298,7 +639,6 @@ public class HashProvider {
                 positions[hashes++] = lastHash;
             }
         }
-        return positions;
     }
 
     /**
@@ -339,6 +679,21 @@ public class HashProvider {
      * @return array with <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
      */
     public static int[] hashCrypt(byte[] value, int m, int k, String method) {
+        int[] positions = new int[k];
+        hashCrypt(value, 0, value.length, m, k, positions, method);
+        return positions;
+    }
+
+    /**
+     * @param value     the value to be hashed
+     * @param offset    the offset of the first byte to hash
+     * @param length    the number of bytes to hash
+     * @param m         integer output range [1,size]
+     * @param k         number of hashes to be computed
+     * @param positions array receiving the <i>hashes</i> integer hash positions in the range <i>[0,size)</i>
+     * @param method    the hash method name used by {@link MessageDigest#getInstance(String)}
+     */
+    public static void hashCrypt(byte[] value, int offset, int length, int m, int k, int[] positions, String method) {
         //MessageDigest is not thread-safe --> use new instance
         MessageDigest cryptHash = null;
         try {
@@ -347,8 +702,6 @@ public class HashProvider {
             throw new RuntimeException(e);
         }
 
-        int[] positions = new int[k];
-
         int computedHashes = 0;
         // Add salt to the hash deterministically in order to generate different
         // hashes for each round
@@ -359,7 +712,8 @@ public class HashProvider {
             // byte[] saltBytes =
             // ByteBuffer.allocate(4).putInt(r.nextInt()).array();
             cryptHash.update(digest);
-            digest = cryptHash.digest(value);
+            cryptHash.update(value, offset, length);
+            digest = cryptHash.digest();
             BitSet hashed = BitSet.valueOf(digest);
 
             // Convert the hash to numbers in the range [0,size)
@@ -383,8 +737,6 @@ public class HashProvider {
                 }
             }
         }
-
-        return positions;
     }
 
 
@@ -402,6 +754,91 @@ public class HashProvider {
          * @return int array of hashes hash values
          */
         public int[] hash(byte[] value, int m, int k);
+
+        /**
+         * Computes hash values and writes them into the given array instead of allocating a new one.
+         *
+         * @param value     the byte[] representation of the element to be hashed
+         * @param m         integer output range [1,size]
+         * @param k         number of hashes to be computed
+         * @param positions array of at least length k receiving the hash values
+         */
+        public default void hashInto(byte[] value, int m, int k, int[] positions) {
+            hashInto(value, 0, value.length, m, k, positions);
+        }
+
+        /**
+         * Computes hash values for a slice of the given array and writes them into the given array instead of
+         * allocating a new one. The default implementation delegates to {@link #hash(byte[], int, int)} and copies its
+         * result, custom hash functions should override it if they can compute the values in place.
+         *
+         * @param value     the byte[] containing the element to be hashed
+         * @param offset    the offset of the element within value
+         * @param length    the length of the element within value
+         * @param m         integer output range [1,size]
+         * @param k         number of hashes to be computed
+         * @param positions array of at least length k receiving the hash values
+         */
+        public default void hashInto(byte[] value, int offset, int length, int m, int k, int[] positions) {
+            byte[] element = (offset == 0 && length == value.length) ? value : Arrays.copyOfRange(value, offset, offset + length);
+            System.arraycopy(hash(element, m, k), 0, positions, 0, k);
+        }
+
+        /**
+         * Computes hash values in the long range and writes them into the given array.
+         *
+         * @param value     the byte[] representation of the element to be hashed
+         * @param m         long output range [1,size]
+         * @param k         number of hashes to be computed
+         * @param positions array of at least length k receiving the hash values
+         * @see #hashInto(byte[], int, int, long, int, long[])
+         */
+        public default void hashInto(byte[] value, long m, int k, long[] positions) {
+            hashInto(value, 0, value.length, m, k, positions);
+        }
+
+        /**
+         * Computes hash values in the long range, as needed by filters with more than {@link Integer#MAX_VALUE} bits.
+         * The default implementation only supports output ranges within the integer range and delegates to {@link
+         * #hashInto(byte[], int, int, int, int, int[])}.
+         *
+         * @param value     the byte[] containing the element to be hashed
+         * @param offset    the offset of the element within value
+         * @param length    the length of the element within value
+         * @param m         long output range [1,size]
+         * @param k         number of hashes to be computed
+         * @param positions array of at least length k receiving the hash values
+         * @throws UnsupportedOperationException if m exceeds the integer range
+         */
+        public default void hashInto(byte[] value, int offset, int length, long m, int k, long[] positions) {
+            if (m > Integer.MAX_VALUE) {
+                throw new UnsupportedOperationException("This hash function does not support more than "
+                    + Integer.MAX_VALUE + " bits, use " + HashMethod.Murmur3x64 + " instead.");
+            }
+            int[] intPositions = new int[k];
+            hashInto(value, offset, length, (int) m, k, intPositions);
+            for (int i = 0; i < k; i++) {
+                positions[i] = intPositions[i];
+            }
+        }
+    }
+
+    /**
+     * A hash function that natively writes its hash values into a caller-supplied array. All {@link HashMethod}s are
+     * implemented this way.
+     */
+    @FunctionalInterface
+    public static interface HashIntoFunction extends HashFunction {
+
+        @Override
+        public void hashInto(byte[] value, int offset, int length, int m, int k, int[] positions);
+
+        @Override
+        public default int[] hash(byte[] value, int m, int k) {
+            int[] positions = new int[k];
+            hashInto(value, 0, value.length, m, k, positions);
+            return positions;
+        }
     }
 
 
@@ -453,6 +890,23 @@ public class HashProvider {
          * for random words.</p>
          */
         Murmur3KirschMitzenmacher(HashProvider::hashCassandra),
+        /**
+         * Uses the 128 bit Murmur 3 hash (MurmurHash3_x64_128) and derives the hash values through 64 bit double
+         * hashing h_i = (h1 + i*h2) mod m. Compared to {@link #Murmur3KirschMitzenmacher}, the input is only hashed
+         * once and the 64 bit arithmetic avoids the bias of 32 bit hash values for large m. The generated hash values
+         * follow the scheme of Guava's Bloom filter. This method also supports filters with more than 2^31 bits.
+         */
+        Murmur3x64(new HashIntoFunction() {
+            @Override
+            public void hashInto(byte[] value, int offset, int length, int m, int k, int[] positions) {
+                hashMurmur3x64(value, offset, length, m, k, positions);
+            }
+
+            @Override
+            public void hashInto(byte[] value, int offset, int length, long m, int k, long[] positions) {
+                hashMurmur3x64(value, offset, length, m, k, positions);
+            }
+        }),
         /**
          * Uses the Fowler-Noll-Vo (FNV) hash function to generate a hash values. It is superior to the standard
          * implementation in {@link Arrays} and can be easily implemented in most languages. Hashing then uses the very
@@ -465,36 +919,36 @@ public class HashProvider {
          * Generates a hash value using MD2. MD2 is rather slow an not as evenely distributed as other cryptographic
          * hash functions
          */
-        MD2((bytes, m, k) -> HashProvider.hashCrypt(bytes, m, k, "MD2")),
+        MD2((bytes, offset, length, m, k, positions) -> HashProvider.hashCrypt(bytes, offset, length, m, k, positions, "MD2")),
         /**
          * Generates a hash value using the cryptographic MD5 hash function. It is fast and has good guarantees for the
          * uniformity of generated hash values, as the hash functions are designed for cryptographic use.
          */
-        MD5((bytes, m, k) -> HashProvider.hashCrypt(bytes, m, k, "MD5")),
+        MD5((bytes, offset, length, m, k, positions) -> HashProvider.hashCrypt(bytes, offset, length, m, k, positions, "MD5")),
         /**
          * Generates a hash value using the cryptographic SHA1 hash function. It is fast but uniformity of hash values
          * is better for the second generation of SHA (256,384,512).
          */
-        SHA1((bytes, m, k) -> HashProvider.hashCrypt(bytes, m, k, "SHA-1")),
+        SHA1((bytes, offset, length, m, k, positions) -> HashProvider.hashCrypt(bytes, offset, length, m, k, positions, "SHA-1")),
         /**
          * Generates a hash value using the cryptographic SHA-256 hash function. It is fast and has good guarantees for
          * the uniformity of generated hash values, as the hash functions are designed for cryptographic use.
          */
-        SHA256((bytes, m, k) -> HashProvider.hashCrypt(bytes, m, k, "SHA-256")),
+        SHA256((bytes, offset, length, m, k, positions) -> HashProvider.hashCrypt(bytes, offset, length, m, k, positions, "SHA-256")),
         /**
          * Generates a hash value using the cryptographic SHA-384 hash function. It is fast and has good guarantees for
          * the uniformity of generated hash values, as the hash functions are designed for cryptographic use.
          */
-        SHA384((bytes, m, k) -> HashProvider.hashCrypt(bytes, m, k, "SHA-384")),
+        SHA384((bytes, offset, length, m, k, positions) -> HashProvider.hashCrypt(bytes, offset, length, m, k, positions, "SHA-384")),
         /**
          * Generates a hash value using the cryptographic SHA-512 hash function. It is fast and has good guarantees for
          * the uniformity of generated hash values, as the hash functions are designed for cryptographic use.
          */
-        SHA512((bytes, m, k) -> HashProvider.hashCrypt(bytes, m, k, "SHA-512"));
+        SHA512((bytes, offset, length, m, k, positions) -> HashProvider.hashCrypt(bytes, offset, length, m, k, positions, "SHA-512"));
 
-        private HashFunction hashFunction;
+        private HashIntoFunction hashFunction;
 
-        private HashMethod(HashFunction hashFunction) {
+        private HashMethod(HashIntoFunction hashFunction) {
             this.hashFunction = hashFunction;
         }
 
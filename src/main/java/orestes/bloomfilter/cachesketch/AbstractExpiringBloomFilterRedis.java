@@ -3,9 +3,12 @@ package orestes.bloomfilter.cachesketch;
 import orestes.bloomfilter.BloomFilter;
 import orestes.bloomfilter.FilterBuilder;
 import orestes.bloomfilter.TimeMap;
+import orestes.bloomfilter.redis.AsyncBloomFilterRedis;
 import orestes.bloomfilter.redis.CountingBloomFilterRedis;
+import orestes.bloomfilter.redis.helper.RedisPipeliner;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.Tuple;
 
 import java.io.BufferedReader;
@@ -18,6 +21,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -138,6 +142,43 @@ public abstract class AbstractExpiringBloomFilterRedis<T> extends CountingBloomF
         }
     }
 
+    /**
+     * Queues reporting a read into the given pipeline, see {@link #reportRead(Object, long, TimeUnit)}.
+     *
+     * @param p       the propagated pipeline
+     * @param element the element (or its id)
+     * @param TTL     the TTL which the element is cached
+     * @param unit    the time unit of the provided ttl
+     */
+    void reportRead(Pipeline p, T element, long TTL, TimeUnit unit) {
+        long timestamp = remainingTTLToScore(TTL, unit);
+        p.evalsha(reportReadScript, 1, keys.TTL_KEY, String.valueOf(timestamp), element.toString());
+    }
+
+    /**
+     * Queues retrieving the remaining TTL of an element into the given pipeline, see {@link #getRemainingTTL(Object,
+     * TimeUnit)}.
+     *
+     * @param p       the propagated pipeline
+     * @param element the element (or its id)
+     * @param unit    the time unit of the returned ttl
+     * @return a supplier of the remaining ttl, to be called after the pipeline was synced
+     */
+    Supplier<Long> getRemainingTTL(Pipeline p, T element, TimeUnit unit) {
+        Response<Double> score = p.zscore(keys.TTL_KEY, element.toString());
+        return () -> scoreToRemainingTTL(score.get(), unit);
+    }
+
+    @Override
+    public AsyncExpiringBloomFilterRedis<T> async() {
+        return (AsyncExpiringBloomFilterRedis<T>) super.async();
+    }
+
+    @Override
+    protected AsyncBloomFilterRedis<T> createAsync(RedisPipeliner pipeliner) {
+        return new AsyncExpiringBloomFilterRedis<>(this, pipeliner);
+    }
+
     @Override
     public Long reportWrite(T element, TimeUnit unit) {
         Long remaining = getRemainingTTL(element, unit);
@@ -177,6 +218,22 @@ public abstract class AbstractExpiringBloomFilterRedis<T> extends CountingBloomF
         return toMemoryFilter();
     }
 
+    /**
+     * Not supported, as merged counts would not be backed by entries of the expiration queue and thus never expire.
+     */
+    @Override
+    public boolean union(BloomFilter<T> other) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported, as merged counts would not be backed by entries of the expiration queue and thus never expire.
+     */
+    @Override
+    public boolean intersect(BloomFilter<T> other) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void migrateFrom(BloomFilter<T> source) {
         // Check if other Bloom filter is compatible
@@ -242,6 +299,19 @@ public abstract class AbstractExpiringBloomFilterRedis<T> extends CountingBloomF
      */
     protected abstract void addToQueue(T element, long remaining, TimeUnit timeUnit);
 
+    /**
+     * Add an element to this Bloom filter's expiration queue as part of the given pipeline. Unless overridden, the
+     * element is added immediately.
+     *
+     * @param p         The propagated pipeline.
+     * @param element   The element to add.
+     * @param remaining The remaining time.
+     * @param timeUnit  The remaining time's unit.
+     */
+    protected void addToQueue(Pipeline p, T element, long remaining, TimeUnit timeUnit) {
+        addToQueue(element, remaining, timeUnit);
+    }
+
     /**
      * @return current timestamp in milliseconds
      */
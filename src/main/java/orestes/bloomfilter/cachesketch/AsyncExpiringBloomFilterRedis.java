@@ -0,0 +1,74 @@
+package orestes.bloomfilter.cachesketch;
+
+import orestes.bloomfilter.redis.AsyncBloomFilterRedis;
+import orestes.bloomfilter.redis.helper.RedisPipeliner;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A non-blocking view of a Redis-backed expiring Bloom filter, which additionally pipelines reported reads and writes,
+ * see {@link AsyncBloomFilterRedis}. Obtain it from {@link AbstractExpiringBloomFilterRedis#async()}.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class AsyncExpiringBloomFilterRedis<T> extends AsyncBloomFilterRedis<T> {
+    private final AbstractExpiringBloomFilterRedis<T> expiring;
+
+    public AsyncExpiringBloomFilterRedis(AbstractExpiringBloomFilterRedis<T> filter, RedisPipeliner pipeliner) {
+        super(filter, pipeliner);
+        this.expiring = filter;
+    }
+
+    /**
+     * Reports a read, see {@link ExpiringBloomFilter#reportRead(Object, long, TimeUnit)}.
+     *
+     * @param element the element (or its id)
+     * @param TTL     the TTL which the element is cached
+     * @param unit    the time unit of the provided ttl
+     * @return a future completed when the read was reported
+     */
+    public CompletableFuture<Void> reportRead(T element, long TTL, TimeUnit unit) {
+        return pipeliner.submit(p -> {
+            expiring.reportRead(p, element, TTL, unit);
+            return () -> null;
+        });
+    }
+
+    /**
+     * Reports a write, see {@link ExpiringBloomFilter#reportWrite(Object, TimeUnit)}. Takes two pipelines, as the
+     * element is only added if it is still cached.
+     *
+     * @param element the element (or its id)
+     * @param unit    the time unit of the returned ttl
+     * @return a future completed with the remaining TTL, if the object was still cached, else <code>null</code>
+     */
+    public CompletableFuture<Long> reportWrite(T element, TimeUnit unit) {
+        int[] positions = hashAll(Collections.singletonList(element));
+        return pipeliner.submit(p -> expiring.getRemainingTTL(p, element, unit)).thenCompose(remaining -> {
+            if ((remaining == null) || (remaining <= 0)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return pipeliner.submit(p -> {
+                Supplier<boolean[]> added = filter.addAll(p, positions);
+                expiring.addToQueue(p, element, remaining, unit);
+                return () -> {
+                    added.get();
+                    return remaining;
+                };
+            });
+        });
+    }
+
+    /**
+     * Reports a write, see {@link ExpiringBloomFilter#reportWrite(Object)}.
+     *
+     * @param element the element (or its id)
+     * @return a future completed with <code>true</code>, if the elements needs invalidation
+     */
+    public CompletableFuture<Boolean> reportWrite(T element) {
+        return reportWrite(element, TimeUnit.MILLISECONDS).thenApply(remaining -> remaining != null);
+    }
+}
@@ -124,6 +124,22 @@ public class ExpiringBloomFilterMemory<T> extends CountingBloomFilter32<T> imple
         queue.clear();
     }
 
+    /**
+     * Not supported, as merged counts would not be backed by entries of the expiration queue and thus never expire.
+     */
+    @Override
+    public boolean union(BloomFilter<T> other) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported, as merged counts would not be backed by entries of the expiration queue and thus never expire.
+     */
+    @Override
+    public boolean intersect(BloomFilter<T> other) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void migrateFrom(BloomFilter<T> source) {
         if (!(source instanceof ExpiringBloomFilter) || !compatible(source)) {
@@ -84,6 +84,14 @@ public class ExpiringBloomFilterPureRedis extends AbstractExpiringBloomFilterRed
         triggerExpirationHandling(remaining, timeUnit);
     }
 
+    @Override
+    protected void addToQueue(Pipeline p, String item, long remaining, TimeUnit timeUnit) {
+        // The random hash of the member makes collisions, which the blocking variant retries, negligible
+        byte[] member = msgPack.encodeItem(item, hash(item.getBytes()));
+        p.zadd(keys.EXPIRATION_QUEUE_KEY.getBytes(), now() + MILLISECONDS.convert(remaining, timeUnit), member);
+        triggerExpirationHandling(remaining, timeUnit);
+    }
+
     /**
      * Handles expiring items from the expiration queue.
      *
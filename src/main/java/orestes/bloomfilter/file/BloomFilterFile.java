@@ -0,0 +1,476 @@
+package orestes.bloomfilter.file;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.memory.LargeBloomFilterMemory;
+import orestes.bloomfilter.memory.SegmentedBitSet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A persistent Bloom filter whose bits are memory-mapped from a local file. Reopening an existing file is nearly
+ * instantaneous, as the operating system pages the bits in on demand. The file starts with a header of {@value
+ * #HEADER_SIZE} bytes holding the configuration, followed by the bits as little-endian 64 bit words in the layout of
+ * {@link BitSet#toLongArray()}. If the file exists, its configuration takes precedence over the given one, unless
+ * {@link FilterBuilder#overwriteIfExists(boolean)} is set.
+ * <p>
+ * Since a single mapping is limited to 2 GB, the bits are mapped in segments of {@value #SEGMENT_BYTES} bytes and the
+ * filter may hold more than {@link Integer#MAX_VALUE} bits. Changes are written back by the operating system; call
+ * {@link #flush()} or {@link #close()} to force them to disk.
+ * <p>
+ * Serializing the filter only stores its configuration including the path. Deserializing it maps the file again, which
+ * therefore has to be accessible.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class BloomFilterFile<T> implements BloomFilter<T>, Closeable {
+    private static final long serialVersionUID = 2478426938562468131L;
+    public static final int HEADER_SIZE = 128;
+    public static final int SEGMENT_BYTES = 1 << 30;
+    private static final int MAGIC = 0x4F424631; // "OBF1"
+    private static final int MAX_HASH_METHOD_LENGTH = HEADER_SIZE - 40;
+    // The number of words combined at once by union and intersect
+    private static final int CHUNK_WORDS = 1 << 10;
+
+    private final FilterBuilder config;
+    private final long words;
+    private transient Path path;
+    private transient MappedByteBuffer[] segments;
+    private transient ThreadLocal<Scratch> scratch;
+
+    /**
+     * The buffers for the hash values of an element, owned by a single thread.
+     */
+    private static class Scratch {
+        private final long[] positions;
+        private final int[] intPositions;
+
+        private Scratch(int hashes) {
+            this.positions = new long[hashes];
+            this.intPositions = new int[hashes];
+        }
+    }
+
+    public BloomFilterFile(FilterBuilder config) {
+        this.path = Paths.get(config.file());
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            FileChannel channel = file.getChannel();
+            if (!config.overwriteIfExists() && channel.size() >= HEADER_SIZE) {
+                readHeader(channel, config);
+            } else {
+                config.complete();
+                channel.truncate(0);
+                writeHeader(channel, config);
+            }
+            this.config = config;
+            this.words = (config.longSize() + 63) >>> 6;
+            map(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map Bloom filter file " + path, e);
+        }
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(config.hashes()));
+    }
+
+    private void map(RandomAccessFile file) throws IOException {
+        FileChannel channel = file.getChannel();
+        long dataBytes = words * Long.BYTES;
+        if (channel.size() < HEADER_SIZE + dataBytes) {
+            file.setLength(HEADER_SIZE + dataBytes);
+        }
+        this.segments = new MappedByteBuffer[(int) ((dataBytes + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = (long) i * SEGMENT_BYTES;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + position,
+                Math.min(SEGMENT_BYTES, dataBytes - position));
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.path = Paths.get(config.file());
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            FileChannel channel = file.getChannel();
+            FilterBuilder stored = config.clone();
+            if (channel.size() < HEADER_SIZE) {
+                throw new InvalidObjectException("Missing Bloom filter file " + path);
+            }
+            readHeader(channel, stored);
+            if (!stored.isCompatibleTo(config)) {
+                throw new InvalidObjectException("The Bloom filter file " + path + " has a different configuration");
+            }
+            map(file);
+        }
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(config.hashes()));
+    }
+
+    private static void readHeader(FileChannel channel, FilterBuilder config) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a Bloom filter file.");
+        }
+        config.size(header.getLong());
+        config.hashes(header.getInt());
+        config.expectedElements(header.getLong());
+        config.falsePositiveProbability(header.getDouble());
+        byte[] hashMethod = new byte[header.getInt()];
+        header.get(hashMethod);
+        config.hashFunction(HashMethod.valueOf(new String(hashMethod, StandardCharsets.UTF_8)));
+        config.complete();
+    }
+
+    private static void writeHeader(FileChannel channel, FilterBuilder config) throws IOException {
+        byte[] hashMethod = config.hashMethod().name().getBytes(StandardCharsets.UTF_8);
+        if (hashMethod.length > MAX_HASH_METHOD_LENGTH) {
+            throw new IllegalArgumentException("Hash method name too long: " + config.hashMethod());
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putLong(config.longSize());
+        header.putInt(config.hashes());
+        header.putLong(config.longExpectedElements());
+        header.putDouble(config.falsePositiveProbability());
+        header.putInt(hashMethod.length);
+        header.put(hashMethod);
+        header.rewind();
+        channel.write(header, 0);
+    }
+
+    @Override
+    public FilterBuilder config() {
+        return config;
+    }
+
+    /**
+     * @return the path of the backing file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean addRaw(byte[] element) {
+        long[] positions = hashIntoScratch(element);
+        synchronized (this) {
+            boolean added = false;
+            for (long position : positions) {
+                long word = getWord(position >>> 6);
+                long mask = 1L << position;
+                if ((word & mask) == 0) {
+                    setWord(position >>> 6, word | mask);
+                    added = true;
+                }
+            }
+            return added;
+        }
+    }
+
+    @Override
+    public boolean contains(byte[] element) {
+        long[] positions = hashIntoScratch(element);
+        synchronized (this) {
+            for (long position : positions) {
+                if ((getWord(position >>> 6) & (1L << position)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Hashes the element into a buffer owned by the calling thread. Filters within the integer range use the regular
+     * int positions of the hash function, so that every hash function is supported for them.
+     *
+     * @param element the element to hash
+     * @return the thread's buffer containing the hash values of the element
+     */
+    private long[] hashIntoScratch(byte[] element) {
+        Scratch buffers = scratch.get();
+        long[] positions = buffers.positions;
+        if (config.longSize() > Integer.MAX_VALUE) {
+            return hashInto(element, positions);
+        }
+        int[] intPositions = hashInto(element, buffers.intPositions);
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = intPositions[i];
+        }
+        return positions;
+    }
+
+    private long getWord(long index) {
+        long position = index * Long.BYTES;
+        return segments[(int) (position / SEGMENT_BYTES)].getLong((int) (position % SEGMENT_BYTES));
+    }
+
+    private void setWord(long index, long word) {
+        long position = index * Long.BYTES;
+        segments[(int) (position / SEGMENT_BYTES)].putLong((int) (position % SEGMENT_BYTES), word);
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (long i = 0; i < words; i++) {
+            setWord(i, 0L);
+        }
+    }
+
+    /**
+     * Reads the bits from the mapped file, which is only possible for filters of at most {@link Integer#MAX_VALUE}
+     * bits.
+     *
+     * @return the underyling bit vector of the Bloom filter.
+     * @throws UnsupportedOperationException if the filter is too large for a BitSet
+     */
+    @Override
+    public synchronized BitSet getBitSet() {
+        if (config.longSize() > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("A BitSet cannot hold " + config.longSize() + " bits.");
+        }
+        return BitSet.valueOf(toLongArray());
+    }
+
+    /**
+     * @return a copy of the words of this filter
+     */
+    public synchronized long[] toLongArray() {
+        long[] result = new long[(int) words];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = getWord(i);
+        }
+        return result;
+    }
+
+    /**
+     * Copies the words in chunks, holding the lock only while copying a chunk and not while writing it.
+     */
+    @Override
+    public void writeBits(OutputStream out) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_WORDS * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (long from = 0; from < words; from += CHUNK_WORDS) {
+            chunk.clear();
+            synchronized (this) {
+                for (long i = from; i < Math.min(words, from + CHUNK_WORDS); i++) {
+                    chunk.putLong(getWord(i));
+                }
+            }
+            out.write(chunk.array(), 0, chunk.position());
+        }
+    }
+
+    /**
+     * Combines the bits of a compatible Bloom filter into this one in chunks of words. The words of another
+     * BloomFilterFile are read from its mapping, the bits of other Bloom filters are streamed through {@link
+     * BloomFilter#writeBits(OutputStream)}, so that they are never copied as a whole.
+     */
+    @Override
+    public boolean union(BloomFilter<T> other) {
+        return combine(other, false);
+    }
+
+    /**
+     * Intersects the bits of a compatible Bloom filter with this one in chunks of words, see {@link
+     * #union(BloomFilter)}.
+     */
+    @Override
+    public boolean intersect(BloomFilter<T> other) {
+        return combine(other, true);
+    }
+
+    private boolean combine(BloomFilter<T> other, boolean and) {
+        if (!compatible(other)) {
+            return false;
+        }
+        long[] chunk = new long[CHUNK_WORDS];
+        if (other instanceof BloomFilterFile) {
+            BloomFilterFile<T> that = (BloomFilterFile<T>) other;
+            // Never holds both locks at once, so that concurrent combinations in both directions cannot deadlock
+            for (long from = 0; from < words; from += CHUNK_WORDS) {
+                int length = (int) Math.min(CHUNK_WORDS, words - from);
+                synchronized (that) {
+                    for (int i = 0; i < length; i++) {
+                        chunk[i] = from + i < that.words ? that.getWord(from + i) : 0L;
+                    }
+                }
+                combine(from, chunk, length, and);
+            }
+            return true;
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate(CHUNK_WORDS * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long[] next = {0};
+        OutputStream combiner = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.put((byte) b);
+                if (!bytes.hasRemaining()) {
+                    flush();
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                while (len > 0) {
+                    int n = Math.min(len, bytes.remaining());
+                    bytes.put(b, off, n);
+                    off += n;
+                    len -= n;
+                    if (!bytes.hasRemaining()) {
+                        flush();
+                    }
+                }
+            }
+
+            @Override
+            public void flush() {
+                bytes.flip();
+                int length = 0;
+                while (bytes.remaining() >= Long.BYTES) {
+                    chunk[length++] = bytes.getLong();
+                }
+                bytes.compact();
+                combine(next[0], chunk, length, and);
+                next[0] += length;
+            }
+        };
+        try {
+            other.writeBits(combiner);
+            // Pads a trailing partial word, the words missing from the stream are zero
+            while (bytes.position() % Long.BYTES != 0) {
+                bytes.put((byte) 0);
+            }
+            combiner.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (and) {
+            Arrays.fill(chunk, 0L);
+            for (long from = next[0]; from < words; from += CHUNK_WORDS) {
+                combine(from, chunk, (int) Math.min(CHUNK_WORDS, words - from), true);
+            }
+        }
+        return true;
+    }
+
+    private synchronized void combine(long from, long[] source, int length, boolean and) {
+        for (int i = 0; i < length && from + i < words; i++) {
+            long word = getWord(from + i);
+            long combined = and ? word & source[i] : word | source[i];
+            if (combined != word) {
+                setWord(from + i, combined);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        for (long i = 0; i < words; i++) {
+            if (getWord(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Double getEstimatedPopulation() {
+        return BloomFilter.population(cardinality(), config);
+    }
+
+    /**
+     * @return the number of bits set in this filter
+     */
+    public synchronized long cardinality() {
+        long cardinality = 0;
+        for (long i = 0; i < words; i++) {
+            cardinality += Long.bitCount(getWord(i));
+        }
+        return cardinality;
+    }
+
+    /**
+     * Creates an in-memory copy of this filter, i.e. a {@link BloomFilterMemory} or, for filters of more than {@link
+     * Integer#MAX_VALUE} bits, a {@link LargeBloomFilterMemory}.
+     *
+     * @return an in-memory copy of this filter
+     */
+    @Override
+    public synchronized BloomFilter<T> clone() {
+        FilterBuilder copy = config.clone();
+        if (config.longSize() > Integer.MAX_VALUE) {
+            LargeBloomFilterMemory<T> filter = new LargeBloomFilterMemory<>(copy);
+            SegmentedBitSet bits = new SegmentedBitSet(config.longSize());
+            for (long i = 0; i < words; i++) {
+                long word = getWord(i);
+                while (word != 0) {
+                    bits.set(i * Long.SIZE + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            filter.setSegmentedBitSet(bits);
+            return filter;
+        }
+        BloomFilterMemory<T> filter = new BloomFilterMemory<>(copy);
+        filter.setBitSet(getBitSet());
+        return filter;
+    }
+
+    /**
+     * Forces all changes to be written to the backing file.
+     */
+    public synchronized void flush() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Flushes all changes. The filter must not be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (segments.length > 0) {
+            flush();
+            segments = new MappedByteBuffer[0];
+        }
+    }
+
+    /**
+     * Closes the filter and deletes the backing file.
+     */
+    @Override
+    public synchronized void remove() {
+        segments = new MappedByteBuffer[0];
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Bloom Filter Parameters: size = " + config.longSize() + ", hashes = " + config.hashes() + ", File: "
+            + path;
+    }
+}
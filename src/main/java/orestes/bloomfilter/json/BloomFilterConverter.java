@@ -2,11 +2,16 @@ package orestes.bloomfilter.json;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.MalformedJsonException;
 import orestes.bloomfilter.BloomFilter;
 import orestes.bloomfilter.FilterBuilder;
 import orestes.bloomfilter.HashProvider.HashMethod;
 import orestes.bloomfilter.memory.BloomFilterMemory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.BitSet;
@@ -35,6 +40,108 @@ public class BloomFilterConverter {
         return root;
     }
 
+    /**
+     * Converts a normal or Counting Bloom filter to a JSON representation of a non-counting Bloom filter. If
+     * <code>compact</code> is set, the bits are encoded with {@link CompactBitSet} in the property <code>c</code>
+     * instead of the property <code>b</code>, which is usually much smaller for sparse Bloom filters.
+     *
+     * @param source  the Bloom filter to convert
+     * @param compact whether to encode the bits compactly
+     * @return the JSON representation of the Bloom filter
+     */
+    public static JsonElement toJson(BloomFilter<?> source, boolean compact) {
+        if (!compact) {
+            return toJson(source);
+        }
+        JsonObject root = new JsonObject();
+        root.addProperty("m", source.getSize());
+        root.addProperty("h", source.getHashes());
+        root.addProperty("c", toBase64(toCompact(source)));
+        return root;
+    }
+
+    /**
+     * Writes the JSON representation of a normal or Counting Bloom filter, as returned by {@link #toJson(BloomFilter)},
+     * to the given stream. The bits are Base64 encoded while they are read from the Bloom filter through {@link
+     * BloomFilter#writeBits(OutputStream)}, so that for memory and Redis-backed Bloom filters neither the bits nor their
+     * encoding are copied as a whole. The stream is not closed.
+     *
+     * @param source the Bloom filter to convert
+     * @param out    the stream to write the UTF-8 encoded JSON to
+     * @throws IOException if writing to the stream fails
+     */
+    public static void toJson(BloomFilter<?> source, OutputStream out) throws IOException {
+        String head = "{\"m\":" + source.getSize() + ",\"h\":" + source.getHashes() + ",\"b\":\"";
+        out.write(head.getBytes(StandardCharsets.UTF_8));
+        try (OutputStream bits = JsonStreams.base64(out)) {
+            source.writeBits(bits);
+        }
+        out.write("\"}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the JSON representation of a normal or Counting Bloom filter to the given writer, see {@link
+     * #toJson(BloomFilter, OutputStream)}. The writer is not closed.
+     *
+     * @param source the Bloom filter to convert
+     * @param out    the writer to write the JSON to
+     * @throws IOException if writing fails
+     */
+    public static void toJson(BloomFilter<?> source, Writer out) throws IOException {
+        toJson(source, JsonStreams.ascii(out));
+    }
+
+    /**
+     * Converts a normal or Counting Bloom filter, in memory or in Redis, to the compact encoding of its bits, see
+     * {@link CompactBitSet}.
+     *
+     * @param source the Bloom filter to convert
+     * @return the compactly encoded bits of the Bloom filter
+     */
+    public static byte[] toCompact(BloomFilter<?> source) {
+        return CompactBitSet.encode(source.getBitSet(), source.getSize());
+    }
+
+    /**
+     * Constructs an in-memory Bloom filter from the compact encoding of its bits.
+     *
+     * @param compact the compactly encoded bits, see {@link #toCompact(BloomFilter)}
+     * @param config  the configuration of the encoded Bloom filter
+     * @param <T>     Generic type parameter of the Bloom filter
+     * @return the Bloom filter
+     * @throws IllegalArgumentException if the size of the encoded bits does not match the configuration
+     */
+    public static <T> BloomFilterMemory<T> fromCompact(byte[] compact, FilterBuilder config) {
+        BloomFilterMemory<T> filter = new BloomFilterMemory<>(config.complete());
+        filter.setBitSet(decode(compact, filter.getSize()));
+        return filter;
+    }
+
+    /**
+     * Adds the bits of a compactly encoded Bloom filter to a compatible Bloom filter, e.g. to load them into a fresh
+     * Redis-backed Bloom filter, which receives them with a single upload.
+     *
+     * @param compact the compactly encoded bits, see {@link #toCompact(BloomFilter)}
+     * @param target  the Bloom filter to add the bits to
+     * @param <T>     Generic type parameter of the Bloom filter
+     * @throws IllegalArgumentException if the size of the encoded bits does not match the target or the target does
+     *                                  not support the union with a non-counting Bloom filter
+     */
+    public static <T> void unionCompact(byte[] compact, BloomFilter<T> target) {
+        BloomFilterMemory<T> source = new BloomFilterMemory<>(target.config().clone());
+        source.setBitSet(decode(compact, target.getSize()));
+        if (!target.union(source)) {
+            throw new IllegalArgumentException("The Bloom filter does not support the union with the encoded bits");
+        }
+    }
+
+    private static BitSet decode(byte[] compact, int size) {
+        if (CompactBitSet.size(compact) != size) {
+            throw new IllegalArgumentException("Encoded size " + CompactBitSet.size(compact) + " does not match " + size);
+        }
+        return CompactBitSet.decode(compact);
+    }
+
     /**
      * Converts a normal or Counting Bloom filter to a Base64 encoded string containing its bits.
      *
@@ -60,7 +167,7 @@ public class BloomFilterConverter {
     }
 
     /**
-     * Constructs a Bloom filter from its JSON representation
+     * Constructs a Bloom filter from its JSON representation, with its bits either in plain or in compact encoding
      *
      * @param source the JSON source
      * @param type   The class of the generic type
@@ -72,9 +179,11 @@ public class BloomFilterConverter {
         int m = root.get("m").getAsInt();
         int k = root.get("h").getAsInt();
         //String hashMethod = root.get("HashMethod").getAsString();
-        byte[] bits = Base64.getDecoder().decode(root.get("b").getAsString());
-
         FilterBuilder builder = new FilterBuilder(m, k).hashFunction(HashMethod.Murmur3KirschMitzenmacher);
+        if (root.has("c")) {
+            return fromCompact(Base64.getDecoder().decode(root.get("c").getAsString()), builder);
+        }
+        byte[] bits = Base64.getDecoder().decode(root.get("b").getAsString());
 
         BloomFilterMemory<T> filter = new BloomFilterMemory<>(builder.complete());
         filter.setBitSet(BitSet.valueOf(bits));
@@ -82,5 +191,64 @@ public class BloomFilterConverter {
         return filter;
     }
 
+    /**
+     * Reads a Bloom filter from its JSON representation, see {@link #fromJson(Reader, Class)}.
+     *
+     * @param source the reader to read the JSON from
+     * @return the constructed Bloom filter
+     * @throws IOException if reading fails or the JSON is malformed
+     */
+    public static BloomFilter<String> fromJson(Reader source) throws IOException {
+        return fromJson(source, String.class);
+    }
+
+    /**
+     * Reads a Bloom filter from its JSON representation. In contrast to {@link #fromJson(JsonElement, Class)}, the
+     * bits are decoded while they are read, so that neither the JSON nor the Base64 encoded bits are held in memory.
+     * The reader is buffered internally and may be read beyond the end of the JSON object. It is not closed.
+     *
+     * @param source the reader to read the JSON from
+     * @param type   The class of the generic type
+     * @param <T>    Generic type parameter of the Bloom filter
+     * @return the constructed Bloom filter
+     * @throws IOException if reading fails or the JSON is malformed
+     */
+    public static <T> BloomFilter<T> fromJson(Reader source, Class<T> type) throws IOException {
+        JsonStreams.BloomFilterReader reader = new JsonStreams.BloomFilterReader(source);
+        int m = -1;
+        int k = -1;
+        BitSet bits = null;
+        byte[] compact = null;
+        reader.beginObject();
+        for (String name = reader.nextName(); name != null; name = reader.nextName()) {
+            switch (name) {
+                case "m":
+                    m = reader.nextInt();
+                    break;
+                case "h":
+                    k = reader.nextInt();
+                    break;
+                case "b":
+                    bits = reader.nextBits(Math.max(m, 0));
+                    break;
+                case "c":
+                    compact = reader.nextBytes();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        if (m < 0 || k < 0 || bits == null && compact == null) {
+            throw new MalformedJsonException("Expected the properties m, h and either b or c");
+        }
+        FilterBuilder builder = new FilterBuilder(m, k).hashFunction(HashMethod.Murmur3KirschMitzenmacher);
+        if (compact != null) {
+            return fromCompact(compact, builder);
+        }
+        BloomFilterMemory<T> filter = new BloomFilterMemory<>(builder.complete());
+        filter.setBitSet(bits);
+        return filter;
+    }
+
 
 }
@@ -0,0 +1,337 @@
+package orestes.bloomfilter.json;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A compact binary encoding of the bits of a Bloom filter for shipping it, e.g. to browser clients. Every encoding
+ * starts with a header of one byte for the {@link Format} and the size of the bit vector as a varint. <br> <br> Sparse
+ * bit vectors, e.g. of freshly reset or lightly populated filters, are encoded as Golomb-Rice coded gaps between the
+ * set bits, which takes roughly <code>n * (2 + log2(m / n))</code> bits for <code>n</code> set bits instead of
+ * <code>m</code>. Denser bit vectors are encoded as their plain bytes. {@link #encode(BitSet, int)} picks the smaller
+ * one of both.
+ * <p>
+ * Layout after the header: <ul> <li>{@link Format#DENSE}: the bytes of {@link BitSet#toByteArray()}, i.e. little-endian
+ * with trailing zero bytes trimmed</li> <li>{@link Format#GOLOMB}: the number of set bits as a varint, the Rice
+ * parameter <code>r</code> as a byte and a bit stream, most significant bit first. For every set bit, it contains the
+ * number of unset bits since the previous set bit, divided by <code>2^r</code> in unary (ones terminated by a zero) and
+ * the remainder in <code>r</code> bits.</li> </ul>
+ */
+public final class CompactBitSet {
+    // The Golomb parameter minimizing the expected code length of geometric gaps is about ln(2) times their mean
+    private static final double LN2 = Math.log(2);
+
+    /**
+     * The encoding of the bits following the header.
+     */
+    public enum Format {
+        /**
+         * The plain bytes of the bit vector.
+         */
+        DENSE,
+        /**
+         * Golomb-Rice coded gaps between set bits.
+         */
+        GOLOMB
+    }
+
+    private CompactBitSet() {
+    }
+
+    /**
+     * Encodes a bit vector in the smaller one of both formats.
+     *
+     * @param bits the bits to encode
+     * @param size the size of the bit vector
+     * @return the encoded bits
+     */
+    public static byte[] encode(BitSet bits, int size) {
+        int count = bits.cardinality();
+        int r = riceParameter(size, count);
+        // Bits left for the stream if the Golomb encoding, with its count and parameter, is not larger than the bytes
+        long limit = 8L * ((bits.length() + 7) / 8 - varIntLength(count) - 1);
+        // Skips computing the exact length for dense bit vectors, as the quotient of each gap is at least the gap minus
+        // 2^r - 1, divided by 2^r
+        long gaps = (long) bits.length() - count;
+        if ((long) count * (r + 1) + Math.max(0, (gaps - count * ((1L << r) - 1)) >> r) > limit) {
+            return encodeDense(bits, size);
+        }
+        long golombBits = golombBits(bits, r, limit);
+        return golombBits >= 0 ? encodeGolomb(bits, size, count, r, golombBits) : encodeDense(bits, size);
+    }
+
+    /**
+     * Encodes a bit vector in the given format.
+     *
+     * @param bits   the bits to encode
+     * @param size   the size of the bit vector
+     * @param format the format
+     * @return the encoded bits
+     */
+    public static byte[] encode(BitSet bits, int size, Format format) {
+        if (format == Format.DENSE) {
+            return encodeDense(bits, size);
+        }
+        int count = bits.cardinality();
+        int r = riceParameter(size, count);
+        return encodeGolomb(bits, size, count, r, golombBits(bits, r, Long.MAX_VALUE));
+    }
+
+    /**
+     * @param encoded the encoded bits
+     * @return the format of the encoded bits
+     */
+    public static Format format(byte[] encoded) {
+        return new Reader(encoded).format();
+    }
+
+    /**
+     * @param encoded the encoded bits
+     * @return the size of the encoded bit vector
+     */
+    public static int size(byte[] encoded) {
+        Reader reader = new Reader(encoded);
+        reader.format();
+        return reader.readVarInt();
+    }
+
+    /**
+     * Decodes a bit vector.
+     *
+     * @param encoded the encoded bits
+     * @return the decoded bits
+     * @throws IllegalArgumentException if the encoding is malformed
+     */
+    public static BitSet decode(byte[] encoded) {
+        Reader reader = new Reader(encoded);
+        Format format = reader.format();
+        int size = reader.readVarInt();
+        if (format == Format.DENSE) {
+            BitSet bits = BitSet.valueOf(Arrays.copyOfRange(encoded, reader.position, encoded.length));
+            if (bits.length() > size) {
+                throw new IllegalArgumentException("Bit " + (bits.length() - 1) + " exceeds the size " + size);
+            }
+            return bits;
+        }
+
+        int count = reader.readVarInt();
+        int r = reader.readByte();
+        BitSet bits = new BitSet(size);
+        long position = -1;
+        for (int i = 0; i < count; i++) {
+            long quotient = reader.readUnary();
+            position += (quotient << r) + reader.readBits(r) + 1;
+            if (position >= size) {
+                throw new IllegalArgumentException("Bit " + position + " exceeds the size " + size);
+            }
+            bits.set((int) position);
+        }
+        return bits;
+    }
+
+    /**
+     * Chooses the Rice parameter for the given number of set bits, assuming they are spread uniformly.
+     */
+    private static int riceParameter(int size, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        long optimal = (long) ((double) (size - count) / count * LN2);
+        return optimal < 1 ? 0 : 63 - Long.numberOfLeadingZeros(optimal);
+    }
+
+    /**
+     * Computes the length of the Golomb-Rice coded bit stream.
+     *
+     * @return the length in bits or <code>-1</code> if it exceeds the given limit
+     */
+    private static long golombBits(BitSet bits, int r, long limit) {
+        long length = 0;
+        int previous = -1;
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            length += ((i - previous - 1) >>> r) + 1 + r;
+            if (length > limit) {
+                return -1;
+            }
+            previous = i;
+        }
+        return length > limit ? -1 : length;
+    }
+
+    private static byte[] encodeDense(BitSet bits, int size) {
+        byte[] payload = bits.toByteArray();
+        byte[] header = header(Format.DENSE, size, 0);
+        byte[] encoded = Arrays.copyOf(header, header.length + payload.length);
+        System.arraycopy(payload, 0, encoded, header.length, payload.length);
+        return encoded;
+    }
+
+    private static byte[] encodeGolomb(BitSet bits, int size, int count, int r, long length) {
+        byte[] header = header(Format.GOLOMB, size, count);
+        Writer writer = new Writer(Arrays.copyOf(header, header.length + 1 + (int) ((length + 7) / 8)), header.length);
+        writer.writeByte(r);
+        int previous = -1;
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            int gap = i - previous - 1;
+            writer.writeUnary(gap >>> r);
+            writer.writeBits(gap, r);
+            previous = i;
+        }
+        return writer.finish();
+    }
+
+    private static byte[] header(Format format, int size, int count) {
+        byte[] header = new byte[11];
+        header[0] = (byte) format.ordinal();
+        int position = writeVarInt(header, 1, size);
+        if (format == Format.GOLOMB) {
+            position = writeVarInt(header, position, count);
+        }
+        return Arrays.copyOf(header, position);
+    }
+
+    private static int varIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static int writeVarInt(byte[] target, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Writes bits most significant first through a 64 bit buffer.
+     */
+    private static class Writer {
+        private final byte[] bytes;
+        private int position;
+        private long buffer;
+        private int buffered;
+
+        private Writer(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        private void writeByte(int value) {
+            bytes[position++] = (byte) value;
+        }
+
+        private void writeUnary(int ones) {
+            for (; ones >= 32; ones -= 32) {
+                writeBits(0xFFFFFFFFL, 32);
+            }
+            writeBits(((1L << ones) - 1) << 1, ones + 1);
+        }
+
+        /**
+         * @param value the bits to write in its lowest bits
+         * @param count the number of bits, at most 57
+         */
+        private void writeBits(long value, int count) {
+            buffer = (buffer << count) | (value & ((1L << count) - 1));
+            buffered += count;
+            while (buffered >= 8) {
+                buffered -= 8;
+                bytes[position++] = (byte) (buffer >>> buffered);
+            }
+        }
+
+        private byte[] finish() {
+            if (buffered > 0) {
+                bytes[position] = (byte) (buffer << (8 - buffered));
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Reads bytes and then bits most significant first through a 64 bit buffer, whose unread bits are left-aligned.
+     */
+    private static class Reader {
+        private final byte[] bytes;
+        private int position;
+        private long buffer;
+        private int available;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private Format format() {
+            int format = readByte();
+            if (format >= Format.values().length) {
+                throw new IllegalArgumentException("Unknown format " + format);
+            }
+            return Format.values()[format];
+        }
+
+        private int readByte() {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("Truncated encoding");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        private long readUnary() {
+            long ones = 0;
+            while (true) {
+                fill(1);
+                // Unread bits are followed by zeros, so the leading ones end within the available bits
+                int leading = Long.numberOfLeadingZeros(~buffer);
+                if (leading < available) {
+                    consume(leading + 1);
+                    return ones + leading;
+                }
+                ones += available;
+                consume(available);
+            }
+        }
+
+        private int readBits(int count) {
+            if (count == 0) {
+                return 0;
+            }
+            fill(count);
+            int value = (int) (buffer >>> (Long.SIZE - count));
+            consume(count);
+            return value;
+        }
+
+        private void fill(int required) {
+            while (available <= Long.SIZE - 8 && position < bytes.length) {
+                buffer |= (bytes[position++] & 0xFFL) << (Long.SIZE - 8 - available);
+                available += 8;
+            }
+            if (available < required) {
+                throw new IllegalArgumentException("Truncated encoding");
+            }
+        }
+
+        private void consume(int count) {
+            buffer = count == Long.SIZE ? 0 : buffer << count;
+            available -= count;
+        }
+    }
+}
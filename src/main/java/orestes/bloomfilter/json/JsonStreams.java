@@ -0,0 +1,330 @@
+package orestes.bloomfilter.json;
+
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Base64;
+import java.util.BitSet;
+
+/**
+ * Streams for writing and reading the JSON representation of Bloom filters without holding their Base64 encoded bits
+ * in memory. All buffers have a fixed size, independent of the size of the Bloom filter.
+ */
+final class JsonStreams {
+    private static final int BUFFER = 1 << 13;
+
+    private JsonStreams() {
+    }
+
+    /**
+     * Returns a stream which encodes the written bytes with Base64 to the given stream, with trailing zero bytes
+     * dropped as by {@link BitSet#toByteArray()}. Closing it writes the final Base64 block but does not close the given
+     * stream.
+     */
+    static OutputStream base64(OutputStream out) {
+        return new TrimmingOutputStream(Base64.getEncoder().wrap(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }));
+    }
+
+    /**
+     * Returns a stream writing the bytes it receives as characters to the given writer, for ASCII content only.
+     */
+    static OutputStream ascii(Writer writer) {
+        return new OutputStream() {
+            private final char[] chars = new char[BUFFER];
+
+            @Override
+            public void write(int b) throws IOException {
+                writer.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    int n = Math.min(len, chars.length);
+                    for (int i = 0; i < n; i++) {
+                        chars[i] = (char) (b[off + i] & 0xFF);
+                    }
+                    writer.write(chars, 0, n);
+                    off += n;
+                    len -= n;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+        };
+    }
+
+    /**
+     * Drops trailing zero bytes by counting them until a non-zero byte follows.
+     */
+    private static class TrimmingOutputStream extends FilterOutputStream {
+        private static final byte[] ZEROS = new byte[BUFFER];
+        private long zeros;
+
+        private TrimmingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int end = off + len;
+            int nonZero = end;
+            while (nonZero > off && b[nonZero - 1] == 0) {
+                nonZero--;
+            }
+            if (nonZero > off) {
+                for (; zeros > 0; zeros -= Math.min(zeros, ZEROS.length)) {
+                    out.write(ZEROS, 0, (int) Math.min(zeros, ZEROS.length));
+                }
+                out.write(b, off, nonZero - off);
+            }
+            zeros += end - nonZero;
+        }
+    }
+
+    /**
+     * A minimal pull parser for the JSON object of a Bloom filter. It reads numbers and strings of known properties
+     * and skips all others. Base64 encoded strings are decoded while they are read.
+     */
+    static class BloomFilterReader {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER];
+        private int position;
+        private int limit;
+
+        BloomFilterReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the opening brace of the object.
+         */
+        void beginObject() throws IOException {
+            expect('{');
+        }
+
+        /**
+         * @return the name of the next property or <code>null</code> if the object ended
+         */
+        String nextName() throws IOException {
+            int c = nextNonWhitespace();
+            if (c == ',') {
+                c = nextNonWhitespace();
+            }
+            if (c == '}') {
+                return null;
+            }
+            if (c != '"') {
+                throw syntaxError("Expected a property name");
+            }
+            StringBuilder name = new StringBuilder();
+            for (int s = readStringChar(); s >= 0; s = readStringChar()) {
+                name.append((char) s);
+            }
+            expect(':');
+            return name.toString();
+        }
+
+        int nextInt() throws IOException {
+            String literal = nextLiteral();
+            try {
+                return Integer.parseInt(literal);
+            } catch (NumberFormatException e) {
+                throw syntaxError("Expected an integer but was " + literal);
+            }
+        }
+
+        /**
+         * Decodes a Base64 encoded string into a bit vector in the byte order of {@link BitSet#toByteArray()}.
+         *
+         * @param size the expected size of the bit vector or <code>0</code> if unknown
+         */
+        BitSet nextBits(int size) throws IOException {
+            BitSet bits = new BitSet(size);
+            byte[] bytes = new byte[BUFFER];
+            long offset = 0;
+            try (InputStream in = base64String()) {
+                for (int n = in.read(bytes); n >= 0; n = in.read(bytes)) {
+                    for (int i = 0; i < n; i++) {
+                        for (int b = bytes[i] & 0xFF; b != 0; b &= b - 1) {
+                            long index = 8 * (offset + i) + Integer.numberOfTrailingZeros(b);
+                            if (index >= Integer.MAX_VALUE) {
+                                throw syntaxError("Too many bits");
+                            }
+                            bits.set((int) index);
+                        }
+                    }
+                    offset += n;
+                }
+            }
+            return bits;
+        }
+
+        /**
+         * Decodes a Base64 encoded string into bytes.
+         */
+        byte[] nextBytes() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[BUFFER];
+            try (InputStream in = base64String()) {
+                for (int n = in.read(chunk); n >= 0; n = in.read(chunk)) {
+                    bytes.write(chunk, 0, n);
+                }
+            }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Skips the next value including nested objects and arrays.
+         */
+        void skipValue() throws IOException {
+            int depth = 0;
+            do {
+                int c = nextNonWhitespace();
+                if (c == '"') {
+                    while (readStringChar() >= 0) {
+                        // skip
+                    }
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (c == ',' || c == ':') {
+                    if (depth == 0) {
+                        throw syntaxError("Expected a value");
+                    }
+                } else {
+                    position--;
+                    nextLiteral();
+                }
+            } while (depth > 0);
+        }
+
+        private InputStream base64String() throws IOException {
+            expect('"');
+            InputStream chars = new InputStream() {
+                private boolean ended;
+
+                @Override
+                public int read() throws IOException {
+                    int c = ended ? -1 : readStringChar();
+                    ended = c < 0;
+                    return c;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // Consumes what the decoder left over, e.g. after the padding, up to the closing quote
+                    while (read() >= 0) {
+                        // skip
+                    }
+                }
+            };
+            return Base64.getDecoder().wrap(chars);
+        }
+
+        /**
+         * @return the next character of the current string with escapes resolved or <code>-1</code> after its closing
+         * quote
+         */
+        private int readStringChar() throws IOException {
+            int c = read();
+            if (c == '"') {
+                return -1;
+            }
+            if (c != '\\') {
+                return c;
+            }
+            c = read();
+            switch (c) {
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    int value = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw syntaxError("Malformed unicode escape");
+                        }
+                        value = value << 4 | digit;
+                    }
+                    return value;
+                default:
+                    return c;
+            }
+        }
+
+        private String nextLiteral() throws IOException {
+            StringBuilder literal = new StringBuilder();
+            int c = nextNonWhitespace();
+            while (c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                literal.append((char) c);
+                c = read();
+            }
+            position--;
+            return literal.toString();
+        }
+
+        private void expect(char expected) throws IOException {
+            if (nextNonWhitespace() != expected) {
+                throw syntaxError("Expected '" + expected + "'");
+            }
+        }
+
+        private int nextNonWhitespace() throws IOException {
+            int c = read();
+            while (Character.isWhitespace(c)) {
+                c = read();
+            }
+            return c;
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    throw syntaxError("Unexpected end of input");
+                }
+            }
+            return buffer[position++];
+        }
+
+        private MalformedJsonException syntaxError(String message) {
+            return new MalformedJsonException(message);
+        }
+    }
+}
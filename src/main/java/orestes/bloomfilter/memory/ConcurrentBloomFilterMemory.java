@@ -0,0 +1,286 @@
+package orestes.bloomfilter.memory;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * A lock-free in-memory Bloom filter. The bits are kept in an {@link AtomicLongArray}, so that reads never block and
+ * bits are set through compare-and-swap on the affected 64 bit word. In contrast to {@link BloomFilterMemory}, no
+ * operation is serialized through a monitor, which makes it suitable for filters shared by many threads.
+ * <p>
+ * Bulk operations like {@link #clear()}, {@link #union(BloomFilter)} or {@link #getBitSet()} are applied word by word
+ * and are therefore not atomic with respect to concurrent insertions.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class ConcurrentBloomFilterMemory<T> extends BloomFilterMemory<T> {
+    private static final long serialVersionUID = 2620361404384227155L;
+    protected AtomicLongArray words;
+
+    public ConcurrentBloomFilterMemory(FilterBuilder config) {
+        super(config, null);
+        this.words = new AtomicLongArray(wordCount(config.size()));
+    }
+
+    @Override
+    public boolean addRaw(byte[] element) {
+        boolean added = false;
+        for (int position : hashIntoScratch(element)) {
+            if (setBitIfUnset(position)) {
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public boolean contains(byte[] element) {
+        for (int position : hashIntoScratch(element)) {
+            if (!getBit(position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the bits through compare-and-swap without taking the lock of the filter.
+     */
+    @Override
+    protected void setPositions(int[] positions, long[] probes, int k, boolean[] results) {
+        if (probes != null) {
+            for (long probe : probes) {
+                if (setBitIfUnset((int) (probe >>> 32))) {
+                    results[(int) probe] = true;
+                }
+            }
+        } else {
+            for (int i = 0; i < positions.length; i++) {
+                if (setBitIfUnset(positions[i])) {
+                    results[i / k] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the bits without taking the lock of the filter.
+     */
+    @Override
+    protected void getPositions(int[] positions, int k, boolean[] results) {
+        for (int i = 0; i < positions.length; i++) {
+            if (results[i / k] && !getBit(positions[i])) {
+                results[i / k] = false;
+            }
+        }
+    }
+
+    /**
+     * Reads the bits without taking the lock of the filter.
+     */
+    @Override
+    protected void getProbes(long[] probes, int count, boolean[] results) {
+        for (int i = 0; i < count; i++) {
+            results[(int) probes[i]] &= getBit((int) (probes[i] >>> 32));
+        }
+    }
+
+    @Override
+    protected boolean getBit(int index) {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    @Override
+    protected void setBit(int index, boolean to) {
+        if (to) {
+            setBitIfUnset(index);
+        } else {
+            clearBitIfSet(index);
+        }
+    }
+
+    /**
+     * Atomically sets the bit at the given index.
+     *
+     * @param index the index of the bit
+     * @return {@code true} if the bit was changed by this call
+     */
+    @Override
+    protected boolean setBitIfUnset(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            // Avoid the write if the bit is already set to keep the cache line shared between cores
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    /**
+     * Atomically clears the bit at the given index.
+     *
+     * @param index the index of the bit
+     * @return {@code true} if the bit was changed by this call
+     */
+    protected boolean clearBitIfSet(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(word, current, current & ~mask));
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0L);
+        }
+    }
+
+    @Override
+    public BitSet getBitSet() {
+        return BitSet.valueOf(toLongArray());
+    }
+
+    @Override
+    public void writeBits(OutputStream out) throws IOException {
+        byte[] chunk = new byte[WRITE_CHUNK];
+        int length = 0;
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i);
+            for (int shift = 0; shift < Long.SIZE; shift += 8) {
+                chunk[length++] = (byte) (word >>> shift);
+            }
+            if (length == chunk.length) {
+                out.write(chunk);
+                length = 0;
+            }
+        }
+        out.write(chunk, 0, length);
+    }
+
+    @Override
+    public void setBitSet(BitSet bloom) {
+        long[] source = bloom.toLongArray();
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, i < source.length ? source[i] : 0L);
+        }
+    }
+
+    @Override
+    public boolean union(BloomFilter<T> other) {
+        return unionAll(Collections.singletonList(other));
+    }
+
+    /**
+     * Merges all bloom filters in a single pass over the words, in parallel chunks for large filters, see {@link
+     * ParallelBits#or(AtomicLongArray, List)}. Each word is updated atomically with the combination of all bloom
+     * filters.
+     *
+     * @param others the other bloom filters
+     * @return <code>true</code> if all bloom filters were compatible and this bloom filter was updated
+     */
+    @Override
+    public boolean unionAll(List<? extends BloomFilter<T>> others) {
+        if (!others.stream().allMatch(this::compatible)) {
+            return false;
+        }
+        ParallelBits.or(words, others.stream().map(BloomFilterMemory::wordsOf).collect(Collectors.toList()));
+        return true;
+    }
+
+    @Override
+    public boolean intersect(BloomFilter<T> other) {
+        if (compatible(other)) {
+            ParallelBits.and(words, Collections.singletonList(wordsOf(other)));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (int i = 0; i < words.length(); i++) {
+            if (words.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Double getEstimatedPopulation() {
+        return BloomFilter.population(cardinality(), config());
+    }
+
+    /**
+     * @return the number of bits set in this filter
+     */
+    public int cardinality() {
+        return (int) ParallelBits.cardinality(words);
+    }
+
+    /**
+     * @return a copy of the words backing this filter
+     */
+    public long[] toLongArray() {
+        long[] copy = new long[words.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = words.get(i);
+        }
+        return copy;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ConcurrentBloomFilterMemory<T> clone() {
+        ConcurrentBloomFilterMemory<T> o = (ConcurrentBloomFilterMemory<T>) super.clone();
+        o.words = new AtomicLongArray(toLongArray());
+        return o;
+    }
+
+    @Override
+    public String toString() {
+        return asString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConcurrentBloomFilterMemory)) {
+            return false;
+        }
+
+        ConcurrentBloomFilterMemory<?> that = (ConcurrentBloomFilterMemory<?>) o;
+
+        return getBitSet().equals(that.getBitSet()) && config().isCompatibleTo(that.config());
+    }
+
+    @Override
+    public int hashCode() {
+        return getBitSet().hashCode();
+    }
+
+    private static int wordCount(int size) {
+        return (size + 63) >>> 6;
+    }
+}
@@ -0,0 +1,224 @@
+package orestes.bloomfilter.memory;
+
+
+import orestes.bloomfilter.FilterBuilder;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free counting Bloom filter for counter widths from 1 to 64 bits. The counters are packed into an {@link
+ * AtomicLongArray} like in {@link CountingBloomFilterPacked} and updated through compare-and-set, incrementing up to the
+ * maximum and decrementing down to zero. The binary Bloom filter is a {@link ConcurrentBloomFilterMemory}, whose bits
+ * are reconciled with the counters after every update. They therefore match the counters once all concurrent updates
+ * have finished. Membership tests read the counters, so that a concurrent removal never causes a false negative.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class ConcurrentCountingBloomFilterMemory<T> extends CountingBloomFilterMemory<T> {
+    private static final long serialVersionUID = -4216981592710271529L;
+    private final int bits;
+    private final int countersPerWord;
+    private final long max;
+    private AtomicLongArray counters;
+
+    public ConcurrentCountingBloomFilterMemory(FilterBuilder config) {
+        config.complete();
+        if (config.countingBits() < 1 || config.countingBits() > 64) {
+            throw new IllegalArgumentException("Counters must have between 1 and 64 bits: " + config.countingBits());
+        }
+        this.config = config;
+        this.filter = new ConcurrentBloomFilterMemory<>(config.clone());
+        this.bits = config.countingBits();
+        this.countersPerWord = Long.SIZE / bits;
+        this.max = bits == Long.SIZE ? -1L : (1L << bits) - 1;
+        this.counters = new AtomicLongArray((config.size() + countersPerWord - 1) / countersPerWord);
+    }
+
+    private int shift(int index) {
+        return (index % countersPerWord) * bits;
+    }
+
+    private ConcurrentBloomFilterMemory<T> concurrentFilter() {
+        return (ConcurrentBloomFilterMemory<T>) filter;
+    }
+
+    @Override
+    public boolean contains(byte[] element) {
+        for (int position : filter.hashIntoScratch(element)) {
+            if (count(position) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long addAndEstimateCountRaw(byte[] element) {
+        long min = Long.MAX_VALUE;
+        for (int position : filter.hashIntoScratch(element)) {
+            long count = increment(position);
+            reconcile(position);
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    @Override
+    public long removeAndEstimateCountRaw(byte[] element) {
+        if (!contains(element)) { return 0; }
+
+        long min = Long.MAX_VALUE;
+        for (int position : filter.hashIntoScratch(element)) {
+            long count = decrement(position);
+            if (count == 0) {
+                reconcile(position);
+            }
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    /**
+     * Sets or clears the bit at the given position depending on its counter. Every thread re-reads the counter after
+     * writing the bit and repeats if the counter changed meanwhile, so the last writer always leaves the bit matching
+     * the counter.
+     *
+     * @param position the position of the bit and its counter
+     */
+    private void reconcile(int position) {
+        while (true) {
+            boolean set = count(position) != 0;
+            if (set) {
+                concurrentFilter().setBitIfUnset(position);
+            } else {
+                concurrentFilter().clearBitIfSet(position);
+            }
+            if ((count(position) != 0) == set) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    protected long increment(int index) {
+        int word = index / countersPerWord;
+        int shift = shift(index);
+        long current;
+        long count;
+        do {
+            current = counters.get(word);
+            count = (current >>> shift) & max;
+            if (count == max) {
+                overflowHandler.run();
+                return max;
+            }
+        } while (!counters.compareAndSet(word, current, current + (1L << shift)));
+        return count + 1;
+    }
+
+    @Override
+    protected long decrement(int index) {
+        int word = index / countersPerWord;
+        int shift = shift(index);
+        long current;
+        long count;
+        do {
+            current = counters.get(word);
+            count = (current >>> shift) & max;
+            if (count == 0) {
+                return 0;
+            }
+        } while (!counters.compareAndSet(word, current, current - (1L << shift)));
+        return count - 1;
+    }
+
+    @Override
+    protected long count(int index) {
+        return (counters.get(index / countersPerWord) >>> shift(index)) & max;
+    }
+
+    @Override
+    protected void set(int index, long newValue) {
+        int word = index / countersPerWord;
+        int shift = shift(index);
+        counters.getAndUpdate(word, current -> (current & ~(max << shift)) | ((newValue & max) << shift));
+    }
+
+    @Override
+    protected void merge(int index, long other, boolean union) {
+        int word = index / countersPerWord;
+        int shift = shift(index);
+        long current;
+        long count;
+        do {
+            current = counters.get(word);
+            long old = (current >>> shift) & max;
+            count = union ? add(old, other) : min(old, other);
+        } while (!counters.compareAndSet(word, current, (current & ~(max << shift)) | ((count & max) << shift)));
+        reconcile(index);
+    }
+
+    @Override
+    public long getEstimatedCount(T element) {
+        long min = Long.MAX_VALUE;
+        for (int position : filter.hashIntoScratch(toBytes(element))) {
+            min = Math.min(min, count(position));
+        }
+        return min;
+    }
+
+    @Override
+    public Map<Integer, Long> getCountMap() {
+        Map<Integer, Long> result = new HashMap<>();
+        for (int i = 0; i < config.size(); i++) {
+            long count = count(i);
+            if (count != 0) {
+                result.put(i, count);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public BitSet getBitSet() {
+        return filter.getBitSet();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        filter.clear();
+    }
+
+    @Override
+    public ConcurrentCountingBloomFilterMemory<T> clone() {
+        ConcurrentCountingBloomFilterMemory<T> o = (ConcurrentCountingBloomFilterMemory<T>) super.clone();
+        long[] copy = new long[counters.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counters.get(i);
+        }
+        o.counters = new AtomicLongArray(copy);
+        return o;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof ConcurrentCountingBloomFilterMemory)) { return false; }
+        if (!super.equals(o)) { return false; }
+        ConcurrentCountingBloomFilterMemory<?> that = (ConcurrentCountingBloomFilterMemory<?>) o;
+        return getCountMap().equals(that.getCountMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return getCountMap().hashCode();
+    }
+
+}
@@ -3,9 +3,9 @@ package orestes.bloomfilter.memory;
 
 import orestes.bloomfilter.FilterBuilder;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 
 public class CountingBloomFilter16<T> extends CountingBloomFilterMemory<T>{
     private short[] counters;
@@ -64,13 +64,20 @@ public class CountingBloomFilter16<T> extends CountingBloomFilterMemory<T>{
         this.counters = new short[counters.length];
     }
 
+    @Override
+    public synchronized CountingBloomFilter16<T> clone() {
+        CountingBloomFilter16<T> o = (CountingBloomFilter16<T>) super.clone();
+        o.counters = counters.clone();
+        return o;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) { return true; }
         if (!(o instanceof CountingBloomFilter16)) { return false; }
         if (!super.equals(o)) { return false; }
         CountingBloomFilter16<?> that = (CountingBloomFilter16<?>) o;
-        return Objects.equals(counters, that.counters);
+        return Arrays.equals(counters, that.counters);
     }
 
 }
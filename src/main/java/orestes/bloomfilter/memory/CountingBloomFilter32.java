@@ -3,9 +3,9 @@ package orestes.bloomfilter.memory;
 
 import orestes.bloomfilter.FilterBuilder;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 
 public class CountingBloomFilter32<T> extends CountingBloomFilterMemory<T>{
     private int[] counters;
@@ -63,13 +63,20 @@ public class CountingBloomFilter32<T> extends CountingBloomFilterMemory<T>{
         this.counters = new int[counters.length];
     }
 
+    @Override
+    public synchronized CountingBloomFilter32<T> clone() {
+        CountingBloomFilter32<T> o = (CountingBloomFilter32<T>) super.clone();
+        o.counters = counters.clone();
+        return o;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) { return true; }
         if (!(o instanceof CountingBloomFilter32)) { return false; }
         if (!super.equals(o)) { return false; }
         CountingBloomFilter32<?> that = (CountingBloomFilter32<?>) o;
-        return Objects.equals(counters, that.counters);
+        return Arrays.equals(counters, that.counters);
     }
 
 }
@@ -3,9 +3,9 @@ package orestes.bloomfilter.memory;
 
 import orestes.bloomfilter.FilterBuilder;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 
 public class CountingBloomFilter64<T> extends CountingBloomFilterMemory<T>{
     private long[] counters;
@@ -42,6 +42,11 @@ public class CountingBloomFilter64<T> extends CountingBloomFilterMemory<T>{
         counters[index] = newValue;
     }
 
+    @Override
+    protected long maxCount() {
+        return MAX;
+    }
+
     @Override
     public Map<Integer, Long> getCountMap() {
         Map<Integer, Long> result = new HashMap<>();
@@ -61,13 +66,20 @@ public class CountingBloomFilter64<T> extends CountingBloomFilterMemory<T>{
         this.counters = new long[counters.length];
     }
 
+    @Override
+    public synchronized CountingBloomFilter64<T> clone() {
+        CountingBloomFilter64<T> o = (CountingBloomFilter64<T>) super.clone();
+        o.counters = counters.clone();
+        return o;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) { return true; }
         if (!(o instanceof CountingBloomFilter64)) { return false; }
         if (!super.equals(o)) { return false; }
         CountingBloomFilter64<?> that = (CountingBloomFilter64<?>) o;
-        return Objects.equals(counters, that.counters);
+        return Arrays.equals(counters, that.counters);
     }
 
 }
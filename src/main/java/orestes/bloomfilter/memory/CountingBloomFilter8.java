@@ -3,9 +3,9 @@ package orestes.bloomfilter.memory;
 
 import orestes.bloomfilter.FilterBuilder;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 
 public class CountingBloomFilter8<T> extends CountingBloomFilterMemory<T>{
     private byte[] counters;
@@ -63,13 +63,20 @@ public class CountingBloomFilter8<T> extends CountingBloomFilterMemory<T>{
         this.counters = new byte[counters.length];
     }
 
+    @Override
+    public synchronized CountingBloomFilter8<T> clone() {
+        CountingBloomFilter8<T> o = (CountingBloomFilter8<T>) super.clone();
+        o.counters = counters.clone();
+        return o;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) { return true; }
         if (!(o instanceof CountingBloomFilter8)) { return false; }
         if (!super.equals(o)) { return false; }
         CountingBloomFilter8<?> that = (CountingBloomFilter8<?>) o;
-        return Objects.equals(counters, that.counters);
+        return Arrays.equals(counters, that.counters);
     }
 
 }
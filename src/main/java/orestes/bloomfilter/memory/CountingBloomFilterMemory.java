@@ -7,10 +7,10 @@ import orestes.bloomfilter.MigratableBloomFilter;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.IntStream;
 
 
 public class CountingBloomFilterMemory<T> implements CountingBloomFilter<T>, MigratableBloomFilter<T> {
@@ -59,16 +59,16 @@ public class CountingBloomFilterMemory<T> implements CountingBloomFilter<T>, Mig
     @Override
     public synchronized long addAndEstimateCountRaw(byte[] element) {
         // Calculate the hashes of this element
-        return IntStream.of(hash(element))
-            .mapToLong(hash -> {
-                // Set each bit at the position "hash"
-                filter.setBit(hash, true);
-
-                // Increment the count at the position "hash" and return the new value
-                return increment(hash);
-            })
-            // Get the estimated count for the element by finding the minimal value
-            .min().getAsLong();
+        int[] positions = filter.hashIntoScratch(element);
+        long min = Long.MAX_VALUE;
+        for (int position : positions) {
+            // Set each bit at the position
+            filter.setBit(position, true);
+
+            // Increment the count at the position and keep the minimal value as estimated count for the element
+            min = Math.min(min, increment(position));
+        }
+        return min;
     }
 
 
@@ -77,18 +77,19 @@ public class CountingBloomFilterMemory<T> implements CountingBloomFilter<T>, Mig
         if (!contains(element)) { return 0; }
 
         // Calculate the hashes of this element
-        return IntStream.of(hash(element))
-            .mapToLong(hash -> {
-                // Decrement the count at the position "hash" and return the new value
-                long count = decrement(hash);
+        int[] positions = filter.hashIntoScratch(element);
+        long min = Long.MAX_VALUE;
+        for (int position : positions) {
+            // Decrement the count at the position
+            long count = decrement(position);
 
-                // Remove each bit at the position "hash" if count is now zero
-                filter.setBit(hash, count > 0);
+            // Remove each bit at the position if count is now zero
+            filter.setBit(position, count > 0);
 
-                return count;
-            })
             // Get the estimated count for the element by finding the minimal value
-            .min().getAsLong();
+            min = Math.min(min, count);
+        }
+        return min;
     }
 
 
@@ -201,19 +202,105 @@ public class CountingBloomFilterMemory<T> implements CountingBloomFilter<T>, Mig
 
     @Override
     public synchronized long getEstimatedCount(T element) {
-        return IntStream.of(hash(toBytes(element))).mapToLong(this::count).min().getAsLong();
+        long min = Long.MAX_VALUE;
+        for (int position : filter.hashIntoScratch(toBytes(element))) {
+            min = Math.min(min, count(position));
+        }
+        return min;
     }
 
+    /**
+     * Adds the counters of a compatible counting Bloom filter to the counters of this one. Counters saturate at their
+     * maximum, in which case the overflow handler is called. Like for {@link #migrateFrom(BloomFilter)}, the other
+     * Bloom filter must not be modified concurrently.
+     *
+     * @param other the other counting Bloom filter
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
     @Override
-    public boolean union(BloomFilter<T> other) {
-        //TODO
-        throw new UnsupportedOperationException();
+    public synchronized boolean union(BloomFilter<T> other) {
+        return merge(other, true);
     }
 
+    /**
+     * Replaces every counter by the minimum of itself and the respective counter of a compatible counting Bloom filter.
+     * Like for {@link #migrateFrom(BloomFilter)}, the other Bloom filter must not be modified concurrently.
+     *
+     * @param other the other counting Bloom filter
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
     @Override
-    public boolean intersect(BloomFilter<T> other) {
-        //TODO
-        throw new UnsupportedOperationException();
+    public synchronized boolean intersect(BloomFilter<T> other) {
+        return merge(other, false);
+    }
+
+    private boolean merge(BloomFilter<T> other, boolean union) {
+        if (!(other instanceof CountingBloomFilter) || !compatible(other)) {
+            return false;
+        }
+        if (other instanceof CountingBloomFilterMemory) {
+            // Element-wise over the counter arrays, without materializing a count map
+            CountingBloomFilterMemory<T> that = (CountingBloomFilterMemory<T>) other;
+            for (int i = 0; i < config.size(); i++) {
+                merge(i, that.count(i), union);
+            }
+            return true;
+        }
+
+        Map<Integer, Long> theirs = ((CountingBloomFilter<T>) other).getCountMap();
+        if (union) {
+            theirs.forEach((position, count) -> merge(position, count, true));
+        } else {
+            getCountMap().keySet().forEach(position -> merge(position, theirs.getOrDefault(position, 0L), false));
+        }
+        return true;
+    }
+
+    /**
+     * Merges the counter of another Bloom filter into a counter and updates the respective bit.
+     *
+     * @param index the position of the counter
+     * @param other the counter of the other Bloom filter
+     * @param union whether to add the counters or to take their minimum
+     */
+    protected void merge(int index, long other, boolean union) {
+        long count = union ? add(count(index), other) : min(count(index), other);
+        set(index, count);
+        filter.setBit(index, count != 0);
+    }
+
+    /**
+     * @return the maximum value of a counter, treated as unsigned
+     */
+    protected long maxCount() {
+        return config.countingBits() >= Long.SIZE ? -1L : (1L << config.countingBits()) - 1;
+    }
+
+    /**
+     * Adds two counters, saturating at {@link #maxCount()} and calling the overflow handler if the sum exceeds it.
+     *
+     * @param count a counter
+     * @param other another counter
+     * @return the sum of the counters
+     */
+    protected long add(long count, long other) {
+        long max = maxCount();
+        if (Long.compareUnsigned(other, max - count) > 0) {
+            overflowHandler.run();
+            return max;
+        }
+        return count + other;
+    }
+
+    /**
+     * @param count a counter
+     * @param other another counter
+     * @return the smaller one of the counters, treated as unsigned
+     */
+    protected static long min(long count, long other) {
+        return Long.compareUnsigned(count, other) <= 0 ? count : other;
     }
 
     @Override
@@ -264,6 +351,11 @@ public class CountingBloomFilterMemory<T> implements CountingBloomFilter<T>, Mig
         return filter.getBitSet();
     }
 
+    @Override
+    public void writeBits(OutputStream out) throws IOException {
+        filter.writeBits(out);
+    }
+
     @Override
     public FilterBuilder config() {
         return this.config;
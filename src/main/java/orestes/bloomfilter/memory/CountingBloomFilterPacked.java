@@ -0,0 +1,126 @@
+package orestes.bloomfilter.memory;
+
+
+import orestes.bloomfilter.FilterBuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A counting Bloom filter for arbitrary counter widths from 1 to 63 bits, e.g. the classic 4 bit counters. The counters
+ * are packed into a <code>long[]</code>, each word holding <code>64 / countingBits</code> counters, so that no counter
+ * straddles two words and every counter operation is a single shift and mask.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class CountingBloomFilterPacked<T> extends CountingBloomFilterMemory<T> {
+    private static final long serialVersionUID = 1402473615406839213L;
+    private final int bits;
+    private final int countersPerWord;
+    private final long max;
+    private long[] counters;
+
+    public CountingBloomFilterPacked(FilterBuilder config) {
+        config.complete();
+        if (config.countingBits() < 1 || config.countingBits() > 63) {
+            throw new IllegalArgumentException("Packed counters must have between 1 and 63 bits: " + config.countingBits());
+        }
+        this.config = config;
+        this.filter = new BloomFilterMemory<>(config.clone());
+        this.bits = config.countingBits();
+        this.countersPerWord = Long.SIZE / bits;
+        this.max = (1L << bits) - 1;
+        this.counters = new long[(config.size() + countersPerWord - 1) / countersPerWord];
+    }
+
+    private int shift(int index) {
+        return (index % countersPerWord) * bits;
+    }
+
+    /**
+     * @param index the index of a counter
+     * @return the index of the word holding the counter
+     */
+    protected int word(int index) {
+        return index / countersPerWord;
+    }
+
+    @Override
+    protected long increment(int index) {
+        int word = word(index);
+        int shift = shift(index);
+        long count = (counters[word] >>> shift) & max;
+        if (count == max) {
+            overflowHandler.run();
+            return max;
+        }
+        counters[word] += 1L << shift;
+        return count + 1;
+    }
+
+    @Override
+    protected long decrement(int index) {
+        int word = word(index);
+        int shift = shift(index);
+        long count = (counters[word] >>> shift) & max;
+        if (count == 0) {
+            return 0;
+        }
+        counters[word] -= 1L << shift;
+        return count - 1;
+    }
+
+    @Override
+    protected long count(int index) {
+        return (counters[word(index)] >>> shift(index)) & max;
+    }
+
+    @Override
+    protected void set(int index, long newValue) {
+        int word = word(index);
+        int shift = shift(index);
+        counters[word] = (counters[word] & ~(max << shift)) | ((newValue & max) << shift);
+    }
+
+    @Override
+    public Map<Integer, Long> getCountMap() {
+        Map<Integer, Long> result = new HashMap<>();
+        for (int i = 0; i < config.size(); i++) {
+            long count = count(i);
+            if (count > 0) {
+                result.put(i, count);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized void clear() {
+        filter.clear();
+        Arrays.fill(counters, 0);
+    }
+
+    @Override
+    public synchronized CountingBloomFilterPacked<T> clone() {
+        CountingBloomFilterPacked<T> o = (CountingBloomFilterPacked<T>) super.clone();
+        o.counters = counters.clone();
+        return o;
+    }
+
+    @Override
+    public synchronized boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof CountingBloomFilterPacked)) { return false; }
+        if (!super.equals(o)) { return false; }
+        CountingBloomFilterPacked<?> that = (CountingBloomFilterPacked<?>) o;
+        return Arrays.equals(counters, that.counters);
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        return Arrays.hashCode(counters);
+    }
+
+}
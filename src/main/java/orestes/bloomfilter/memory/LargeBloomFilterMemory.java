@@ -0,0 +1,274 @@
+package orestes.bloomfilter.memory;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * An in-memory Bloom filter which is addressed by long positions and may thus hold more than {@link Integer#MAX_VALUE}
+ * bits. The bits are stored in a {@link SegmentedBitSet}. The configured hash function has to support long positions,
+ * see {@link orestes.bloomfilter.HashProvider.HashMethod#Murmur3x64}, which is the default for sizes beyond the integer
+ * range. Other hash methods are rejected by {@link FilterBuilder#complete()}.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class LargeBloomFilterMemory<T> implements BloomFilter<T> {
+    private static final long serialVersionUID = -3406342171387651294L;
+    private final FilterBuilder config;
+    protected SegmentedBitSet bloom;
+    private transient ThreadLocal<long[]> scratch;
+
+    public LargeBloomFilterMemory(FilterBuilder config) {
+        config.complete();
+        this.config = config;
+        this.bloom = new SegmentedBitSet(config.longSize());
+    }
+
+    @Override
+    public FilterBuilder config() {
+        return config;
+    }
+
+    @Override
+    public boolean addRaw(byte[] element) {
+        long[] positions = hashIntoScratch(element);
+        synchronized (this) {
+            boolean added = false;
+            for (long position : positions) {
+                if (bloom.set(position)) {
+                    added = true;
+                }
+            }
+            return added;
+        }
+    }
+
+    @Override
+    public boolean contains(byte[] element) {
+        long[] positions = hashIntoScratch(element);
+        synchronized (this) {
+            for (long position : positions) {
+                if (!bloom.get(position)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Tests the elements in two phases per window, see {@link BloomFilterMemory#contains(byte[][], boolean[], int)}.
+     * The position and the index of the element within the window are packed into one long, so filters which are too
+     * large for that are tested element by element.
+     *
+     * @param elements the elements to test
+     * @param results  array of at least the number of elements receiving for each element, whether it is present
+     * @param window   the number of elements whose positions are buffered and sorted together
+     * @return the given results array
+     */
+    @Override
+    public boolean[] contains(byte[][] elements, boolean[] results, int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("The window must be positive: " + window);
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(window - 1);
+        if (config.longSize() > Long.MAX_VALUE >>> shift) {
+            return contains(elements, results);
+        }
+        long mask = (1L << shift) - 1;
+        long[] probes = new long[Math.min(window, elements.length) * config.hashes()];
+        long[] ordered = new long[probes.length];
+        int[] buckets = new int[Integer.highestOneBit(Math.max(probes.length, 1))];
+        int keyShift = BloomFilterMemory.bucketShift(config.longSize(), shift, buckets.length);
+        Arrays.fill(results, 0, elements.length, true);
+        for (int start = 0; start < elements.length; start += window) {
+            int end = Math.min(start + window, elements.length);
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                for (long position : hashIntoScratch(elements[i])) {
+                    probes[count++] = position << shift | (i - start);
+                }
+            }
+            BloomFilterMemory.orderByBucket(probes, count, ordered, buckets, keyShift);
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    results[start + (int) (ordered[i] & mask)] &= bloom.get(ordered[i] >>> shift);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Hashes the element into a buffer owned by the calling thread. The returned array is only valid until the next
+     * call of this method by the same thread.
+     *
+     * @param element the element to hash
+     * @return the thread's buffer containing the hash values of the element
+     */
+    protected long[] hashIntoScratch(byte[] element) {
+        ThreadLocal<long[]> local = scratch;
+        if (local == null) {
+            local = ThreadLocal.withInitial(() -> new long[config.hashes()]);
+            scratch = local;
+        }
+        return hashInto(element, local.get());
+    }
+
+    @Override
+    public synchronized void clear() {
+        bloom.clear();
+    }
+
+    /**
+     * Returns the underlying bits as {@link BitSet}, which is only possible for filters of at most {@link
+     * Integer#MAX_VALUE} bits. Use {@link #getSegmentedBitSet()} for larger filters.
+     *
+     * @return the underyling bit vector of the Bloom filter.
+     * @throws UnsupportedOperationException if the filter is too large for a BitSet
+     */
+    @Override
+    public synchronized BitSet getBitSet() {
+        return bloom.toBitSet();
+    }
+
+    /**
+     * Writes the bits without copying them, while holding the lock.
+     */
+    @Override
+    public synchronized void writeBits(OutputStream out) throws IOException {
+        bloom.writeTo(out);
+    }
+
+    /**
+     * @return a copy of the underlying bits
+     */
+    public synchronized SegmentedBitSet getSegmentedBitSet() {
+        return bloom.clone();
+    }
+
+    public synchronized void setSegmentedBitSet(SegmentedBitSet bloom) {
+        this.bloom = bloom;
+    }
+
+    /**
+     * Merges the bits of the other bloom filter in place. The segments of another LargeBloomFilterMemory are read
+     * directly while holding its lock instead of being copied.
+     */
+    @Override
+    public synchronized boolean union(BloomFilter<T> other) {
+        if (compatible(other)) {
+            combine(other, false);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Merges all bloom filters in place. Other LargeBloomFilterMemory instances are merged one after another while
+     * holding the lock of one of them at a time, all others are converted and merged in a single pass over the
+     * segments of the bit vector, see {@link SegmentedBitSet#orAll(List)}.
+     *
+     * @param others the other bloom filters
+     * @return <code>true</code> if all bloom filters were compatible and this bloom filter was updated
+     */
+    @Override
+    public synchronized boolean unionAll(List<? extends BloomFilter<T>> others) {
+        if (!others.stream().allMatch(this::compatible)) {
+            return false;
+        }
+        others.stream().filter(other -> other instanceof LargeBloomFilterMemory).forEach(other -> combine(other, false));
+        List<SegmentedBitSet> converted = others.stream().filter(other -> !(other instanceof LargeBloomFilterMemory))
+            .map(other -> SegmentedBitSet.valueOf(other.getBitSet(), config.longSize())).collect(Collectors.toList());
+        if (!converted.isEmpty()) {
+            bloom.orAll(converted);
+        }
+        return true;
+    }
+
+    /**
+     * Intersects the bits with the other bloom filter in place, see {@link #union(BloomFilter)}.
+     */
+    @Override
+    public synchronized boolean intersect(BloomFilter<T> other) {
+        if (compatible(other)) {
+            combine(other, true);
+            return true;
+        }
+        return false;
+    }
+
+    private void combine(BloomFilter<T> other, boolean and) {
+        if (other instanceof LargeBloomFilterMemory) {
+            LargeBloomFilterMemory<T> that = (LargeBloomFilterMemory<T>) other;
+            synchronized (that) {
+                combine(that.bloom, and);
+            }
+        } else {
+            combine(SegmentedBitSet.valueOf(other.getBitSet(), config.longSize()), and);
+        }
+    }
+
+    private void combine(SegmentedBitSet other, boolean and) {
+        if (and) {
+            bloom.and(other);
+        } else {
+            bloom.or(other);
+        }
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return bloom.isEmpty();
+    }
+
+    @Override
+    public synchronized Double getEstimatedPopulation() {
+        return BloomFilter.population(bloom.cardinality(), config);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized LargeBloomFilterMemory<T> clone() {
+        LargeBloomFilterMemory<T> o;
+        try {
+            o = (LargeBloomFilterMemory<T>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException("Cloning failed.");
+        }
+        o.bloom = bloom.clone();
+        o.scratch = null;
+        return o;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Bloom Filter Parameters: size = " + config.longSize() + ", hashes = " + config.hashes()
+            + ", Bits set: " + bloom.cardinality();
+    }
+
+    @Override
+    public synchronized boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LargeBloomFilterMemory)) {
+            return false;
+        }
+
+        LargeBloomFilterMemory<?> that = (LargeBloomFilterMemory<?>) o;
+
+        return bloom.equals(that.bloom) && config.isCompatibleTo(that.config);
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        return bloom.hashCode();
+    }
+}
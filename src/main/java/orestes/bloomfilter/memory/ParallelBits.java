@@ -0,0 +1,191 @@
+package orestes.bloomfilter.memory;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bulk operations on bit vectors given as arrays of 64 bit words. Arrays of more than {@value #CHUNK_WORDS} words are
+ * split into chunks which are processed in parallel on the common {@link ForkJoinPool}; smaller ones are processed by
+ * the calling thread. All sources are combined into a chunk in a single pass.
+ */
+public final class ParallelBits {
+    /**
+     * The number of words processed by a single task, large enough to amortize the overhead of a task.
+     */
+    public static final int CHUNK_WORDS = 1 << 15;
+
+    private ParallelBits() {
+    }
+
+    /**
+     * Performs a logical OR of the target with all sources in a single pass. Sources may be shorter than the target,
+     * missing words are treated as zero.
+     *
+     * @param target  the words to modify
+     * @param sources the words to combine into the target
+     */
+    public static void or(long[] target, List<long[]> sources) {
+        new Apply(0, target.length, (from, to) -> {
+            for (long[] source : sources) {
+                for (int i = from, end = Math.min(to, source.length); i < end; i++) {
+                    target[i] |= source[i];
+                }
+            }
+        }).invoke();
+    }
+
+    /**
+     * Performs a logical AND of the target with all sources in a single pass. Sources may be shorter than the target,
+     * missing words are treated as zero.
+     *
+     * @param target  the words to modify
+     * @param sources the words to combine into the target
+     */
+    public static void and(long[] target, List<long[]> sources) {
+        new Apply(0, target.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                target[i] &= and(sources, i);
+            }
+        }).invoke();
+    }
+
+    /**
+     * Performs a logical OR of the target with all sources in a single pass, see {@link #or(long[], List)}. Each word
+     * of the target is updated atomically with the combination of all sources, so concurrent updates are not lost.
+     *
+     * @param target  the words to modify
+     * @param sources the words to combine into the target
+     */
+    public static void or(AtomicLongArray target, List<long[]> sources) {
+        new Apply(0, target.length(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                long bits = 0;
+                for (long[] source : sources) {
+                    bits |= i < source.length ? source[i] : 0L;
+                }
+                // Avoid the write if all bits are already set to keep the cache line shared between cores
+                if ((target.get(i) & bits) != bits) {
+                    target.accumulateAndGet(i, bits, (a, b) -> a | b);
+                }
+            }
+        }).invoke();
+    }
+
+    /**
+     * Performs a logical AND of the target with all sources in a single pass, see {@link #and(long[], List)}. Each word
+     * of the target is updated atomically.
+     *
+     * @param target  the words to modify
+     * @param sources the words to combine into the target
+     */
+    public static void and(AtomicLongArray target, List<long[]> sources) {
+        new Apply(0, target.length(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                long bits = and(sources, i);
+                if ((target.get(i) & ~bits) != 0) {
+                    target.accumulateAndGet(i, bits, (a, b) -> a & b);
+                }
+            }
+        }).invoke();
+    }
+
+    /**
+     * @param words the words to count
+     * @return the number of bits set in the given words
+     */
+    public static long cardinality(long[] words) {
+        return new Count(0, words.length, (from, to) -> {
+            long cardinality = 0;
+            for (int i = from; i < to; i++) {
+                cardinality += Long.bitCount(words[i]);
+            }
+            return cardinality;
+        }).invoke();
+    }
+
+    /**
+     * @param words the words to count
+     * @return the number of bits set in the given words
+     */
+    public static long cardinality(AtomicLongArray words) {
+        return new Count(0, words.length(), (from, to) -> {
+            long cardinality = 0;
+            for (int i = from; i < to; i++) {
+                cardinality += Long.bitCount(words.get(i));
+            }
+            return cardinality;
+        }).invoke();
+    }
+
+    private static long and(List<long[]> sources, int i) {
+        long bits = -1L;
+        for (long[] source : sources) {
+            bits &= i < source.length ? source[i] : 0L;
+        }
+        return bits;
+    }
+
+    /**
+     * An operation on the words of a chunk.
+     */
+    private interface ChunkAction {
+        void apply(int from, int to);
+    }
+
+    /**
+     * A count over the words of a chunk.
+     */
+    private interface ChunkCount {
+        long count(int from, int to);
+    }
+
+    private static class Apply extends RecursiveAction {
+        private static final long serialVersionUID = -2873920155384471349L;
+        private final int from;
+        private final int to;
+        private final ChunkAction action;
+
+        private Apply(int from, int to, ChunkAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_WORDS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Apply(from, middle, action), new Apply(middle, to, action));
+                return;
+            }
+            action.apply(from, to);
+        }
+    }
+
+    private static class Count extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 6904583713049170162L;
+        private final int from;
+        private final int to;
+        private final ChunkCount count;
+
+        private Count(int from, int to, ChunkCount count) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > CHUNK_WORDS) {
+                int middle = (from + to) >>> 1;
+                Count left = new Count(from, middle, count);
+                left.fork();
+                return new Count(middle, to, count).compute() + left.join();
+            }
+            return count.count(from, to);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package orestes.bloomfilter.memory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A fixed-size bit vector addressed by long indexes. In contrast to {@link BitSet}, which is limited to {@link
+ * Integer#MAX_VALUE} bits, the bits are split into segments of 2^{@value #SEGMENT_BITS_LOG} bits. Segments are only
+ * allocated when the first bit in them is set, so that sparse vectors stay small. Like {@link BitSet}, this class is
+ * not thread-safe. Bulk operations process the words of each segment in parallel chunks, see {@link ParallelBits}.
+ */
+public class SegmentedBitSet implements Cloneable, Serializable {
+    private static final long serialVersionUID = 5411412768917404541L;
+    public static final int SEGMENT_BITS_LOG = 26;
+    private static final int SEGMENT_WORDS = 1 << (SEGMENT_BITS_LOG - 6);
+    private static final int SEGMENT_WORD_MASK = SEGMENT_WORDS - 1;
+
+    private final long size;
+    private long[][] segments;
+
+    /**
+     * Constructs a new SegmentedBitSet with all bits unset.
+     *
+     * @param size the number of bits
+     */
+    public SegmentedBitSet(long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The size must not be negative: " + size);
+        }
+        this.size = size;
+        this.segments = new long[(int) ((size + (1L << SEGMENT_BITS_LOG) - 1) >>> SEGMENT_BITS_LOG)][];
+    }
+
+    /**
+     * @return the number of bits
+     */
+    public long size() {
+        return size;
+    }
+
+    public boolean get(long index) {
+        long[] segment = segments[segment(index)];
+        return segment != null && (segment[word(index)] & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets the bit at the given index.
+     *
+     * @param index the bit index
+     * @return {@code true} if the bit was previously unset
+     */
+    public boolean set(long index) {
+        int s = segment(index);
+        long[] segment = segments[s];
+        if (segment == null) {
+            segment = segments[s] = new long[segmentWords(s)];
+        }
+        int word = word(index);
+        long before = segment[word];
+        segment[word] = before | (1L << index);
+        return (before & (1L << index)) == 0;
+    }
+
+    public void clear(long index) {
+        long[] segment = segments[segment(index)];
+        if (segment != null) {
+            segment[word(index)] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Unsets all bits and releases all segments.
+     */
+    public void clear() {
+        Arrays.fill(segments, null);
+    }
+
+    /**
+     * @return the number of bits set to {@code true}
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for (long[] segment : segments) {
+            if (segment != null) {
+                cardinality += ParallelBits.cardinality(segment);
+            }
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        for (long[] segment : segments) {
+            if (!isZero(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Performs a logical OR of this bit vector with the given one of the same size.
+     *
+     * @param other the other bit vector
+     */
+    public void or(SegmentedBitSet other) {
+        orAll(Collections.singletonList(other));
+    }
+
+    /**
+     * Performs a logical OR of this bit vector with all given ones of the same size in a single pass.
+     *
+     * @param others the other bit vectors
+     */
+    public void orAll(List<SegmentedBitSet> others) {
+        others.forEach(other -> checkSize(other.size));
+        for (int s = 0; s < segments.length; s++) {
+            int segment = s;
+            List<long[]> sources = others.stream().map(other -> other.segments[segment]).filter(source -> source != null)
+                .collect(Collectors.toList());
+            if (sources.isEmpty()) {
+                continue;
+            }
+            if (segments[s] == null) {
+                segments[s] = new long[segmentWords(s)];
+            }
+            ParallelBits.or(segments[s], sources);
+        }
+    }
+
+    /**
+     * Performs a logical AND of this bit vector with the given one of the same size.
+     *
+     * @param other the other bit vector
+     */
+    public void and(SegmentedBitSet other) {
+        checkSize(other.size);
+        for (int s = 0; s < segments.length; s++) {
+            long[] source = other.segments[s];
+            if (source == null) {
+                segments[s] = null;
+            } else if (segments[s] != null) {
+                ParallelBits.and(segments[s], Collections.singletonList(source));
+            }
+        }
+    }
+
+    /**
+     * Converts this bit vector into a {@link BitSet}.
+     *
+     * @return a new BitSet with the same bits
+     * @throws UnsupportedOperationException if the size exceeds {@link Integer#MAX_VALUE}
+     */
+    public BitSet toBitSet() {
+        if (size > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("A BitSet cannot hold " + size + " bits.");
+        }
+        long[] words = new long[(int) ((size + 63) >>> 6)];
+        for (int s = 0; s < segments.length; s++) {
+            if (segments[s] != null) {
+                System.arraycopy(segments[s], 0, words, s * SEGMENT_WORDS, segments[s].length);
+            }
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Creates a bit vector from the given {@link BitSet}.
+     *
+     * @param bits the bits to copy
+     * @param size the size of the created bit vector
+     * @return a new SegmentedBitSet with the same bits
+     */
+    public static SegmentedBitSet valueOf(BitSet bits, long size) {
+        SegmentedBitSet result = new SegmentedBitSet(size);
+        for (int i = bits.nextSetBit(0); i >= 0 && i < size; i = bits.nextSetBit(i + 1)) {
+            result.set(i);
+        }
+        return result;
+    }
+
+    @Override
+    public SegmentedBitSet clone() {
+        SegmentedBitSet o;
+        try {
+            o = (SegmentedBitSet) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException("Cloning failed.");
+        }
+        o.segments = new long[segments.length][];
+        for (int s = 0; s < segments.length; s++) {
+            if (segments[s] != null) {
+                o.segments[s] = segments[s].clone();
+            }
+        }
+        return o;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SegmentedBitSet)) {
+            return false;
+        }
+
+        SegmentedBitSet that = (SegmentedBitSet) o;
+        if (size != that.size) {
+            return false;
+        }
+        for (int s = 0; s < segments.length; s++) {
+            long[] a = segments[s];
+            long[] b = that.segments[s];
+            if (a == null ? !isZero(b) : b == null ? !isZero(a) : !Arrays.equals(a, b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = 1234;
+        for (int s = 0; s < segments.length; s++) {
+            if (segments[s] != null) {
+                for (int i = 0; i < segments[s].length; i++) {
+                    h ^= segments[s][i] * ((long) s * SEGMENT_WORDS + i + 1);
+                }
+            }
+        }
+        return (int) ((h >> 32) ^ h);
+    }
+
+    /**
+     * Writes the bits to the given stream in the byte order of {@link BitSet#toByteArray()}, padded to whole words.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] chunk = new byte[1 << 13];
+        int length = 0;
+        for (int s = 0; s < segments.length; s++) {
+            long[] segment = segments[s];
+            for (int i = 0, words = segmentWords(s); i < words; i++) {
+                long word = segment == null ? 0 : segment[i];
+                for (int shift = 0; shift < Long.SIZE; shift += 8) {
+                    chunk[length++] = (byte) (word >>> shift);
+                }
+                if (length == chunk.length) {
+                    out.write(chunk);
+                    length = 0;
+                }
+            }
+        }
+        out.write(chunk, 0, length);
+    }
+
+    private static boolean isZero(long[] segment) {
+        if (segment != null) {
+            for (long word : segment) {
+                if (word != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int segmentWords(int s) {
+        long remainingBits = size - ((long) s << SEGMENT_BITS_LOG);
+        return (int) Math.min(SEGMENT_WORDS, (remainingBits + 63) >>> 6);
+    }
+
+    private void checkSize(long otherSize) {
+        if (otherSize != size) {
+            throw new IllegalArgumentException("Sizes differ: " + size + " and " + otherSize);
+        }
+    }
+
+    private static int segment(long index) {
+        return (int) (index >>> SEGMENT_BITS_LOG);
+    }
+
+    private static int word(long index) {
+        return (int) (index >>> 6) & SEGMENT_WORD_MASK;
+    }
+}
@@ -0,0 +1,269 @@
+package orestes.bloomfilter.memory;
+
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A counting Bloom filter whose counters are guarded by a fixed number of locks instead of a single monitor. The
+ * counters are packed like in {@link CountingBloomFilterPacked} and the words of the counter array are assigned to the
+ * stripes round-robin, so that no word is shared by two stripes. An update of an element only locks the stripes its
+ * positions fall into, acquired in ascending order to rule out deadlocks, and is therefore atomic with respect to other
+ * updates while updates of unrelated elements proceed in parallel. The binary Bloom filter is a {@link
+ * ConcurrentBloomFilterMemory}, so membership tests do not lock at all.
+ * <p>
+ * Bulk operations like {@link #clear()} and {@link #clone()} acquire all stripes. The number of stripes is set through
+ * {@link FilterBuilder#concurrencyLevel(int)} and rounded up to a power of two.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class StripedCountingBloomFilterMemory<T> extends CountingBloomFilterPacked<T> {
+    private static final long serialVersionUID = -1867358364640434102L;
+    /**
+     * The number of stripes used if the configuration does not specify a concurrency level.
+     */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final int MAX_CONCURRENCY_LEVEL = 1 << 16;
+    private ReentrantLock[] locks;
+    private transient ThreadLocal<int[]> stripes;
+
+    public StripedCountingBloomFilterMemory(FilterBuilder config) {
+        super(config);
+        this.filter = new ConcurrentBloomFilterMemory<>(config.clone());
+        int level = config.concurrencyLevel() > 0 ? config.concurrencyLevel() : DEFAULT_CONCURRENCY_LEVEL;
+        int count = 1;
+        while (count < level && count < MAX_CONCURRENCY_LEVEL) {
+            count <<= 1;
+        }
+        this.locks = createLocks(count);
+    }
+
+    private static ReentrantLock[] createLocks(int count) {
+        ReentrantLock[] locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    /**
+     * @return the number of lock stripes
+     */
+    public int getConcurrencyLevel() {
+        return locks.length;
+    }
+
+    @Override
+    public long addAndEstimateCountRaw(byte[] element) {
+        int[] positions = filter.hashIntoScratch(element);
+        int locked = lock(positions);
+        try {
+            long min = Long.MAX_VALUE;
+            for (int position : positions) {
+                filter.setBit(position, true);
+                min = Math.min(min, increment(position));
+            }
+            return min;
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    @Override
+    public long removeAndEstimateCountRaw(byte[] element) {
+        int[] positions = filter.hashIntoScratch(element);
+        int locked = lock(positions);
+        try {
+            for (int position : positions) {
+                if (count(position) == 0) {
+                    return 0;
+                }
+            }
+
+            long min = Long.MAX_VALUE;
+            for (int position : positions) {
+                long count = decrement(position);
+                if (count == 0) {
+                    filter.setBit(position, false);
+                }
+                min = Math.min(min, count);
+            }
+            return min;
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    @Override
+    public long getEstimatedCount(T element) {
+        int[] positions = filter.hashIntoScratch(toBytes(element));
+        int locked = lock(positions);
+        try {
+            long min = Long.MAX_VALUE;
+            for (int position : positions) {
+                min = Math.min(min, count(position));
+            }
+            return min;
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Locks the distinct stripes of the given positions in ascending order. The stripes are kept in a buffer of the
+     * calling thread, which stays valid until the matching {@link #unlock(int)}.
+     *
+     * @param positions the positions of an element
+     * @return the number of locked stripes
+     */
+    private int lock(int[] positions) {
+        int[] acquired = stripeScratch(positions.length);
+        int mask = locks.length - 1;
+        for (int i = 0; i < positions.length; i++) {
+            acquired[i] = word(positions[i]) & mask;
+        }
+        Arrays.sort(acquired, 0, positions.length);
+        int count = 0;
+        for (int i = 0; i < positions.length; i++) {
+            if (count == 0 || acquired[count - 1] != acquired[i]) {
+                acquired[count++] = acquired[i];
+                locks[acquired[i]].lock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Unlocks the stripes acquired by the preceding {@link #lock(int[])} of the calling thread in reverse order.
+     *
+     * @param count the number of locked stripes
+     */
+    private void unlock(int count) {
+        int[] acquired = stripes.get();
+        for (int i = count - 1; i >= 0; i--) {
+            locks[acquired[i]].unlock();
+        }
+    }
+
+    private int[] stripeScratch(int length) {
+        ThreadLocal<int[]> local = stripes;
+        if (local == null) {
+            local = ThreadLocal.withInitial(() -> new int[config.hashes()]);
+            stripes = local;
+        }
+        int[] acquired = local.get();
+        if (acquired.length < length) {
+            acquired = new int[length];
+            local.set(acquired);
+        }
+        return acquired;
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> getCountMap() {
+        lockAll();
+        try {
+            return super.getCountMap();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public BitSet getBitSet() {
+        return filter.getBitSet();
+    }
+
+    @Override
+    public void clear() {
+        lockAll();
+        try {
+            super.clear();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public boolean union(BloomFilter<T> other) {
+        lockAll();
+        try {
+            return super.union(other);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public boolean intersect(BloomFilter<T> other) {
+        lockAll();
+        try {
+            return super.intersect(other);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void migrateFrom(BloomFilter<T> source) {
+        lockAll();
+        try {
+            super.migrateFrom(source);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public StripedCountingBloomFilterMemory<T> clone() {
+        lockAll();
+        try {
+            StripedCountingBloomFilterMemory<T> o = (StripedCountingBloomFilterMemory<T>) super.clone();
+            o.locks = createLocks(locks.length);
+            o.stripes = null;
+            return o;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (!(o instanceof StripedCountingBloomFilterMemory)) { return false; }
+        lockAll();
+        try {
+            return super.equals(o);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        lockAll();
+        try {
+            return super.hashCode();
+        } finally {
+            unlockAll();
+        }
+    }
+
+}
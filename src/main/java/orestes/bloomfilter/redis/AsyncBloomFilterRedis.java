@@ -0,0 +1,103 @@
+package orestes.bloomfilter.redis;
+
+import orestes.bloomfilter.redis.helper.RedisPipeliner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A non-blocking view of a Redis-backed Bloom filter. Instead of borrowing a connection and waiting for the reply of
+ * Redis, every operation is handed to a {@link RedisPipeliner}, which pipelines the operations of all concurrent
+ * callers onto a few dedicated connections, see {@link orestes.bloomfilter.FilterBuilder#redisAsyncConnections(int)}.
+ * Obtain it from {@link BloomFilterRedis#async()} or {@link CountingBloomFilterRedis#async()}; it is shut down when the
+ * filter is removed.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class AsyncBloomFilterRedis<T> {
+    protected final PipelinedBloomFilter<T> filter;
+    protected final RedisPipeliner pipeliner;
+
+    public AsyncBloomFilterRedis(PipelinedBloomFilter<T> filter, RedisPipeliner pipeliner) {
+        this.filter = filter;
+        this.pipeliner = pipeliner;
+    }
+
+    /**
+     * Adds an element, see {@link orestes.bloomfilter.BloomFilter#add(Object)}.
+     *
+     * @param element the element to add
+     * @return a future completed with <code>true</code> if the element was added
+     */
+    public CompletableFuture<Boolean> add(T element) {
+        return addAll(Collections.singletonList(element)).thenApply(added -> added.get(0));
+    }
+
+    /**
+     * Adds several elements, see {@link orestes.bloomfilter.BloomFilter#addAll(Collection)}.
+     *
+     * @param elements the elements to add
+     * @return a future completed with whether each element was added
+     */
+    public CompletableFuture<List<Boolean>> addAll(Collection<T> elements) {
+        int[] positions = hashAll(elements);
+        return pipeliner.submit(p -> filter.addAll(p, positions)).thenApply(AsyncBloomFilterRedis::toList);
+    }
+
+    /**
+     * Tests an element, see {@link orestes.bloomfilter.BloomFilter#contains(Object)}.
+     *
+     * @param element the element to test
+     * @return a future completed with <code>true</code> if the element is contained
+     */
+    public CompletableFuture<Boolean> contains(T element) {
+        return contains(Collections.singletonList(element)).thenApply(contained -> contained.get(0));
+    }
+
+    /**
+     * Tests several elements, see {@link orestes.bloomfilter.BloomFilter#contains(Collection)}.
+     *
+     * @param elements the elements to test
+     * @return a future completed with whether each element is contained
+     */
+    public CompletableFuture<List<Boolean>> contains(Collection<T> elements) {
+        int[] positions = hashAll(elements);
+        return pipeliner.submit(p -> filter.contains(p, positions)).thenApply(AsyncBloomFilterRedis::toList);
+    }
+
+    /**
+     * @return the underlying Bloom filter
+     */
+    public PipelinedBloomFilter<T> getFilter() {
+        return filter;
+    }
+
+    /**
+     * Stops pipelining and fails all pending operations.
+     */
+    public void shutdown() {
+        pipeliner.shutdown();
+    }
+
+    protected int[] hashAll(Collection<T> elements) {
+        int k = filter.getHashes();
+        int[] positions = new int[elements.size() * k];
+        int i = 0;
+        for (T element : elements) {
+            System.arraycopy(filter.hash(filter.toBytes(element)), 0, positions, i, k);
+            i += k;
+        }
+        return positions;
+    }
+
+    private static List<Boolean> toList(boolean[] results) {
+        List<Boolean> list = new ArrayList<>(results.length);
+        for (boolean result : results) {
+            list.add(result);
+        }
+        return list;
+    }
+}
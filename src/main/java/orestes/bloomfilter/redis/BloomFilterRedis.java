@@ -4,35 +4,56 @@ import orestes.bloomfilter.BloomFilter;
 import orestes.bloomfilter.FilterBuilder;
 import orestes.bloomfilter.memory.BloomFilterMemory;
 import orestes.bloomfilter.redis.helper.RedisKeys;
+import orestes.bloomfilter.redis.helper.RedisPipeliner;
 import orestes.bloomfilter.redis.helper.RedisPool;
+import redis.clients.jedis.BitOP;
+import redis.clients.jedis.Pipeline;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * A persistent bloom filter backed by the Redis key value store. Internally it operates on the <i>setbit</i> and
  * <i>getbit</i> operations of Redis. If you need to remove elements from the bloom filter, please use a counting bloom
  * filter, e.g. {@link CountingBloomFilterRedis}. The performance of this data structure is very good, as operations are
  * grouped into fast transactions, minimizing the network overhead of all bloom filter operations to one round trip to
- * Redis.
+ * Redis. With {@link FilterBuilder#redisScripted(boolean)} or {@link FilterBuilder#redisBitfield(boolean)}, adding and
+ * querying run as a Lua script or a <i>BITFIELD</i> command instead, which additionally saves Redis from parsing one
+ * command per bit. For non-blocking access, see {@link #async()}. With {@link FilterBuilder#redisCoalescing(long,
+ * TimeUnit, int)}, concurrent single-element calls share pipelines instead of taking one round trip each.
  *
  * @param <T> The type of the containing elements
  */
-public class BloomFilterRedis<T> implements BloomFilter<T> {
+public class BloomFilterRedis<T> implements PipelinedBloomFilter<T> {
+    private final RedisKeys keys;
     private final RedisPool pool;
     private final RedisBitSet bloom;
     private final FilterBuilder config;
+    private final int asyncConnections;
+    private final boolean coalescing;
+    private final long coalesceLinger;
+    private final int coalesceMaxBatch;
+    private RedisPipeliner pipeliner;
+    private AsyncBloomFilterRedis<T> async;
 
     public BloomFilterRedis(FilterBuilder builder) {
         FilterBuilder updateBuilder = builder.clone();
         builder.complete();
 
-        RedisKeys keys = new RedisKeys(builder.name());
-        this.pool = builder.pool();
-        this.bloom = new RedisBitSet(pool, keys.BITS_KEY, builder.size());
+        this.keys = new RedisKeys(builder.name(), builder.redisCluster());
+        this.pool = builder.pool().forKey(keys.CONFIG_KEY);
+        this.bloom = new RedisBitSet(pool, keys.BITS_KEY, builder.size(), builder.redisBitSetMode());
         this.config = keys.persistConfig(pool, updateBuilder);
+        this.asyncConnections = builder.redisAsyncConnections();
+        this.coalescing = builder.redisCoalescing();
+        this.coalesceLinger = builder.redisCoalesceLinger();
+        this.coalesceMaxBatch = builder.redisCoalesceMaxBatch();
         if (builder.overwriteIfExists())
             this.clear();
     }
@@ -44,63 +65,108 @@ public class BloomFilterRedis<T> implements BloomFilter<T> {
 
     @Override
     public boolean addRaw(byte[] element) {
+        if (coalescing) {
+            int[] positions = hash(element);
+            return pipeliner().execute(p -> first(addAll(p, positions)));
+        }
         return bloom.setAll(hash(element));
     }
 
     @Override
     public List<Boolean> addAll(Collection<T> elements) {
-        List<Boolean> added = new ArrayList<>();
-        List<Boolean> results = pool.transactionallyDo(p -> {
-            for (T value : elements) {
-                for (int position : hash(toBytes(value))) {
-                    bloom.set(p, position, true);
-                }
-            }
-        });
-
-        //For each value check, if any bits were set to one
-        boolean wasAdded = false;
-        int numProcessed = 0;
-        for (Boolean item : results) {
-            if (!item) wasAdded = true;
-            if ((numProcessed + 1) % config().hashes() == 0) {
-                added.add(wasAdded);
-                wasAdded = false;
-            }
-            numProcessed++;
-        }
-        return added;
+        return toList(bloom.setAll(config().hashes(), hashAll(elements)));
+    }
+
+    @Override
+    public boolean[] addAll(byte[][] elements, boolean[] results) {
+        boolean[] added = bloom.setAll(config().hashes(), hashAll(elements));
+        System.arraycopy(added, 0, results, 0, added.length);
+        return results;
+    }
+
+    @Override
+    public boolean[] contains(byte[][] elements, boolean[] results) {
+        boolean[] contained = bloom.isAllSet(config().hashes(), hashAll(elements));
+        System.arraycopy(contained, 0, results, 0, contained.length);
+        return results;
     }
 
     public List<Boolean> contains(Collection<T> elements) {
-        List<Boolean> contains = new ArrayList<>();
-        List<Boolean> results = pool.transactionallyDo(p -> {
-            for (T value : elements) {
-                for (int position : hash(toBytes(value))) {
-                    bloom.get(p, position);
-                }
-            }
-        });
-
-        //For each value check, if all bits in ranges of #hashes bits are set
-        boolean isPresent = true;
-        int numProcessed = 0;
-        for (Boolean item : results) {
-            if (!item) isPresent = false;
-            if ((numProcessed + 1) % config().hashes() == 0) {
-                contains.add(isPresent);
-                isPresent = true;
-            }
-            numProcessed++;
+        return toList(bloom.isAllSet(config().hashes(), hashAll(elements)));
+    }
+
+    @Override
+    public Supplier<boolean[]> addAll(Pipeline p, int[] positions) {
+        return bloom.setAll(p, config().hashes(), positions);
+    }
+
+    @Override
+    public Supplier<boolean[]> contains(Pipeline p, int[] positions) {
+        return bloom.isAllSet(p, config().hashes(), positions);
+    }
+
+    /**
+     * Returns the non-blocking view of this Bloom filter, which is created on first use.
+     *
+     * @return the asynchronous API of this Bloom filter
+     */
+    public synchronized AsyncBloomFilterRedis<T> async() {
+        if (async == null) {
+            async = new AsyncBloomFilterRedis<>(this, pipeliner());
+        }
+        return async;
+    }
+
+    private synchronized RedisPipeliner pipeliner() {
+        if (pipeliner == null) {
+            pipeliner = coalescing
+                ? new RedisPipeliner(pool, asyncConnections, keys.CONFIG_KEY, coalesceLinger, coalesceMaxBatch)
+                : new RedisPipeliner(pool, asyncConnections, keys.CONFIG_KEY);
+        }
+        return pipeliner;
+    }
+
+    private int[] hashAll(Collection<T> elements) {
+        int k = config().hashes();
+        int[] positions = new int[elements.size() * k];
+        int i = 0;
+        for (T element : elements) {
+            System.arraycopy(hash(toBytes(element)), 0, positions, i, k);
+            i += k;
+        }
+        return positions;
+    }
+
+    private int[] hashAll(byte[][] elements) {
+        int k = config().hashes();
+        int[] positions = new int[elements.length * k];
+        for (int i = 0; i < elements.length; i++) {
+            System.arraycopy(hash(elements[i]), 0, positions, i * k, k);
+        }
+        return positions;
+    }
+
+    private static List<Boolean> toList(boolean[] results) {
+        List<Boolean> list = new ArrayList<>(results.length);
+        for (boolean result : results) {
+            list.add(result);
         }
-        return contains;
+        return list;
     }
 
     @Override
     public boolean contains(byte[] element) {
+        if (coalescing) {
+            int[] positions = hash(element);
+            return pipeliner().execute(p -> first(contains(p, positions)));
+        }
         return bloom.isAllSet(hash(element));
     }
 
+    private static Supplier<Boolean> first(Supplier<boolean[]> results) {
+        return () -> results.get()[0];
+    }
+
     @Override
     public void clear() {
         bloom.clear();
@@ -108,8 +174,15 @@ public class BloomFilterRedis<T> implements BloomFilter<T> {
 
     @Override
     public void remove() {
+        synchronized (this) {
+            if (pipeliner != null) {
+                pipeliner.shutdown();
+                pipeliner = null;
+                async = null;
+            }
+        }
         clear();
-        pool.safelyDo(jedis -> jedis.del(config().name()));
+        pool.safelyDo(jedis -> jedis.del(keys.CONFIG_KEY));
         pool.destroy();
     }
 
@@ -118,6 +191,11 @@ public class BloomFilterRedis<T> implements BloomFilter<T> {
         return bloom.asBitSet();
     }
 
+    @Override
+    public void writeBits(OutputStream out) throws IOException {
+        bloom.writeBits(out);
+    }
+
     public BloomFilterMemory<T> toMemoryFilter() {
         BloomFilterMemory<T> filter = new BloomFilterMemory<>(config().clone());
         filter.setBitSet(getBitSet());
@@ -131,14 +209,36 @@ public class BloomFilterRedis<T> implements BloomFilter<T> {
 
     @Override
     public boolean union(BloomFilter<T> other) {
-        //TODO
-        throw new UnsupportedOperationException();
+        return combine(other, BitOP.OR);
     }
 
     @Override
     public boolean intersect(BloomFilter<T> other) {
-        //TODO
-        throw new UnsupportedOperationException();
+        return combine(other, BitOP.AND);
+    }
+
+    /**
+     * Combines the bits of a compatible Bloom filter into this one. If the other Bloom filter is stored next to this
+     * one, see {@link RedisUtils#colocated(PipelinedBloomFilter, String, PipelinedBloomFilter, String)}, this is a
+     * single <i>BITOP</i> on the server. Otherwise, its bits are read and uploaded.
+     *
+     * @param other the other Bloom filter
+     * @param op    the operation combining the bits
+     * @return <code>true</code> if the other Bloom filter is compatible and this Bloom filter was updated
+     */
+    private boolean combine(BloomFilter<T> other, BitOP op) {
+        if (!compatible(other)) {
+            return false;
+        }
+        if (other instanceof PipelinedBloomFilter) {
+            String bits = ((PipelinedBloomFilter<T>) other).getRedisBitSet().getRedisKey();
+            if (RedisUtils.colocated(this, keys.BITS_KEY, (PipelinedBloomFilter<T>) other, bits)) {
+                bloom.combine(op, bits);
+                return true;
+            }
+        }
+        bloom.combine(op, other.getBitSet());
+        return true;
     }
 
     @Override
@@ -151,10 +251,16 @@ public class BloomFilterRedis<T> implements BloomFilter<T> {
         return BloomFilter.population(bloom, config());
     }
 
+    @Override
+    public RedisPool getRedisPool() {
+        return pool;
+    }
+
     /**
      * Returns the underlying RedisBitSet implementation of this RedisBloomFilter
      * @return The underlying RedisBitSet
      */
+    @Override
     public RedisBitSet getRedisBitSet() {
         return bloom;
     }
@@ -6,39 +6,54 @@ import orestes.bloomfilter.FilterBuilder;
 import orestes.bloomfilter.MigratableBloomFilter;
 import orestes.bloomfilter.memory.CountingBloomFilterMemory;
 import orestes.bloomfilter.redis.helper.RedisKeys;
+import orestes.bloomfilter.redis.helper.RedisPipeliner;
 import orestes.bloomfilter.redis.helper.RedisPool;
+import orestes.bloomfilter.redis.helper.RedisScript;
+import redis.clients.jedis.BitOP;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
-import redis.clients.jedis.PipelineBase;
-import redis.clients.jedis.Transaction;
+import redis.clients.jedis.Response;
+import redis.clients.util.SafeEncoder;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
-import java.util.stream.IntStream;
+import java.util.function.Supplier;
 
 import static java.util.stream.Collectors.toList;
 
 /**
  * Uses regular key-value pairs for counting instead of a bitarray. This introduces a space overhead but allows
  * distribution of keys, thus increasing throughput. Pipelining can also be leveraged in this approach to minimize
- * network latency.
+ * network latency. For non-blocking access, see {@link #async()}.
  *
  * @param <T> The type of the containing elements
  */
-public class CountingBloomFilterRedis<T> implements CountingBloomFilter<T>, MigratableBloomFilter<T> {
+public class CountingBloomFilterRedis<T> implements CountingBloomFilter<T>, MigratableBloomFilter<T>, PipelinedBloomFilter<T> {
+    /**
+     * The milliseconds after which temporary copies of another filter expire, should the client fail to merge them.
+     */
+    static final long TEMPORARY_TTL = 60_000;
     protected final RedisKeys keys;
     protected final RedisPool pool;
     protected final RedisBitSet bloom;
     protected final FilterBuilder config;
-
+    private final RedisScript removeScript;
+    private final RedisScript mergeScript;
+    private final int asyncConnections;
+    private AsyncBloomFilterRedis<T> async;
 
     public CountingBloomFilterRedis(FilterBuilder builder) {
         FilterBuilder updateBuilder = builder.clone();
         builder.complete();
 
-        this.keys = new RedisKeys(builder.name());
-        this.pool = builder.pool();
-        this.bloom = new RedisBitSet(pool, keys.BITS_KEY, builder.size());
+        this.keys = new RedisKeys(builder.name(), builder.redisCluster());
+        this.pool = builder.pool().forKey(keys.CONFIG_KEY);
+        this.bloom = new RedisBitSet(pool, keys.BITS_KEY, builder.size(), builder.redisBitSetMode());
         this.config = keys.persistConfig(pool, updateBuilder);
+        this.removeScript = new RedisScript(pool, CountingBloomFilterRedis.class, "remove.lua");
+        this.mergeScript = new RedisScript(pool, CountingBloomFilterRedis.class, "merge.lua");
+        this.asyncConnections = builder.redisAsyncConnections();
         if (builder.overwriteIfExists()) {
             this.clear();
         }
@@ -107,52 +122,107 @@ public class CountingBloomFilterRedis<T> implements CountingBloomFilter<T>, Migr
         return mins;
     }
 
-    //TODO removeALL
+    @Override
+    public Supplier<boolean[]> addAll(Pipeline p, int[] positions) {
+        p.multi();
+        for (int position : positions) {
+            bloom.set(p, position, true);
+        }
+        for (int position : positions) {
+            p.hincrBy(keys.COUNTS_KEY.getBytes(), RedisUtils.encodeKey(position), 1);
+        }
+        Response<List<Object>> exec = p.exec();
+        return () -> {
+            // Skip the replies of the set-bit calls, an element was added if its smallest count is one
+            List<Object> counts = exec.get().subList(positions.length, 2 * positions.length);
+            int k = config().hashes();
+            boolean[] added = new boolean[positions.length / k];
+            for (int i = 0; i < added.length; i++) {
+                added[i] = counts.subList(i * k, (i + 1) * k).stream().mapToLong(c -> (Long) c).min().getAsLong() == 1;
+            }
+            return added;
+        };
+    }
+
+    @Override
+    public Supplier<boolean[]> contains(Pipeline p, int[] positions) {
+        return bloom.isAllSet(p, config().hashes(), positions);
+    }
+
+    /**
+     * Returns the non-blocking view of this Bloom filter, which is created on first use.
+     *
+     * @return the asynchronous API of this Bloom filter
+     */
+    public synchronized AsyncBloomFilterRedis<T> async() {
+        if (async == null) {
+            async = createAsync(new RedisPipeliner(pool, asyncConnections, keys.CONFIG_KEY));
+        }
+        return async;
+    }
 
+    /**
+     * Creates the non-blocking view of this Bloom filter.
+     *
+     * @param pipeliner the pipeliner to use
+     * @return the asynchronous API of this Bloom filter
+     */
+    protected AsyncBloomFilterRedis<T> createAsync(RedisPipeliner pipeliner) {
+        return new AsyncBloomFilterRedis<>(this, pipeliner);
+    }
 
     @Override
     public boolean removeRaw(byte[] value) {
         return removeAndEstimateCountRaw(value) <= 0;
     }
 
+    /**
+     * Removes the element by atomically decrementing its counts and clearing the bits of counts dropping to zero in a
+     * Lua script, which takes a single round trip and never has to be retried.
+     *
+     * @param value the element to remove
+     * @return the estimated count of the element after the removal
+     */
     @Override
     public long removeAndEstimateCountRaw(byte[] value) {
-        try (Jedis jedis = pool.getResource()) {
-            while (true) {
-                // Forbid writing to counting Bloom filter in the meantime
-                jedis.watch(keys.COUNTS_KEY);
-
-                // Get all Bloom filter positions to decrement when removing the element
-                int[] positions = hash(value);
-
-                // Get the resulting counts in the CBF after the elements have been removed
-                Map<Integer, Long> posToCountMap = getCounts(jedis, positions);
-
-                // Decrement counts
-                HashMap<Integer, Integer> countMap = new HashMap<>(positions.length);
-                for (int position : positions) {
-                    countMap.compute(position, (k, v) -> (v == null) ? 1 : (v + 1));
-                }
-                posToCountMap.replaceAll((position, count) -> count - countMap.get(position));
-
-                // Start updating the CBF and FBF transactionally
-                Transaction tx = jedis.multi();
-
-                // Decrement counts in CBF
-                setCounts(tx, posToCountMap);
-
-                // Reset bits in BBF
-                updateBinaryBloomFilter(tx, posToCountMap);
-
-                // Commit transaction and return whether successful
-                boolean hasFailed = tx.exec().isEmpty();
+        List<Long> counts = decrement(hash(value));
+        return counts.stream().mapToLong(Long::longValue).min().orElse(0L);
+    }
 
-                if (!hasFailed) {
-                    //noinspection ConstantConditions
-                    return posToCountMap.values().stream().mapToLong(Long::valueOf).min().getAsLong();
-                }
-            }
+    /**
+     * Removes all elements with a single execution of the removal script.
+     *
+     * @param elements the elements to remove
+     * @return for each element whether it is not present after the removal
+     */
+    @Override
+    public List<Boolean> removeAll(Collection<T> elements) {
+        int k = config().hashes();
+        int[] positions = new int[elements.size() * k];
+        int i = 0;
+        for (T element : elements) {
+            System.arraycopy(hash(toBytes(element)), 0, positions, i, k);
+            i += k;
+        }
+        List<Long> counts = decrement(positions);
+        List<Boolean> removed = new ArrayList<>(elements.size());
+        for (int from = 0; from < counts.size(); from += k) {
+            removed.add(counts.subList(from, from + k).stream().mapToLong(Long::longValue).min().getAsLong() <= 0);
         }
+        return removed;
+    }
+
+    /**
+     * Decrements the counts of the given positions and clears the bits of counts dropping to zero.
+     *
+     * @param positions the positions to decrement
+     * @return the new counts in the order of the positions
+     */
+    @SuppressWarnings("unchecked")
+    private List<Long> decrement(int[] positions) {
+        return (List<Long>) pool.safelyReturn(jedis -> removeScript.eval(jedis,
+            Arrays.asList(SafeEncoder.encode(keys.COUNTS_KEY), SafeEncoder.encode(keys.BITS_KEY)),
+            Collections.singletonList(RedisUtils.encodePacked(positions))));
     }
 
     @Override
@@ -173,9 +243,15 @@ public class CountingBloomFilterRedis<T> implements CountingBloomFilter<T>, Migr
 
     @Override
     public void remove() {
+        synchronized (this) {
+            if (async != null) {
+                async.shutdown();
+                async = null;
+            }
+        }
         clear();
         try (Jedis jedis = pool.getResource()) {
-            jedis.del(config().name());
+            jedis.del(keys.CONFIG_KEY);
         }
         pool.destroy();
     }
@@ -186,6 +262,7 @@ public class CountingBloomFilterRedis<T> implements CountingBloomFilter<T>, Migr
     }
 
 
+    @Override
     public RedisBitSet getRedisBitSet() {
         return bloom;
     }
@@ -195,6 +272,11 @@ public class CountingBloomFilterRedis<T> implements CountingBloomFilter<T>, Migr
         return bloom.asBitSet();
     }
 
+    @Override
+    public void writeBits(OutputStream out) throws IOException {
+        bloom.writeBits(out);
+    }
+
     public byte[] getBytes() {
         return bloom.toByteArray();
     }
@@ -215,16 +297,100 @@ public class CountingBloomFilterRedis<T> implements CountingBloomFilter<T>, Migr
         return new CountingBloomFilterRedis<>(config().clone());
     }
 
+    /**
+     * Adds the counts of a compatible counting Bloom filter to the counts of this one.
+     *
+     * @param other the other counting Bloom filter
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
     @Override
     public boolean union(BloomFilter<T> other) {
-        //TODO
-        throw new UnsupportedOperationException();
+        return merge(other, BitOP.OR);
     }
 
+    /**
+     * Replaces every count by the minimum of itself and the respective count of a compatible counting Bloom filter.
+     *
+     * @param other the other counting Bloom filter
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
     @Override
     public boolean intersect(BloomFilter<T> other) {
-        //TODO
-        throw new UnsupportedOperationException();
+        return merge(other, BitOP.AND);
+    }
+
+    /**
+     * Merges the counts and bits of another counting Bloom filter with a Lua script. If the other Bloom filter is
+     * stored next to this one, see {@link RedisUtils#colocated(PipelinedBloomFilter, String, PipelinedBloomFilter,
+     * String)}, the script reads its keys directly. Otherwise, its counts and bits are uploaded to temporary keys
+     * first, see {@link #mergeCopies(Jedis, RedisScript, RedisKeys, Map, BitSet, BitOP)}.
+     *
+     * @param other the other Bloom filter
+     * @param op    the operation combining the bits
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
+    private boolean merge(BloomFilter<T> other, BitOP op) {
+        if (!(other instanceof CountingBloomFilter) || !compatible(other)) {
+            return false;
+        }
+        if (other instanceof CountingBloomFilterRedis) {
+            RedisKeys otherKeys = ((CountingBloomFilterRedis<T>) other).getRedisKeys();
+            if (RedisUtils.colocated(this, keys.COUNTS_KEY, (CountingBloomFilterRedis<T>) other, otherKeys.COUNTS_KEY)) {
+                pool.safelyDo(jedis -> mergeScript.eval(jedis,
+                    encode(keys.COUNTS_KEY, keys.BITS_KEY, otherKeys.COUNTS_KEY, otherKeys.BITS_KEY),
+                    encode(op.name(), "0")));
+                return true;
+            }
+        }
+
+        Map<Integer, Long> counts = ((CountingBloomFilter<T>) other).getCountMap();
+        BitSet bits = other.getBitSet();
+        pool.safelyDo(jedis -> mergeCopies(jedis, mergeScript, keys, counts, bits, op));
+        return true;
+    }
+
+    /**
+     * Uploads counts and bits to temporary keys next to the given ones and merges them with <i>merge.lua</i>, which
+     * deletes them. The copies expire after {@value #TEMPORARY_TTL} ms in case the client fails before the script ran,
+     * and are deleted right away if the script fails.
+     *
+     * @param jedis       the connection to the instance holding the keys
+     * @param mergeScript the merge script loaded on that instance
+     * @param keys        the keys of the counts and bits to merge into
+     * @param counts      the counts to merge
+     * @param bits        the bits to merge
+     * @param op          the operation combining the bits
+     */
+    static void mergeCopies(Jedis jedis, RedisScript mergeScript, RedisKeys keys, Map<Integer, Long> counts, BitSet bits,
+                            BitOP op) {
+        String suffix = ":tmp:" + UUID.randomUUID();
+        String countsCopy = keys.COUNTS_KEY + suffix;
+        String bitsCopy = keys.BITS_KEY + suffix;
+        Pipeline p = jedis.pipelined();
+        if (!counts.isEmpty()) {
+            p.hmset(countsCopy.getBytes(), RedisUtils.encodeMap(counts));
+            p.pexpire(countsCopy, TEMPORARY_TTL);
+        }
+        p.set(SafeEncoder.encode(bitsCopy), RedisBitSet.toByteArrayReverse(bits));
+        p.pexpire(bitsCopy, TEMPORARY_TTL);
+        p.sync();
+        try {
+            mergeScript.eval(jedis, encode(keys.COUNTS_KEY, keys.BITS_KEY, countsCopy, bitsCopy), encode(op.name(), "1"));
+        } catch (RuntimeException e) {
+            try {
+                jedis.del(countsCopy, bitsCopy);
+            } catch (RuntimeException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+    }
+
+    static List<byte[]> encode(String... values) {
+        return Arrays.stream(values).map(SafeEncoder::encode).collect(toList());
     }
 
     @Override
@@ -237,6 +403,7 @@ public class CountingBloomFilterRedis<T> implements CountingBloomFilter<T>, Migr
         return BloomFilter.population(bloom, config());
     }
 
+    @Override
     public RedisPool getRedisPool() {
         return pool;
     }
@@ -282,47 +449,6 @@ public class CountingBloomFilterRedis<T> implements CountingBloomFilter<T>, Migr
         }, keys.BITS_KEY, keys.COUNTS_KEY);
     }
 
-    /**
-     * Get the counts in the CBF.
-     *
-     * @param jedis     A Jedis instance to use.
-     * @param positions The positions to retrieve.
-     * @return A map returning the count for each position.
-     */
-    private Map<Integer, Long> getCounts(Jedis jedis, int... positions) {
-        // Get the corresponding keys for the positions in Redis
-        byte[][] keysToDec = RedisUtils.encodeKey(positions);
-
-        // Get the resulting counts in the CBF after the elements have been removed
-        List<byte[]> values = jedis.hmget(keys.COUNTS_KEY.getBytes(), keysToDec);
-        return IntStream.range(0, positions.length)
-            .collect(
-                HashMap::new,
-                (m, i) -> m.put(positions[i], (values.get(i) == null) ? 0L : RedisUtils.decodeValue(values.get(i))),
-                Map::putAll
-            );
-    }
-
-    /**
-     * Sets the counts in the CBF at the given positions by a map.
-     *
-     * @param p      The Jedis pipeline to use.
-     * @param counts The new counts to set.
-     */
-    private void setCounts(PipelineBase p, Map<Integer, Long> counts) {
-        p.hmset(keys.COUNTS_KEY.getBytes(), RedisUtils.encodeMap(counts));
-    }
-
-    /**
-     * Updates the binary Bloom filter by new counts.
-     *
-     * @param p      The Jedis pipeline to use.
-     * @param counts The new counts to update the filter from.
-     */
-    private void updateBinaryBloomFilter(PipelineBase p, Map<Integer, Long> counts) {
-        counts.forEach((position, count) -> bloom.set(p, position, count > 0));
-    }
-
     /**
      * Sets the value at the given position.
      *
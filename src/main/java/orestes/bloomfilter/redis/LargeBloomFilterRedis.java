@@ -0,0 +1,214 @@
+package orestes.bloomfilter.redis;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.redis.helper.RedisKeys;
+import orestes.bloomfilter.redis.helper.RedisPool;
+import redis.clients.jedis.BitOP;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A persistent Bloom filter backed by Redis which is addressed by long positions and may thus hold more than {@link
+ * Integer#MAX_VALUE} bits. Since a Redis string holds at most 2^32 bits, the bits are split across several keys, see
+ * {@link SegmentedRedisBitSet}. The configured hash function has to support long positions, see {@link
+ * orestes.bloomfilter.HashProvider.HashMethod#Murmur3x64}, which is the default for sizes beyond the integer range.
+ * Other hash methods are rejected by {@link FilterBuilder#complete()}.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class LargeBloomFilterRedis<T> implements BloomFilter<T> {
+    private static final long serialVersionUID = -1126745390218473622L;
+    private final RedisKeys keys;
+    private final RedisPool pool;
+    private final SegmentedRedisBitSet bloom;
+    private final FilterBuilder config;
+
+    public LargeBloomFilterRedis(FilterBuilder builder) {
+        FilterBuilder updateBuilder = builder.clone();
+        builder.complete();
+
+        this.keys = new RedisKeys(builder.name(), builder.redisCluster());
+        this.pool = builder.pool().forKey(keys.CONFIG_KEY);
+        this.config = keys.persistConfig(pool, updateBuilder);
+        this.bloom = new SegmentedRedisBitSet(pool, keys.BITS_KEY, config.longSize());
+        if (builder.overwriteIfExists())
+            this.clear();
+    }
+
+    @Override
+    public FilterBuilder config() {
+        return config;
+    }
+
+    @Override
+    public boolean addRaw(byte[] element) {
+        return bloom.setAll(hashInto(element, new long[config.hashes()]));
+    }
+
+    @Override
+    public List<Boolean> addAll(Collection<T> elements) {
+        List<Boolean> added = new ArrayList<>();
+        long[] positions = new long[config.hashes()];
+        List<Boolean> results = pool.transactionallyDo(p -> {
+            for (T value : elements) {
+                for (long position : hashInto(toBytes(value), positions)) {
+                    bloom.set(p, position, true);
+                }
+            }
+        });
+
+        //For each value check, if any bits were set to one
+        boolean wasAdded = false;
+        int numProcessed = 0;
+        for (Boolean item : results) {
+            if (!item) wasAdded = true;
+            if ((numProcessed + 1) % config().hashes() == 0) {
+                added.add(wasAdded);
+                wasAdded = false;
+            }
+            numProcessed++;
+        }
+        return added;
+    }
+
+    @Override
+    public List<Boolean> contains(Collection<T> elements) {
+        List<Boolean> contains = new ArrayList<>();
+        long[] positions = new long[config.hashes()];
+        List<Boolean> results = pool.transactionallyDo(p -> {
+            for (T value : elements) {
+                for (long position : hashInto(toBytes(value), positions)) {
+                    bloom.get(p, position);
+                }
+            }
+        });
+
+        //For each value check, if all bits in ranges of #hashes bits are set
+        boolean isPresent = true;
+        int numProcessed = 0;
+        for (Boolean item : results) {
+            if (!item) isPresent = false;
+            if ((numProcessed + 1) % config().hashes() == 0) {
+                contains.add(isPresent);
+                isPresent = true;
+            }
+            numProcessed++;
+        }
+        return contains;
+    }
+
+    @Override
+    public boolean contains(byte[] element) {
+        return bloom.isAllSet(hashInto(element, new long[config.hashes()]));
+    }
+
+    @Override
+    public void clear() {
+        bloom.clear();
+    }
+
+    @Override
+    public void remove() {
+        clear();
+        pool.safelyDo(jedis -> jedis.del(keys.CONFIG_KEY));
+        pool.destroy();
+    }
+
+    /**
+     * Returns the bits as a regular BitSet, which is only possible for filters of at most {@link Integer#MAX_VALUE}
+     * bits.
+     *
+     * @return the underyling bit vector of the Bloom filter.
+     * @throws UnsupportedOperationException if the filter is too large for a BitSet
+     */
+    @Override
+    public BitSet getBitSet() {
+        return bloom.asBitSet();
+    }
+
+    @Override
+    public void writeBits(OutputStream out) throws IOException {
+        bloom.writeBits(out);
+    }
+
+    @Override
+    public BloomFilter<T> clone() {
+        return new LargeBloomFilterRedis<>(config.clone());
+    }
+
+    @Override
+    public boolean union(BloomFilter<T> other) {
+        return combine(other, BitOP.OR);
+    }
+
+    @Override
+    public boolean intersect(BloomFilter<T> other) {
+        return combine(other, BitOP.AND);
+    }
+
+    /**
+     * Combines the bits of a compatible Bloom filter into this one. If the other Bloom filter is a LargeBloomFilterRedis
+     * stored next to this one, this is one <i>BITOP</i> per key on the server. Otherwise, its bits are streamed through
+     * {@link BloomFilter#writeBits(OutputStream)} into temporary keys, which are combined per key and deleted.
+     *
+     * @param other the other Bloom filter
+     * @param op    the operation combining the bits
+     * @return <code>true</code> if the other Bloom filter is compatible and this Bloom filter was updated
+     */
+    private boolean combine(BloomFilter<T> other, BitOP op) {
+        if (!compatible(other)) {
+            return false;
+        }
+        if (other instanceof LargeBloomFilterRedis) {
+            LargeBloomFilterRedis<T> that = (LargeBloomFilterRedis<T>) other;
+            if (RedisUtils.colocated(pool, config.redisCluster(), keys.BITS_KEY, that.pool, that.keys.BITS_KEY)) {
+                bloom.combine(op, that.bloom);
+                return true;
+            }
+        }
+        SegmentedRedisBitSet upload = bloom.temporary();
+        try {
+            try (OutputStream out = upload.writer()) {
+                other.writeBits(out);
+            }
+            bloom.combine(op, upload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            upload.clear();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bloom.isEmpty();
+    }
+
+    @Override
+    public Double getEstimatedPopulation() {
+        return BloomFilter.population(bloom.cardinality(), config());
+    }
+
+    /**
+     * Returns the underlying SegmentedRedisBitSet implementation of this Bloom filter
+     *
+     * @return The underlying SegmentedRedisBitSet
+     */
+    public SegmentedRedisBitSet getRedisBitSet() {
+        return bloom;
+    }
+
+    @Override
+    public String toString() {
+        return "Bloom Filter Parameters: size = " + config.longSize() + ", hashes = " + config.hashes() + ", Bits: "
+            + bloom;
+    }
+}
@@ -0,0 +1,359 @@
+package orestes.bloomfilter.redis;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.MigratableBloomFilter;
+import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import orestes.bloomfilter.redis.helper.RedisKeys;
+import orestes.bloomfilter.redis.helper.RedisPool;
+import orestes.bloomfilter.redis.helper.RedisScript;
+import redis.clients.jedis.BitOP;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A counting Bloom filter backed by Redis which packs its counters of <code>countingBits</code> bits into a single
+ * Redis string, counter <i>i</i> occupying the bits from <code>i * countingBits</code>. Compared to the hash of {@link
+ * CountingBloomFilterRedis}, which spends tens of bytes on every counter, this takes exactly <code>countingBits</code>
+ * bits per counter, but allocates all counters up to the highest one used. <br> <br> The counters are changed with
+ * <i>BITFIELD OVERFLOW SAT INCRBY</i> by a Lua script that also updates the bits, so that adding or removing an element
+ * takes a single command. Counters saturate at their maximum value and never drop below zero. Counting bits are
+ * limited to 63. Unions and intersections are computed by a Lua script as well, adding counters with saturation and
+ * taking their minimum, respectively.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class PackedCountingBloomFilterRedis<T> implements CountingBloomFilter<T>, MigratableBloomFilter<T> {
+    private static final long serialVersionUID = 7218455790362619503L;
+    private final RedisKeys keys;
+    private final RedisPool pool;
+    private final RedisBitSet bloom;
+    private final FilterBuilder config;
+    private final String counterType;
+    private final RedisScript incrementScript;
+    private final RedisScript mergeScript;
+
+    public PackedCountingBloomFilterRedis(FilterBuilder builder) {
+        FilterBuilder updateBuilder = builder.clone();
+        builder.complete();
+
+        this.keys = new RedisKeys(builder.name(), builder.redisCluster());
+        this.pool = builder.pool().forKey(keys.CONFIG_KEY);
+        this.config = keys.persistConfig(pool, updateBuilder);
+        if (config.countingBits() > 63) {
+            throw new IllegalArgumentException("Packed counters are limited to 63 bits, got " + config.countingBits());
+        }
+        this.bloom = new RedisBitSet(pool, keys.BITS_KEY, config.size(), config.redisBitSetMode());
+        this.counterType = "u" + config.countingBits();
+        this.incrementScript = new RedisScript(pool, PackedCountingBloomFilterRedis.class, "packedIncrement.lua");
+        this.mergeScript = new RedisScript(pool, PackedCountingBloomFilterRedis.class, "packedMerge.lua");
+        if (builder.overwriteIfExists()) {
+            this.clear();
+        }
+    }
+
+    /**
+     * Adds the given amount to the counters of the given positions and updates their bits accordingly.
+     *
+     * @param positions the positions to change
+     * @param increment the amount to add, negative to subtract
+     * @return the new counts in the order of the positions
+     */
+    @SuppressWarnings("unchecked")
+    private List<Long> increment(int[] positions, int increment) {
+        List<byte[]> args = Arrays.asList(SafeEncoder.encode(counterType), SafeEncoder.encode(String.valueOf(increment)),
+            RedisUtils.encodePacked(positions));
+        return (List<Long>) pool.safelyReturn(jedis -> incrementScript.eval(jedis,
+            Arrays.asList(SafeEncoder.encode(keys.COUNTS_KEY), SafeEncoder.encode(keys.BITS_KEY)), args));
+    }
+
+    private static long min(List<Long> counts, int from, int to) {
+        long min = Long.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, counts.get(i));
+        }
+        return min;
+    }
+
+    @Override
+    public long addAndEstimateCountRaw(byte[] element) {
+        List<Long> counts = increment(hash(element), 1);
+        return min(counts, 0, counts.size());
+    }
+
+    @Override
+    public List<Boolean> addAll(Collection<T> elements) {
+        int k = config().hashes();
+        int[] positions = new int[elements.size() * k];
+        int i = 0;
+        for (T element : elements) {
+            System.arraycopy(hash(toBytes(element)), 0, positions, i, k);
+            i += k;
+        }
+        List<Long> counts = increment(positions, 1);
+        List<Boolean> added = new ArrayList<>(elements.size());
+        for (int from = 0; from < counts.size(); from += k) {
+            added.add(min(counts, from, from + k) == 1);
+        }
+        return added;
+    }
+
+    @Override
+    public long removeAndEstimateCountRaw(byte[] element) {
+        List<Long> counts = increment(hash(element), -1);
+        return min(counts, 0, counts.size());
+    }
+
+    @Override
+    public long getEstimatedCount(T element) {
+        int[] positions = hash(toBytes(element));
+        String[] args = new String[positions.length * 3];
+        for (int i = 0; i < positions.length; i++) {
+            args[i * 3] = "GET";
+            args[i * 3 + 1] = counterType;
+            args[i * 3 + 2] = "#" + positions[i];
+        }
+        // BITFIELD is rejected by read slaves
+        List<Long> counts = pool.safelyReturn(jedis -> jedis.bitfield(keys.COUNTS_KEY, args));
+        return min(counts, 0, counts.size());
+    }
+
+    @Override
+    public Map<Integer, Long> getCountMap() {
+        byte[] counters = pool.allowingSlaves().safelyReturn(jedis -> jedis.get(SafeEncoder.encode(keys.COUNTS_KEY)));
+        Map<Integer, Long> counts = new HashMap<>();
+        if (counters == null) {
+            return counts;
+        }
+        int bits = config().countingBits();
+        long available = counters.length * 8L / bits;
+        for (int position = 0; position < available; position++) {
+            long count = 0;
+            long offset = (long) position * bits;
+            for (int bit = 0; bit < bits; bit++, offset++) {
+                count = (count << 1) | ((counters[(int) (offset >>> 3)] >>> (7 - (offset & 7))) & 1);
+            }
+            if (count > 0) {
+                counts.put(position, count);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void migrateFrom(BloomFilter<T> source) {
+        if (!(source instanceof CountingBloomFilter) || !compatible(source)) {
+            throw new IncompatibleMigrationSourceException("Source is not compatible with the targeted Bloom filter");
+        }
+
+        long max = (1L << config().countingBits()) - 1;
+        Map<Integer, Long> countSetToMigrate = ((CountingBloomFilter<T>) source).getCountMap();
+        pool.transactionallyDo(p -> countSetToMigrate.forEach((position, value) -> {
+            p.bitfield(keys.COUNTS_KEY, "SET", counterType, "#" + position, String.valueOf(Math.min(value, max)));
+            bloom.set(p, position, value > 0);
+        }));
+    }
+
+    @Override
+    public boolean contains(byte[] element) {
+        return bloom.isAllSet(hash(element));
+    }
+
+    @Override
+    public void clear() {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.del(keys.COUNTS_KEY, keys.BITS_KEY);
+        }
+    }
+
+    @Override
+    public void remove() {
+        clear();
+        try (Jedis jedis = pool.getResource()) {
+            jedis.del(keys.CONFIG_KEY);
+        }
+        pool.destroy();
+    }
+
+    public RedisBitSet getRedisBitSet() {
+        return bloom;
+    }
+
+    @Override
+    public BitSet getBitSet() {
+        return bloom.asBitSet();
+    }
+
+    @Override
+    public FilterBuilder config() {
+        return config;
+    }
+
+    public CountingBloomFilterMemory<T> toMemoryFilter() {
+        CountingBloomFilterMemory<T> filter = new CountingBloomFilterMemory<>(config().clone());
+        filter.getBloomFilter().setBitSet(getBitSet());
+        return filter;
+    }
+
+    @Override
+    public CountingBloomFilter<T> clone() {
+        return new PackedCountingBloomFilterRedis<>(config().clone());
+    }
+
+    /**
+     * Adds the counts of a compatible counting Bloom filter to the counters of this one, saturating at their maximum
+     * value.
+     *
+     * @param other the other counting Bloom filter
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
+    @Override
+    public boolean union(BloomFilter<T> other) {
+        return merge(other, BitOP.OR);
+    }
+
+    /**
+     * Replaces every counter by the minimum of itself and the respective count of a compatible counting Bloom filter.
+     *
+     * @param other the other counting Bloom filter
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
+    @Override
+    public boolean intersect(BloomFilter<T> other) {
+        return merge(other, BitOP.AND);
+    }
+
+    /**
+     * Merges the counters and bits of another counting Bloom filter with <i>packedMerge.lua</i>. If the other Bloom
+     * filter is a packed counting Bloom filter stored next to this one, the script reads its keys directly. Otherwise,
+     * its counts are packed and uploaded to temporary keys together with its bits first, which expire after {@value
+     * CountingBloomFilterRedis#TEMPORARY_TTL} ms in case the client fails before the script ran.
+     *
+     * @param other the other Bloom filter
+     * @param op    the operation combining the bits
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
+    private boolean merge(BloomFilter<T> other, BitOP op) {
+        if (!(other instanceof CountingBloomFilter) || !compatible(other)) {
+            return false;
+        }
+        if (other instanceof PackedCountingBloomFilterRedis) {
+            PackedCountingBloomFilterRedis<T> that = (PackedCountingBloomFilterRedis<T>) other;
+            if (RedisUtils.colocated(pool, config.redisCluster(), keys.COUNTS_KEY, that.pool, that.keys.COUNTS_KEY)) {
+                pool.safelyDo(jedis -> mergeScript.eval(jedis,
+                    CountingBloomFilterRedis.encode(keys.COUNTS_KEY, keys.BITS_KEY, that.keys.COUNTS_KEY, that.keys.BITS_KEY),
+                    CountingBloomFilterRedis.encode(counterType, that.counterType, op.name(), "0")));
+                return true;
+            }
+        }
+
+        byte[] counters = pack(((CountingBloomFilter<T>) other).getCountMap());
+        BitSet bits = other.getBitSet();
+        pool.safelyDo(jedis -> {
+            String suffix = ":tmp:" + UUID.randomUUID();
+            String countsCopy = keys.COUNTS_KEY + suffix;
+            String bitsCopy = keys.BITS_KEY + suffix;
+            Pipeline p = jedis.pipelined();
+            p.set(SafeEncoder.encode(countsCopy), counters);
+            p.pexpire(countsCopy, CountingBloomFilterRedis.TEMPORARY_TTL);
+            p.set(SafeEncoder.encode(bitsCopy), RedisBitSet.toByteArrayReverse(bits));
+            p.pexpire(bitsCopy, CountingBloomFilterRedis.TEMPORARY_TTL);
+            p.sync();
+            try {
+                mergeScript.eval(jedis, CountingBloomFilterRedis.encode(keys.COUNTS_KEY, keys.BITS_KEY, countsCopy, bitsCopy),
+                    CountingBloomFilterRedis.encode(counterType, counterType, op.name(), "1"));
+            } catch (RuntimeException e) {
+                try {
+                    jedis.del(countsCopy, bitsCopy);
+                } catch (RuntimeException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+                throw e;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Packs counts into counters of <code>countingBits</code> bits in the layout of <i>BITFIELD</i>, saturating them at
+     * their maximum value.
+     *
+     * @param counts the counts by position
+     * @return the packed counters up to the highest position
+     */
+    private byte[] pack(Map<Integer, Long> counts) {
+        int bits = config().countingBits();
+        long max = (1L << bits) - 1;
+        int highest = counts.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+        byte[] counters = new byte[(int) (((highest + 1L) * bits + 7) / 8)];
+        counts.forEach((position, value) -> {
+            long count = Math.min(value, max);
+            long offset = (long) position * bits;
+            for (int bit = bits - 1; bit >= 0; bit--, offset++) {
+                if (((count >>> bit) & 1) != 0) {
+                    counters[(int) (offset >>> 3)] |= 0x80 >>> (offset & 7);
+                }
+            }
+        });
+        return counters;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bloom.isEmpty();
+    }
+
+    @Override
+    public Double getEstimatedPopulation() {
+        return BloomFilter.population(bloom, config());
+    }
+
+    public RedisPool getRedisPool() {
+        return pool;
+    }
+
+    public RedisKeys getRedisKeys() {
+        return keys;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackedCountingBloomFilterRedis)) {
+            return false;
+        }
+
+        PackedCountingBloomFilterRedis<?> that = (PackedCountingBloomFilterRedis<?>) o;
+
+        if (bloom != null ? !bloom.equals(that.bloom) : that.bloom != null) {
+            return false;
+        }
+        if (config != null ? !config.isCompatibleTo(that.config) : that.config != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // RedisBitSet compares its bits, but does not hash them
+        return bloom != null ? bloom.asBitSet().hashCode() : 0;
+    }
+}
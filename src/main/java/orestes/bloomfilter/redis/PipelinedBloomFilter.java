@@ -0,0 +1,43 @@
+package orestes.bloomfilter.redis;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.redis.helper.RedisPool;
+import redis.clients.jedis.Pipeline;
+
+import java.util.function.Supplier;
+
+/**
+ * A Redis-backed Bloom filter whose operations can be queued into an external pipeline, which allows {@link
+ * AsyncBloomFilterRedis} to pipeline the operations of concurrent callers.
+ *
+ * @param <T> The type of the containing elements
+ */
+public interface PipelinedBloomFilter<T> extends BloomFilter<T> {
+    /**
+     * Queues adding several elements into the given pipeline.
+     *
+     * @param p         the propagated pipeline
+     * @param positions the hashed positions of the elements, {@link #getHashes()} consecutive ones per element
+     * @return a supplier of whether each element was added, to be called after the pipeline was synced
+     */
+    Supplier<boolean[]> addAll(Pipeline p, int[] positions);
+
+    /**
+     * Queues testing several elements into the given pipeline.
+     *
+     * @param p         the propagated pipeline
+     * @param positions the hashed positions of the elements, {@link #getHashes()} consecutive ones per element
+     * @return a supplier of whether each element is contained, to be called after the pipeline was synced
+     */
+    Supplier<boolean[]> contains(Pipeline p, int[] positions);
+
+    /**
+     * @return the pool of the Redis master holding this Bloom filter
+     */
+    RedisPool getRedisPool();
+
+    /**
+     * @return the bits of this Bloom filter in Redis
+     */
+    RedisBitSet getRedisBitSet();
+}
@@ -1,22 +1,61 @@
 package orestes.bloomfilter.redis;
 
 import orestes.bloomfilter.redis.helper.RedisPool;
+import orestes.bloomfilter.redis.helper.RedisScript;
+import redis.clients.jedis.BitOP;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.PipelineBase;
+import redis.clients.jedis.Response;
 import redis.clients.util.SafeEncoder;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
  * A persistent BitSet backed by Redis. Not all methods of the superclass are implemented. If needed they can be used
  * converting the RedisBitSet to a regular BitSet by calling {@link #asBitSet()}. <br> <br> External transactions or
- * pipeline can be propagated for use by modifying methods (e.g. {@link #set(int)}).
+ * pipeline can be propagated for use by modifying methods (e.g. {@link #set(int)}). <br> <br> The {@link Mode}
+ * determines how {@link #getBulk(int...)}, {@link #setAll(int...)}, {@link #isAllSet(int...)} and the batch variants
+ * of the latter two access multiple bits.
  */
 public class RedisBitSet extends BitSet {
+    // Stays well below the limit of 1M arguments per command
+    private static final int BITFIELD_CHUNK = 1 << 16;
+    // The number of bytes read by a single GETRANGE when streaming the bits
+    private static final int READ_CHUNK = 1 << 16;
     private final RedisPool pool;
     private String name;
     private int size;
+    private final Mode mode;
+    private final RedisScript setAllScript;
+    private final RedisScript isAllSetScript;
+
+    /**
+     * Determines how multiple bits are accessed at once.
+     */
+    public enum Mode {
+        /**
+         * One <i>GETBIT</i> or <i>SETBIT</i> per bit in a <i>MULTI</i>/<i>EXEC</i> transaction.
+         */
+        TRANSACTION,
+        /**
+         * A Lua script receiving all positions as one packed argument, which sets or tests all bits with a single
+         * command and stops testing an element at its first unset bit.
+         */
+        SCRIPT,
+        /**
+         * A single <i>BITFIELD</i> command with one unsigned 1-bit field per bit. As Redis rejects <i>BITFIELD</i> on
+         * read slaves, reads always go to the master.
+         */
+        BITFIELD
+    }
 
     /**
      * Constructs a new RedisBitSet.
@@ -26,9 +65,25 @@ public class RedisBitSet extends BitSet {
      * @param size the initial size of the RedisBitSet
      */
     public RedisBitSet(RedisPool pool, String name, int size) {
+        this(pool, name, size, Mode.TRANSACTION);
+    }
+
+    /**
+     * Constructs a new RedisBitSet.
+     *
+     * @param pool     the redis connection pool
+     * @param name     the name used as key in the database
+     * @param size     the initial size of the RedisBitSet
+     * @param mode how to access multiple bits at once
+     */
+    public RedisBitSet(RedisPool pool, String name, int size, Mode mode) {
+        boolean scripted = mode == Mode.SCRIPT;
         this.pool = pool;
         this.name = name;
         this.size = size;
+        this.mode = mode;
+        this.setAllScript = scripted ? new RedisScript(pool, RedisBitSet.class, "setAll.lua") : null;
+        this.isAllSetScript = scripted ? new RedisScript(pool, RedisBitSet.class, "isAllSet.lua") : null;
     }
 
 
@@ -44,6 +99,14 @@ public class RedisBitSet extends BitSet {
      * @return an array containing the values at the given index positions
      */
     public Boolean[] getBulk(int... indexes) {
+        if (mode == Mode.BITFIELD) {
+            List<Long> values = bitfield(indexes, false);
+            Boolean[] results = new Boolean[indexes.length];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = values.get(i) == 1;
+            }
+            return results;
+        }
         List<Boolean> results = pool.allowingSlaves().transactionallyDo(p -> {
             for (int index : indexes) {
                 get(p, index);
@@ -151,6 +214,29 @@ public class RedisBitSet extends BitSet {
     }
 
 
+    /**
+     * Writes the bits to the given stream in the byte order of {@link BitSet#toByteArray()}, reading them with one
+     * <i>GETRANGE</i> per chunk, so that they are never held in memory as a whole. The chunks are read independently,
+     * i.e. concurrent modifications may only be visible in some of them.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeBits(OutputStream out) throws IOException {
+        byte[] key = SafeEncoder.encode(name);
+        for (long from = 0; ; from += READ_CHUNK) {
+            long start = from;
+            byte[] chunk = pool.allowingSlaves().safelyReturn(jedis -> jedis.getrange(key, start, start + READ_CHUNK - 1));
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = (byte) (Integer.reverse(chunk[i]) >>> 24);
+            }
+            out.write(chunk);
+            if (chunk.length < READ_CHUNK) {
+                return;
+            }
+        }
+    }
+
     /**
      * Overwrite the contents of this RedisBitSet by the given BitSet.
      *
@@ -160,6 +246,34 @@ public class RedisBitSet extends BitSet {
         pool.safelyDo(jedis -> jedis.set(SafeEncoder.encode(name), toByteArrayReverse(bits)));
     }
 
+    /**
+     * Combines this RedisBitSet with another one through <i>BITOP</i> and stores the result in this RedisBitSet, so
+     * that no bits are transferred. Both have to be stored in the same Redis database and, on a Redis Cluster, in the
+     * same slot.
+     *
+     * @param op    the operation, e.g. {@link BitOP#OR} for a union
+     * @param other the key of the other RedisBitSet
+     */
+    public void combine(BitOP op, String other) {
+        pool.safelyDo(jedis -> jedis.bitop(op, name, name, other));
+    }
+
+    /**
+     * Combines this RedisBitSet with a regular BitSet through <i>BITOP</i> and stores the result in this RedisBitSet.
+     * The bits are uploaded to a temporary key, which is combined and deleted in a single transaction.
+     *
+     * @param op    the operation, e.g. {@link BitOP#OR} for a union
+     * @param other the bits to combine with
+     */
+    public void combine(BitOP op, BitSet other) {
+        String temporary = name + ":tmp";
+        pool.transactionallyDo(p -> {
+            p.set(SafeEncoder.encode(temporary), toByteArrayReverse(other));
+            p.bitop(op, name, name, temporary);
+            p.del(temporary);
+        });
+    }
+
     @Override
     public String toString() {
         return asBitSet().toString();
@@ -176,10 +290,33 @@ public class RedisBitSet extends BitSet {
      * @return <code>true</code> if all positions are set
      */
     public boolean isAllSet(int... positions) {
+        if (isAllSetScript != null) {
+            return isAllSet(positions.length, positions)[0];
+        }
         Boolean[] results = getBulk(positions);
         return Stream.of(results).allMatch(b -> b);
     }
 
+    /**
+     * Tests for several elements whether their bit positions are all set.
+     *
+     * @param k         the number of positions per element
+     * @param positions the positions to test, <code>k</code> consecutive ones per element
+     * @return for each element <code>true</code> if all of its positions are set
+     */
+    public boolean[] isAllSet(int k, int[] positions) {
+        if (isAllSetScript != null) {
+            return evalGrouped(pool.allowingSlaves(), isAllSetScript, k, positions);
+        }
+        boolean[] results = new boolean[positions.length / k];
+        Arrays.fill(results, true);
+        Boolean[] replies = getBulk(positions);
+        for (int i = 0; i < replies.length; i++) {
+            if (!replies[i]) results[i / k] = false;
+        }
+        return results;
+    }
+
     /**
      * Set all bits
      *
@@ -187,6 +324,12 @@ public class RedisBitSet extends BitSet {
      * @return {@code true} if any of the bits was previously unset.
      */
     public boolean setAll(int... positions) {
+        if (setAllScript != null) {
+            return setAll(positions.length, positions)[0];
+        }
+        if (mode == Mode.BITFIELD) {
+            return bitfield(positions, true).contains(0L);
+        }
         List<Object> results = pool.transactionallyDo(p -> {
             for (int position : positions)
                 p.setbit(name, position, true);
@@ -194,6 +337,162 @@ public class RedisBitSet extends BitSet {
         return results.stream().anyMatch(b -> !(Boolean) b);
     }
 
+    /**
+     * Sets the bit positions of several elements.
+     *
+     * @param k         the number of positions per element
+     * @param positions the positions to set, <code>k</code> consecutive ones per element
+     * @return for each element {@code true} if any of its bits was previously unset
+     */
+    public boolean[] setAll(int k, int[] positions) {
+        if (setAllScript != null) {
+            return evalGrouped(pool, setAllScript, k, positions);
+        }
+        boolean[] results = new boolean[positions.length / k];
+        if (mode == Mode.BITFIELD) {
+            List<Long> previous = bitfield(positions, true);
+            for (int i = 0; i < positions.length; i++) {
+                if (previous.get(i) == 0) results[i / k] = true;
+            }
+            return results;
+        }
+        List<Boolean> replies = pool.transactionallyDo(p -> {
+            for (int position : positions)
+                p.setbit(name, position, true);
+        });
+        for (int i = 0; i < positions.length; i++) {
+            if (!replies.get(i)) results[i / k] = true;
+        }
+        return results;
+    }
+
+    /**
+     * Queues setting the bit positions of several elements into the given pipeline, see {@link #setAll(int, int[])}.
+     *
+     * @param p         the propagated pipeline
+     * @param k         the number of positions per element
+     * @param positions the positions to set, <code>k</code> consecutive ones per element
+     * @return a supplier of the results, to be called after the pipeline was synced
+     */
+    public Supplier<boolean[]> setAll(Pipeline p, int k, int[] positions) {
+        if (setAllScript != null) {
+            return evalGrouped(p, setAllScript, k, positions);
+        }
+        Supplier<List<Long>> previous = mode == Mode.BITFIELD ? bitfield(p, positions, true) : transaction(p, positions, true);
+        return () -> {
+            boolean[] results = new boolean[positions.length / k];
+            List<Long> values = previous.get();
+            for (int i = 0; i < positions.length; i++) {
+                if (values.get(i) == 0) results[i / k] = true;
+            }
+            return results;
+        };
+    }
+
+    /**
+     * Queues testing the bit positions of several elements into the given pipeline, see {@link #isAllSet(int,
+     * int[])}. As the pipeline belongs to the master, so do the reads.
+     *
+     * @param p         the propagated pipeline
+     * @param k         the number of positions per element
+     * @param positions the positions to test, <code>k</code> consecutive ones per element
+     * @return a supplier of the results, to be called after the pipeline was synced
+     */
+    public Supplier<boolean[]> isAllSet(Pipeline p, int k, int[] positions) {
+        if (isAllSetScript != null) {
+            return evalGrouped(p, isAllSetScript, k, positions);
+        }
+        Supplier<List<Long>> values = mode == Mode.BITFIELD ? bitfield(p, positions, false) : transaction(p, positions, false);
+        return () -> {
+            boolean[] results = new boolean[positions.length / k];
+            Arrays.fill(results, true);
+            List<Long> bits = values.get();
+            for (int i = 0; i < positions.length; i++) {
+                if (bits.get(i) == 0) results[i / k] = false;
+            }
+            return results;
+        };
+    }
+
+    private Supplier<List<Long>> transaction(Pipeline p, int[] positions, boolean set) {
+        p.multi();
+        for (int position : positions) {
+            if (set) {
+                p.setbit(name, position, true);
+            } else {
+                p.getbit(name, position);
+            }
+        }
+        Response<List<Object>> exec = p.exec();
+        return () -> {
+            List<Long> values = new ArrayList<>(positions.length);
+            exec.get().forEach(bit -> values.add((Boolean) bit ? 1L : 0L));
+            return values;
+        };
+    }
+
+    /**
+     * Gets or sets the given positions with <i>BITFIELD</i>. Large numbers of positions are split into several
+     * commands, which are sent in one pipeline.
+     *
+     * @param positions the positions to access
+     * @param set       whether to set the bits
+     * @return the (previous) values of the bits in the order of the positions
+     */
+    private List<Long> bitfield(int[] positions, boolean set) {
+        return pool.safelyReturn(jedis -> {
+            Pipeline p = jedis.pipelined();
+            Supplier<List<Long>> values = bitfield(p, positions, set);
+            p.sync();
+            return values.get();
+        });
+    }
+
+    private Supplier<List<Long>> bitfield(Pipeline p, int[] positions, boolean set) {
+        List<Response<List<Long>>> responses = new ArrayList<>();
+        for (int from = 0; from < positions.length; from += BITFIELD_CHUNK) {
+            int to = Math.min(from + BITFIELD_CHUNK, positions.length);
+            String[] args = new String[(to - from) * (set ? 4 : 3)];
+            int a = 0;
+            for (int i = from; i < to; i++) {
+                args[a++] = set ? "SET" : "GET";
+                args[a++] = "u1";
+                args[a++] = String.valueOf(positions[i]);
+                if (set) args[a++] = "1";
+            }
+            responses.add(p.bitfield(name, args));
+        }
+        return () -> {
+            List<Long> values = new ArrayList<>(positions.length);
+            responses.forEach(response -> values.addAll(response.get()));
+            return values;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean[] evalGrouped(RedisPool pool, RedisScript script, int k, int[] positions) {
+        return toBooleans((List<Long>) pool.safelyReturn(
+            jedis -> script.eval(jedis, Collections.singletonList(SafeEncoder.encode(name)), groupedArgs(k, positions))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Supplier<boolean[]> evalGrouped(Pipeline p, RedisScript script, int k, int[] positions) {
+        Supplier<Object> reply = script.eval(p, Collections.singletonList(SafeEncoder.encode(name)), groupedArgs(k, positions));
+        return () -> toBooleans((List<Long>) reply.get());
+    }
+
+    private static List<byte[]> groupedArgs(int k, int[] positions) {
+        return Arrays.asList(SafeEncoder.encode(String.valueOf(k)), RedisUtils.encodePacked(positions));
+    }
+
+    private static boolean[] toBooleans(List<Long> replies) {
+        boolean[] results = new boolean[replies.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = replies.get(i) == 1;
+        }
+        return results;
+    }
+
     //Copied from: https://github.com/xetorthio/jedis/issues/301
     public static BitSet fromByteArrayReverse(byte[] bytes) {
         BitSet bits = new BitSet();
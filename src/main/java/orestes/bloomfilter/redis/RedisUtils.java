@@ -1,5 +1,9 @@
 package orestes.bloomfilter.redis;
 
+import orestes.bloomfilter.redis.helper.RedisPool;
+import redis.clients.jedis.Jedis;
+import redis.clients.util.JedisClusterCRC16;
+
 import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.stream.IntStream;
@@ -46,6 +50,20 @@ public class RedisUtils {
         return IntStream.of(keys).mapToObj(RedisUtils::encodeKey).toArray(byte[][]::new);
     }
 
+    /**
+     * Packs many integers into a single byte array of 32 bit big-endian integers, e.g. as an argument of a Lua script.
+     *
+     * @param values The integers to pack.
+     * @return A byte array containing all integers.
+     */
+    public static byte[] encodePacked(int[] values) {
+        ByteBuffer packed = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) {
+            packed.putInt(value);
+        }
+        return packed.array();
+    }
+
     /**
      * Encodes an integer value as byte array.
      *
@@ -86,4 +104,37 @@ public class RedisUtils {
     public static long decodeValue(byte[] value) {
         return Long.parseLong(new String(value));
     }
+
+    /**
+     * Checks whether keys of two Redis-backed Bloom filters can be accessed by a single command or script, i.e. whether
+     * they are stored in the same database of the same Redis instance and, on a Redis Cluster, in the same slot.
+     *
+     * @param filter   a Bloom filter
+     * @param key      a key of the Bloom filter
+     * @param other    another Bloom filter
+     * @param otherKey a key of the other Bloom filter
+     * @return <code>true</code> if both keys can be used together
+     */
+    public static boolean colocated(PipelinedBloomFilter<?> filter, String key, PipelinedBloomFilter<?> other,
+                                    String otherKey) {
+        return colocated(filter.getRedisPool(), filter.config().redisCluster(), key, other.getRedisPool(), otherKey);
+    }
+
+    /**
+     * Checks whether two keys can be accessed by a single command or script, see {@link
+     * #colocated(PipelinedBloomFilter, String, PipelinedBloomFilter, String)}.
+     *
+     * @param pool      the pool of the first key
+     * @param cluster   whether the keys are stored on a Redis Cluster
+     * @param key       the first key
+     * @param otherPool the pool of the other key
+     * @param otherKey  the other key
+     * @return <code>true</code> if both keys can be used together
+     */
+    public static boolean colocated(RedisPool pool, boolean cluster, String key, RedisPool otherPool, String otherKey) {
+        return pool.getHost().equals(otherPool.getHost()) && pool.getPort() == otherPool.getPort()
+            && (!cluster || JedisClusterCRC16.getSlot(key) == JedisClusterCRC16.getSlot(otherKey))
+            // The database selected by the pools' connections, which may differ from the configured one for custom pools
+            && pool.safelyReturn(Jedis::getDB).longValue() == otherPool.safelyReturn(Jedis::getDB).longValue();
+    }
 }
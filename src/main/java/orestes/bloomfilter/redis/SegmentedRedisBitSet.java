@@ -0,0 +1,352 @@
+package orestes.bloomfilter.redis;
+
+import orestes.bloomfilter.redis.helper.RedisPool;
+import redis.clients.jedis.BitOP;
+import redis.clients.jedis.PipelineBase;
+import redis.clients.util.SafeEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A persistent bit vector backed by Redis which is addressed by long positions. As a single Redis string is limited to
+ * 512 MB, i.e. 2^32 bits, the bits are split across several keys <code>name:0</code>, <code>name:1</code>, etc. of at
+ * most {@link #SEGMENT_BITS} bits each. <br> <br> External transactions or pipeline can be propagated for use by
+ * modifying methods (e.g. {@link #set(PipelineBase, long, boolean)}).
+ */
+public class SegmentedRedisBitSet {
+    /**
+     * The maximum number of bits of a Redis string.
+     */
+    public static final long SEGMENT_BITS = 1L << 32;
+    // The number of bytes read or written by a single GETRANGE or SETRANGE when streaming the bits
+    private static final int CHUNK = 1 << 16;
+    private final RedisPool pool;
+    private final String name;
+    private final long size;
+    private final long segmentBits;
+    private final String[] keys;
+
+    /**
+     * Constructs a new SegmentedRedisBitSet.
+     *
+     * @param pool the redis connection pool
+     * @param name the name used as key prefix in the database
+     * @param size the number of bits
+     */
+    public SegmentedRedisBitSet(RedisPool pool, String name, long size) {
+        this(pool, name, size, SEGMENT_BITS);
+    }
+
+    /**
+     * Constructs a new SegmentedRedisBitSet with the given number of bits per key.
+     *
+     * @param pool        the redis connection pool
+     * @param name        the name used as key prefix in the database
+     * @param size        the number of bits
+     * @param segmentBits the number of bits per key, at most {@link #SEGMENT_BITS}
+     */
+    public SegmentedRedisBitSet(RedisPool pool, String name, long size, long segmentBits) {
+        if (segmentBits <= 0 || segmentBits > SEGMENT_BITS) {
+            throw new IllegalArgumentException("Segments must hold between 1 and " + SEGMENT_BITS + " bits.");
+        }
+        this.pool = pool;
+        this.name = name;
+        this.size = size;
+        this.segmentBits = segmentBits;
+        this.keys = new String[(int) ((size + segmentBits - 1) / segmentBits)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = name + ":" + i;
+        }
+    }
+
+    public boolean get(long bitIndex) {
+        return pool.allowingSlaves().safelyReturn(jedis -> jedis.getbit(key(bitIndex), offset(bitIndex)));
+    }
+
+    public void get(PipelineBase p, long bitIndex) {
+        p.getbit(key(bitIndex), offset(bitIndex));
+    }
+
+    /**
+     * Fetches the values at the given index positions in a multi transaction. This guarantees a consistent view.
+     *
+     * @param indexes the index positions to query
+     * @return an array containing the values at the given index positions
+     */
+    public Boolean[] getBulk(long... indexes) {
+        List<Boolean> results = pool.allowingSlaves().transactionallyDo(p -> {
+            for (long index : indexes) {
+                get(p, index);
+            }
+        });
+        return results.toArray(new Boolean[indexes.length]);
+    }
+
+    public void set(long bitIndex, boolean value) {
+        pool.safelyDo(jedis -> jedis.setbit(key(bitIndex), offset(bitIndex), value));
+    }
+
+    /**
+     * Performs the normal {@link #set(long, boolean)} operation using the given pipeline.
+     *
+     * @param p        the propagated pipeline
+     * @param bitIndex a bit index
+     * @param value    a boolean value to set
+     */
+    public void set(PipelineBase p, long bitIndex, boolean value) {
+        p.setbit(key(bitIndex), offset(bitIndex), value);
+    }
+
+    /**
+     * Tests whether the provided bit positions are all set.
+     *
+     * @param positions the positions to test
+     * @return <code>true</code> if all positions are set
+     */
+    public boolean isAllSet(long... positions) {
+        for (Boolean result : getBulk(positions)) {
+            if (!result) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Set all bits
+     *
+     * @param positions The positions to set
+     * @return {@code true} if any of the bits was previously unset.
+     */
+    public boolean setAll(long... positions) {
+        List<Object> results = pool.transactionallyDo(p -> {
+            for (long position : positions) {
+                set(p, position, true);
+            }
+        });
+        return results.stream().anyMatch(b -> !(Boolean) b);
+    }
+
+    public void clear() {
+        pool.safelyDo(jedis -> jedis.del(keys));
+    }
+
+    /**
+     * @return the number of bits set to {@code true}
+     */
+    public long cardinality() {
+        return pool.safelyReturn(jedis -> {
+            long cardinality = 0;
+            for (String key : keys) {
+                cardinality += jedis.bitcount(key);
+            }
+            return cardinality;
+        });
+    }
+
+    public boolean isEmpty() {
+        return pool.safelyReturn(jedis -> {
+            for (String key : keys) {
+                if (jedis.bitcount(key) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * @return the number of bits
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the Redis keys holding the bits
+     */
+    public String[] getRedisKeys() {
+        return keys.clone();
+    }
+
+    /**
+     * Combines each segment with the segment of the same index of another SegmentedRedisBitSet through <i>BITOP</i>
+     * and stores the result in this one, so that no bits are transferred. Both have to be stored in the same Redis
+     * database and, on a Redis Cluster, in the same slot.
+     *
+     * @param op    the operation, e.g. {@link BitOP#OR} for a union
+     * @param other the other bits, split into the same segments
+     */
+    public void combine(BitOP op, SegmentedRedisBitSet other) {
+        if (other.size != size || other.segmentBits != segmentBits) {
+            throw new IllegalArgumentException("The bits are segmented differently: " + this + " and " + other);
+        }
+        pool.transactionallyDo(p -> {
+            for (int i = 0; i < keys.length; i++) {
+                p.bitop(op, keys[i], keys[i], other.keys[i]);
+            }
+        });
+    }
+
+    /**
+     * @return an empty SegmentedRedisBitSet of the same size and segments under a unique name next to this one, e.g.
+     * for uploading bits to combine with
+     */
+    public SegmentedRedisBitSet temporary() {
+        return new SegmentedRedisBitSet(pool, name + ":tmp:" + UUID.randomUUID(), size, segmentBits);
+    }
+
+    /**
+     * Writes the bits to the given stream in the byte order of {@link BitSet#toByteArray()}, reading them with one
+     * <i>GETRANGE</i> per chunk, so that they are never held in memory as a whole. The chunks are read independently,
+     * i.e. concurrent modifications may only be visible in some of them.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeBits(OutputStream out) throws IOException {
+        checkByteAligned();
+        byte[] zeros = new byte[CHUNK];
+        for (int i = 0; i < keys.length; i++) {
+            byte[] key = SafeEncoder.encode(keys[i]);
+            long segmentBytes = (Math.min(segmentBits, size - i * segmentBits) + 7) / 8;
+            long stored = Math.min(segmentBytes, pool.allowingSlaves().safelyReturn(jedis -> jedis.strlen(key)));
+            long from = 0;
+            while (from < stored) {
+                long start = from;
+                long end = Math.min(stored, from + CHUNK) - 1;
+                byte[] chunk = pool.allowingSlaves().safelyReturn(jedis -> jedis.getrange(key, start, end));
+                if (chunk.length == 0) {
+                    break;
+                }
+                for (int b = 0; b < chunk.length; b++) {
+                    chunk[b] = (byte) (Integer.reverse(chunk[b]) >>> 24);
+                }
+                out.write(chunk);
+                from += chunk.length;
+            }
+            for (; from < segmentBytes; from += Math.min(CHUNK, segmentBytes - from)) {
+                out.write(zeros, 0, (int) Math.min(CHUNK, segmentBytes - from));
+            }
+        }
+    }
+
+    /**
+     * Returns a stream which sets the bits given as bytes in the order of {@link BitSet#toByteArray()}, starting at
+     * the first bit. The bytes are buffered and written with one <i>SETRANGE</i> per chunk, skipping chunks of zero
+     * bytes, so the bits should be cleared before. Bytes beyond the size are ignored. Closing the stream writes the
+     * remaining bytes.
+     *
+     * @return the stream setting the bits
+     */
+    public OutputStream writer() {
+        checkByteAligned();
+        return new OutputStream() {
+            private final byte[] buffer = new byte[CHUNK];
+            private int length;
+            private long position;
+
+            @Override
+            public void write(int b) {
+                buffer[length++] = (byte) b;
+                if (length == buffer.length) {
+                    flush();
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                while (len > 0) {
+                    int n = Math.min(len, buffer.length - length);
+                    System.arraycopy(b, off, buffer, length, n);
+                    length += n;
+                    off += n;
+                    len -= n;
+                    if (length == buffer.length) {
+                        flush();
+                    }
+                }
+            }
+
+            @Override
+            public void flush() {
+                long segmentBytes = segmentBits / 8;
+                for (int start = 0; start < length; ) {
+                    long index = position + start;
+                    int segment = (int) (index / segmentBytes);
+                    if (segment >= keys.length) {
+                        break;
+                    }
+                    long offset = index % segmentBytes;
+                    int n = (int) Math.min(length - start, segmentBytes - offset);
+                    byte[] chunk = new byte[n];
+                    boolean zero = true;
+                    for (int b = 0; b < n; b++) {
+                        chunk[b] = (byte) (Integer.reverse(buffer[start + b]) >>> 24);
+                        zero &= chunk[b] == 0;
+                    }
+                    if (!zero) {
+                        pool.safelyDo(jedis -> jedis.setrange(SafeEncoder.encode(keys[segment]), offset, chunk));
+                    }
+                    start += n;
+                }
+                position += length;
+                length = 0;
+            }
+
+            @Override
+            public void close() {
+                flush();
+            }
+        };
+    }
+
+    private void checkByteAligned() {
+        if (segmentBits % 8 != 0) {
+            throw new UnsupportedOperationException("Segments of " + segmentBits + " bits cannot be streamed as bytes.");
+        }
+    }
+
+    /**
+     * Returns the bits as a regular BitSet, which is only possible for at most {@link Integer#MAX_VALUE} bits.
+     *
+     * @return the bits as a regular BitSet
+     * @throws UnsupportedOperationException if the bits do not fit into a BitSet
+     */
+    public BitSet asBitSet() {
+        if (size > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("A BitSet cannot hold " + size + " bits.");
+        }
+        return pool.allowingSlaves().safelyReturn(jedis -> {
+            BitSet bits = new BitSet();
+            for (int i = 0; i < keys.length; i++) {
+                byte[] bytes = jedis.get(SafeEncoder.encode(keys[i]));
+                if (bytes != null) {
+                    BitSet segment = RedisBitSet.fromByteArrayReverse(bytes);
+                    int base = (int) (i * segmentBits);
+                    for (int bit = segment.nextSetBit(0); bit >= 0; bit = segment.nextSetBit(bit + 1)) {
+                        bits.set(base + bit);
+                    }
+                }
+            }
+            return bits;
+        });
+    }
+
+    private String key(long bitIndex) {
+        return keys[(int) (bitIndex / segmentBits)];
+    }
+
+    private long offset(long bitIndex) {
+        return bitIndex % segmentBits;
+    }
+
+    @Override
+    public String toString() {
+        return name + "[" + size + " bits in " + keys.length + " keys]";
+    }
+}
@@ -0,0 +1,219 @@
+package orestes.bloomfilter.redis;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.redis.helper.RedisKeys;
+import orestes.bloomfilter.redis.helper.RedisPool;
+import orestes.bloomfilter.redis.helper.RedisShards;
+import redis.clients.jedis.BitOP;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A persistent Bloom filter whose bits are split into ranges stored on different Redis instances, so that a single
+ * Redis instance does not limit the throughput. Each operation is sent as one pipelined transaction per affected shard,
+ * all shards being processed in parallel, see {@link ShardedRedisBitSet}. The configuration is persisted on the first
+ * shard. The shards are configured through {@link FilterBuilder#addRedisShard(String, int)} or, on Redis Cluster,
+ * through {@link FilterBuilder#redisClusterShards(int)}.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class ShardedBloomFilterRedis<T> implements BloomFilter<T> {
+    private static final long serialVersionUID = 3810269847502316412L;
+    private final RedisKeys keys;
+    private final RedisPool configPool;
+    private final RedisShards shards;
+    private final ShardedRedisBitSet bloom;
+    private final FilterBuilder config;
+
+    public ShardedBloomFilterRedis(FilterBuilder builder) {
+        FilterBuilder updateBuilder = builder.clone();
+        builder.complete();
+
+        this.keys = new RedisKeys(builder.name(), builder.redisCluster());
+        this.configPool = builder.redisCluster() ? builder.pool().forKey(keys.CONFIG_KEY) : builder.shardPools().get(0);
+        this.config = keys.persistConfig(configPool, updateBuilder);
+        this.shards = new RedisShards(builder.shardPools(), config.size());
+        String[] names = new String[shards.count()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = keys.shard(i).BITS_KEY;
+        }
+        this.bloom = new ShardedRedisBitSet(shards, names);
+        if (builder.overwriteIfExists())
+            this.clear();
+    }
+
+    @Override
+    public FilterBuilder config() {
+        return config;
+    }
+
+    @Override
+    public boolean addRaw(byte[] element) {
+        return bloom.setAll(hash(element));
+    }
+
+    @Override
+    public List<Boolean> addAll(Collection<T> elements) {
+        return toList(addAll(elements, new boolean[elements.size()]), elements.size());
+    }
+
+    @Override
+    public boolean[] addAll(byte[][] elements, boolean[] results) {
+        int k = config().hashes();
+        Boolean[] replies = bloom.setBulk(hashAll(elements));
+        Arrays.fill(results, 0, elements.length, false);
+        for (int i = 0; i < replies.length; i++) {
+            if (!replies[i]) results[i / k] = true;
+        }
+        return results;
+    }
+
+    @Override
+    public List<Boolean> contains(Collection<T> elements) {
+        return toList(contains(elements, new boolean[elements.size()]), elements.size());
+    }
+
+    @Override
+    public boolean[] contains(byte[][] elements, boolean[] results) {
+        int k = config().hashes();
+        Boolean[] replies = bloom.getBulk(hashAll(elements));
+        Arrays.fill(results, 0, elements.length, true);
+        for (int i = 0; i < replies.length; i++) {
+            if (!replies[i]) results[i / k] = false;
+        }
+        return results;
+    }
+
+    @Override
+    public boolean contains(byte[] element) {
+        return bloom.isAllSet(hash(element));
+    }
+
+    private int[] hashAll(byte[][] elements) {
+        int k = config().hashes();
+        int[] positions = new int[elements.length * k];
+        for (int i = 0; i < elements.length; i++) {
+            System.arraycopy(hash(elements[i]), 0, positions, i * k, k);
+        }
+        return positions;
+    }
+
+    private static List<Boolean> toList(boolean[] results, int length) {
+        List<Boolean> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(results[i]);
+        }
+        return list;
+    }
+
+    @Override
+    public void clear() {
+        bloom.clear();
+    }
+
+    @Override
+    public void remove() {
+        clear();
+        configPool.safelyDo(jedis -> jedis.del(keys.CONFIG_KEY));
+        shards.destroy();
+    }
+
+    /**
+     * Reassembles the bits of all shards.
+     *
+     * @return the underlying bit vector of the Bloom filter
+     */
+    @Override
+    public BitSet getBitSet() {
+        return bloom.asBitSet();
+    }
+
+    public BloomFilterMemory<T> toMemoryFilter() {
+        BloomFilterMemory<T> filter = new BloomFilterMemory<>(config().clone());
+        filter.setBitSet(getBitSet());
+        return filter;
+    }
+
+    @Override
+    public BloomFilter<T> clone() {
+        return new ShardedBloomFilterRedis<>(config.clone());
+    }
+
+    @Override
+    public boolean union(BloomFilter<T> other) {
+        return combine(other, BitOP.OR);
+    }
+
+    @Override
+    public boolean intersect(BloomFilter<T> other) {
+        return combine(other, BitOP.AND);
+    }
+
+    /**
+     * Combines the bits of a compatible Bloom filter into this one, shard by shard. If the other Bloom filter is a
+     * ShardedBloomFilterRedis with colocated shards, see {@link ShardedRedisBitSet#colocated(boolean,
+     * ShardedRedisBitSet)}, this is a single <i>BITOP</i> per shard. Otherwise, its bits are read and the range of each
+     * shard is uploaded to that shard.
+     *
+     * @param other the other Bloom filter
+     * @param op    the operation combining the bits
+     * @return <code>true</code> if the other Bloom filter is compatible and this Bloom filter was updated
+     */
+    private boolean combine(BloomFilter<T> other, BitOP op) {
+        if (!compatible(other)) {
+            return false;
+        }
+        if (other instanceof ShardedBloomFilterRedis) {
+            ShardedRedisBitSet bits = ((ShardedBloomFilterRedis<T>) other).getRedisBitSet();
+            if (bloom.colocated(config.redisCluster(), bits)) {
+                bloom.combine(op, bits);
+                return true;
+            }
+        }
+        bloom.combine(op, other.getBitSet());
+        return true;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bloom.isEmpty();
+    }
+
+    @Override
+    public Double getEstimatedPopulation() {
+        return BloomFilter.population(bloom.cardinality(), config());
+    }
+
+    /**
+     * Returns the underlying ShardedRedisBitSet implementation of this Bloom filter
+     *
+     * @return The underlying ShardedRedisBitSet
+     */
+    public ShardedRedisBitSet getRedisBitSet() {
+        return bloom;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ShardedBloomFilterRedis)) return false;
+
+        ShardedBloomFilterRedis<?> that = (ShardedBloomFilterRedis<?>) o;
+
+        if (bloom != null ? !bloom.equals(that.bloom) : that.bloom != null) return false;
+        if (config != null ? !config.isCompatibleTo(that.config) : that.config != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return bloom != null ? bloom.hashCode() : 0;
+    }
+}
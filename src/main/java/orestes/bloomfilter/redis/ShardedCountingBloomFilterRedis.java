@@ -0,0 +1,293 @@
+package orestes.bloomfilter.redis;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import orestes.bloomfilter.redis.helper.RedisKeys;
+import orestes.bloomfilter.redis.helper.RedisPool;
+import orestes.bloomfilter.redis.helper.RedisScript;
+import orestes.bloomfilter.redis.helper.RedisShards;
+import redis.clients.jedis.BitOP;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A counting Bloom filter whose counters and bits are split into ranges stored on different Redis instances, see
+ * {@link ShardedBloomFilterRedis}. Every shard keeps the counts of its range in a hash and the bits in a bit vector,
+ * just like {@link CountingBloomFilterRedis}. Each operation runs as one transaction or Lua script per affected shard,
+ * all shards being processed in parallel, and is therefore atomic per shard, but not across shards.
+ *
+ * @param <T> The type of the containing elements
+ */
+public class ShardedCountingBloomFilterRedis<T> implements CountingBloomFilter<T> {
+    private static final long serialVersionUID = -6652094311873905236L;
+    private final RedisKeys keys;
+    private final RedisKeys[] shardKeys;
+    private final RedisPool configPool;
+    private final RedisShards shards;
+    private final ShardedRedisBitSet bloom;
+    private final FilterBuilder config;
+    private final RedisScript[] removeScripts;
+    private final RedisScript[] mergeScripts;
+
+    public ShardedCountingBloomFilterRedis(FilterBuilder builder) {
+        FilterBuilder updateBuilder = builder.clone();
+        builder.complete();
+
+        this.keys = new RedisKeys(builder.name(), builder.redisCluster());
+        this.configPool = builder.redisCluster() ? builder.pool().forKey(keys.CONFIG_KEY) : builder.shardPools().get(0);
+        this.config = keys.persistConfig(configPool, updateBuilder);
+        this.shards = new RedisShards(builder.shardPools(), config.size());
+        this.shardKeys = new RedisKeys[shards.count()];
+        String[] names = new String[shards.count()];
+        for (int i = 0; i < shardKeys.length; i++) {
+            shardKeys[i] = keys.shard(i);
+            names[i] = shardKeys[i].BITS_KEY;
+        }
+        this.bloom = new ShardedRedisBitSet(shards, names);
+        this.removeScripts = new RedisScript[shards.count()];
+        this.mergeScripts = new RedisScript[shards.count()];
+        for (int i = 0; i < mergeScripts.length; i++) {
+            removeScripts[i] = new RedisScript(shards.getPool(i), CountingBloomFilterRedis.class, "remove.lua");
+            mergeScripts[i] = new RedisScript(shards.getPool(i), CountingBloomFilterRedis.class, "merge.lua");
+        }
+        if (builder.overwriteIfExists()) {
+            this.clear();
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> getCountMap() {
+        List<Map<Integer, Long>> ranges = shards.onAll((shard, pool) -> {
+            try (Jedis jedis = pool.allowingSlaves().getResource()) {
+                return RedisUtils.decodeMap(jedis.hgetAll(shardKeys[shard].COUNTS_KEY.getBytes()));
+            }
+        });
+        Map<Integer, Long> result = new HashMap<>();
+        for (int s = 0; s < ranges.size(); s++) {
+            int start = shards.start(s);
+            ranges.get(s).forEach((offset, count) -> result.put(start + offset, count));
+        }
+        return result;
+    }
+
+    @Override
+    public long addAndEstimateCountRaw(byte[] element) {
+        Object[] replies = shards.fanOut(hash(element), 2, (shard, pool, offsets) -> pool.transactionallyDo(p -> {
+            for (int offset : offsets) {
+                p.setbit(shardKeys[shard].BITS_KEY, offset, true);
+                p.hincrBy(shardKeys[shard].COUNTS_KEY.getBytes(), RedisUtils.encodeKey(offset), 1);
+            }
+        }));
+        long min = Long.MAX_VALUE;
+        for (int i = 1; i < replies.length; i += 2) {
+            min = Math.min(min, (Long) replies[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public long removeAndEstimateCountRaw(byte[] element) {
+        Object[] replies = shards.fanOut(hash(element), 1, this::decrement);
+        long min = Long.MAX_VALUE;
+        for (Object count : replies) {
+            min = Math.min(min, (Long) count);
+        }
+        return min;
+    }
+
+    /**
+     * Decrements the counts at the given offsets of a shard and removes counts and bits dropping to zero. As all keys
+     * of a shard are stored on one instance, this is a single execution of the removal script of {@link
+     * CountingBloomFilterRedis}, which never has to be retried.
+     *
+     * @param shard   the index of the shard
+     * @param pool    the pool of the shard
+     * @param offsets the offsets to decrement
+     * @return the new counts in the order of the offsets, stopping at zero
+     */
+    @SuppressWarnings("unchecked")
+    private List<Long> decrement(int shard, RedisPool pool, int[] offsets) {
+        List<Long> counts = (List<Long>) pool.safelyReturn(jedis -> removeScripts[shard].eval(jedis,
+            CountingBloomFilterRedis.encode(shardKeys[shard].COUNTS_KEY, shardKeys[shard].BITS_KEY),
+            Collections.singletonList(RedisUtils.encodePacked(offsets))));
+        List<Long> result = new ArrayList<>(counts.size());
+        for (Long count : counts) {
+            result.add(Math.max(count, 0L));
+        }
+        return result;
+    }
+
+    @Override
+    public long getEstimatedCount(T element) {
+        Object[] replies = shards.fanOut(hash(toBytes(element)), 1, (shard, pool, offsets) -> {
+            try (Jedis jedis = pool.allowingSlaves().getResource()) {
+                return jedis.hmget(shardKeys[shard].COUNTS_KEY.getBytes(), RedisUtils.encodeKey(offsets));
+            }
+        });
+        long min = Long.MAX_VALUE;
+        for (Object value : replies) {
+            min = Math.min(min, value == null ? 0L : RedisUtils.decodeValue((byte[]) value));
+        }
+        return min;
+    }
+
+    @Override
+    public void clear() {
+        shards.onAll((shard, pool) -> pool.safelyReturn(
+            jedis -> jedis.del(shardKeys[shard].COUNTS_KEY, shardKeys[shard].BITS_KEY)));
+    }
+
+    @Override
+    public void remove() {
+        clear();
+        configPool.safelyDo(jedis -> jedis.del(keys.CONFIG_KEY));
+        shards.destroy();
+    }
+
+    @Override
+    public boolean contains(byte[] element) {
+        return bloom.isAllSet(hash(element));
+    }
+
+    public ShardedRedisBitSet getRedisBitSet() {
+        return bloom;
+    }
+
+    @Override
+    public BitSet getBitSet() {
+        return bloom.asBitSet();
+    }
+
+    @Override
+    public FilterBuilder config() {
+        return config;
+    }
+
+    public CountingBloomFilterMemory<T> toMemoryFilter() {
+        CountingBloomFilterMemory<T> filter = new CountingBloomFilterMemory<>(config().clone());
+        filter.getBloomFilter().setBitSet(getBitSet());
+        return filter;
+    }
+
+    @Override
+    public CountingBloomFilter<T> clone() {
+        return new ShardedCountingBloomFilterRedis<>(config().clone());
+    }
+
+    /**
+     * Adds the counts of a compatible counting Bloom filter to the counts of this one, see {@link
+     * CountingBloomFilterRedis#union(BloomFilter)}.
+     *
+     * @param other the other counting Bloom filter
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
+    @Override
+    public boolean union(BloomFilter<T> other) {
+        return merge(other, BitOP.OR);
+    }
+
+    /**
+     * Replaces every count by the minimum of itself and the respective count of a compatible counting Bloom filter,
+     * see {@link CountingBloomFilterRedis#intersect(BloomFilter)}.
+     *
+     * @param other the other counting Bloom filter
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
+    @Override
+    public boolean intersect(BloomFilter<T> other) {
+        return merge(other, BitOP.AND);
+    }
+
+    /**
+     * Merges the counts and bits of another counting Bloom filter shard by shard with the Lua script of {@link
+     * CountingBloomFilterRedis}. If the other Bloom filter is a ShardedCountingBloomFilterRedis with colocated shards,
+     * see {@link ShardedRedisBitSet#colocated(boolean, ShardedRedisBitSet)}, the script reads its keys directly.
+     * Otherwise, the counts and bits of each shard's range are uploaded to temporary keys of that shard first.
+     *
+     * @param other the other Bloom filter
+     * @param op    the operation combining the bits
+     * @return <code>true</code> if the other Bloom filter is a compatible counting Bloom filter and this Bloom filter
+     * was updated
+     */
+    private boolean merge(BloomFilter<T> other, BitOP op) {
+        if (!(other instanceof CountingBloomFilter) || !compatible(other)) {
+            return false;
+        }
+        if (other instanceof ShardedCountingBloomFilterRedis) {
+            ShardedCountingBloomFilterRedis<T> that = (ShardedCountingBloomFilterRedis<T>) other;
+            if (bloom.colocated(config.redisCluster(), that.bloom)) {
+                shards.onAll((shard, pool) -> pool.safelyReturn(jedis -> mergeScripts[shard].eval(jedis,
+                    CountingBloomFilterRedis.encode(shardKeys[shard].COUNTS_KEY, shardKeys[shard].BITS_KEY,
+                        that.shardKeys[shard].COUNTS_KEY, that.shardKeys[shard].BITS_KEY),
+                    CountingBloomFilterRedis.encode(op.name(), "0"))));
+                return true;
+            }
+        }
+
+        List<Map<Integer, Long>> counts = new ArrayList<>(shards.count());
+        for (int s = 0; s < shards.count(); s++) {
+            counts.add(new HashMap<>());
+        }
+        ((CountingBloomFilter<T>) other).getCountMap().forEach((position, count) ->
+            counts.get(shards.shard(position)).put(shards.offset(position), count));
+        BitSet bits = other.getBitSet();
+        shards.onAll((shard, pool) -> {
+            int start = shards.start(shard);
+            BitSet range = bits.get(Math.min(start, config.size()), Math.min(start + shards.rangeSize(), config.size()));
+            pool.safelyDo(jedis -> CountingBloomFilterRedis.mergeCopies(jedis, mergeScripts[shard], shardKeys[shard],
+                counts.get(shard), range, op));
+            return null;
+        });
+        return true;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bloom.isEmpty();
+    }
+
+    @Override
+    public Double getEstimatedPopulation() {
+        return BloomFilter.population(bloom.cardinality(), config());
+    }
+
+    public RedisKeys getRedisKeys() {
+        return keys;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShardedCountingBloomFilterRedis)) {
+            return false;
+        }
+
+        ShardedCountingBloomFilterRedis<?> that = (ShardedCountingBloomFilterRedis<?>) o;
+
+        if (bloom != null ? !bloom.equals(that.bloom) : that.bloom != null) {
+            return false;
+        }
+        if (config != null ? !config.isCompatibleTo(that.config) : that.config != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return bloom != null ? bloom.hashCode() : 0;
+    }
+}
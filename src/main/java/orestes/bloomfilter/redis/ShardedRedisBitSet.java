@@ -0,0 +1,242 @@
+package orestes.bloomfilter.redis;
+
+import orestes.bloomfilter.redis.helper.RedisShards;
+import redis.clients.jedis.BitOP;
+import redis.clients.util.SafeEncoder;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A persistent bit vector whose bits are split into ranges stored on different Redis instances, see {@link
+ * RedisShards}. Every shard keeps its range under its own key. Bulk operations issue one pipelined transaction per
+ * shard and process the shards in parallel, so their throughput scales with the number of Redis instances. A bulk
+ * operation is atomic per shard, but not across shards.
+ */
+public class ShardedRedisBitSet {
+    private final RedisShards shards;
+    private final String[] names;
+
+    /**
+     * Constructs a new ShardedRedisBitSet.
+     *
+     * @param shards the shards holding the bits
+     * @param names  the keys of the shards' ranges in the order of the shards
+     */
+    public ShardedRedisBitSet(RedisShards shards, String... names) {
+        if (names.length != shards.count()) {
+            throw new IllegalArgumentException("Expected " + shards.count() + " keys, got " + names.length);
+        }
+        this.shards = shards;
+        this.names = names.clone();
+    }
+
+    public boolean get(int bitIndex) {
+        int shard = shards.shard(bitIndex);
+        return shards.getPool(shard).allowingSlaves()
+            .safelyReturn(jedis -> jedis.getbit(names[shard], shards.offset(bitIndex)));
+    }
+
+    /**
+     * Fetches the values at the given index positions with one transaction per shard.
+     *
+     * @param indexes the index positions to query
+     * @return an array containing the values at the given index positions
+     */
+    public Boolean[] getBulk(int... indexes) {
+        Object[] replies = shards.fanOut(indexes, 1, (shard, pool, offsets) -> pool.allowingSlaves().transactionallyDo(p -> {
+            for (int offset : offsets) {
+                p.getbit(names[shard], offset);
+            }
+        }));
+        return toBooleans(replies);
+    }
+
+    /**
+     * Sets the bits at the given index positions with one transaction per shard.
+     *
+     * @param indexes the index positions to set
+     * @return an array containing the previous values at the given index positions
+     */
+    public Boolean[] setBulk(int... indexes) {
+        Object[] replies = shards.fanOut(indexes, 1, (shard, pool, offsets) -> pool.transactionallyDo(p -> {
+            for (int offset : offsets) {
+                p.setbit(names[shard], offset, true);
+            }
+        }));
+        return toBooleans(replies);
+    }
+
+    public void set(int bitIndex, boolean value) {
+        int shard = shards.shard(bitIndex);
+        shards.getPool(shard).safelyDo(jedis -> jedis.setbit(names[shard], shards.offset(bitIndex), value));
+    }
+
+    /**
+     * Tests whether the provided bit positions are all set.
+     *
+     * @param positions the positions to test
+     * @return <code>true</code> if all positions are set
+     */
+    public boolean isAllSet(int... positions) {
+        for (Boolean result : getBulk(positions)) {
+            if (!result) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Set all bits
+     *
+     * @param positions The positions to set
+     * @return {@code true} if any of the bits was previously unset.
+     */
+    public boolean setAll(int... positions) {
+        for (Boolean result : setBulk(positions)) {
+            if (!result) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void clear() {
+        shards.onAll((shard, pool) -> pool.safelyReturn(jedis -> jedis.del(names[shard])));
+    }
+
+    /**
+     * @return the number of bits set to {@code true}
+     */
+    public long cardinality() {
+        return shards.onAll((shard, pool) -> pool.safelyReturn(jedis -> jedis.bitcount(names[shard]))).stream()
+            .mapToLong(Long::longValue).sum();
+    }
+
+    public boolean isEmpty() {
+        return cardinality() == 0;
+    }
+
+    /**
+     * @return the number of bits
+     */
+    public int size() {
+        return shards.size();
+    }
+
+    /**
+     * Reassembles the ranges of all shards into a regular BitSet.
+     *
+     * @return the bits as a regular BitSet
+     */
+    public BitSet asBitSet() {
+        List<byte[]> ranges = shards.onAll((shard, pool) -> pool.allowingSlaves()
+            .safelyReturn(jedis -> jedis.get(SafeEncoder.encode(names[shard]))));
+        BitSet bits = new BitSet(size());
+        for (int s = 0; s < ranges.size(); s++) {
+            if (ranges.get(s) != null) {
+                BitSet range = RedisBitSet.fromByteArrayReverse(ranges.get(s));
+                int start = shards.start(s);
+                for (int bit = range.nextSetBit(0); bit >= 0; bit = range.nextSetBit(bit + 1)) {
+                    bits.set(start + bit);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Checks whether every shard of the other bit vector can be combined with the respective shard of this one by a
+     * single command, see {@link RedisUtils#colocated(orestes.bloomfilter.redis.helper.RedisPool, boolean, String,
+     * orestes.bloomfilter.redis.helper.RedisPool, String)}.
+     *
+     * @param cluster whether the shards are stored on a Redis Cluster
+     * @param other   the other bit vector
+     * @return <code>true</code> if both bit vectors have the same ranges and each pair of shards is colocated
+     */
+    public boolean colocated(boolean cluster, ShardedRedisBitSet other) {
+        if (other.shards.count() != shards.count() || other.shards.rangeSize() != shards.rangeSize()) {
+            return false;
+        }
+        for (int s = 0; s < shards.count(); s++) {
+            if (!RedisUtils.colocated(shards.getPool(s), cluster, names[s], other.shards.getPool(s), other.names[s])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Combines this bit vector with a colocated one through one <i>BITOP</i> per shard, see {@link
+     * #colocated(boolean, ShardedRedisBitSet)}, so that no bits are transferred.
+     *
+     * @param op    the operation, e.g. {@link BitOP#OR} for a union
+     * @param other the other bit vector
+     */
+    public void combine(BitOP op, ShardedRedisBitSet other) {
+        shards.onAll((shard, pool) -> pool.safelyReturn(jedis -> jedis.bitop(op, names[shard], names[shard],
+            other.names[shard])));
+    }
+
+    /**
+     * Combines this bit vector with a regular BitSet. The range of every shard is uploaded to a temporary key of that
+     * shard, which is combined through <i>BITOP</i> and deleted in a single transaction per shard.
+     *
+     * @param op    the operation, e.g. {@link BitOP#OR} for a union
+     * @param other the bits to combine with
+     */
+    public void combine(BitOP op, BitSet other) {
+        shards.onAll((shard, pool) -> {
+            int start = shards.start(shard);
+            BitSet range = other.get(Math.min(start, size()), Math.min(start + shards.rangeSize(), size()));
+            String temporary = names[shard] + ":tmp";
+            return pool.transactionallyDo(p -> {
+                p.set(SafeEncoder.encode(temporary), RedisBitSet.toByteArrayReverse(range));
+                p.bitop(op, names[shard], names[shard], temporary);
+                p.del(temporary);
+            });
+        });
+    }
+
+    /**
+     * @return the shards holding the bits
+     */
+    public RedisShards getShards() {
+        return shards;
+    }
+
+    /**
+     * @param shard the index of a shard
+     * @return the key holding the range of the shard
+     */
+    public String getRedisKey(int shard) {
+        return names[shard];
+    }
+
+    private static Boolean[] toBooleans(Object[] replies) {
+        Boolean[] results = new Boolean[replies.length];
+        for (int i = 0; i < replies.length; i++) {
+            results[i] = (Boolean) replies[i];
+        }
+        return results;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ShardedRedisBitSet) {
+            return asBitSet().equals(((ShardedRedisBitSet) obj).asBitSet());
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return asBitSet().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", names) + "[" + size() + " bits in " + shards.count() + " shards]";
+    }
+}
@@ -0,0 +1,146 @@
+package orestes.bloomfilter.redis.helper;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.Pool;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A RedisPool for a Redis Cluster. Since the keys of a Bloom filter share a hash tag (see {@link RedisKeys}) and are
+ * therefore stored on the same node, a Bloom filter does not need a cluster-aware client: it binds to the pool of the
+ * master owning its slot through {@link #forKey(String)} and then uses plain connections, transactions and Lua scripts
+ * as with a standalone Redis. The slot map is fetched from any reachable node and refreshed when a slot is unknown.
+ * Slots migrated while a Bloom filter is bound are not followed.
+ */
+public class RedisClusterPool extends RedisPool {
+    private static final int SLOTS = 16384;
+
+    private final Set<HostAndPort> nodes;
+    private final Function<HostAndPort, JedisPool> poolFactory;
+    private final Map<HostAndPort, RedisPool> nodePools = new ConcurrentHashMap<>();
+    private volatile HostAndPort[] slots = new HostAndPort[SLOTS];
+
+    /**
+     * Constructs a RedisClusterPool.
+     *
+     * @param nodes       the nodes used to discover the cluster
+     * @param poolFactory creates the connection pool of a node
+     */
+    protected RedisClusterPool(Set<HostAndPort> nodes, Function<HostAndPort, JedisPool> poolFactory) {
+        super(null, null, nodes.iterator().next().getHost(), nodes.iterator().next().getPort());
+        this.nodes = new LinkedHashSet<>(nodes);
+        this.poolFactory = poolFactory;
+    }
+
+    /**
+     * Returns the pool of the master currently owning the slot of the given key.
+     *
+     * @param key the key
+     * @return the pool of the node owning the key
+     */
+    @Override
+    public RedisPool forKey(String key) {
+        int slot = JedisClusterCRC16.getSlot(key);
+        HostAndPort node = slots[slot];
+        if (node == null) {
+            refreshSlots();
+            node = slots[slot];
+            if (node == null) {
+                throw new JedisException("Slot " + slot + " of key " + key + " is not served by the cluster.");
+            }
+        }
+        return nodePools.computeIfAbsent(node, n -> new NodePool(poolFactory.apply(n), n));
+    }
+
+    /**
+     * @return the pools of all nodes bound so far
+     */
+    public List<RedisPool> getNodePools() {
+        return new ArrayList<>(nodePools.values());
+    }
+
+    private synchronized void refreshSlots() {
+        Set<HostAndPort> candidates = new LinkedHashSet<>(nodePools.keySet());
+        candidates.addAll(nodes);
+        JedisException last = null;
+        for (HostAndPort candidate : candidates) {
+            try (Jedis jedis = new Jedis(candidate.getHost(), candidate.getPort())) {
+                slots = parseSlots(jedis.clusterSlots(), candidate);
+                return;
+            } catch (JedisConnectionException e) {
+                last = e;
+            }
+        }
+        throw new JedisConnectionException("No reachable node in " + candidates, last);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HostAndPort[] parseSlots(List<Object> ranges, HostAndPort seed) {
+        HostAndPort[] slots = new HostAndPort[SLOTS];
+        for (Object range : ranges) {
+            // Format: [start, end, [master host, master port, id], replicas...]
+            List<Object> info = (List<Object>) range;
+            List<Object> master = (List<Object>) info.get(2);
+            String host = SafeEncoder.encode((byte[]) master.get(0));
+            HostAndPort node = new HostAndPort(host.isEmpty() ? seed.getHost() : host, ((Long) master.get(1)).intValue());
+            for (int slot = ((Long) info.get(0)).intValue(); slot <= ((Long) info.get(1)).intValue(); slot++) {
+                slots[slot] = node;
+            }
+        }
+        return slots;
+    }
+
+    @Override
+    public Pool<Jedis> getInternalPool() {
+        throw unbound();
+    }
+
+    @Override
+    public Jedis getResource() {
+        throw unbound();
+    }
+
+    @Override
+    public <T> T safelyReturn(Function<Jedis, T> f) {
+        throw unbound();
+    }
+
+    private static UnsupportedOperationException unbound() {
+        return new UnsupportedOperationException("A cluster pool has to be bound to a node through forKey(key).");
+    }
+
+    /**
+     * Destroys the pools of all nodes.
+     */
+    @Override
+    public void destroy() {
+        nodePools.values().forEach(pool -> pool.getInternalPool().destroy());
+        nodePools.clear();
+    }
+
+    /**
+     * The pool of a single cluster node, which is shared by all Bloom filters on the node and destroyed together with
+     * the cluster pool.
+     */
+    private static class NodePool extends RedisPool {
+        NodePool(JedisPool pool, HostAndPort node) {
+            super(pool, null, node.getHost(), node.getPort());
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package orestes.bloomfilter.redis.helper;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class RedisClusterPoolBuilder extends RedisBasePoolBuilder<RedisClusterPoolBuilder> {
+    private Set<HostAndPort> nodes = new LinkedHashSet<>();
+    private boolean ssl = false;
+
+    public RedisClusterPoolBuilder() {
+    }
+
+    public RedisClusterPoolBuilder nodes(Set<Map.Entry<String, Integer>> nodes) {
+        nodes.forEach(node -> addNode(node.getKey(), node.getValue()));
+        return this;
+    }
+
+    public RedisClusterPoolBuilder addNode(String host, int port) {
+        this.nodes.add(new HostAndPort(host, port));
+        return this;
+    }
+
+    public RedisClusterPoolBuilder ssl(boolean ssl) {
+        this.ssl = ssl;
+        return this;
+    }
+
+    public RedisClusterPool build() {
+        if (nodes.isEmpty()) {
+            throw new IllegalStateException("At least one cluster node is required.");
+        }
+        // Redis Cluster only supports database 0
+        return new RedisClusterPool(nodes, node -> new JedisPool(getPoolConfig(redisConnections), node.getHost(),
+            node.getPort(), timeout, password, Protocol.DEFAULT_DATABASE, ssl));
+    }
+}
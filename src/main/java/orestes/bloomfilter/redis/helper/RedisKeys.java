@@ -19,33 +19,62 @@ public class RedisKeys {
     public static final String C_KEY = "c";
     public static final String P_KEY = "p";
     public static final String HASH_METHOD_KEY = "hashmethod";
+    public final String CONFIG_KEY;
     public final String BITS_KEY;
     public final String COUNTS_KEY;
     public final String TTL_KEY;
     public final String EXPIRATION_QUEUE_KEY;
+    private final String instanceName;
+    private final boolean hashTags;
 
     public RedisKeys(String instanceName) {
-        this.BITS_KEY = instanceName + ":bits";
-        this.COUNTS_KEY = instanceName + ":counts";
-        this.TTL_KEY = instanceName + ":ttl";
-        this.EXPIRATION_QUEUE_KEY = instanceName + ":queue";
+        this(instanceName, false);
     }
 
+    /**
+     * Creates the keys of a Bloom filter. With hash tags, all keys share the tag <code>{instanceName}</code>, e.g.
+     * <code>{instanceName}:bits</code>, so that Redis Cluster stores them in the same slot. This allows transactions
+     * and Lua scripts spanning several keys of the filter.
+     *
+     * @param instanceName the name of the Bloom filter
+     * @param hashTags     whether the keys are hash-tagged for Redis Cluster
+     */
+    public RedisKeys(String instanceName, boolean hashTags) {
+        String prefix = hashTags ? "{" + instanceName + "}" : instanceName;
+        this.instanceName = instanceName;
+        this.hashTags = hashTags;
+        this.CONFIG_KEY = prefix;
+        this.BITS_KEY = prefix + ":bits";
+        this.COUNTS_KEY = prefix + ":counts";
+        this.TTL_KEY = prefix + ":ttl";
+        this.EXPIRATION_QUEUE_KEY = prefix + ":queue";
+    }
+
+    /**
+     * Returns the keys of a shard of a sharded Bloom filter, which are named after the filter and the index of the
+     * shard. With hash tags, every shard has its own tag and thus usually lands on a different slot.
+     *
+     * @param shard the index of the shard
+     * @return the keys of the shard
+     */
+    public RedisKeys shard(int shard) {
+        return new RedisKeys(instanceName + ":" + shard, hashTags);
+    }
 
     public FilterBuilder persistConfig(RedisPool pool, FilterBuilder builder) {
         return pool.safelyReturn(jedis -> {
             FilterBuilder newConfig = null;
             //Retry on concurrent changes
             while (newConfig == null) {
-                if (!builder.overwriteIfExists() && jedis.exists(builder.name())) {
-                    newConfig = this.applyRedisConfigMap(jedis.hgetAll(builder.name()), builder, pool);
+                if (!builder.overwriteIfExists() && jedis.exists(CONFIG_KEY)) {
+                    newConfig = this.applyRedisConfigMap(jedis.hgetAll(CONFIG_KEY), builder, pool);
                     newConfig.complete();
                 } else {
                     builder.complete();
                     Map<String, String> hash = this.buildRedisConfigMap(builder);
-                    jedis.watch(builder.name());
+                    jedis.watch(CONFIG_KEY);
                     Transaction t = jedis.multi();
-                    hash.forEach((k, v) -> t.hset(builder.name(), k, v));
+                    hash.forEach((k, v) -> t.hset(CONFIG_KEY, k, v));
                     if (t.exec() != null) {
                         newConfig = builder;
                     }
@@ -58,20 +87,23 @@ public class RedisKeys {
     private Map<String, String> buildRedisConfigMap(FilterBuilder config) {
         Map<String, String> map = new HashMap<>();
         map.put(P_KEY, String.valueOf(config.falsePositiveProbability()));
-        map.put(M_KEY, String.valueOf(config.size()));
+        map.put(M_KEY, String.valueOf(config.longSize()));
         map.put(K_KEY, String.valueOf(config.hashes()));
-        map.put(N_KEY, String.valueOf(config.expectedElements()));
+        map.put(N_KEY, String.valueOf(config.longExpectedElements()));
         map.put(C_KEY, String.valueOf(config.countingBits()));
         map.put(HASH_METHOD_KEY, config.hashMethod().name());
         return map;
     }
 
     private FilterBuilder applyRedisConfigMap(Map<String, String> map, FilterBuilder config, RedisPool pool) {
-        config.pool(pool);
+        // Keep a cluster pool, of which the given pool is only the node owning the keys
+        if (!config.redisCluster()) {
+            config.pool(pool);
+        }
         config.falsePositiveProbability(Double.valueOf(map.get(P_KEY)));
-        config.size(Integer.valueOf(map.get(M_KEY)));
+        config.size(Long.parseLong(map.get(M_KEY)));
         config.hashes(Integer.valueOf(map.get(K_KEY)));
-        config.expectedElements(Integer.valueOf(map.get(N_KEY)));
+        config.expectedElements(Long.parseLong(map.get(N_KEY)));
         config.countingBits(Integer.valueOf(map.get(C_KEY)));
         config.hashFunction(HashMethod.valueOf(map.get(HASH_METHOD_KEY)));
         return config;
@@ -0,0 +1,225 @@
+package orestes.bloomfilter.redis.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Executes commands of concurrent callers asynchronously by automatically pipelining them onto a small number of
+ * dedicated connections. Each connection is served by a thread that takes all commands submitted while its previous
+ * pipeline was in flight and sends them as the next pipeline, so that the throughput is bounded by the batch size per
+ * round trip rather than by the number of pooled connections. <br> <br> With a single connection, commands are
+ * executed in the order of their submission. With several connections, commands submitted concurrently may be
+ * reordered; callers depending on the order have to compose on the returned futures. Futures are completed by the
+ * connection threads, so expensive dependent stages should be run with the <code>*Async</code> methods of {@link
+ * CompletableFuture}. <br> <br> Optionally, a connection thread lingers for a short time after the first command of a
+ * pipeline to collect more commands, trading a bounded extra latency for larger pipelines.
+ */
+public class RedisPipeliner {
+    private static final Logger LOG = LoggerFactory.getLogger(RedisPipeliner.class);
+    // Limits the memory held by a single pipeline
+    private static final int MAX_BATCH = 1024;
+    private static final long POLL_INTERVAL = 100;
+
+    private final RedisPool pool;
+    private final long lingerNanos;
+    private final int maxBatch;
+    private final BlockingQueue<PendingCommand<?>> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running = true;
+
+    /**
+     * Starts the connection threads.
+     *
+     * @param pool        the pool to borrow the connections from
+     * @param connections the number of dedicated connections
+     * @param name        the name of the threads
+     */
+    public RedisPipeliner(RedisPool pool, int connections, String name) {
+        this(pool, connections, name, 0, MAX_BATCH);
+    }
+
+    /**
+     * Starts the connection threads, which wait for further commands after the first one of a pipeline.
+     *
+     * @param pool        the pool to borrow the connections from
+     * @param connections the number of dedicated connections
+     * @param name        the name of the threads
+     * @param linger      the time in microseconds to wait for further commands after the first one of a pipeline
+     * @param maxBatch    the maximum number of commands per pipeline, which ends lingering early
+     */
+    public RedisPipeliner(RedisPool pool, int connections, String name, long linger, int maxBatch) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("At least one connection is required, got " + connections);
+        }
+        if (linger < 0 || maxBatch < 1) {
+            throw new IllegalArgumentException("Invalid linger time " + linger + " or batch size " + maxBatch);
+        }
+        this.pool = pool;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(linger);
+        this.maxBatch = maxBatch;
+        for (int i = 0; i < connections; i++) {
+            Thread thread = new Thread(this::serve, "RedisPipeliner-" + name + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Submits a command for the next pipeline.
+     *
+     * @param command queues the commands into the pipeline and returns a supplier of the result, which is called after
+     *                the pipeline was synced
+     * @param <R>     the type of the result
+     * @return a future completed with the result of the command
+     */
+    public <R> CompletableFuture<R> submit(Function<Pipeline, Supplier<R>> command) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("The pipeliner was shut down"));
+            return future;
+        }
+        queue.add(new PendingCommand<>(command, future));
+        if (!running) {
+            // Shut down concurrently, so the command may never be taken
+            failPending();
+        }
+        return future;
+    }
+
+    /**
+     * Submits a command for the next pipeline and waits for its result.
+     *
+     * @param command queues the commands into the pipeline and returns a supplier of the result, which is called after
+     *                the pipeline was synced
+     * @param <R>     the type of the result
+     * @return the result of the command
+     */
+    public <R> R execute(Function<Pipeline, Supplier<R>> command) {
+        try {
+            return submit(command).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the connection threads after they sent their current pipelines and fails all commands not sent yet.
+     */
+    public void shutdown() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+        failPending();
+    }
+
+    private void failPending() {
+        List<PendingCommand<?>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(c -> c.future.completeExceptionally(new IllegalStateException("The pipeliner was shut down")));
+    }
+
+    private void serve() {
+        List<PendingCommand<?>> batch = new ArrayList<>();
+        while (running) {
+            try (Jedis jedis = pool.getResource()) {
+                while (running) {
+                    PendingCommand<?> first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    collect(first, batch);
+                    execute(jedis, batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                batch.forEach(c -> c.future.completeExceptionally(new IllegalStateException("The pipeliner was shut down")));
+                Thread.currentThread().interrupt();
+                return;
+            } catch (JedisConnectionException e) {
+                // The connection is returned as broken and a new one is borrowed
+                LOG.warn("Pipelined Redis connection failed", e);
+                batch.forEach(c -> c.future.completeExceptionally(e));
+                batch.clear();
+            } catch (Exception e) {
+                LOG.error("Could not borrow a Redis connection for pipelining", e);
+                batch.forEach(c -> c.future.completeExceptionally(e));
+                batch.clear();
+                try {
+                    Thread.sleep(POLL_INTERVAL);
+                } catch (InterruptedException e1) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void collect(PendingCommand<?> first, List<PendingCommand<?>> batch) throws InterruptedException {
+        batch.add(first);
+        queue.drainTo(batch, maxBatch - batch.size());
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            PendingCommand<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatch - batch.size());
+        }
+    }
+
+    private void execute(Jedis jedis, List<PendingCommand<?>> batch) {
+        Pipeline p = jedis.pipelined();
+        List<Supplier<?>> results = new ArrayList<>(batch.size());
+        for (PendingCommand<?> command : batch) {
+            Supplier<?> result = null;
+            try {
+                result = command.command.apply(p);
+            } catch (RuntimeException e) {
+                command.future.completeExceptionally(e);
+            }
+            results.add(result);
+        }
+        p.sync();
+        for (int i = 0; i < batch.size(); i++) {
+            if (results.get(i) != null) {
+                batch.get(i).complete(results.get(i));
+            }
+        }
+    }
+
+    private static class PendingCommand<R> {
+        private final Function<Pipeline, Supplier<R>> command;
+        private final CompletableFuture<R> future;
+
+        private PendingCommand(Function<Pipeline, Supplier<R>> command, CompletableFuture<R> future) {
+            this.command = command;
+            this.future = future;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(Supplier<?> result) {
+            try {
+                future.complete(((Supplier<R>) result).get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -45,6 +45,14 @@ public class RedisPool {
         return new RedisSentinelPoolBuilder();
     }
 
+    /**
+     * Creates a builder for a Redis Cluster RedisPool
+     * @return A builder for a cluster redisPool
+     */
+    public static final RedisClusterPoolBuilder clusterBuilder() {
+        return new RedisClusterPoolBuilder();
+    }
+
     protected RedisPool(Pool<Jedis> pool, List<RedisPool> slavePools, String host, int port) {
         this.pool = pool;
         this.host = host;
@@ -71,6 +79,17 @@ public class RedisPool {
         return port;
     }
 
+    /**
+     * Returns the pool serving the given key. Only differs from this pool for a Redis Cluster, see {@link
+     * RedisClusterPool}.
+     *
+     * @param key the key
+     * @return the pool to use for the key
+     */
+    public RedisPool forKey(String key) {
+        return this;
+    }
+
     public RedisPool allowingSlaves() {
         if (slavePools == null) {
             return this;
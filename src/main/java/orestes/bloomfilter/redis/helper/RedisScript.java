@@ -0,0 +1,78 @@
+package orestes.bloomfilter.redis.helper;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.util.SafeEncoder;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * A Lua script that is loaded into the script cache of Redis once and then executed by its SHA1 digest, so that only
+ * the digest is transferred per call. If a Redis instance does not know the script, e.g. a read slave or a restarted
+ * master, it is sent in full once, which also caches it on that instance.
+ */
+public class RedisScript {
+    private final RedisPool pool;
+    private final byte[] script;
+    private final byte[] sha;
+
+    /**
+     * Loads a script from the classpath into the script cache.
+     *
+     * @param pool     the pool to load the script into
+     * @param base     the class relative to which the script is resolved
+     * @param filename the name of the script
+     */
+    public RedisScript(RedisPool pool, Class<?> base, String filename) {
+        InputStream stream = base.getResourceAsStream(filename);
+        String source = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)).lines()
+            .collect(Collectors.joining("\n"));
+        this.pool = pool;
+        this.script = SafeEncoder.encode(source);
+        this.sha = pool.safelyReturn(jedis -> jedis.scriptLoad(script));
+    }
+
+    /**
+     * Executes the script.
+     *
+     * @param jedis the connection to use
+     * @param keys  the keys the script accesses
+     * @param args  the arguments
+     * @return the reply of the script
+     */
+    public Object eval(Jedis jedis, List<byte[]> keys, List<byte[]> args) {
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            return jedis.eval(script, keys, args);
+        }
+    }
+
+    /**
+     * Queues the execution of the script into a pipeline. If Redis does not know the script, it is sent in full with
+     * a separate connection of the pool when the result is retrieved.
+     *
+     * @param p    the pipeline to use
+     * @param keys the keys the script accesses
+     * @param args the arguments
+     * @return a supplier of the reply of the script, to be called after the pipeline was synced
+     */
+    public Supplier<Object> eval(Pipeline p, List<byte[]> keys, List<byte[]> args) {
+        Response<Object> response = p.evalsha(sha, keys, args);
+        return () -> {
+            try {
+                return response.get();
+            } catch (JedisNoScriptException e) {
+                return pool.safelyReturn(jedis -> jedis.eval(script, keys, args));
+            }
+        };
+    }
+}
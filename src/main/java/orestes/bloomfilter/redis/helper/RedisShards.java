@@ -0,0 +1,228 @@
+package orestes.bloomfilter.redis.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Splits the bit space of a Redis-backed Bloom filter into contiguous ranges of equal size, each owned by a different
+ * Redis instance. Shard <i>i</i> holds the positions from <code>i * rangeSize</code> up to (excluding) <code>(i + 1) *
+ * rangeSize</code> at the offsets <code>position - i * rangeSize</code> of its own keys. Operations on many positions
+ * are grouped by shard and executed as one pipeline per shard, with all shards being processed in parallel.
+ */
+public class RedisShards {
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "redis-shards-" + THREADS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<RedisPool> pools;
+    private final int size;
+    private final int rangeSize;
+
+    /**
+     * A pipelined operation on the offsets of positions owned by a single shard.
+     */
+    @FunctionalInterface
+    public interface ShardOperation {
+        /**
+         * Executes the operation on a shard.
+         *
+         * @param shard   the index of the shard
+         * @param pool    the pool of the shard
+         * @param offsets the offsets of the positions within the shard
+         * @return the replies, a fixed number for each offset in the order of the offsets
+         */
+        List<?> apply(int shard, RedisPool pool, int[] offsets);
+    }
+
+    /**
+     * An operation on a whole shard.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface ShardFunction<T> {
+        /**
+         * Executes the operation on a shard.
+         *
+         * @param shard the index of the shard
+         * @param pool  the pool of the shard
+         * @return the result
+         */
+        T apply(int shard, RedisPool pool);
+    }
+
+    /**
+     * Constructs shards of equal size.
+     *
+     * @param pools the pools of the Redis instances in the order of their ranges
+     * @param size  the number of positions of all shards together
+     */
+    public RedisShards(List<RedisPool> pools, int size) {
+        if (pools.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required.");
+        }
+        this.pools = new ArrayList<>(pools);
+        this.size = size;
+        this.rangeSize = Math.max((int) ((size + (long) pools.size() - 1) / pools.size()), 1);
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int count() {
+        return pools.size();
+    }
+
+    /**
+     * @param shard the index of a shard
+     * @return the pool of the shard
+     */
+    public RedisPool getPool(int shard) {
+        return pools.get(shard);
+    }
+
+    /**
+     * @return the number of positions of all shards together
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum number of positions owned by a shard
+     */
+    public int rangeSize() {
+        return rangeSize;
+    }
+
+    /**
+     * @param position a position
+     * @return the index of the shard owning the position
+     */
+    public int shard(int position) {
+        return position / rangeSize;
+    }
+
+    /**
+     * @param position a position
+     * @return the offset of the position within its shard
+     */
+    public int offset(int position) {
+        return position % rangeSize;
+    }
+
+    /**
+     * @param shard the index of a shard
+     * @return the first position owned by the shard
+     */
+    public int start(int shard) {
+        return shard * rangeSize;
+    }
+
+    /**
+     * Groups the positions by shard and applies the operation to the offsets of each shard, all shards in parallel.
+     * The replies are reassembled in the order of the given positions.
+     *
+     * @param positions          the positions
+     * @param repliesPerPosition the number of replies the operation returns per offset
+     * @param operation          the operation to apply per shard
+     * @return the replies of all shards, <code>repliesPerPosition</code> consecutive ones for each position
+     */
+    public Object[] fanOut(int[] positions, int repliesPerPosition, ShardOperation operation) {
+        int[] counts = new int[pools.size()];
+        for (int position : positions) {
+            counts[shard(position)]++;
+        }
+        int[][] offsets = new int[pools.size()][];
+        int[][] indexes = new int[pools.size()][];
+        for (int s = 0; s < counts.length; s++) {
+            offsets[s] = new int[counts[s]];
+            indexes[s] = new int[counts[s]];
+            counts[s] = 0;
+        }
+        for (int i = 0; i < positions.length; i++) {
+            int s = shard(positions[i]);
+            offsets[s][counts[s]] = offset(positions[i]);
+            indexes[s][counts[s]++] = i;
+        }
+
+        List<List<?>> replies = inParallel(s -> counts[s] == 0 ? null : operation.apply(s, pools.get(s), offsets[s]),
+            s -> counts[s] != 0);
+        Object[] results = new Object[positions.length * repliesPerPosition];
+        for (int s = 0; s < counts.length; s++) {
+            List<?> shardReplies = replies.get(s);
+            for (int j = 0; j < counts[s]; j++) {
+                for (int r = 0; r < repliesPerPosition; r++) {
+                    results[indexes[s][j] * repliesPerPosition + r] = shardReplies.get(j * repliesPerPosition + r);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Applies the function to the pools of all shards in parallel.
+     *
+     * @param f   the function to apply
+     * @param <T> the type of the results
+     * @return the results in the order of the shards
+     */
+    public <T> List<T> onAll(ShardFunction<T> f) {
+        return inParallel(s -> f.apply(s, pools.get(s)), s -> true);
+    }
+
+    /**
+     * Applies the function to the selected shards, the last one in the calling thread and all others in the executor.
+     *
+     * @param f        the function to apply to the index of a shard
+     * @param selected whether a shard is to be processed at all
+     * @param <T>      the type of the results
+     * @return the results in the order of the shards, {@code null} for shards not selected
+     */
+    private <T> List<T> inParallel(IntFunction<T> f, IntPredicate selected) {
+        int last = pools.size() - 1;
+        while (last > 0 && !selected.test(last)) {
+            last--;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(pools.size());
+        for (int s = 0; s < last; s++) {
+            int shard = s;
+            futures.add(selected.test(s) ? CompletableFuture.supplyAsync(() -> f.apply(shard), EXECUTOR) : null);
+        }
+        T lastResult = f.apply(last);
+
+        List<T> results = new ArrayList<>(pools.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future == null ? null : future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        results.add(lastResult);
+        while (results.size() < pools.size()) {
+            results.add(null);
+        }
+        return results;
+    }
+
+    /**
+     * Destroys the pools of all shards.
+     */
+    public void destroy() {
+        pools.forEach(RedisPool::destroy);
+    }
+}
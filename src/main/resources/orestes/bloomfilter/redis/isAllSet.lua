@@ -0,0 +1,18 @@
+-- Returns for each element of a batch whether all of its bits are set, skipping the remaining bits of an element
+-- as soon as one of them is unset
+-- ARGV[1]: the number of bits per element, ARGV[2]: the bit positions packed as 32 bit big-endian integers
+local k = tonumber(ARGV[1])
+local positions = ARGV[2]
+local results = {}
+for element = 0, #positions / (4 * k) - 1 do
+    local contained = 1
+    for i = 0, k - 1 do
+        local position = struct.unpack('>I4', positions, (element * k + i) * 4 + 1)
+        if redis.call('getbit', KEYS[1], position) == 0 then
+            contained = 0
+            break
+        end
+    end
+    results[#results + 1] = contained
+end
+return results
@@ -0,0 +1,36 @@
+-- Merges the counts and bits of another counting Bloom filter into a counting Bloom filter
+-- KEYS[1]: the counts, KEYS[2]: the bits, KEYS[3]: the other counts, KEYS[4]: the other bits
+-- ARGV[1]: "OR" to add the counts for a union or "AND" to take their minimum for an intersection
+-- ARGV[2]: "1" if the other counts and bits are temporary copies, which are deleted afterwards
+local COUNTS_KEY = KEYS[1]
+local BITS_KEY = KEYS[2]
+local OTHER_COUNTS_KEY = KEYS[3]
+local OTHER_BITS_KEY = KEYS[4]
+local op = ARGV[1]
+
+if op == "OR" then
+    -- Add the other counts
+    local other = redis.call("HGETALL", OTHER_COUNTS_KEY)
+    for i = 1, #other, 2 do
+        redis.call("HINCRBY", COUNTS_KEY, other[i], other[i + 1])
+    end
+else
+    -- Lower each count to the other one, counts missing there are zero
+    local counts = redis.call("HGETALL", COUNTS_KEY)
+    for i = 1, #counts, 2 do
+        local other = tonumber(redis.call("HGET", OTHER_COUNTS_KEY, counts[i]) or 0)
+        if other <= 0 then
+            redis.call("HDEL", COUNTS_KEY, counts[i])
+        elseif other < tonumber(counts[i + 1]) then
+            redis.call("HSET", COUNTS_KEY, counts[i], other)
+        end
+    end
+end
+
+-- A bit is set iff its count is positive, so the bits are combined like the counts
+redis.call("BITOP", op, BITS_KEY, BITS_KEY, OTHER_BITS_KEY)
+
+if ARGV[2] == "1" then
+    redis.call("DEL", OTHER_COUNTS_KEY, OTHER_BITS_KEY)
+end
+return 1
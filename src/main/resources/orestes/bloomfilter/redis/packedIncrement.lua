@@ -0,0 +1,30 @@
+-- Increments or decrements the counters of a packed counting Bloom filter with saturation and updates its bits
+-- KEYS[1]: the counters, KEYS[2]: the bits
+-- ARGV[1]: the BITFIELD type of a counter, e.g. u16, ARGV[2]: the increment,
+-- ARGV[3]: the positions packed as 32 bit big-endian integers
+-- Returns the new counts in the order of the positions
+local counterType = ARGV[1]
+local increment = ARGV[2]
+local positions = ARGV[3]
+-- Positions per BITFIELD call, keeping the unpacked arguments below the Lua stack limit
+local chunk = 4 * 512
+local counts = {}
+for from = 1, #positions, chunk do
+    local to = math.min(from + chunk - 1, #positions)
+    local args = { 'OVERFLOW', 'SAT' }
+    for offset = from, to, 4 do
+        args[#args + 1] = 'INCRBY'
+        args[#args + 1] = counterType
+        args[#args + 1] = '#' .. struct.unpack('>I4', positions, offset)
+        args[#args + 1] = increment
+    end
+    local values = redis.call('bitfield', KEYS[1], unpack(args))
+    local i = 1
+    for offset = from, to, 4 do
+        local count = values[i]
+        redis.call('setbit', KEYS[2], struct.unpack('>I4', positions, offset), count > 0 and 1 or 0)
+        counts[#counts + 1] = count
+        i = i + 1
+    end
+end
+return counts
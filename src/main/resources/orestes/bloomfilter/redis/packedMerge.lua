@@ -0,0 +1,78 @@
+-- Merges the counters and bits of another packed counting Bloom filter into a packed counting Bloom filter
+-- KEYS[1]: the counters, KEYS[2]: the bits, KEYS[3]: the other counters, KEYS[4]: the other bits
+-- ARGV[1]: the BITFIELD type of a counter, e.g. u16, ARGV[2]: the BITFIELD type of the other counters,
+-- ARGV[3]: "OR" to add the other counters with saturation for a union or "AND" to take their minimum for an intersection
+-- ARGV[4]: "1" if the other counters and bits are temporary copies, which are deleted afterwards
+local COUNTS_KEY = KEYS[1]
+local BITS_KEY = KEYS[2]
+local OTHER_COUNTS_KEY = KEYS[3]
+local OTHER_BITS_KEY = KEYS[4]
+local counterType = ARGV[1]
+local otherType = ARGV[2]
+local op = ARGV[3]
+-- Counters per BITFIELD call, keeping the unpacked arguments below the Lua stack limit
+local chunk = 512
+
+-- The number of counters of the given type stored in a key
+local function size(key, type)
+    return math.floor(redis.call('strlen', key) * 8 / tonumber(string.sub(type, 2)))
+end
+
+-- Reads the counters from..to of a key, counters beyond its end are zero
+local function get(key, type, from, to)
+    local args = {}
+    for position = from, to do
+        args[#args + 1] = 'GET'
+        args[#args + 1] = type
+        args[#args + 1] = '#' .. position
+    end
+    return redis.call('bitfield', key, unpack(args))
+end
+
+if op == 'OR' then
+    -- Add the other counters, skipping zeros so that the counters are not extended beyond the highest one used
+    local n = size(OTHER_COUNTS_KEY, otherType)
+    for from = 0, n - 1, chunk do
+        local other = get(OTHER_COUNTS_KEY, otherType, from, math.min(from + chunk, n) - 1)
+        local args = { 'OVERFLOW', 'SAT' }
+        for i, count in ipairs(other) do
+            if count > 0 then
+                args[#args + 1] = 'INCRBY'
+                args[#args + 1] = counterType
+                args[#args + 1] = '#' .. (from + i - 1)
+                args[#args + 1] = count
+            end
+        end
+        if #args > 2 then
+            redis.call('bitfield', COUNTS_KEY, unpack(args))
+        end
+    end
+else
+    -- Lower each counter to the other one
+    local n = size(COUNTS_KEY, counterType)
+    for from = 0, n - 1, chunk do
+        local to = math.min(from + chunk, n) - 1
+        local counts = get(COUNTS_KEY, counterType, from, to)
+        local other = get(OTHER_COUNTS_KEY, otherType, from, to)
+        local args = {}
+        for i, count in ipairs(counts) do
+            if other[i] < count then
+                args[#args + 1] = 'SET'
+                args[#args + 1] = counterType
+                args[#args + 1] = '#' .. (from + i - 1)
+                args[#args + 1] = other[i]
+            end
+        end
+        if #args > 0 then
+            redis.call('bitfield', COUNTS_KEY, unpack(args))
+        end
+    end
+end
+
+-- A bit is set iff its counter is positive, so the bits are combined like the counters
+redis.call('BITOP', op, BITS_KEY, BITS_KEY, OTHER_BITS_KEY)
+
+if ARGV[4] == "1" then
+    redis.call('DEL', OTHER_COUNTS_KEY, OTHER_BITS_KEY)
+end
+return 1
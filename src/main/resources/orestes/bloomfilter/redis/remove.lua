@@ -0,0 +1,23 @@
+-- Decrements the counts of the given positions of a counting Bloom filter and clears the bits of counts dropping to zero
+-- KEYS[1]: the counts, KEYS[2]: the bits
+-- ARGV[1]: the positions packed as 32 bit big-endian integers, which is also the encoding of the count fields
+-- Returns the new counts in the order of the positions
+local COUNTS_KEY = KEYS[1]
+local BITS_KEY = KEYS[2]
+local positions = ARGV[1]
+
+local counts = {}
+for offset = 1, #positions, 4 do
+    local key = string.sub(positions, offset, offset + 3)
+
+    -- Decrement count
+    local count = redis.call("HINCRBY", COUNTS_KEY, key, -1)
+
+    -- If count is not positive, clear the bit at the given position
+    if count <= 0 then
+        redis.call("HDEL", COUNTS_KEY, key)
+        redis.call("SETBIT", BITS_KEY, struct.unpack(">I4", key), 0)
+    end
+    counts[#counts + 1] = count
+end
+return counts
@@ -0,0 +1,20 @@
+-- Sets the bits of a batch of elements and returns for each element whether any of its bits was unset before
+-- ARGV[1]: the number of bits per element, ARGV[2]: the bit positions packed as 32 bit big-endian integers
+local k = tonumber(ARGV[1])
+local positions = ARGV[2]
+local results = {}
+local added = 0
+local count = 0
+for offset = 1, #positions, 4 do
+    local position = struct.unpack('>I4', positions, offset)
+    if redis.call('setbit', KEYS[1], position, 1) == 0 then
+        added = 1
+    end
+    count = count + 1
+    if count == k then
+        results[#results + 1] = added
+        added = 0
+        count = 0
+    end
+end
+return results
@@ -0,0 +1,115 @@
+package orestes.bloomfilter.test;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.BloomFilterIngest;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static orestes.bloomfilter.test.helper.Helper.*;
+import static org.junit.Assert.*;
+
+public class BloomFilterIngestTest {
+    private final ExecutorService hashers = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        hashers.shutdown();
+        cleanupRedis();
+    }
+
+    private static List<String> stream() {
+        // Every element occurs three times
+        return IntStream.range(0, 3_000).mapToObj(i -> "element" + i % 1_000).collect(Collectors.toList());
+    }
+
+    private void assertDeduplicates(BloomFilter<String> filter) throws Exception {
+        List<String> elements = stream();
+        BloomFilterMemory<String> sequential = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        List<Boolean> expected = sequential.addAll(elements);
+        List<String> emitted = Collections.synchronizedList(new ArrayList<>());
+        List<Boolean> wasNew = Collections.synchronizedList(new ArrayList<>());
+        BloomFilterIngest<String> ingest = new BloomFilterIngest<>(filter, hashers, 64, 256, (element, added) -> {
+            emitted.add(element);
+            wasNew.add(added);
+        });
+        elements.forEach(ingest);
+        ingest.onComplete();
+        ingest.completion().get();
+
+        assertEquals(elements, emitted);
+        assertEquals(expected, wasNew);
+        assertTrue(wasNew.subList(1_000, 3_000).stream().noneMatch(b -> b));
+    }
+
+    @Test
+    public void testMemoryFilter() throws Exception {
+        BloomFilterMemory<String> filter = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        assertDeduplicates(filter);
+    }
+
+    @Test
+    public void testRedisFilter() throws Exception {
+        BloomFilter<String> filter = createRedisFilter("ingesttests", 10_000, 0.01, HashMethod.Murmur3, true);
+        assertDeduplicates(filter);
+        BloomFilterMemory<String> memory = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        memory.addAll(stream());
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+        filter.remove();
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger maxPending = new AtomicInteger();
+        AtomicInteger emitted = new AtomicInteger();
+        BloomFilterIngest<String> ingest = new BloomFilterIngest<>(createFilter(10_000, 0.01, HashMethod.Murmur3), hashers,
+            10, 20, (element, added) -> emitted.incrementAndGet());
+        for (String element : stream()) {
+            ingest.onNext(element);
+            maxPending.accumulateAndGet(received.incrementAndGet() - emitted.get(), Math::max);
+        }
+        ingest.onComplete();
+        ingest.completion().get();
+        assertEquals(3_000, emitted.get());
+        assertTrue(maxPending.get() <= 20);
+    }
+
+    @Test
+    public void testPartialBatchesAndErrors() throws Exception {
+        List<String> emitted = Collections.synchronizedList(new ArrayList<>());
+        BloomFilterIngest<String> ingest = new BloomFilterIngest<>(createFilter(1_000, 0.01, HashMethod.Murmur3), hashers,
+            100, 100, (element, added) -> emitted.add(element));
+        ingest.onNext("foo");
+        ingest.flush();
+        ingest.onNext("bar");
+        ingest.onError(new IllegalArgumentException("broken stream"));
+        try {
+            ingest.completion().get();
+            fail("The stream failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        try {
+            ingest.onNext("baz");
+            fail("The stream was terminated");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        hashers.shutdown();
+        hashers.awaitTermination(1, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("foo"), emitted);
+    }
+}
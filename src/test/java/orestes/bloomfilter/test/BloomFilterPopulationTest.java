@@ -24,24 +24,31 @@ public class BloomFilterPopulationTest {
     private double defaultError = 0.01;
     private final boolean redisBacked;
     private final boolean counting;
+    private final boolean concurrent;
     private static final String name = "concurrencytests";
     private BloomFilter<String> filter;
 
     @Parameterized.Parameters(name = "Bloom Filter test with {0}")
     public static Collection<Object[]> data() throws Exception {
         Object[][] data = {
-            {"normal memory", false, false},
-            {"counting memory", false, true},
-            {"normal redis", true, false},
-            {"counting redis", true, true}
+            {"normal memory", false, false, false},
+            {"counting memory", false, true, false},
+            {"normal redis", true, false, false},
+            {"counting redis", true, true, false},
+            {"concurrent memory", false, false, true},
+            {"concurrent counting memory", false, true, true}
         };
         return Arrays.asList(data);
     }
 
     private BloomFilter<String> createFilter(String name, int n, double p, HashMethod hm) {
         if (!redisBacked) {
-            if (counting) {
+            if (counting && concurrent) {
+                return createConcurrentCountingFilter(n, p, hm);
+            } else if (counting) {
                 return createCountingFilter(n, p, hm);
+            } else if (concurrent) {
+                return createConcurrentFilter(n, p, hm);
             } else {
                 return Helper.createFilter(n, p, hm);
             }
@@ -54,9 +61,10 @@ public class BloomFilterPopulationTest {
         }
     }
 
-    public BloomFilterPopulationTest(String name, boolean redisBacked, boolean counting) {
+    public BloomFilterPopulationTest(String name, boolean redisBacked, boolean counting, boolean concurrent) {
         this.redisBacked = redisBacked;
         this.counting = counting;
+        this.concurrent = concurrent;
     }
 
     public <T> void createFilter() {
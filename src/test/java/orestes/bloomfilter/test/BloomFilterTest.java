@@ -9,6 +9,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -27,23 +28,30 @@ public class BloomFilterTest {
 
     private final boolean redisBacked;
     private final boolean counting;
+    private final boolean concurrent;
     private static final String name = "concurrencytests";
 
     @Parameterized.Parameters(name = "Bloom Filter test with {0}")
     public static Collection<Object[]> data() throws Exception {
         Object[][] data = {
-                {"normal memory", false, false},
-                {"counting memory", false, true},
-                {"normal redis", true, false},
-                {"counting redis", true, true}
+                {"normal memory", false, false, false},
+                {"counting memory", false, true, false},
+                {"normal redis", true, false, false},
+                {"counting redis", true, true, false},
+                {"concurrent memory", false, false, true},
+                {"concurrent counting memory", false, true, true}
         };
         return Arrays.asList(data);
     }
 
     private BloomFilter<String> createFilter(String name, int n, double p, HashMethod hm) {
         if (!redisBacked) {
-            if (counting)
+            if (counting && concurrent)
+                return createConcurrentCountingFilter(n, p, hm);
+            else if (counting)
                 return createCountingFilter(n, p, hm);
+            else if (concurrent)
+                return createConcurrentFilter(n, p, hm);
             else
                 return Helper.createFilter(n, p, hm);
         } else {
@@ -54,9 +62,10 @@ public class BloomFilterTest {
         }
     }
 
-    public BloomFilterTest(String name, boolean redisBacked, boolean counting) {
+    public BloomFilterTest(String name, boolean redisBacked, boolean counting, boolean concurrent) {
         this.redisBacked = redisBacked;
         this.counting = counting;
+        this.concurrent = concurrent;
     }
 
     @Test
@@ -138,6 +147,36 @@ public class BloomFilterTest {
         assertFalse(b1.getBitSet().equals(b3.getBitSet()));
     }
 
+    @Test
+    public void batchTest() {
+        int n = 1_000;
+        double p = 0.1;
+        // Overfill the filter and insert duplicates, so that elements share bits
+        List<String> inserted = IntStream.range(0, 3_000).mapToObj(i -> "test" + (i % 2_500)).collect(Collectors.toList());
+        List<String> tested = IntStream.range(0, 3_000).mapToObj(i -> "test" + (i * 2)).collect(Collectors.toList());
+        BloomFilter<String> sequential = createFilter(name + "1", n, p, HashMethod.Murmur3);
+        BloomFilter<String> batched = createFilter(name + "2", n, p, HashMethod.Murmur3);
+
+        List<Boolean> expectedAdded = sequential.addAll(inserted);
+        boolean[] added = batched.addAll(inserted, new boolean[inserted.size()]);
+        for (int i = 0; i < inserted.size(); i++) {
+            assertEquals(expectedAdded.get(i), added[i]);
+        }
+        assertEquals(sequential.getBitSet(), batched.getBitSet());
+        BitSet addedAgain = batched.addAll(inserted, new BitSet());
+        assertTrue(addedAgain.isEmpty());
+
+        List<Boolean> expectedContained = sequential.contains(tested);
+        boolean[] contained = batched.contains(tested, new boolean[tested.size()]);
+        BitSet containedBits = batched.contains(tested, new BitSet());
+        for (int i = 0; i < tested.size(); i++) {
+            assertEquals(expectedContained.get(i), contained[i]);
+            assertEquals(expectedContained.get(i), containedBits.get(i));
+        }
+        sequential.remove();
+        batched.remove();
+    }
+
     @Test
     public void differentHashFunctionsTest() {
         int n = 10_000;
@@ -1,20 +1,41 @@
 package orestes.bloomfilter.test;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import orestes.bloomfilter.BloomFilter;
 import orestes.bloomfilter.FilterBuilder;
 import orestes.bloomfilter.HashProvider;
+import orestes.bloomfilter.HashProvider.HashMethod;
 import orestes.bloomfilter.json.BloomFilterConverter;
+import orestes.bloomfilter.json.CompactBitSet;
+import orestes.bloomfilter.redis.BloomFilterRedis;
+import org.junit.After;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static org.junit.Assert.assertTrue;
+import static orestes.bloomfilter.test.helper.Helper.*;
+import static org.junit.Assert.*;
 
 
 public class ConverterTest {
+    @After
+    public void tearDown() {
+        cleanupRedis();
+    }
+
     @Test
     public void testCorrectJSON() throws Exception {
         BloomFilter<String> bf = new FilterBuilder().expectedElements(50).falsePositiveProbability(0.1).buildBloomFilter();
@@ -33,6 +54,146 @@ public class ConverterTest {
         assertTrue(otherBf.contains("Ululu"));
     }
 
+    @Test
+    public void testCompactEncoding() {
+        Random random = new Random(42);
+        for (int size : new int[]{1, 100, 8143, 100_000}) {
+            for (double fill : new double[]{0, 0.001, 0.05, 0.5, 1}) {
+                BitSet bits = new BitSet(size);
+                for (int i = 0; i < size; i++) {
+                    if (random.nextDouble() < fill) {
+                        bits.set(i);
+                    }
+                }
+                byte[] encoded = CompactBitSet.encode(bits, size);
+                assertEquals(bits, CompactBitSet.decode(encoded));
+                assertEquals(size, CompactBitSet.size(encoded));
+                for (CompactBitSet.Format format : CompactBitSet.Format.values()) {
+                    byte[] forced = CompactBitSet.encode(bits, size, format);
+                    assertEquals(format, CompactBitSet.format(forced));
+                    assertEquals(bits, CompactBitSet.decode(forced));
+                    assertTrue(encoded.length <= forced.length);
+                }
+            }
+        }
+
+        // Sparse bit vectors are Golomb coded, dense ones are kept
+        BitSet sparse = new BitSet();
+        IntStream.range(0, 100).forEach(i -> sparse.set(i * 997));
+        byte[] encoded = CompactBitSet.encode(sparse, 100_000);
+        assertEquals(CompactBitSet.Format.GOLOMB, CompactBitSet.format(encoded));
+        assertTrue(encoded.length < 200);
+        BitSet dense = new BitSet();
+        dense.set(0, 50_000);
+        assertEquals(CompactBitSet.Format.DENSE, CompactBitSet.format(CompactBitSet.encode(dense, 100_000)));
+
+        try {
+            CompactBitSet.decode(Arrays.copyOf(encoded, encoded.length - 10));
+            fail("The encoding is truncated");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCompactJSON() {
+        BloomFilter<String> bf = new FilterBuilder().expectedElements(10_000).falsePositiveProbability(0.01).buildBloomFilter();
+        bf.add("Ululu");
+        JsonElement json = BloomFilterConverter.toJson(bf, true);
+        assertTrue(json.toString().length() < BloomFilterConverter.toJson(bf).toString().length() / 10);
+        BloomFilter<String> otherBf = BloomFilterConverter.fromJson(json);
+        assertTrue(otherBf.contains("Ululu"));
+        assertEquals(bf.getBitSet(), otherBf.getBitSet());
+    }
+
+    @Test
+    public void testCompactRoundTrip() {
+        FilterBuilder config = new FilterBuilder(10_000, 0.01).hashFunction(HashMethod.Murmur3);
+        BloomFilter<String> memory = config.clone().buildBloomFilter();
+        BloomFilterRedis<String> redis = createRedisFilter("convertertests", 10_000, 0.01, HashMethod.Murmur3, true);
+        List<String> elements = IntStream.range(0, 100).mapToObj(i -> "element" + i).collect(Collectors.toList());
+        memory.addAll(elements);
+        redis.addAll(elements);
+
+        byte[] compact = BloomFilterConverter.toCompact(redis);
+        assertArrayEquals(BloomFilterConverter.toCompact(memory), compact);
+        assertEquals(memory, BloomFilterConverter.fromCompact(compact, config.clone()));
+        redis.clear();
+        BloomFilterConverter.unionCompact(compact, redis);
+        assertEquals(memory.getBitSet(), redis.getBitSet());
+        assertTrue(redis.containsAll(elements));
+
+        try {
+            BloomFilterConverter.fromCompact(compact, new FilterBuilder(100, 0.01));
+            fail("The size does not match");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        redis.remove();
+    }
+
+    @Test
+    public void testStreamingJSON() throws Exception {
+        List<String> elements = IntStream.range(0, 1_000).mapToObj(i -> "element" + i).collect(Collectors.toList());
+        List<BloomFilter<String>> filters = Arrays.asList(
+            createFilter(100_000, 0.01, HashMethod.Murmur3),
+            createConcurrentFilter(100_000, 0.01, HashMethod.Murmur3),
+            createCountingFilter(100_000, 0.01, HashMethod.Murmur3),
+            createRedisFilter("convertertests", 100_000, 0.01, HashMethod.Murmur3, true),
+            createCountingRedisFilter("convertertests2", 100_000, 0.01, HashMethod.Murmur3, true));
+        for (BloomFilter<String> filter : filters) {
+            // Bits beyond the chunks of the memory and Redis filters
+            filter.addAll(elements);
+            filter.addRaw(new byte[]{42});
+            JsonElement json = BloomFilterConverter.toJson(filter);
+
+            StringWriter writer = new StringWriter();
+            BloomFilterConverter.toJson(filter, writer);
+            assertEquals(json.toString(), writer.toString());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BloomFilterConverter.toJson(filter, out);
+            assertEquals(json.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+            BloomFilter<String> read = BloomFilterConverter.fromJson(new StringReader(writer.toString()));
+            assertEquals(filter.getBitSet(), read.getBitSet());
+            assertEquals(BloomFilterConverter.fromJson(json), read);
+            filter.remove();
+        }
+
+        BloomFilter<String> empty = new FilterBuilder(1_000, 0.01).buildBloomFilter();
+        StringWriter writer = new StringWriter();
+        BloomFilterConverter.toJson(empty, writer);
+        assertEquals(BloomFilterConverter.toJson(empty).toString(), writer.toString());
+        assertTrue(BloomFilterConverter.fromJson(new StringReader(writer.toString())).isEmpty());
+    }
+
+    @Test
+    public void testStreamingJSONParsing() throws Exception {
+        BloomFilter<String> bf = new FilterBuilder().expectedElements(1_000).falsePositiveProbability(0.01).buildBloomFilter();
+        bf.add("Ululu");
+
+        // Gson escapes the padding, unknown properties are skipped and the order does not matter
+        String escaped = new Gson().toJson(BloomFilterConverter.toJson(bf));
+        assertTrue(escaped.contains("\\u003d"));
+        String reordered = " { \"x\" : {\"y\": [1, \"}\"]}, \"b\": " + escaped.substring(escaped.indexOf("\"b\":") + 4,
+            escaped.length() - 1) + ", \"h\" : " + bf.getHashes() + ",\n\"m\": " + bf.getSize() + " } trailing";
+        for (String json : Arrays.asList(escaped, reordered, BloomFilterConverter.toJson(bf, true).toString())) {
+            BloomFilter<String> read = BloomFilterConverter.fromJson(new StringReader(json));
+            assertTrue(read.contains("Ululu"));
+            assertEquals(bf.getBitSet(), read.getBitSet());
+        }
+
+        for (String malformed : Arrays.asList("", "[]", "{\"m\": 100}", "{\"m\": 100, \"h\": 3, \"b\": \"AAA",
+            "{\"m\": x, \"h\": 3, \"b\": \"\"}")) {
+            try {
+                BloomFilterConverter.fromJson(new StringReader(malformed));
+                fail("The JSON " + malformed + " is malformed");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
     @Ignore
     @Test
     public void testMurmur3() throws Exception {
@@ -15,6 +15,7 @@ import java.util.stream.Stream;
 
 import static orestes.bloomfilter.test.helper.Helper.createCountingFilter;
 import static orestes.bloomfilter.test.helper.Helper.createCountingRedisFilter;
+import static orestes.bloomfilter.test.helper.Helper.createPackedCountingRedisFilter;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -22,21 +23,25 @@ import static org.junit.Assert.assertTrue;
 @RunWith(Parameterized.class)
 public class CountingBFTest {
     private final boolean redis;
+    private final boolean packed;
     private static final String name = "CountingTests";
 
     @Parameterized.Parameters(name = "Counting Bloom Filter test with {0}")
     public static Collection<Object[]> data() throws Exception {
-        Object[][] data = {{"memory", false}, {"redis", true}};
+        Object[][] data = {{"memory", false, false}, {"redis", true, false}, {"redis_packed", true, true}};
         return Arrays.asList(data);
     }
 
-    public CountingBFTest(String name, boolean redis) {
+    public CountingBFTest(String name, boolean redis, boolean packed) {
         this.redis = redis;
+        this.packed = packed;
     }
 
     private CountingBloomFilter<String> createFilter(String name, int n, double p, HashMethod hm) {
         if (!redis) {
             return createCountingFilter(n, p, hm);
+        } else if (packed) {
+            return createPackedCountingRedisFilter(name, n, p, hm, true);
         } else {
             return createCountingRedisFilter(name, n, p, hm, true);
         }
@@ -46,8 +51,9 @@ public class CountingBFTest {
     public void testCounterSizes() {
         int m = 100000;
         int k = 10;
-        Stream.of(4, 8, 16, 32, 55, 64).forEach(bits -> {
-            CountingBloomFilter<String> filter = new FilterBuilder(m, k).name(name).redisBacked(redis).countingBits(bits).buildCountingBloomFilter();
+        Stream.of(4, 8, 16, 32, 55, packed ? 63 : 64).forEach(bits -> {
+            CountingBloomFilter<String> filter = new FilterBuilder(m, k).name(name).redisBacked(redis)
+                .redisPackedCounters(packed).countingBits(bits).overwriteIfExists(true).buildCountingBloomFilter();
             filter.clear();
 
             long first = filter.addAndEstimateCount("first");
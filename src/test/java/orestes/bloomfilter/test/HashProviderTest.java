@@ -0,0 +1,105 @@
+package orestes.bloomfilter.test;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import orestes.bloomfilter.HashProvider;
+import orestes.bloomfilter.HashProvider.HashFunction;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HashProviderTest {
+
+    @Test
+    public void testHashIntoMatchesHash() {
+        Random random = new Random(42);
+        int[] sizes = {1, 7, 64, 1000, 1 << 20, 8143, Integer.MAX_VALUE};
+        int k = 10;
+
+        for (HashMethod hm : HashMethod.values()) {
+            HashFunction hf = hm.getHashFunction();
+            for (int m : sizes) {
+                for (int length = 0; length < 40; length++) {
+                    byte[] value = new byte[length];
+                    random.nextBytes(value);
+                    int[] expected = hf.hash(value, m, k);
+
+                    int[] positions = new int[k];
+                    hf.hashInto(value, m, k, positions);
+                    assertArrayEquals(hm + " with m = " + m, expected, positions);
+
+                    // Embed the value into a larger array and hash the slice
+                    byte[] padded = new byte[length + 5];
+                    random.nextBytes(padded);
+                    System.arraycopy(value, 0, padded, 3, length);
+                    Arrays.fill(positions, -1);
+                    hf.hashInto(padded, 3, length, m, k, positions);
+                    assertArrayEquals(hm + " with offset and m = " + m, expected, positions);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCustomHashFunctionInto() {
+        HashFunction custom = (value, m, k) -> {
+            int[] positions = new int[k];
+            for (int i = 0; i < k; i++) {
+                positions[i] = Math.abs(Arrays.hashCode(value) + i) % m;
+            }
+            return positions;
+        };
+
+        byte[] value = "Käsebrot".getBytes();
+        byte[] padded = new byte[value.length + 2];
+        System.arraycopy(value, 0, padded, 1, value.length);
+
+        int[] positions = new int[5];
+        custom.hashInto(padded, 1, value.length, 100, 5, positions);
+        assertArrayEquals(custom.hash(value, 100, 5), positions);
+    }
+
+    @Test
+    public void testMurmur3x64MatchesReference() {
+        Random random = new Random(42);
+        for (int seed : new int[]{0, 1, 42, Integer.MAX_VALUE}) {
+            for (int length = 0; length < 100; length++) {
+                byte[] value = new byte[length];
+                random.nextBytes(value);
+                ByteBuffer expected = ByteBuffer.wrap(Hashing.murmur3_128(seed).hashBytes(value).asBytes())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+                byte[] padded = new byte[length + 7];
+                System.arraycopy(value, 0, padded, 7, length);
+                long[] hash = HashProvider.murmur3_x64_128(seed, padded, 7, length);
+                assertEquals("h1 for length " + length, expected.getLong(0), hash[0]);
+                assertEquals("h2 for length " + length, expected.getLong(8), hash[1]);
+            }
+        }
+    }
+
+    @Test
+    public void testMurmur3x64DoubleHashing() {
+        byte[] value = "http://www.baqend.com/some/long/cache/url?with=parameters".getBytes();
+        HashCode code = Hashing.murmur3_128().hashBytes(value);
+        ByteBuffer buffer = ByteBuffer.wrap(code.asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        long h1 = buffer.getLong(0);
+        long h2 = buffer.getLong(8);
+
+        int m = Integer.MAX_VALUE;
+        int[] positions = HashMethod.Murmur3x64.getHashFunction().hash(value, m, 20);
+        for (int i = 0; i < positions.length; i++) {
+            // The 64 bit combination of both halves must not overflow into negative or biased 32 bit values
+            assertEquals(((h1 + i * h2) & Long.MAX_VALUE) % m, positions[i]);
+            assertTrue(positions[i] >= 0 && positions[i] < m);
+        }
+    }
+}
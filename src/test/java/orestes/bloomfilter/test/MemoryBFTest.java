@@ -202,6 +202,35 @@ public class MemoryBFTest {
         System.out.println("Total time for " + inserts + " add operations in both a counting and a normal bloom filter: " + (end - begin) * 1.0 / 1000000000 + " s");
     }
 
+    @Test
+    public void sortedBatch() {
+        FilterBuilder config = new FilterBuilder(1_000, 0.1).hashFunction(HashMethod.Murmur3);
+        BloomFilterMemory<String> sequential = new BloomFilterMemory<>(config.clone());
+        BloomFilterMemory<String> sorted = new BloomFilterMemory<>(config.clone());
+        byte[][] elements = IntStream.range(0, 3_000).mapToObj(i -> ("element" + (i % 2_000)).getBytes())
+            .toArray(byte[][]::new);
+
+        boolean[] added = sorted.addAll(elements, new boolean[elements.length], true);
+        for (int i = 0; i < elements.length; i++) {
+            assertEquals(sequential.addRaw(elements[i]), added[i]);
+        }
+        assertEquals(sequential, sorted);
+
+        byte[][] tested = IntStream.range(0, 3_000).mapToObj(i -> ("element" + (i * 3)).getBytes())
+            .toArray(byte[][]::new);
+        boolean[] contained = sorted.contains(tested, new boolean[tested.length], true);
+        for (int i = 0; i < tested.length; i++) {
+            assertEquals(sequential.contains(tested[i]), contained[i]);
+        }
+
+        for (int window : new int[]{1, 7, 1_000, 5_000}) {
+            boolean[] windowed = sorted.contains(tested, new boolean[tested.length], window);
+            for (int i = 0; i < tested.length; i++) {
+                assertEquals("Window " + window, contained[i], windowed[i]);
+            }
+        }
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void serializeBloomFilter() throws IOException, ClassNotFoundException {
@@ -0,0 +1,156 @@
+package orestes.bloomfilter.test.file;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.file.BloomFilterFile;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class BloomFilterFileTest {
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("bloomfilter", ".bf");
+        Files.delete(file);
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testBuilderCreatesFileFilter() {
+        BloomFilter<String> filter = new FilterBuilder(1000, 0.01).file(file.toString()).buildBloomFilter();
+        assertTrue(filter instanceof BloomFilterFile);
+        assertTrue(Files.exists(file));
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.add("foo"));
+        assertFalse(filter.add("foo"));
+        assertTrue(filter.contains("foo"));
+        assertFalse(filter.contains("bar"));
+        filter.remove();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testReopen() {
+        FilterBuilder config = new FilterBuilder(1000, 0.01).hashFunction(HashMethod.Murmur3x64).file(file.toString());
+        BloomFilterFile<String> filter = (BloomFilterFile<String>) config.clone().<String>buildBloomFilter();
+        for (int i = 0; i < 500; i++) {
+            filter.add("element" + i);
+        }
+        BitSet bits = filter.getBitSet();
+        filter.close();
+
+        // The persisted configuration takes precedence over the given one
+        BloomFilterFile<String> reopened = new BloomFilterFile<>(new FilterBuilder(10, 0.5).file(file.toString()));
+        assertEquals(filter.config().longSize(), reopened.config().longSize());
+        assertEquals(filter.config().hashes(), reopened.config().hashes());
+        assertEquals(HashMethod.Murmur3x64, reopened.config().hashMethod());
+        for (int i = 0; i < 500; i++) {
+            assertTrue(reopened.contains("element" + i));
+        }
+        assertEquals(bits, reopened.getBitSet());
+
+        BloomFilterFile<String> overwritten = new BloomFilterFile<>(config.clone().overwriteIfExists(true));
+        assertTrue(overwritten.isEmpty());
+        overwritten.close();
+        reopened.close();
+    }
+
+    @Test
+    public void testBehavesLikeMemoryFilter() {
+        FilterBuilder config = new FilterBuilder(10_000, 0.01);
+        BloomFilterFile<String> filter = new BloomFilterFile<>(config.clone().file(file.toString()));
+        BloomFilterMemory<String> memory = new BloomFilterMemory<>(config.clone());
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(memory.add("element" + i), filter.add("element" + i));
+        }
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+        assertEquals(memory.getEstimatedPopulation(), filter.getEstimatedPopulation());
+        assertEquals(memory.getBitSet().cardinality(), filter.cardinality());
+
+        BloomFilter<String> copy = filter.clone();
+        assertTrue(copy instanceof BloomFilterMemory);
+        assertEquals(memory, copy);
+
+        BloomFilterMemory<String> other = new BloomFilterMemory<>(config.clone());
+        other.add("other");
+        assertTrue(filter.union(other));
+        assertTrue(filter.contains("other"));
+        assertTrue(filter.intersect(other));
+        assertEquals(other.getBitSet(), filter.getBitSet());
+        assertFalse(filter.union(new BloomFilterMemory<>(new FilterBuilder(100, 0.01))));
+
+        filter.clear();
+        assertTrue(filter.isEmpty());
+        filter.close();
+    }
+
+    @Test
+    public void testCombineFileFilters() throws IOException {
+        FilterBuilder config = new FilterBuilder(10_000, 0.01);
+        Path otherFile = Files.createTempFile("bloomfilter", ".bf");
+        BloomFilterFile<String> filter = new BloomFilterFile<>(config.clone().file(file.toString()));
+        BloomFilterFile<String> other = new BloomFilterFile<>(config.clone().file(otherFile.toString())
+            .overwriteIfExists(true));
+        BloomFilterMemory<String> memory = new BloomFilterMemory<>(config.clone());
+        for (int i = 0; i < 1_000; i++) {
+            filter.add("element" + i);
+            memory.add("element" + i);
+            other.add("other" + i);
+        }
+        BitSet expected = memory.getBitSet();
+        expected.or(other.getBitSet());
+        assertTrue(filter.union(other));
+        assertEquals(expected, filter.getBitSet());
+
+        expected.and(memory.getBitSet());
+        assertTrue(filter.intersect(memory));
+        assertEquals(expected, filter.getBitSet());
+        assertTrue(filter.intersect(other));
+        expected.and(other.getBitSet());
+        assertEquals(expected, filter.getBitSet());
+
+        other.remove();
+        filter.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        BloomFilterFile<String> filter = new BloomFilterFile<>(new FilterBuilder(1000, 0.01).file(file.toString()));
+        filter.add("foo");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(filter);
+        }
+        filter.close();
+
+        BloomFilterFile<String> copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (BloomFilterFile<String>) in.readObject();
+        }
+        assertTrue(copy.contains("foo"));
+        assertFalse(copy.contains("bar"));
+        assertTrue(copy.add("bar"));
+        assertTrue(copy.contains("bar"));
+        copy.close();
+    }
+}
@@ -5,9 +5,14 @@ import orestes.bloomfilter.CountingBloomFilter;
 import orestes.bloomfilter.FilterBuilder;
 import orestes.bloomfilter.HashProvider.HashMethod;
 import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.memory.ConcurrentBloomFilterMemory;
+import orestes.bloomfilter.memory.ConcurrentCountingBloomFilterMemory;
 import orestes.bloomfilter.memory.CountingBloomFilterMemory;
 import orestes.bloomfilter.redis.BloomFilterRedis;
 import orestes.bloomfilter.redis.CountingBloomFilterRedis;
+import orestes.bloomfilter.redis.PackedCountingBloomFilterRedis;
+import orestes.bloomfilter.redis.ShardedBloomFilterRedis;
+import orestes.bloomfilter.redis.ShardedCountingBloomFilterRedis;
 import orestes.bloomfilter.redis.helper.RedisPool;
 import org.junit.Assert;
 import redis.clients.jedis.Jedis;
@@ -22,6 +27,8 @@ public class Helper {
     public static String host = "127.0.0.1";
     public static int port = 6379;
     public static int slavePort = 6380;
+    public static int shardPort = 6381;
+    public static int clusterPort = 7000;
     private static int connections = 10;
     
     private static final String sentinelHostName = host;
@@ -58,6 +65,14 @@ public class Helper {
         return new BloomFilterMemory<>(configure(n, p, hm));
     }
 
+    public static <T> ConcurrentBloomFilterMemory<T> createConcurrentFilter(int n, double p, HashMethod hm) {
+        return new ConcurrentBloomFilterMemory<>(configure(n, p, hm));
+    }
+
+    public static <T> ConcurrentCountingBloomFilterMemory<T> createConcurrentCountingFilter(int n, double p, HashMethod hm) {
+        return new ConcurrentCountingBloomFilterMemory<>(configure(n, p, hm));
+    }
+
     public static FilterBuilder configure(int n, double p, HashMethod hm) {
         return new FilterBuilder(n, p).hashFunction(hm).complete();
     }
@@ -106,6 +121,34 @@ public class Helper {
                 .redisConnections(connections).complete());
     }
 
+    public static <T> BloomFilterRedis<T> createScriptedRedisFilter(String name, int n, double p, HashMethod hm, boolean overwrite, int database, Integer slavePort) {
+        FilterBuilder builder = new FilterBuilder(n, p).hashFunction(hm)
+                .redisBacked(true)
+                .redisScripted(true)
+                .name(name)
+                .redisHost(host)
+                .redisPort(port)
+                .overwriteIfExists(overwrite)
+                .database(database)
+                .redisConnections(connections);
+        if (slavePort != null) {
+            builder.addReadSlave(host, slavePort);
+        }
+        return new BloomFilterRedis<>(builder.complete());
+    }
+
+    public static <T> BloomFilterRedis<T> createBitfieldRedisFilter(String name, int n, double p, HashMethod hm, boolean overwrite, int database) {
+        return new BloomFilterRedis<>(new FilterBuilder(n, p).hashFunction(hm)
+                .redisBacked(true)
+                .redisBitfield(true)
+                .name(name)
+                .redisHost(host)
+                .redisPort(port)
+                .overwriteIfExists(overwrite)
+                .database(database)
+                .redisConnections(connections).complete());
+    }
+
     public static <T> BloomFilterRedis<T> createRedisPoolFilter(String name, int n, double p, HashMethod hm, boolean overwrite, int database) {
         return new BloomFilterRedis<>(new FilterBuilder(n, p).hashFunction(hm)
                 .redisBacked(true)
@@ -155,6 +198,35 @@ public class Helper {
                 .redisConnections(connections).complete());
     }
 
+    public static <T> PackedCountingBloomFilterRedis<T> createPackedCountingRedisFilter(String name, int n, double p, HashMethod hm, boolean overwrite) {
+        return new PackedCountingBloomFilterRedis<>(new FilterBuilder(n, p).hashFunction(hm)
+                .redisBacked(true)
+                .redisPackedCounters(true)
+                .name(name)
+                .redisHost(host)
+                .redisPort(port)
+                .overwriteIfExists(overwrite)
+                .redisConnections(connections).complete());
+    }
+
+    public static <T> ShardedBloomFilterRedis<T> createShardedRedisFilter(String name, int n, double p, HashMethod hm, boolean overwrite) {
+        return new ShardedBloomFilterRedis<>(new FilterBuilder(n, p).hashFunction(hm)
+                .name(name)
+                .addRedisShard(host, port)
+                .addRedisShard(host, shardPort)
+                .overwriteIfExists(overwrite)
+                .redisConnections(connections).complete());
+    }
+
+    public static <T> ShardedCountingBloomFilterRedis<T> createShardedCountingRedisFilter(String name, int n, double p, HashMethod hm, boolean overwrite) {
+        return new ShardedCountingBloomFilterRedis<>(new FilterBuilder(n, p).hashFunction(hm)
+                .name(name)
+                .addRedisShard(host, port)
+                .addRedisShard(host, shardPort)
+                .overwriteIfExists(overwrite)
+                .redisConnections(connections).complete());
+    }
+
     public static void cleanupRedis() {
         getJedis().flushAll();
     }
@@ -0,0 +1,106 @@
+package orestes.bloomfilter.test.memory;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.BlockedBloomFilterMemory;
+import org.junit.Test;
+
+import static junit.framework.TestCase.*;
+
+public class BlockedBloomFilterMemoryTest {
+
+    @Test
+    public void testBuilderCreatesBlockedFilter() {
+        FilterBuilder config = new FilterBuilder(100_000, 0.01).blocked(true);
+        BloomFilter<String> filter = config.buildBloomFilter();
+        assertTrue(filter instanceof BlockedBloomFilterMemory);
+        assertEquals(0, config.size() % BlockedBloomFilterMemory.BLOCK_BITS);
+        // Blocking needs more bits than a standard Bloom filter for the same false positive probability
+        assertTrue(config.size() > FilterBuilder.optimalM(100_000, 0.01));
+        assertTrue(FilterBuilder.optimalBlockedP(config.hashes(), config.size(), 100_000) <= 0.01);
+        assertTrue(FilterBuilder.optimalBlockedP(config.hashes(), config.size() - BlockedBloomFilterMemory.BLOCK_BITS, 100_000) > 0.01);
+        assertFalse(config.isCompatibleTo(new FilterBuilder(config.size(), config.hashes()).complete()));
+    }
+
+    @Test
+    public void testSizeIsRoundedToBlocks() {
+        FilterBuilder config = new FilterBuilder(1000, 3).blocked(true).complete();
+        assertEquals(1024, config.size());
+        assertEquals(FilterBuilder.optimalBlockedP(3, 1024, config.expectedElements()), config.falsePositiveProbability());
+    }
+
+    @Test
+    public void testBlockedFalsePositiveProbability() {
+        assertEquals(0.0, FilterBuilder.optimalBlockedP(5, 512, 0));
+        double standard = FilterBuilder.optimalP(7, 1 << 20, 100_000);
+        double blocked = FilterBuilder.optimalBlockedP(7, 1 << 20, 100_000);
+        assertTrue(blocked > standard);
+        assertTrue(blocked < 2 * standard);
+        assertEquals(1.0, FilterBuilder.optimalBlockedP(7, 512, 1e6), 1e-6);
+    }
+
+    @Test
+    public void testPositionsStayInOneBlock() {
+        BloomFilter<String> filter = new FilterBuilder(10_000, 0.001).hashFunction(HashMethod.Murmur3).blocked(true)
+            .buildBloomFilter();
+        for (int i = 0; i < 1000; i++) {
+            int[] positions = filter.hash(String.valueOf(i));
+            assertEquals(filter.getHashes(), positions.length);
+            int block = positions[0] / BlockedBloomFilterMemory.BLOCK_BITS;
+            for (int position : positions) {
+                assertEquals(block, position / BlockedBloomFilterMemory.BLOCK_BITS);
+                assertTrue(position < filter.getSize());
+            }
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        int n = 50_000;
+        double p = 0.01;
+        for (HashMethod hm : new HashMethod[]{HashMethod.Murmur3KirschMitzenmacher, HashMethod.Murmur3, HashMethod.MD5}) {
+            BloomFilter<String> filter = new FilterBuilder(n, p).hashFunction(hm).blocked(true).buildBloomFilter();
+            for (int i = 0; i < n; i++) {
+                filter.add("element" + i);
+            }
+            for (int i = 0; i < n; i++) {
+                assertTrue(filter.contains("element" + i));
+            }
+
+            int falsePositives = 0;
+            int tests = 100_000;
+            for (int i = 0; i < tests; i++) {
+                if (filter.contains("other" + i)) {
+                    falsePositives++;
+                }
+            }
+            assertTrue(hm + " has a false positive rate of " + falsePositives / (double) tests,
+                falsePositives / (double) tests < 1.5 * p);
+            assertEquals(filter.getFalsePositiveProbability(n), p, 0.001);
+        }
+    }
+
+    @Test
+    public void testDoubleHashingFalsePositiveRate() {
+        // The in-block bits must not inherit the correlated low bits of h1 + i * h2 for even h2
+        int n = 50_000;
+        double p = 0.01;
+        for (HashMethod hm : new HashMethod[]{HashMethod.Murmur3KirschMitzenmacher, HashMethod.Murmur3x64,
+            HashMethod.CRC32}) {
+            BloomFilter<String> filter = new FilterBuilder(n, p).hashFunction(hm).blocked(true).buildBloomFilter();
+            for (int i = 0; i < n; i++) {
+                filter.add("element" + i);
+            }
+            int falsePositives = 0;
+            int tests = 100_000;
+            for (int i = 0; i < tests; i++) {
+                if (filter.contains("other" + i)) {
+                    falsePositives++;
+                }
+            }
+            assertTrue(hm + " has a false positive rate of " + falsePositives / (double) tests,
+                falsePositives / (double) tests < 1.15 * p);
+        }
+    }
+}
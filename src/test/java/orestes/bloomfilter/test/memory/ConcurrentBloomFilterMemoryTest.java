@@ -0,0 +1,129 @@
+package orestes.bloomfilter.test.memory;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.memory.ConcurrentBloomFilterMemory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.*;
+import static orestes.bloomfilter.test.helper.Helper.*;
+
+public class ConcurrentBloomFilterMemoryTest {
+
+    @Test
+    public void testBuilderCreatesConcurrentFilter() {
+        BloomFilter<String> filter = new FilterBuilder(1000, 0.01).concurrent(true).buildBloomFilter();
+        assertTrue(filter instanceof ConcurrentBloomFilterMemory);
+        assertFalse(new FilterBuilder(1000, 0.01).buildBloomFilter() instanceof ConcurrentBloomFilterMemory);
+    }
+
+    @Test
+    public void testAddReturnsWhetherBitsChanged() {
+        ConcurrentBloomFilterMemory<String> filter = createConcurrentFilter(1000, 0.01, HashMethod.Murmur3);
+        assertTrue(filter.add("foo"));
+        assertFalse(filter.add("foo"));
+        assertTrue(filter.contains("foo"));
+        assertFalse(filter.contains("bar"));
+    }
+
+    @Test
+    public void testConcurrentAddMatchesSequentialFilter() throws Exception {
+        int threads = 8;
+        int perThread = 20_000;
+        ConcurrentBloomFilterMemory<String> concurrent = createConcurrentFilter(threads * perThread, 0.01, HashMethod.Murmur3);
+        BloomFilterMemory<String> sequential = createFilter(threads * perThread, 0.01, HashMethod.Murmur3);
+
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * perThread;
+            futures.add(exec.submit(() -> {
+                for (int i = offset; i < offset + perThread; i++) {
+                    concurrent.add(String.valueOf(i));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        exec.shutdown();
+        exec.awaitTermination(10, TimeUnit.SECONDS);
+
+        for (int i = 0; i < threads * perThread; i++) {
+            sequential.add(String.valueOf(i));
+            assertTrue(concurrent.contains(String.valueOf(i)));
+        }
+        assertEquals(sequential.getBitSet(), concurrent.getBitSet());
+        assertEquals(sequential.getEstimatedPopulation(), concurrent.getEstimatedPopulation());
+    }
+
+    @Test
+    public void testUnionIntersectAndClone() {
+        ConcurrentBloomFilterMemory<String> first = createConcurrentFilter(1000, 0.01, HashMethod.MD5);
+        BloomFilterMemory<String> second = createFilter(1000, 0.01, HashMethod.MD5);
+        first.add("foo");
+        second.add("bar");
+
+        ConcurrentBloomFilterMemory<String> copy = first.clone();
+        assertEquals(first, copy);
+        assertTrue(first.union(second));
+        assertTrue(first.contains("foo"));
+        assertTrue(first.contains("bar"));
+        assertFalse(copy.contains("bar"));
+
+        assertTrue(first.intersect(second));
+        assertTrue(first.contains("bar"));
+        assertEquals(second.getBitSet(), first.getBitSet());
+
+        first.clear();
+        assertTrue(first.isEmpty());
+        assertFalse(copy.isEmpty());
+    }
+
+    @Test
+    public void testBulkOperationsDoNotLock() throws Exception {
+        ConcurrentBloomFilterMemory<String> filter = createConcurrentFilter(1000, 0.01, HashMethod.Murmur3);
+        byte[][] elements = {"foo".getBytes(), "bar".getBytes(), "foo".getBytes()};
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        exec.submit(() -> {
+            synchronized (filter) {
+                locked.countDown();
+                done.await();
+            }
+            return null;
+        });
+        locked.await();
+
+        ExecutorService bulk = Executors.newSingleThreadExecutor();
+        Future<?> future = bulk.submit(() -> {
+            boolean[] results = new boolean[elements.length];
+            filter.addAll(elements, results, true);
+            assertTrue(results[0] && results[1] && !results[2]);
+            filter.addAll(new byte[][]{"baz".getBytes()}, results, false);
+            assertTrue(results[0]);
+            filter.contains(new byte[][]{"foo".getBytes(), "qux".getBytes()}, results, false);
+            assertTrue(results[0] && !results[1]);
+            filter.contains(new byte[][]{"baz".getBytes(), "qux".getBytes()}, results, 1);
+            assertTrue(results[0] && !results[1]);
+        });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } finally {
+            done.countDown();
+            exec.shutdown();
+            bulk.shutdown();
+        }
+    }
+}
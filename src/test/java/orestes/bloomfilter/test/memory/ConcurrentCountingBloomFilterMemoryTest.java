@@ -0,0 +1,111 @@
+package orestes.bloomfilter.test.memory;
+
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.ConcurrentCountingBloomFilterMemory;
+import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.TestCase.*;
+import static orestes.bloomfilter.test.helper.Helper.*;
+
+public class ConcurrentCountingBloomFilterMemoryTest {
+
+    @Test
+    public void testBuilderCreatesConcurrentFilter() {
+        CountingBloomFilter<String> filter = new FilterBuilder(1000, 0.01).concurrent(true).countingBits(4)
+            .buildCountingBloomFilter();
+        assertTrue(filter instanceof ConcurrentCountingBloomFilterMemory);
+        assertEquals(1, filter.addAndEstimateCount("foo"));
+        assertEquals(2, filter.addAndEstimateCount("foo"));
+        assertEquals(1, filter.removeAndEstimateCount("foo"));
+        assertTrue(filter.contains("foo"));
+    }
+
+    @Test
+    public void testSaturatingCounters() {
+        ConcurrentCountingBloomFilterMemory<String> filter = new ConcurrentCountingBloomFilterMemory<>(
+            configure(100, 0.01, HashMethod.Murmur3).countingBits(2));
+        boolean[] overflow = {false};
+        filter.setOverflowHandler(() -> overflow[0] = true);
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(i, filter.addAndEstimateCount("foo"));
+        }
+        assertFalse(overflow[0]);
+        assertEquals(3, filter.addAndEstimateCount("foo"));
+        assertTrue(overflow[0]);
+
+        for (int i = 2; i >= 0; i--) {
+            assertEquals(i, filter.removeAndEstimateCount("foo"));
+        }
+        assertEquals(0, filter.removeAndEstimateCount("foo"));
+        assertFalse(filter.contains("foo"));
+        assertTrue(filter.getBitSet().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentAddAndRemove() throws Exception {
+        int threads = 8;
+        int elements = 2_000;
+        int rounds = 5;
+        // Few bits, so that the threads contend for counters and their words
+        ConcurrentCountingBloomFilterMemory<String> concurrent = createConcurrentCountingFilter(elements, 0.1, HashMethod.Murmur3);
+        CountingBloomFilterMemory<String> sequential = createCountingFilter(elements, 0.1, HashMethod.Murmur3);
+        for (int i = 0; i < elements; i++) {
+            concurrent.add(String.valueOf(i));
+            sequential.add(String.valueOf(i));
+        }
+
+        // Every thread adds and removes every element, so the counts end up as before
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(exec.submit(() -> {
+                for (int r = 0; r < rounds; r++) {
+                    for (int i = 0; i < elements; i++) {
+                        concurrent.add(String.valueOf(i));
+                        assertTrue(concurrent.contains(String.valueOf(i)));
+                    }
+                    for (int i = 0; i < elements; i++) {
+                        concurrent.remove(String.valueOf(i));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        exec.shutdown();
+        exec.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(sequential.getCountMap(), concurrent.getCountMap());
+        assertEquals(sequential.getBitSet(), concurrent.getBitSet());
+
+        // Removing everything concurrently leaves no stale bits behind
+        futures.clear();
+        exec = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(exec.submit(() -> {
+                for (int i = thread; i < elements; i += threads) {
+                    concurrent.remove(String.valueOf(i));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        exec.shutdown();
+        assertTrue(concurrent.getCountMap().isEmpty());
+        assertEquals(new BitSet(), concurrent.getBitSet());
+    }
+}
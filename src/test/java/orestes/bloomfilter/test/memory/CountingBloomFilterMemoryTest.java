@@ -40,6 +40,16 @@ public class CountingBloomFilterMemoryTest {
             {16, CountingBloomFilterMemory.class},
             {32, CountingBloomFilterMemory.class},
             {64, CountingBloomFilterMemory.class},
+            { 2, CountingBloomFilterPacked.class},
+            { 4, CountingBloomFilterPacked.class},
+            { 7, CountingBloomFilterPacked.class},
+            {13, CountingBloomFilterPacked.class},
+            {63, CountingBloomFilterPacked.class},
+            { 4, ConcurrentCountingBloomFilterMemory.class},
+            {16, ConcurrentCountingBloomFilterMemory.class},
+            {64, ConcurrentCountingBloomFilterMemory.class},
+            { 4, StripedCountingBloomFilterMemory.class},
+            {16, StripedCountingBloomFilterMemory.class},
         };
 
         return Arrays.asList(data);
@@ -236,4 +246,77 @@ public class CountingBloomFilterMemoryTest {
             assertTrue(called[0]);
         }
     }
+
+    @Test
+    public void testMatchesBitSetCounters() throws Exception {
+        // A small filter, so that elements share counters and neighbouring counters are updated
+        FilterBuilder config = configure(50, 0.1, HashMethod.Murmur3).countingBits(countingBits);
+        CountingBloomFilterMemory<String> filter = cbfClass.getConstructor(FilterBuilder.class).newInstance(config.clone());
+        CountingBloomFilterMemory<String> reference = new CountingBloomFilterMemory<>(config.clone());
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            String element = String.valueOf(random.nextInt(100));
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(element), filter.remove(element));
+            } else {
+                filter.add(element);
+                reference.add(element);
+            }
+            assertEquals(reference.getEstimatedCount(element), filter.getEstimatedCount(element));
+        }
+        assertEquals(reference.getCountMap(), filter.getCountMap());
+        assertEquals(reference.getBitSet(), filter.getBitSet());
+
+        CountingBloomFilterMemory<String> copy = filter.clone();
+        assertEquals(filter, copy);
+        copy.clear();
+        assertEquals(reference.getCountMap(), filter.getCountMap());
+        assertTrue(copy.getCountMap().isEmpty());
+    }
+
+    @Test
+    public void testUnionAndIntersect() throws Exception {
+        FilterBuilder config = configure(50, 0.1, HashMethod.Murmur3).countingBits(countingBits);
+        CountingBloomFilterMemory<String> first = cbfClass.getConstructor(FilterBuilder.class).newInstance(config.clone());
+        CountingBloomFilterMemory<String> second = cbfClass.getConstructor(FilterBuilder.class).newInstance(config.clone());
+        // Another implementation with the same counters
+        CountingBloomFilterMemory<String> other = new CountingBloomFilterMemory<>(config.clone());
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            first.add(String.valueOf(random.nextInt(50)));
+            String element = String.valueOf(random.nextInt(50));
+            second.add(element);
+            other.add(element);
+        }
+        long max = countingBits == 64 ? Long.MAX_VALUE : (1L << countingBits) - 1;
+        Map<Integer, Long> sum = new HashMap<>(first.getCountMap());
+        second.getCountMap().forEach((position, count) -> sum.merge(position, count, (a, b) -> Math.min(a + b, max)));
+        Map<Integer, Long> min = new HashMap<>();
+        first.getCountMap().forEach((position, count) -> {
+            long otherCount = second.getCountMap().getOrDefault(position, 0L);
+            if (otherCount > 0) {
+                min.put(position, Math.min(count, otherCount));
+            }
+        });
+
+        CountingBloomFilterMemory<String> union = first.clone();
+        assertTrue(union.union(second));
+        assertEquals(sum, union.getCountMap());
+        assertEquals(sum.keySet(), union.getBitSet().stream().boxed().collect(Collectors.toSet()));
+        CountingBloomFilterMemory<String> mixedUnion = first.clone();
+        assertTrue(mixedUnion.union(other));
+        assertEquals(sum, mixedUnion.getCountMap());
+
+        CountingBloomFilterMemory<String> intersection = first.clone();
+        assertTrue(intersection.intersect(second));
+        assertEquals(min, intersection.getCountMap());
+        assertEquals(min.keySet(), intersection.getBitSet().stream().boxed().collect(Collectors.toSet()));
+        CountingBloomFilterMemory<String> mixedIntersection = first.clone();
+        assertTrue(mixedIntersection.intersect(other));
+        assertEquals(min, mixedIntersection.getCountMap());
+
+        // Plain and incompatible Bloom filters cannot be merged
+        assertFalse(first.union(new BloomFilterMemory<>(config.clone())));
+        assertFalse(first.intersect(new CountingBloomFilterMemory<>(configure(100, 0.1, HashMethod.Murmur3))));
+    }
 }
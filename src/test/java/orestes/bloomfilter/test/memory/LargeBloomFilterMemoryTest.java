@@ -0,0 +1,179 @@
+package orestes.bloomfilter.test.memory;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashFunction;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.LargeBloomFilterMemory;
+import orestes.bloomfilter.memory.SegmentedBitSet;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+import static junit.framework.TestCase.*;
+
+public class LargeBloomFilterMemoryTest {
+    private static final long LARGE = 5L << 30;
+
+    /**
+     * Places all positions at the end of the filter, so that only the last segment is allocated.
+     */
+    private static class TailHashFunction implements HashFunction {
+        @Override
+        public int[] hash(byte[] value, int m, int k) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void hashInto(byte[] value, int offset, int length, long m, int k, long[] positions) {
+            int hash = Arrays.hashCode(Arrays.copyOfRange(value, offset, offset + length)) & 0xFFFF;
+            for (int i = 0; i < k; i++) {
+                positions[i] = m - 1 - hash * k - i;
+            }
+        }
+    }
+
+    @Test
+    public void testBuilderCreatesLargeFilter() {
+        FilterBuilder config = new FilterBuilder().expectedElements(3_000_000_000L).falsePositiveProbability(0.01)
+            .hashFunction(HashMethod.Murmur3x64).complete();
+        assertTrue(config.longSize() > Integer.MAX_VALUE);
+        assertEquals(3_000_000_000L, config.longExpectedElements());
+        assertEquals(FilterBuilder.optimalLongM(3_000_000_000L, 0.01), config.longSize());
+        try {
+            config.size();
+            fail("The size exceeds the integer range");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+
+        BloomFilter<String> filter = new FilterBuilder(Integer.MAX_VALUE, 7).size(LARGE).buildBloomFilter();
+        assertTrue(filter instanceof LargeBloomFilterMemory);
+        assertEquals(LARGE, filter.getLongSize());
+    }
+
+    @Test
+    public void testLargeFiltersDefaultToMurmur3x64() {
+        FilterBuilder config = new FilterBuilder().size(LARGE).hashes(5).complete();
+        assertEquals(HashMethod.Murmur3x64, config.hashMethod());
+        assertEquals(HashMethod.Murmur3KirschMitzenmacher, new FilterBuilder(1000, 0.01).complete().hashMethod());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLargeFiltersRejectIntHashMethods() {
+        new LargeBloomFilterMemory<>(new FilterBuilder().size(LARGE).hashes(5).hashFunction(HashMethod.Murmur3));
+    }
+
+    @Test
+    public void testPositionsBeyondIntegerRange() {
+        LargeBloomFilterMemory<String> filter = new LargeBloomFilterMemory<>(new FilterBuilder()
+            .size(LARGE).hashes(5).hashFunction(new TailHashFunction()));
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.add("foo"));
+        assertFalse(filter.add("foo"));
+        assertTrue(filter.contains("foo"));
+        assertFalse(filter.contains("bar"));
+
+        for (long position : filter.hashInto("foo".getBytes(), new long[5])) {
+            assertTrue(position > Integer.MAX_VALUE);
+            assertTrue(filter.getSegmentedBitSet().get(position));
+        }
+        assertEquals(5L, filter.getSegmentedBitSet().cardinality());
+        assertEquals(1.0, filter.getEstimatedPopulation(), 0.01);
+
+        LargeBloomFilterMemory<String> copy = filter.clone();
+        assertEquals(filter, copy);
+        copy.add("bar");
+        assertFalse(filter.contains("bar"));
+        assertTrue(filter.union(copy));
+        assertTrue(filter.contains("bar"));
+
+        filter.clear();
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.intersect(copy));
+        assertTrue(filter.isEmpty());
+
+        LargeBloomFilterMemory<String> other = filter.clone();
+        other.add("baz");
+        assertTrue(filter.unionAll(Arrays.asList(copy, other)));
+        assertTrue(filter.contains("foo") && filter.contains("bar") && filter.contains("baz"));
+        assertEquals(15L, filter.getSegmentedBitSet().cardinality());
+        // The segments of the other filters are read, not modified or shared
+        assertFalse(copy.contains("baz"));
+        other.clear();
+        assertTrue(filter.contains("baz"));
+    }
+
+    @Test
+    public void testMurmur3x64LongPositions() {
+        long[] positions = new long[10];
+        HashMethod.Murmur3x64.getHashFunction().hashInto("foo".getBytes(), Long.MAX_VALUE, 10, positions);
+        assertTrue(Arrays.stream(positions).anyMatch(p -> p > Integer.MAX_VALUE));
+
+        // Within the integer range long and int positions are identical
+        int[] intPositions = HashMethod.Murmur3x64.getHashFunction().hash("foo".getBytes(), 1000, 10);
+        HashMethod.Murmur3x64.getHashFunction().hashInto("foo".getBytes(), 1000L, 10, positions);
+        assertTrue(Arrays.equals(Arrays.stream(intPositions).asLongStream().toArray(), positions));
+
+        try {
+            HashMethod.MD5.getHashFunction().hashInto("foo".getBytes(), LARGE, 10, positions);
+            fail("MD5 does not support long positions");
+        } catch (UnsupportedOperationException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testBehavesLikeStandardFilter() {
+        FilterBuilder config = new FilterBuilder(10_000, 0.01).hashFunction(HashMethod.Murmur3x64);
+        LargeBloomFilterMemory<String> large = new LargeBloomFilterMemory<>(config.clone());
+        BloomFilter<String> standard = config.clone().buildBloomFilter();
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(standard.add("element" + i), large.add("element" + i));
+        }
+        assertEquals(standard.getBitSet(), large.getBitSet());
+        assertEquals(standard.getEstimatedPopulation(), large.getEstimatedPopulation());
+        assertTrue(large.union(standard));
+        assertEquals(standard.getBitSet(), large.getBitSet());
+
+        byte[][] tested = IntStream.range(0, 3_000).mapToObj(i -> ("element" + (i * 7)).getBytes())
+            .toArray(byte[][]::new);
+        boolean[] expected = standard.contains(tested, new boolean[tested.length]);
+        for (int window : new int[]{1, 7, 1_000, 5_000}) {
+            assertTrue(Arrays.equals(expected, large.contains(tested, new boolean[tested.length], window)));
+        }
+    }
+
+    @Test
+    public void testSegmentedBitSet() {
+        SegmentedBitSet bits = new SegmentedBitSet(LARGE);
+        long[] indexes = {0, 63, 64, (1L << SegmentedBitSet.SEGMENT_BITS_LOG) - 1, 1L << SegmentedBitSet.SEGMENT_BITS_LOG,
+            Integer.MAX_VALUE, 1L << 31, LARGE - 1};
+        for (long index : indexes) {
+            assertFalse(bits.get(index));
+            assertTrue(bits.set(index));
+            assertFalse(bits.set(index));
+            assertTrue(bits.get(index));
+        }
+        assertEquals(indexes.length, bits.cardinality());
+
+        SegmentedBitSet copy = bits.clone();
+        assertEquals(bits, copy);
+        copy.clear(LARGE - 1);
+        assertFalse(bits.equals(copy));
+        bits.and(copy);
+        assertEquals(copy, bits);
+        assertEquals(bits.hashCode(), copy.hashCode());
+
+        SegmentedBitSet small = new SegmentedBitSet(1000);
+        small.set(3);
+        small.set(999);
+        BitSet expected = new BitSet();
+        expected.set(3);
+        expected.set(999);
+        assertEquals(expected, small.toBitSet());
+        assertEquals(small, SegmentedBitSet.valueOf(expected, 1000));
+    }
+}
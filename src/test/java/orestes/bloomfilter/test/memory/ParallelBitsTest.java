@@ -0,0 +1,149 @@
+package orestes.bloomfilter.test.memory;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.memory.ConcurrentBloomFilterMemory;
+import orestes.bloomfilter.memory.ParallelBits;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.Assert.*;
+
+public class ParallelBitsTest {
+    // Large enough for the parallel paths of the in-memory filters, which split it into several chunks
+    private static final int SIZE = ParallelBits.CHUNK_WORDS * Long.SIZE * 5 + 17;
+
+    private static FilterBuilder config() {
+        return new FilterBuilder().size(SIZE).hashes(3).hashFunction(HashMethod.Murmur3);
+    }
+
+    private static List<BloomFilter<String>> producers(int count, int elements) {
+        List<BloomFilter<String>> producers = new ArrayList<>();
+        for (int p = 0; p < count; p++) {
+            BloomFilterMemory<String> producer = new BloomFilterMemory<>(config());
+            for (int i = 0; i < elements; i++) {
+                producer.add("producer" + p + "-" + i);
+            }
+            producers.add(producer);
+        }
+        return producers;
+    }
+
+    @Test
+    public void testWordOperations() {
+        Random random = new Random(42);
+        long[] target = random.longs(ParallelBits.CHUNK_WORDS * 3 + 5).toArray();
+        long[] longer = random.longs(target.length).toArray();
+        long[] shorter = random.longs(ParallelBits.CHUNK_WORDS + 3).toArray();
+
+        long[] expected = target.clone();
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] |= longer[i] | (i < shorter.length ? shorter[i] : 0);
+        }
+        long[] or = target.clone();
+        ParallelBits.or(or, Arrays.asList(longer, shorter));
+        assertArrayEquals(expected, or);
+
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = target[i] & (i < shorter.length ? shorter[i] : 0);
+        }
+        long[] and = target.clone();
+        ParallelBits.and(and, Collections.singletonList(shorter));
+        assertArrayEquals(expected, and);
+
+        assertEquals(BitSet.valueOf(target).cardinality(), ParallelBits.cardinality(target));
+
+        AtomicLongArray atomic = new AtomicLongArray(target);
+        ParallelBits.or(atomic, Arrays.asList(longer, shorter));
+        for (int i = 0; i < or.length; i++) {
+            assertEquals(or[i], atomic.get(i));
+        }
+        assertEquals(ParallelBits.cardinality(or), ParallelBits.cardinality(atomic));
+        atomic = new AtomicLongArray(target);
+        ParallelBits.and(atomic, Collections.singletonList(shorter));
+        for (int i = 0; i < and.length; i++) {
+            assertEquals(and[i], atomic.get(i));
+        }
+    }
+
+    @Test
+    public void testUnionAllMatchesSequentialUnions() {
+        List<BloomFilter<String>> producers = producers(6, 20_000);
+        BloomFilterMemory<String> sequential = new BloomFilterMemory<>(config());
+        sequential.add("own");
+        BitSet expected = sequential.getBitSet();
+        for (BloomFilter<String> producer : producers) {
+            expected.or(producer.getBitSet());
+        }
+
+        BloomFilterMemory<String> merged = new BloomFilterMemory<>(config());
+        merged.add("own");
+        assertTrue(merged.unionAll(producers));
+        assertEquals(expected, merged.getBitSet());
+        assertEquals(BloomFilter.population(expected, merged.config()), merged.getEstimatedPopulation());
+        assertTrue(merged.contains("producer5-19999"));
+
+        for (BloomFilter<String> producer : producers) {
+            assertTrue(sequential.union(producer));
+        }
+        assertEquals(expected, sequential.getBitSet());
+
+        ConcurrentBloomFilterMemory<String> concurrent = new ConcurrentBloomFilterMemory<>(config());
+        concurrent.add("own");
+        assertTrue(concurrent.unionAll(producers));
+        assertEquals(expected, concurrent.getBitSet());
+        assertEquals(expected.cardinality(), concurrent.cardinality());
+        assertEquals(BloomFilter.population(expected, concurrent.config()), concurrent.getEstimatedPopulation());
+
+        // Concurrent filters as sources are read from their words
+        BloomFilterMemory<String> fromConcurrent = new BloomFilterMemory<>(config());
+        assertTrue(fromConcurrent.unionAll(Collections.singletonList(concurrent)));
+        assertEquals(expected, fromConcurrent.getBitSet());
+    }
+
+    @Test
+    public void testParallelCardinality() {
+        List<BloomFilter<String>> producers = producers(1, 100_000);
+        BitSet expected = producers.get(0).getBitSet();
+        assertTrue(expected.length() > ParallelBits.CHUNK_WORDS * Long.SIZE);
+        assertEquals(BloomFilter.population(expected, config().complete()), producers.get(0).getEstimatedPopulation());
+    }
+
+    @Test
+    public void testIntersect() {
+        List<BloomFilter<String>> producers = producers(2, 50_000);
+        BitSet expected = producers.get(0).getBitSet();
+        expected.and(producers.get(1).getBitSet());
+
+        BloomFilter<String> first = producers.get(0);
+        assertTrue(first.intersect(producers.get(1)));
+        assertEquals(expected, first.getBitSet());
+
+        ConcurrentBloomFilterMemory<String> concurrent = new ConcurrentBloomFilterMemory<>(config());
+        assertTrue(concurrent.union(producers.get(0)));
+        assertTrue(concurrent.intersect(producers.get(1)));
+        assertEquals(expected, concurrent.getBitSet());
+
+        assertTrue(first.intersect(new BloomFilterMemory<>(config())));
+        assertTrue(first.isEmpty());
+    }
+
+    @Test
+    public void testIncompatibleFiltersAreNotMerged() {
+        List<BloomFilter<String>> producers = producers(3, 100);
+        BloomFilterMemory<String> merged = new BloomFilterMemory<>(config());
+        List<BloomFilter<String>> others = new ArrayList<>(producers);
+        others.add(new BloomFilterMemory<>(new FilterBuilder(1_000, 0.01)));
+        assertFalse(merged.unionAll(others));
+        assertTrue(merged.isEmpty());
+    }
+}
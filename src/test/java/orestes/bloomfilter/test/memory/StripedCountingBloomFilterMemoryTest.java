@@ -0,0 +1,97 @@
+package orestes.bloomfilter.test.memory;
+
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import orestes.bloomfilter.memory.StripedCountingBloomFilterMemory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.TestCase.*;
+import static orestes.bloomfilter.test.helper.Helper.*;
+
+public class StripedCountingBloomFilterMemoryTest {
+
+    @Test
+    public void testBuilderCreatesStripedFilter() {
+        CountingBloomFilter<String> filter = new FilterBuilder(1000, 0.01).concurrencyLevel(5).buildCountingBloomFilter();
+        assertTrue(filter instanceof StripedCountingBloomFilterMemory);
+        assertEquals(8, ((StripedCountingBloomFilterMemory<String>) filter).getConcurrencyLevel());
+        assertEquals(1, filter.addAndEstimateCount("foo"));
+        assertEquals(2, filter.addAndEstimateCount("foo"));
+        assertEquals(1, filter.removeAndEstimateCount("foo"));
+        assertTrue(filter.contains("foo"));
+
+        StripedCountingBloomFilterMemory<String> copy = (StripedCountingBloomFilterMemory<String>) filter.clone();
+        assertEquals(filter, copy);
+        copy.add("bar");
+        assertFalse(filter.contains("bar"));
+
+        // Lock-free counters take precedence, 64 bit counters are not striped
+        assertFalse(new FilterBuilder(1000, 0.01).concurrencyLevel(4).concurrent(true)
+            .buildCountingBloomFilter() instanceof StripedCountingBloomFilterMemory);
+        assertFalse(new FilterBuilder(1000, 0.01).concurrencyLevel(4).countingBits(64)
+            .buildCountingBloomFilter() instanceof StripedCountingBloomFilterMemory);
+        assertFalse(new FilterBuilder(1000, 0.01).buildCountingBloomFilter() instanceof StripedCountingBloomFilterMemory);
+    }
+
+    @Test
+    public void testConcurrentAddAndRemove() throws Exception {
+        int threads = 8;
+        int elements = 2_000;
+        int rounds = 5;
+        StripedCountingBloomFilterMemory<String> striped = new StripedCountingBloomFilterMemory<>(
+            configure(elements, 0.1, HashMethod.Murmur3).concurrencyLevel(4));
+        CountingBloomFilterMemory<String> sequential = createCountingFilter(elements, 0.1, HashMethod.Murmur3);
+        for (int i = 0; i < elements; i++) {
+            striped.add(String.valueOf(i));
+            sequential.add(String.valueOf(i));
+        }
+
+        // Every thread adds and removes every element, so the counts end up as before
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(exec.submit(() -> {
+                for (int r = 0; r < rounds; r++) {
+                    for (int i = 0; i < elements; i++) {
+                        assertTrue(striped.addAndEstimateCount(String.valueOf(i)) >= 2);
+                    }
+                    for (int i = 0; i < elements; i++) {
+                        assertTrue(striped.removeAndEstimateCount(String.valueOf(i)) >= 1);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertEquals(sequential.getCountMap(), striped.getCountMap());
+        assertEquals(sequential.getBitSet(), striped.getBitSet());
+
+        // Removing everything concurrently leaves no stale bits behind
+        futures.clear();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(exec.submit(() -> {
+                for (int i = thread; i < elements; i += threads) {
+                    striped.remove(String.valueOf(i));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        exec.shutdown();
+        assertTrue(striped.getCountMap().isEmpty());
+        assertEquals(new BitSet(), striped.getBitSet());
+    }
+}
@@ -0,0 +1,161 @@
+package orestes.bloomfilter.test.redis;
+
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.cachesketch.AsyncExpiringBloomFilterRedis;
+import orestes.bloomfilter.cachesketch.ExpiringBloomFilterPureRedis;
+import orestes.bloomfilter.cachesketch.ExpiringBloomFilterRedis;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import orestes.bloomfilter.redis.AsyncBloomFilterRedis;
+import orestes.bloomfilter.redis.BloomFilterRedis;
+import orestes.bloomfilter.redis.CountingBloomFilterRedis;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static orestes.bloomfilter.test.helper.Helper.*;
+import static org.junit.Assert.*;
+
+public class AsyncBloomFilterRedisTest {
+    private static final String name = "asynctests";
+
+    @After
+    public void cleanup() {
+        cleanupRedis();
+    }
+
+    private static FilterBuilder builder(int n) {
+        return new FilterBuilder(n, 0.01).name(name).hashFunction(HashMethod.Murmur3).redisBacked(true)
+            .redisHost(host).redisPort(port).overwriteIfExists(true);
+    }
+
+    @Test
+    public void testBehavesLikeMemoryFilter() throws Exception {
+        for (FilterBuilder config : new FilterBuilder[]{builder(1000), builder(1000).redisScripted(true),
+            builder(1000).redisBitfield(true)}) {
+            BloomFilterRedis<String> filter = new BloomFilterRedis<>(config);
+            AsyncBloomFilterRedis<String> async = filter.async();
+            BloomFilterMemory<String> memory = createFilter(1000, 0.01, HashMethod.Murmur3);
+            List<String> elements = IntStream.range(0, 200).mapToObj(i -> "element" + i).collect(Collectors.toList());
+
+            assertEquals(memory.add("first"), async.add("first").get());
+            assertTrue(async.contains("first").get());
+            assertEquals(memory.addAll(elements), async.addAll(elements).get());
+            assertEquals(memory.contains(elements), async.contains(elements).get());
+            assertFalse(async.contains("missing").get());
+            assertEquals(memory.getBitSet(), filter.getBitSet());
+            filter.remove();
+        }
+    }
+
+    @Test
+    public void testCountingFilter() throws Exception {
+        CountingBloomFilterRedis<String> filter = createCountingRedisFilter(name, 1000, 0.01, HashMethod.Murmur3, true);
+        CountingBloomFilterMemory<String> memory = createCountingFilter(1000, 0.01, HashMethod.Murmur3);
+        List<String> elements = IntStream.range(0, 300).mapToObj(i -> "element" + i % 100).collect(Collectors.toList());
+
+        assertEquals(memory.addAll(elements), filter.async().addAll(elements).get());
+        assertEquals(memory.add("element0"), filter.async().add("element0").get());
+        assertTrue(filter.async().contains("element0").get());
+        assertEquals(memory.getCountMap(), filter.getCountMap());
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+        filter.remove();
+    }
+
+    @Test
+    public void testConcurrentCallersArePipelined() throws Exception {
+        BloomFilterRedis<String> filter = new BloomFilterRedis<>(builder(10_000).redisAsyncConnections(2));
+        BloomFilterMemory<String> memory = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        List<CompletableFuture<Boolean>> added = new ArrayList<>();
+        // Submitted far faster than a round trip, so most of them share pipelines
+        for (int i = 0; i < 5_000; i++) {
+            memory.add("element" + i);
+            added.add(filter.async().add("element" + i));
+        }
+        CompletableFuture.allOf(added.toArray(new CompletableFuture[0])).get();
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+
+        List<CompletableFuture<Boolean>> contained = IntStream.range(0, 5_000)
+            .mapToObj(i -> filter.async().contains("element" + i)).collect(Collectors.toList());
+        for (CompletableFuture<Boolean> future : contained) {
+            assertTrue(future.get());
+        }
+        filter.remove();
+    }
+
+    @Test
+    public void testCoalescedCalls() throws Exception {
+        BloomFilterRedis<String> filter = new BloomFilterRedis<>(builder(10_000).redisCoalescing(200, TimeUnit.MICROSECONDS, 64));
+        BloomFilterMemory<String> memory = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        ExecutorService exec = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            int thread = t;
+            futures.add(exec.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    String element = "element" + thread + "-" + i;
+                    filter.add(element);
+                    assertTrue(filter.contains(element));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        exec.shutdown();
+
+        for (int t = 0; t < 16; t++) {
+            for (int i = 0; i < 200; i++) {
+                memory.add("element" + t + "-" + i);
+            }
+        }
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+        assertFalse(filter.contains("missing"));
+        filter.remove();
+    }
+
+    @Test
+    public void testFailsAfterRemoval() throws Exception {
+        BloomFilterRedis<String> filter = new BloomFilterRedis<>(builder(1000));
+        AsyncBloomFilterRedis<String> async = filter.async();
+        assertSame(async, filter.async());
+        filter.remove();
+        try {
+            async.add("foo").get();
+            fail("Pipeliner was shut down");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testReportReadsAndWrites() throws Exception {
+        FilterBuilder config = builder(1000).gracePeriod(1, TimeUnit.SECONDS);
+        ExpiringBloomFilterRedis<String> queued = new ExpiringBloomFilterRedis<>(config.clone());
+        ExpiringBloomFilterPureRedis pure = new ExpiringBloomFilterPureRedis(config.clone().name(name + "pure"));
+        for (AsyncExpiringBloomFilterRedis<String> async : new AsyncExpiringBloomFilterRedis[]{queued.async(), pure.async()}) {
+            assertFalse(async.reportWrite("unknown").get());
+            async.reportRead("hello", 10, TimeUnit.SECONDS).get();
+            assertFalse(async.getFilter().contains("hello"));
+            Long remaining = async.reportWrite("hello", TimeUnit.MILLISECONDS).get();
+            assertNotNull(remaining);
+            assertTrue(remaining > 0 && remaining <= 10_000);
+            assertTrue(async.contains("hello").get());
+        }
+        assertEquals(1, queued.getExpirationMap().size());
+        assertEquals(1, pure.getExpirationMap().size());
+        queued.remove();
+        pure.remove();
+    }
+}
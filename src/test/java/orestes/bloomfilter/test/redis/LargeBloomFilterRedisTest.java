@@ -0,0 +1,189 @@
+package orestes.bloomfilter.test.redis;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashFunction;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.redis.LargeBloomFilterRedis;
+import orestes.bloomfilter.redis.SegmentedRedisBitSet;
+import orestes.bloomfilter.redis.helper.RedisKeys;
+import orestes.bloomfilter.memory.LargeBloomFilterMemory;
+import orestes.bloomfilter.test.helper.Helper;
+import org.junit.Test;
+import redis.clients.jedis.BitOP;
+import redis.clients.jedis.Jedis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class LargeBloomFilterRedisTest {
+    private static final long LARGE = SegmentedRedisBitSet.SEGMENT_BITS + 1024 * 1024;
+
+    /**
+     * Places the positions at the beginning of the first and second Redis key, so that Redis only has to allocate
+     * small strings.
+     */
+    private static class SplitHashFunction implements HashFunction {
+        @Override
+        public int[] hash(byte[] value, int m, int k) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void hashInto(byte[] value, int offset, int length, long m, int k, long[] positions) {
+            int hash = Arrays.hashCode(Arrays.copyOfRange(value, offset, offset + length)) & 0xFFFF;
+            for (int i = 0; i < k; i++) {
+                long base = i % 2 == 0 ? 0 : SegmentedRedisBitSet.SEGMENT_BITS;
+                positions[i] = base + hash * k + i;
+            }
+        }
+    }
+
+    @Test
+    public void testShardedAcrossKeys() {
+        BloomFilter<String> filter = new FilterBuilder().size(LARGE).hashes(4).hashFunction(new SplitHashFunction())
+            .name("largefilter").pool(Helper.getPool()).overwriteIfExists(true).buildBloomFilter();
+        assertTrue(filter instanceof LargeBloomFilterRedis);
+        LargeBloomFilterRedis<String> large = (LargeBloomFilterRedis<String>) filter;
+        String[] keys = large.getRedisBitSet().getRedisKeys();
+        assertArrayEquals(new String[]{"largefilter:bits:0", "largefilter:bits:1"}, keys);
+
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.add("foo"));
+        assertFalse(filter.add("foo"));
+        assertTrue(filter.contains("foo"));
+        assertFalse(filter.contains("bar"));
+        assertEquals(4L, large.getRedisBitSet().cardinality());
+        assertEquals(1.0, filter.getEstimatedPopulation(), 0.01);
+
+        List<String> elements = IntStream.range(0, 100).mapToObj(i -> "element" + i).collect(Collectors.toList());
+        assertTrue(filter.addAll(elements).stream().allMatch(b -> b));
+        assertTrue(filter.contains(elements).stream().allMatch(b -> b));
+        assertTrue(Helper.getJedis().strlen(keys[1]) > 0);
+
+        // The configuration with the long size is persisted and reloaded
+        FilterBuilder loaded = new RedisKeys("largefilter").persistConfig(Helper.getPool(), new FilterBuilder(1000, 0.01)
+            .name("largefilter"));
+        assertEquals(LARGE, loaded.longSize());
+        assertEquals(4, loaded.hashes());
+
+        filter.clear();
+        assertTrue(filter.isEmpty());
+        filter.remove();
+    }
+
+    @Test
+    public void testSmallSegments() {
+        SegmentedRedisBitSet bits = new SegmentedRedisBitSet(Helper.getPool(), "segmented", 1000, 64);
+        bits.clear();
+        assertEquals(16, bits.getRedisKeys().length);
+        BitSet expected = new BitSet();
+        long[] positions = {0, 63, 64, 500, 999};
+        for (long position : positions) {
+            expected.set((int) position);
+        }
+        assertTrue(bits.setAll(positions));
+        assertFalse(bits.setAll(positions));
+        assertTrue(bits.isAllSet(positions));
+        assertFalse(bits.isAllSet(0, 1));
+        assertEquals(5, bits.cardinality());
+        assertEquals(expected, bits.asBitSet());
+        bits.clear();
+        assertTrue(bits.isEmpty());
+    }
+
+    @Test
+    public void testBehavesLikeStandardFilter() {
+        FilterBuilder config = new FilterBuilder(1000, 0.01).hashFunction(HashMethod.Murmur3x64)
+            .name("smalllargefilter").pool(Helper.getPool()).overwriteIfExists(true);
+        LargeBloomFilterRedis<String> large = new LargeBloomFilterRedis<>(config.clone());
+        BloomFilter<String> memory = new FilterBuilder(1000, 0.01).hashFunction(HashMethod.Murmur3x64).buildBloomFilter();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(memory.add("element" + i), large.add("element" + i));
+        }
+        assertEquals(memory.getBitSet(), large.getBitSet());
+        assertEquals(memory.getEstimatedPopulation(), large.getEstimatedPopulation());
+        large.remove();
+    }
+
+    @Test
+    public void testUnionAndIntersect() {
+        FilterBuilder config = new FilterBuilder(1000, 0.01).hashFunction(HashMethod.Murmur3x64).redisHost(Helper.host)
+            .redisPort(Helper.port).overwriteIfExists(true);
+        LargeBloomFilterRedis<String> first = new LargeBloomFilterRedis<>(config.clone().name("largeunion1"));
+        LargeBloomFilterRedis<String> second = new LargeBloomFilterRedis<>(config.clone().name("largeunion2"));
+        LargeBloomFilterRedis<String> remote = new LargeBloomFilterRedis<>(config.clone().name("largeunion3").database(1));
+        LargeBloomFilterMemory<String> memory = new LargeBloomFilterMemory<>(new FilterBuilder(1000, 0.01)
+            .hashFunction(HashMethod.Murmur3x64));
+        first.add("first");
+        first.add("both");
+        second.add("second");
+        second.add("both");
+        remote.add("remote");
+        remote.add("both");
+        memory.add("memory");
+        memory.add("both");
+
+        // Colocated filters are combined on the server, the others are uploaded
+        assertTrue(first.union(second));
+        assertTrue(first.union(remote));
+        assertTrue(first.union(memory));
+        for (String element : Arrays.asList("first", "second", "remote", "memory", "both")) {
+            assertTrue(first.contains(element));
+        }
+        assertTrue(first.intersect(remote));
+        assertTrue(first.contains("both"));
+        assertTrue(first.contains("remote"));
+        assertFalse(first.contains("first"));
+        assertEquals(remote.getBitSet(), first.getBitSet());
+        assertTrue(first.intersect(second));
+        BitSet expected = remote.getBitSet();
+        expected.and(second.getBitSet());
+        assertEquals(expected, first.getBitSet());
+
+        assertFalse(first.union(new FilterBuilder(100, 0.01).hashFunction(HashMethod.Murmur3x64).buildBloomFilter()));
+        try (Jedis jedis = Helper.getJedis()) {
+            assertTrue(jedis.keys("largeunion*:tmp:*").isEmpty());
+            jedis.select(1);
+            assertTrue(jedis.keys("largeunion*:tmp:*").isEmpty());
+        }
+        first.remove();
+        second.remove();
+        remote.remove();
+    }
+
+    @Test
+    public void testStreamingSmallSegments() throws Exception {
+        SegmentedRedisBitSet bits = new SegmentedRedisBitSet(Helper.getPool(), "segmentedstream", 1000, 64);
+        bits.clear();
+        BitSet expected = new BitSet();
+        for (int position : new int[]{0, 7, 63, 64, 200, 511, 999}) {
+            expected.set(position);
+        }
+        try (OutputStream out = bits.writer()) {
+            out.write(expected.toByteArray());
+        }
+        assertEquals(expected, bits.asBitSet());
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        bits.writeBits(written);
+        assertEquals(125, written.size());
+        assertEquals(expected, BitSet.valueOf(written.toByteArray()));
+
+        SegmentedRedisBitSet other = bits.temporary();
+        other.setAll(7, 300, 999);
+        bits.combine(BitOP.AND, other);
+        expected.clear();
+        expected.set(7);
+        expected.set(999);
+        assertEquals(expected, bits.asBitSet());
+        bits.clear();
+        other.clear();
+    }
+}
@@ -0,0 +1,149 @@
+package orestes.bloomfilter.test.redis;
+
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import orestes.bloomfilter.redis.PackedCountingBloomFilterRedis;
+import org.junit.After;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static orestes.bloomfilter.test.helper.Helper.*;
+import static org.junit.Assert.*;
+
+public class PackedCountingBloomFilterRedisTest {
+    private static final String name = "packedtests";
+
+    @After
+    public void cleanup() {
+        cleanupRedis();
+    }
+
+    @Test
+    public void testBuilderCreatesPackedFilter() {
+        CountingBloomFilter<String> filter = new FilterBuilder(1000, 0.01).name(name).redisPackedCounters(true)
+            .overwriteIfExists(true).buildCountingBloomFilter();
+        assertTrue(filter instanceof PackedCountingBloomFilterRedis);
+        filter.remove();
+    }
+
+    @Test
+    public void testBehavesLikeMemoryFilter() {
+        PackedCountingBloomFilterRedis<String> filter = createPackedCountingRedisFilter(name, 1_000, 0.01, HashMethod.Murmur3, true);
+        CountingBloomFilterMemory<String> memory = createCountingFilter(1_000, 0.01, HashMethod.Murmur3);
+        for (int i = 0; i < 500; i++) {
+            assertEquals(memory.addAndEstimateCount("element" + i % 250), filter.addAndEstimateCount("element" + i % 250));
+        }
+        List<String> batch = IntStream.range(0, 100).mapToObj(i -> "batch" + i % 50).collect(Collectors.toList());
+        assertEquals(memory.addAll(batch), filter.addAll(batch));
+        assertEquals(memory.getCountMap(), filter.getCountMap());
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+        assertEquals(memory.getEstimatedCount("element0"), filter.getEstimatedCount("element0"));
+
+        for (int i = 0; i < 250; i++) {
+            assertEquals(memory.removeAndEstimateCount("element" + i), filter.removeAndEstimateCount("element" + i));
+        }
+        assertEquals(memory.getCountMap(), filter.getCountMap());
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+
+        // One string of 16 bit counters up to the highest counter used
+        try (Jedis jedis = getJedis()) {
+            long highest = filter.getCountMap().keySet().stream().mapToInt(Integer::intValue).max().getAsInt();
+            assertTrue(jedis.strlen(filter.getRedisKeys().COUNTS_KEY) >= (highest + 1) * 2);
+            assertTrue(jedis.strlen(filter.getRedisKeys().COUNTS_KEY) <= filter.getSize() * 2);
+        }
+
+        PackedCountingBloomFilterRedis<String> migrated = createPackedCountingRedisFilter(name + "migrated", 1_000, 0.01, HashMethod.Murmur3, true);
+        migrated.migrateFrom(memory);
+        assertEquals(memory.getCountMap(), migrated.getCountMap());
+        assertEquals(memory.getBitSet(), migrated.getBitSet());
+        migrated.remove();
+        filter.remove();
+    }
+
+    @Test
+    public void testCountersSaturate() {
+        CountingBloomFilter<String> filter = new FilterBuilder(1000, 3).name(name).redisPackedCounters(true)
+            .countingBits(4).overwriteIfExists(true).buildCountingBloomFilter();
+        for (int i = 0; i < 20; i++) {
+            filter.add("element");
+        }
+        assertEquals(15, filter.getEstimatedCount("element"));
+        for (int i = 0; i < 20; i++) {
+            filter.remove("element");
+        }
+        assertEquals(0, filter.getEstimatedCount("element"));
+        assertFalse(filter.contains("element"));
+        assertTrue(filter.getCountMap().isEmpty());
+        filter.remove();
+    }
+
+    @Test
+    public void testUnionAndIntersect() {
+        PackedCountingBloomFilterRedis<String> first = createPackedCountingRedisFilter(name, 1_000, 0.01, HashMethod.Murmur3, true);
+        PackedCountingBloomFilterRedis<String> second = createPackedCountingRedisFilter(name + "second", 1_000, 0.01, HashMethod.Murmur3, true);
+        CountingBloomFilterMemory<String> firstMemory = createCountingFilter(1_000, 0.01, HashMethod.Murmur3);
+        CountingBloomFilterMemory<String> secondMemory = createCountingFilter(1_000, 0.01, HashMethod.Murmur3);
+        for (int i = 0; i < 300; i++) {
+            first.add("element" + i % 200);
+            firstMemory.add("element" + i % 200);
+            second.add("element" + (i + 100));
+            secondMemory.add("element" + (i + 100));
+        }
+
+        // Colocated packed filters are merged on the server, other counting filters through temporary copies
+        assertTrue(first.union(second));
+        assertTrue(firstMemory.union(secondMemory));
+        assertEquals(firstMemory.getCountMap(), first.getCountMap());
+        assertEquals(firstMemory.getBitSet(), first.getBitSet());
+        assertTrue(first.union(secondMemory));
+        assertTrue(firstMemory.union(secondMemory));
+        assertEquals(firstMemory.getCountMap(), first.getCountMap());
+        assertEquals(firstMemory.getBitSet(), first.getBitSet());
+
+        second.remove("element150");
+        secondMemory.remove("element150");
+        assertTrue(first.intersect(second));
+        assertTrue(firstMemory.intersect(secondMemory));
+        assertEquals(firstMemory.getCountMap(), first.getCountMap());
+        assertEquals(firstMemory.getBitSet(), first.getBitSet());
+        second.clear();
+        secondMemory.clear();
+        second.add("element120");
+        secondMemory.add("element120");
+        assertTrue(first.intersect(secondMemory));
+        assertTrue(firstMemory.intersect(secondMemory));
+        assertEquals(firstMemory.getCountMap(), first.getCountMap());
+        assertEquals(firstMemory.getBitSet(), first.getBitSet());
+        assertTrue(first.contains("element120"));
+        assertFalse(first.contains("element150"));
+
+        assertFalse(first.union(createFilter(1_000, 0.01, HashMethod.Murmur3)));
+        try (Jedis jedis = getJedis()) {
+            assertTrue(jedis.keys("*:tmp:*").isEmpty());
+        }
+        first.remove();
+        second.remove();
+    }
+
+    @Test
+    public void testUnionSaturates() {
+        CountingBloomFilter<String> first = new FilterBuilder(1000, 3).name(name).redisPackedCounters(true)
+            .countingBits(4).overwriteIfExists(true).buildCountingBloomFilter();
+        CountingBloomFilter<String> second = new FilterBuilder(1000, 3).name(name + "second").redisPackedCounters(true)
+            .countingBits(4).overwriteIfExists(true).buildCountingBloomFilter();
+        for (int i = 0; i < 10; i++) {
+            first.add("element");
+            second.add("element");
+        }
+        assertTrue(first.union(second));
+        assertEquals(15, first.getEstimatedCount("element"));
+        first.remove();
+        second.remove();
+    }
+}
@@ -15,6 +15,7 @@ import org.junit.runners.Parameterized;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -30,7 +31,7 @@ import static org.junit.Assert.*;
 public class RedisBFTest {
 
     private enum FilterTypes {
-        NORMAL, COUNTING, POOL_CONFIG, SENTINEL_CONFIG
+        NORMAL, SCRIPTED, BITFIELD, COUNTING, POOL_CONFIG, SENTINEL_CONFIG
     }
 
     private final FilterTypes filterTypes;
@@ -39,6 +40,8 @@ public class RedisBFTest {
     public static Collection<Object[]> data() throws Exception {
         Object[][] data = {
                 {"normal", FilterTypes.NORMAL},
+                {"scripted", FilterTypes.SCRIPTED},
+                {"bitfield", FilterTypes.BITFIELD},
                 {"pool_config", FilterTypes.POOL_CONFIG},
                 {"sentinel_config", FilterTypes.SENTINEL_CONFIG},
                 {"counting", FilterTypes.COUNTING}
@@ -59,6 +62,10 @@ public class RedisBFTest {
             return createCountingRedisFilter(name, n, p, HashMethod.MD5, overwrite, database);
         else if (filterTypes == FilterTypes.NORMAL)
             return createRedisFilter(name, n, p, HashMethod.MD5, overwrite, database);
+        else if (filterTypes == FilterTypes.SCRIPTED)
+            return createScriptedRedisFilter(name, n, p, HashMethod.MD5, overwrite, database, null);
+        else if (filterTypes == FilterTypes.BITFIELD)
+            return createBitfieldRedisFilter(name, n, p, HashMethod.MD5, overwrite, database);
         else if (filterTypes == FilterTypes.POOL_CONFIG)
             return createRedisPoolFilter(name, n, p, HashMethod.MD5, overwrite, database);
         else if (filterTypes == FilterTypes.SENTINEL_CONFIG)
@@ -71,6 +78,8 @@ public class RedisBFTest {
         // Only the normal Read Filter needs to know about slaves.
         if (filterTypes == FilterTypes.NORMAL)
             return createRedisFilterWithReadSlave(name, n, p, HashMethod.MD5, overwrite, host, slavePort);
+        else if (filterTypes == FilterTypes.SCRIPTED)
+            return createScriptedRedisFilter(name, n, p, HashMethod.MD5, overwrite, Protocol.DEFAULT_DATABASE, slavePort);
         else return createFilter(name, n, p, overwrite);
 
     }
@@ -106,6 +115,45 @@ public class RedisBFTest {
     }
 
 
+    @Test
+    public void testUnionAndIntersect() {
+        BloomFilter<String> first = createFilter("union1", 1000, 0.01, true);
+        BloomFilter<String> second = createFilter("union2", 1000, 0.01, true);
+        IntStream.range(0, 100).mapToObj(i -> "obj" + i).forEach(first::add);
+        IntStream.range(50, 150).mapToObj(i -> "obj" + i).forEach(second::add);
+
+        BitSet union = first.getBitSet();
+        union.or(second.getBitSet());
+        assertTrue(first.union(second));
+        assertEquals(union, first.getBitSet());
+
+        BitSet intersection = first.getBitSet();
+        intersection.and(second.getBitSet());
+        assertTrue(first.intersect(second));
+        assertEquals(intersection, first.getBitSet());
+
+        // Bloom filters in other databases or in memory are uploaded
+        BloomFilter<String> other = createFilter("union3", 1000, 0.01, true, 1);
+        BloomFilter<String> memory = filterTypes == FilterTypes.COUNTING
+            ? createCountingFilter(1000, 0.01, HashMethod.MD5) : Helper.createFilter(1000, 0.01, HashMethod.MD5);
+        other.add("other");
+        memory.add("memory");
+        BitSet uploaded = second.getBitSet();
+        uploaded.or(other.getBitSet());
+        uploaded.or(memory.getBitSet());
+        assertTrue(second.union(other));
+        assertTrue(second.union(memory));
+        assertEquals(uploaded, second.getBitSet());
+        assertTrue(second.containsAll(Arrays.asList("obj50", "obj149", "other", "memory")));
+        assertTrue(second.intersect(memory));
+        assertEquals(memory.getBitSet(), second.getBitSet());
+
+        assertFalse(first.union(createFilter("union4", 100, 0.01, true)));
+        first.remove();
+        second.remove();
+        other.remove();
+    }
+
     @Test
     public void overwriteExistingFilter() {
         int n = 1000;
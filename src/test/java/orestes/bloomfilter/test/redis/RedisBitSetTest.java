@@ -5,6 +5,7 @@ import orestes.bloomfilter.redis.helper.RedisPool;
 import orestes.bloomfilter.test.helper.Helper;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Random;
 import java.util.stream.IntStream;
@@ -72,6 +73,33 @@ public class RedisBitSetTest {
         assertEquals(b1.cardinality(), b2.cardinality());
     }
 
+    @Test
+    public void testModesMatchTransactions() {
+        RedisPool pool = Helper.getPool();
+        RedisBitSet plain = new RedisBitSet(pool, "plain", 1000);
+        plain.clear();
+        // Three elements of three bits each, the last one sharing all bits with the first two
+        int[] positions = {1, 5, 999, 7, 70, 700, 5, 7, 999};
+        assertEquals("[true, true, false]", Arrays.toString(plain.setAll(3, positions)));
+        int[] queries = {1, 5, 999, 1, 2, 3, 700, 70, 7};
+        assertEquals("[true, false, true]", Arrays.toString(plain.isAllSet(3, queries)));
+
+        for (RedisBitSet.Mode mode : RedisBitSet.Mode.values()) {
+            RedisBitSet bits = new RedisBitSet(pool, mode.name(), 1000, mode);
+            bits.clear();
+            assertEquals(mode.name(), "[true, true, false]", Arrays.toString(bits.setAll(3, positions)));
+            assertEquals(mode.name(), plain.asBitSet(), bits.asBitSet());
+            assertEquals(mode.name(), "[true, false, true]", Arrays.toString(bits.isAllSet(3, queries)));
+            assertArrayEquals(mode.name(), plain.getBulk(queries), bits.getBulk(queries));
+            assertTrue(bits.isAllSet(1, 5, 7));
+            assertFalse(bits.isAllSet(1, 2));
+            assertTrue(bits.setAll(2, 3));
+            assertFalse(bits.setAll(2, 3));
+            assertEquals(0, bits.setAll(3, new int[0]).length);
+            bits.clear();
+        }
+    }
+
     @Test
     public void testIsEmpty() throws Exception {
         int max = 1_000_000;
@@ -2,16 +2,33 @@ package orestes.bloomfilter.test.redis;
 
 import orestes.bloomfilter.CountingBloomFilter;
 import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import orestes.bloomfilter.redis.CountingBloomFilterRedis;
 import org.junit.Ignore;
 import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static orestes.bloomfilter.test.helper.Helper.createCountingFilter;
+import static orestes.bloomfilter.test.helper.Helper.createFilter;
+import static orestes.bloomfilter.test.helper.Helper.createCountingRedisFilter;
+import static orestes.bloomfilter.test.helper.Helper.getJedis;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class RedisCBFTest {
     private static String name = "RedisCBFTest";
@@ -64,4 +81,119 @@ public class RedisCBFTest {
         }
         assertTrue(!false_negative.get());
     }
+
+    @Test
+    public void testRemoveAll() {
+        CountingBloomFilterRedis<String> filter = createCountingRedisFilter(name, 1000, 0.01, HashMethod.Murmur3, true);
+        CountingBloomFilterMemory<String> memory = createCountingFilter(1000, 0.01, HashMethod.Murmur3);
+        List<String> elements = IntStream.range(0, 300).mapToObj(i -> "element" + i % 100).collect(Collectors.toList());
+        filter.addAll(elements);
+        memory.addAll(elements);
+
+        List<String> removals = elements.subList(0, 150);
+        assertEquals(memory.removeAll(removals), filter.removeAll(removals));
+        assertEquals(memory.getCountMap(), filter.getCountMap());
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+
+        filter.removeAll(elements.subList(150, 300));
+        assertTrue(filter.getCountMap().isEmpty());
+        assertTrue(filter.isEmpty());
+        filter.remove();
+    }
+
+    @Test
+    public void testUnionAndIntersect() {
+        CountingBloomFilterRedis<String> first = createCountingRedisFilter(name, 1000, 0.01, HashMethod.Murmur3, true);
+        CountingBloomFilterRedis<String> second = createCountingRedisFilter(name + "2", 1000, 0.01, HashMethod.Murmur3, true);
+        CountingBloomFilterMemory<String> memory = createCountingFilter(1000, 0.01, HashMethod.Murmur3);
+        CountingBloomFilterMemory<String> memorySecond = createCountingFilter(1000, 0.01, HashMethod.Murmur3);
+        List<String> elements = IntStream.range(0, 300).mapToObj(i -> "element" + i % 100).collect(Collectors.toList());
+        first.addAll(elements.subList(0, 200));
+        memory.addAll(elements.subList(0, 200));
+        second.addAll(elements.subList(150, 300));
+        memorySecond.addAll(elements.subList(150, 300));
+
+        // Merged on the server
+        assertTrue(first.union(second));
+        assertTrue(memory.union(memorySecond));
+        assertEquals(memory.getCountMap(), first.getCountMap());
+        assertEquals(memory.getBitSet(), first.getBitSet());
+        assertTrue(first.intersect(second));
+        assertTrue(memory.intersect(memorySecond));
+        assertEquals(memory.getCountMap(), first.getCountMap());
+        assertEquals(memory.getBitSet(), first.getBitSet());
+
+        // Merged from memory and into memory
+        CountingBloomFilterMemory<String> other = createCountingFilter(1000, 0.01, HashMethod.Murmur3);
+        other.addAll(elements.subList(0, 20));
+        assertTrue(first.union(other));
+        assertTrue(memory.union(other));
+        assertEquals(memory.getCountMap(), first.getCountMap());
+        assertTrue(first.intersect(other));
+        assertTrue(memory.intersect(other));
+        assertEquals(memory.getCountMap(), first.getCountMap());
+        assertEquals(memory.getBitSet(), first.getBitSet());
+        assertTrue(other.union(first));
+        assertTrue(memory.union(memory.clone()));
+        assertEquals(memory.getCountMap(), other.getCountMap());
+        try (Jedis jedis = getJedis()) {
+            assertTrue(jedis.keys("*:tmp:*").isEmpty());
+        }
+
+        assertFalse(first.union(createFilter(1000, 0.01, HashMethod.Murmur3)));
+        first.remove();
+        second.remove();
+    }
+
+    @Test
+    public void testConcurrentRemovals() throws Exception {
+        int threads = 8;
+        int rounds = 200;
+        CountingBloomFilterRedis<String> filter = createCountingRedisFilter(name, 100, 0.1, HashMethod.Murmur3, true);
+        List<String> hot = Arrays.asList("a", "b", "c");
+        // Every thread holds one copy of each hot element, so they never disappear while being added and removed
+        filter.addAll(hot);
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(exec.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    filter.addAll(hot);
+                    filter.remove("a");
+                    filter.removeAll(Arrays.asList("b", "c"));
+                    assertTrue(filter.contains("a") && filter.contains("b") && filter.contains("c"));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        exec.shutdown();
+
+        assertEquals(1, filter.getEstimatedCount("a"));
+        assertEquals(Arrays.asList(true, true, true), filter.removeAll(hot));
+        assertFalse(filter.contains("a"));
+        assertTrue(filter.getCountMap().isEmpty());
+        filter.remove();
+    }
+
+    @Test
+    public void testFailedMergeRemovesTemporaryCopies() {
+        CountingBloomFilterRedis<String> filter = createCountingRedisFilter("tmpcleanup", 1000, 0.01, HashMethod.Murmur3,
+            true);
+        CountingBloomFilterMemory<String> other = createCountingFilter(1000, 0.01, HashMethod.Murmur3);
+        other.add("foo");
+        try (Jedis jedis = getJedis()) {
+            // Counts of the wrong type make the merge script fail after the copies were uploaded
+            jedis.set(filter.getRedisKeys().COUNTS_KEY, "broken");
+            try {
+                filter.union(other);
+                fail("The merge should have failed");
+            } catch (JedisDataException e) {
+                // expected
+            }
+            assertTrue(jedis.keys("*tmpcleanup*:tmp:*").isEmpty());
+        }
+        filter.remove();
+    }
 }
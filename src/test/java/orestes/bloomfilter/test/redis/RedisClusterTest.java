@@ -0,0 +1,169 @@
+package orestes.bloomfilter.test.redis;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.cachesketch.ExpiringBloomFilterPureRedis;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import orestes.bloomfilter.redis.BloomFilterRedis;
+import orestes.bloomfilter.redis.CountingBloomFilterRedis;
+import orestes.bloomfilter.redis.ShardedBloomFilterRedis;
+import orestes.bloomfilter.redis.ShardedRedisBitSet;
+import orestes.bloomfilter.redis.helper.RedisClusterPool;
+import orestes.bloomfilter.redis.helper.RedisKeys;
+import orestes.bloomfilter.redis.helper.RedisPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.util.JedisClusterCRC16;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static orestes.bloomfilter.test.helper.Helper.*;
+import static org.junit.Assert.*;
+
+/**
+ * Requires a Redis Cluster with its masters on the ports 7000-7002, see src/test/resources/cluster/cluster_setup.md.
+ */
+public class RedisClusterTest {
+    private static final String name = "clustertests";
+    private RedisClusterPool pool;
+
+    @Before
+    public void setUp() {
+        pool = RedisPool.clusterBuilder().addNode(host, clusterPort).redisConnections(10).build();
+    }
+
+    @After
+    public void tearDown() {
+        pool.destroy();
+    }
+
+    private FilterBuilder builder(int n) {
+        return new FilterBuilder(n, 0.01).name(name).hashFunction(HashMethod.Murmur3).pool(pool)
+            .overwriteIfExists(true);
+    }
+
+    @Test
+    public void testKeysShareSlot() {
+        RedisKeys keys = new RedisKeys(name, true);
+        int slot = JedisClusterCRC16.getSlot(keys.CONFIG_KEY);
+        assertEquals(slot, JedisClusterCRC16.getSlot(keys.BITS_KEY));
+        assertEquals(slot, JedisClusterCRC16.getSlot(keys.COUNTS_KEY));
+        assertEquals(slot, JedisClusterCRC16.getSlot(keys.TTL_KEY));
+        assertEquals(slot, JedisClusterCRC16.getSlot(keys.EXPIRATION_QUEUE_KEY));
+        assertEquals(name, new RedisKeys(name).CONFIG_KEY);
+    }
+
+    @Test
+    public void testBuilderDiscoversCluster() {
+        FilterBuilder config = new FilterBuilder(1000, 0.01).name(name).addRedisClusterNode(host, clusterPort)
+            .overwriteIfExists(true);
+        BloomFilter<String> filter = config.buildBloomFilter();
+        assertTrue(filter instanceof BloomFilterRedis);
+        assertTrue(config.redisCluster());
+        filter.add("foo");
+        assertTrue(filter.contains("foo"));
+        filter.remove();
+        config.pool().destroy();
+    }
+
+    @Test
+    public void testUnionAcrossSlots() {
+        BloomFilter<String> first = builder(1000).buildBloomFilter();
+        BloomFilter<String> second = builder(1000).name(name + "2").buildBloomFilter();
+        CountingBloomFilter<String> counting = builder(1000).name(name + "3").buildCountingBloomFilter();
+        CountingBloomFilter<String> otherCounting = builder(1000).name(name + "4").buildCountingBloomFilter();
+        BloomFilterMemory<String> memory = new BloomFilterMemory<>(builder(1000));
+        CountingBloomFilterMemory<String> countingMemory = new CountingBloomFilterMemory<>(builder(1000));
+        first.add("foo");
+        second.add("bar");
+        counting.add("foo");
+        otherCounting.add("foo");
+        otherCounting.add("bar");
+        memory.addAll(Arrays.asList("foo", "bar"));
+        countingMemory.addAll(Arrays.asList("foo", "foo", "bar"));
+
+        assertTrue(first.union(second));
+        assertEquals(memory.getBitSet(), first.getBitSet());
+        assertTrue(counting.union(otherCounting));
+        assertEquals(countingMemory.getCountMap(), counting.getCountMap());
+        assertEquals(countingMemory.getBitSet(), counting.getBitSet());
+        first.remove();
+        second.remove();
+        counting.remove();
+        otherCounting.remove();
+    }
+
+    @Test
+    public void testBloomFilter() {
+        BloomFilter<String> filter = builder(1000).buildBloomFilter();
+        BloomFilterMemory<String> memory = createFilter(1000, 0.01, HashMethod.Murmur3);
+        List<String> elements = IntStream.range(0, 500).mapToObj(i -> "element" + i).collect(Collectors.toList());
+        assertEquals(memory.addAll(elements), filter.addAll(elements));
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+        assertTrue(filter.containsAll(elements));
+
+        BloomFilter<String> loaded = new FilterBuilder(1000, 0.01).name(name).pool(pool).buildBloomFilter();
+        assertEquals(filter, loaded);
+        filter.remove();
+        assertFalse(pool.forKey("{" + name + "}").safelyReturn(jedis -> jedis.exists("{" + name + "}")));
+    }
+
+    @Test
+    public void testCountingBloomFilter() {
+        CountingBloomFilter<String> filter = builder(1000).buildCountingBloomFilter();
+        assertTrue(filter instanceof CountingBloomFilterRedis);
+        CountingBloomFilterMemory<String> memory = createCountingFilter(1000, 0.01, HashMethod.Murmur3);
+        for (int i = 0; i < 200; i++) {
+            assertEquals(memory.addAndEstimateCount("element" + i % 50), filter.addAndEstimateCount("element" + i % 50));
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals(memory.removeAndEstimateCount("element" + i), filter.removeAndEstimateCount("element" + i));
+        }
+        assertEquals(memory.getCountMap(), filter.getCountMap());
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+        filter.remove();
+    }
+
+    @Test
+    public void testExpiringBloomFilter() {
+        ExpiringBloomFilterPureRedis filter = new ExpiringBloomFilterPureRedis(builder(100).gracePeriod(1, TimeUnit.SECONDS));
+        filter.reportRead("hello", 10, TimeUnit.SECONDS);
+        assertTrue(filter.reportWrite("hello"));
+        assertTrue(filter.contains("hello"));
+        assertTrue(filter.isKnown("hello"));
+        filter.remove();
+    }
+
+    @Test
+    public void testShardedAcrossNodes() {
+        ShardedBloomFilterRedis<String> filter = (ShardedBloomFilterRedis<String>) builder(10_000)
+            .redisClusterShards(6).<String>buildBloomFilter();
+        BloomFilterMemory<String> memory = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        List<String> elements = IntStream.range(0, 2_000).mapToObj(i -> "element" + i).collect(Collectors.toList());
+        assertEquals(memory.addAll(elements), filter.addAll(elements));
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+        assertTrue(filter.containsAll(elements));
+
+        // The shards are spread over several masters
+        ShardedRedisBitSet bits = filter.getRedisBitSet();
+        Set<Integer> ports = new HashSet<>();
+        for (int i = 0; i < bits.getShards().count(); i++) {
+            RedisPool shard = bits.getShards().getPool(i);
+            ports.add(shard.getPort());
+            String key = bits.getRedisKey(i);
+            assertTrue(shard.safelyReturn(jedis -> jedis.exists(key)));
+        }
+        assertTrue(ports.size() > 1);
+        filter.remove();
+    }
+}
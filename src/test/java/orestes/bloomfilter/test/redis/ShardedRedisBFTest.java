@@ -0,0 +1,204 @@
+package orestes.bloomfilter.test.redis;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.CountingBloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.memory.BloomFilterMemory;
+import orestes.bloomfilter.memory.CountingBloomFilterMemory;
+import orestes.bloomfilter.redis.ShardedBloomFilterRedis;
+import orestes.bloomfilter.redis.ShardedCountingBloomFilterRedis;
+import orestes.bloomfilter.redis.ShardedRedisBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static orestes.bloomfilter.test.helper.Helper.*;
+import static org.junit.Assert.*;
+
+public class ShardedRedisBFTest {
+    private static final String name = "shardedtests";
+
+    @Before
+    @After
+    public void cleanup() {
+        cleanupRedis();
+        try (Jedis jedis = new Jedis(host, shardPort)) {
+            jedis.flushAll();
+        }
+    }
+
+    @Test
+    public void testBuilderCreatesShardedFilters() {
+        FilterBuilder config = new FilterBuilder(1000, 0.01).name(name).addRedisShard(host, port)
+            .addRedisShard(host, shardPort);
+        BloomFilter<String> filter = config.clone().buildBloomFilter();
+        assertTrue(filter instanceof ShardedBloomFilterRedis);
+        CountingBloomFilter<String> counting = config.clone().name(name + "counting").buildCountingBloomFilter();
+        assertTrue(counting instanceof ShardedCountingBloomFilterRedis);
+
+        // The configuration is only persisted on the first shard
+        try (Jedis first = new Jedis(host, port); Jedis second = new Jedis(host, shardPort)) {
+            assertTrue(first.exists(name));
+            assertFalse(second.exists(name));
+        }
+        filter.remove();
+        counting.remove();
+    }
+
+    @Test
+    public void testBehavesLikeMemoryFilter() {
+        ShardedBloomFilterRedis<String> filter = createShardedRedisFilter(name, 10_000, 0.01, HashMethod.Murmur3, true);
+        BloomFilterMemory<String> memory = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        List<String> elements = IntStream.range(0, 2_000).mapToObj(i -> "element" + i).collect(Collectors.toList());
+        for (String element : elements.subList(0, 1_000)) {
+            assertEquals(memory.add(element), filter.add(element));
+        }
+        assertEquals(memory.addAll(elements.subList(1_000, 2_000)), filter.addAll(elements.subList(1_000, 2_000)));
+
+        BitSet bits = filter.getBitSet();
+        assertEquals(memory.getBitSet(), bits);
+        assertEquals(bits.cardinality(), filter.getRedisBitSet().cardinality());
+        assertEquals(memory.getEstimatedPopulation(), filter.getEstimatedPopulation());
+        assertTrue(filter.containsAll(elements));
+        List<String> others = IntStream.range(0, 1_000).mapToObj(i -> "other" + i).collect(Collectors.toList());
+        assertEquals(memory.contains(others), filter.contains(others));
+
+        // Both shards hold their part of the bits
+        ShardedRedisBitSet bitSet = filter.getRedisBitSet();
+        try (Jedis first = new Jedis(host, port); Jedis second = new Jedis(host, shardPort)) {
+            int split = filter.getRedisBitSet().getShards().rangeSize();
+            assertEquals(bits.get(0, split).cardinality(), (long) first.bitcount(bitSet.getRedisKey(0)));
+            assertEquals(bits.get(split, bits.length()).cardinality(), (long) second.bitcount(bitSet.getRedisKey(1)));
+        }
+
+        ShardedBloomFilterRedis<String> loaded = createShardedRedisFilter(name, 10_000, 0.01, HashMethod.Murmur3, false);
+        assertEquals(filter, loaded);
+        assertTrue(loaded.containsAll(elements));
+
+        filter.clear();
+        assertTrue(loaded.isEmpty());
+        filter.remove();
+    }
+
+    @Test
+    public void testCountingBehavesLikeMemoryFilter() {
+        ShardedCountingBloomFilterRedis<String> filter = createShardedCountingRedisFilter(name, 1_000, 0.01, HashMethod.Murmur3, true);
+        CountingBloomFilterMemory<String> memory = createCountingFilter(1_000, 0.01, HashMethod.Murmur3);
+        for (int i = 0; i < 500; i++) {
+            assertEquals(memory.addAndEstimateCount("element" + i % 250), filter.addAndEstimateCount("element" + i % 250));
+        }
+        assertEquals(memory.getCountMap(), filter.getCountMap());
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+        assertEquals(memory.getEstimatedCount("element0"), filter.getEstimatedCount("element0"));
+
+        for (int i = 0; i < 250; i++) {
+            assertEquals(memory.removeAndEstimateCount("element" + i), filter.removeAndEstimateCount("element" + i));
+        }
+        assertEquals(memory.getCountMap(), filter.getCountMap());
+        assertEquals(memory.getBitSet(), filter.getBitSet());
+
+        for (int i = 0; i < 250; i++) {
+            filter.remove("element" + i);
+        }
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.getCountMap().isEmpty());
+        filter.remove();
+    }
+
+    @Test
+    public void testUnionAndIntersect() {
+        ShardedBloomFilterRedis<String> first = createShardedRedisFilter(name, 10_000, 0.01, HashMethod.Murmur3, true);
+        ShardedBloomFilterRedis<String> second = createShardedRedisFilter(name + "2", 10_000, 0.01, HashMethod.Murmur3,
+            true);
+        BloomFilterMemory<String> memory = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        BloomFilterMemory<String> memorySecond = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        for (int i = 0; i < 1_000; i++) {
+            first.add("first" + i);
+            memory.add("first" + i);
+            second.add("second" + i);
+            memorySecond.add("second" + i);
+        }
+
+        // Colocated shards are combined on the server
+        assertTrue(first.getRedisBitSet().colocated(false, second.getRedisBitSet()));
+        assertTrue(first.union(second));
+        assertTrue(memory.union(memorySecond));
+        assertEquals(memory.getBitSet(), first.getBitSet());
+        assertTrue(first.intersect(second));
+        assertTrue(memory.intersect(memorySecond));
+        assertEquals(memory.getBitSet(), first.getBitSet());
+
+        // Other filters are uploaded per shard
+        BloomFilterMemory<String> other = createFilter(10_000, 0.01, HashMethod.Murmur3);
+        for (int i = 0; i < 2_000; i++) {
+            other.add("other" + i);
+        }
+        assertTrue(first.union(other));
+        assertTrue(memory.union(other));
+        assertEquals(memory.getBitSet(), first.getBitSet());
+        assertTrue(first.intersect(other));
+        assertTrue(memory.intersect(other));
+        assertEquals(memory.getBitSet(), first.getBitSet());
+        assertFalse(first.union(createFilter(1_000, 0.01, HashMethod.Murmur3)));
+        assertNoTemporaryKeys();
+
+        first.remove();
+        second.remove();
+    }
+
+    @Test
+    public void testCountingUnionAndIntersect() {
+        ShardedCountingBloomFilterRedis<String> first = createShardedCountingRedisFilter(name, 1_000, 0.01,
+            HashMethod.Murmur3, true);
+        ShardedCountingBloomFilterRedis<String> second = createShardedCountingRedisFilter(name + "2", 1_000, 0.01,
+            HashMethod.Murmur3, true);
+        CountingBloomFilterMemory<String> memory = createCountingFilter(1_000, 0.01, HashMethod.Murmur3);
+        CountingBloomFilterMemory<String> memorySecond = createCountingFilter(1_000, 0.01, HashMethod.Murmur3);
+        for (int i = 0; i < 200; i++) {
+            first.add("element" + i % 150);
+            memory.add("element" + i % 150);
+            second.add("element" + (i + 100));
+            memorySecond.add("element" + (i + 100));
+        }
+
+        assertTrue(first.union(second));
+        assertTrue(memory.union(memorySecond));
+        assertEquals(memory.getCountMap(), first.getCountMap());
+        assertEquals(memory.getBitSet(), first.getBitSet());
+        assertTrue(first.intersect(second));
+        assertTrue(memory.intersect(memorySecond));
+        assertEquals(memory.getCountMap(), first.getCountMap());
+        assertEquals(memory.getBitSet(), first.getBitSet());
+
+        CountingBloomFilterMemory<String> other = createCountingFilter(1_000, 0.01, HashMethod.Murmur3);
+        for (int i = 0; i < 300; i++) {
+            other.add("element" + i % 200);
+        }
+        assertTrue(first.union(other));
+        assertTrue(memory.union(other));
+        assertEquals(memory.getCountMap(), first.getCountMap());
+        assertTrue(first.intersect(other));
+        assertTrue(memory.intersect(other));
+        assertEquals(memory.getCountMap(), first.getCountMap());
+        assertEquals(memory.getBitSet(), first.getBitSet());
+        assertFalse(first.union(createFilter(1_000, 0.01, HashMethod.Murmur3)));
+        assertNoTemporaryKeys();
+
+        first.remove();
+        second.remove();
+    }
+
+    private static void assertNoTemporaryKeys() {
+        try (Jedis first = new Jedis(host, port); Jedis second = new Jedis(host, shardPort)) {
+            assertTrue(first.keys("*:tmp*").isEmpty());
+            assertTrue(second.keys("*:tmp*").isEmpty());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package performance;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+import orestes.bloomfilter.HashProvider.HashMethod;
+import orestes.bloomfilter.test.MemoryBFTest;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares Redis-backed Bloom filters setting and testing bits through transactions of <i>SETBIT</i>/<i>GETBIT</i>
+ * commands to filters using a single <i>BITFIELD</i> command or a Lua script per operation.
+ */
+public class RedisBitfieldPerformance {
+    public static void main(String[] args) {
+        int count = 30_000;
+        int batch = 1_000;
+        int items = 100_000_000;
+        int m = 1_000_000;
+        int k = 10;
+
+        FilterBuilder transaction = new FilterBuilder(m, k).name("transaction");
+        FilterBuilder bitfield = new FilterBuilder(m, k).name("bitfield").redisBitfield(true);
+        FilterBuilder scripted = new FilterBuilder(m, k).name("scripted").redisScripted(true);
+        for (FilterBuilder config : new FilterBuilder[]{transaction, bitfield, scripted}) {
+            BloomFilter<String> b = config.hashFunction(HashMethod.Murmur3).redisBacked(true).overwriteIfExists(true)
+                .buildBloomFilter();
+            System.out.println(config.name() + ":");
+            singleOperations(count, items, b);
+            batchOperations(count, batch, items, b);
+            b.remove();
+        }
+    }
+
+    private static void singleOperations(int count, int items, BloomFilter<String> b) {
+        b.clear();
+        Random r = new Random(42);
+        List<String> elements = IntStream.range(0, count).mapToObj(i -> String.valueOf(r.nextInt(items)))
+            .collect(Collectors.toList());
+
+        System.out.print("add(): ");
+        long start = System.currentTimeMillis();
+        elements.forEach(b::add);
+        MemoryBFTest.printStat(start, System.currentTimeMillis(), count);
+
+        System.out.print("contains(): ");
+        start = System.currentTimeMillis();
+        elements.forEach(b::contains);
+        MemoryBFTest.printStat(start, System.currentTimeMillis(), count);
+    }
+
+    private static void batchOperations(int count, int batch, int items, BloomFilter<String> b) {
+        b.clear();
+        Random r = new Random(42);
+        List<List<String>> batches = IntStream.range(0, count / batch)
+            .mapToObj(i -> IntStream.range(0, batch).mapToObj(j -> String.valueOf(r.nextInt(items)))
+                .collect(Collectors.toList()))
+            .collect(Collectors.toList());
+
+        System.out.print("addAll(): ");
+        long start = System.currentTimeMillis();
+        batches.forEach(b::addAll);
+        MemoryBFTest.printStat(start, System.currentTimeMillis(), count);
+
+        System.out.print("contains(Collection): ");
+        start = System.currentTimeMillis();
+        batches.forEach(b::contains);
+        MemoryBFTest.printStat(start, System.currentTimeMillis(), count);
+    }
+}
@@ -0,0 +1,6 @@
+#!/bin/sh
+for port in 7000 7001 7002; do
+	redis-server cluster/$port.conf > cluster_$port.log &
+done
+sleep 1
+redis-cli --cluster create 127.0.0.1:7000 127.0.0.1:7001 127.0.0.1:7002 --cluster-replicas 0 --cluster-yes
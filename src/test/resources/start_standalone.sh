@@ -1,3 +1,4 @@
 #!/bin/sh
 redis-server standalone/master.conf > master.log &
 redis-server standalone/slave.conf > slave.log &
+redis-server standalone/shard.conf > shard.log &